@@ -20,6 +20,7 @@ import org.bcia.julongchain.common.exception.ConsenterException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
 import org.bcia.julongchain.common.ledger.blockledger.file.FileLedgerIterator;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
@@ -31,7 +32,6 @@ import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 
 import java.util.Date;
-import java.util.Map;
 
 /**
  * Deliver服务处理
@@ -45,12 +45,24 @@ public class DeliverHandler implements IDeliverHandler {
     private ISupportManager sm;
     private long timeWindow;
     private boolean mutualTLS;
+    /**
+     * 每个Deliver请求预读的区块数
+     */
+    private int readAheadBlocks = DEFAULT_READ_AHEAD_BLOCKS;
+
+    public static final int DEFAULT_READ_AHEAD_BLOCKS = 16;
 
     public DeliverHandler(ISupportManager sm, long timeWindow) {
         this.sm = sm;
         this.timeWindow = timeWindow;
     }
 
+    public DeliverHandler(ISupportManager sm, long timeWindow, int readAheadBlocks) {
+        this.sm = sm;
+        this.timeWindow = timeWindow;
+        this.readAheadBlocks = readAheadBlocks;
+    }
+
     public DeliverHandler(ISupportManager sm, long timeWindow, boolean mutualTLS) {
         this.sm = sm;
         this.timeWindow = timeWindow;
@@ -66,44 +78,41 @@ public class DeliverHandler implements IDeliverHandler {
         }
     }
 
+    /**
+     * 校验Seek请求并启动区块发送, 区块由DeliverSession异步发送, 本方法不等待发送完成
+     * 请求被拒绝时回复对应状态后即读取流上的下一个请求
+     */
     public void deliverBlocks(DeliverServer server, Common.Envelope envelope) throws ConsenterException {
         Common.Payload payload = null;
         try {
             payload = CommonUtils.unmarshalPayload(envelope.getPayload().toByteArray());
         } catch (InvalidProtocolBufferException e) {
             log.error(e.getMessage());
-            sendStatusReply(server, Common.Status.BAD_REQUEST);
-        }
-        if (payload.getHeader() == null) {
-            try {
-                log.warn(String.format("Malformed envelope received bad header"));
-                sendStatusReply(server, Common.Status.BAD_REQUEST);
-            } catch (ConsenterException e) {
-                log.error(e.getMessage());
-            }
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
+        }
+        if (!payload.hasHeader()) {
+            log.warn(String.format("Malformed envelope received bad header"));
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
         Common.GroupHeader chdr = CommonUtils.unmarshalGroupHeader(payload.getHeader().getGroupHeader().toByteArray());
         if (chdr == null) {
-            try {
-                sendStatusReply(server, Common.Status.BAD_REQUEST);
-            } catch (ConsenterException e) {
-                log.error(e.getMessage());
-            }
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
         try {
             validateGroupHeader(server, chdr);
-        } catch (ValidateException e) {
-            sendStatusReply(server, Common.Status.BAD_REQUEST);
+        } catch (ValidateException | ConsenterException e) {
             log.error(e.getMessage());
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
         ChainSupport chain = sm.getChain(chdr.getGroupId());
         if (chain == null) {
             log.debug(String.format("Rejecting deliver group %s not found", chdr.getGroupId()));
-            try {
-                sendStatusReply(server, Common.Status.NOT_FOUND);
-            } catch (ConsenterException e) {
-                log.error(e.getMessage());
-            }
+            sendErrorReply(server, Common.Status.NOT_FOUND);
+            return;
         }
         //TODO select case  erroredChan
 //        SessionAc accessControl = null;
@@ -125,90 +134,91 @@ public class DeliverHandler implements IDeliverHandler {
             seekInfo = Ab.SeekInfo.parseFrom(payload.getData().toByteArray());
         } catch (InvalidProtocolBufferException e) {
             log.error(e.getMessage(), e);
-            sendStatusReply(server, Common.Status.BAD_REQUEST);
-            throw new ConsenterException(e);
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
 
-        if (seekInfo.getStart() == null || seekInfo.getStop() == null) {
-            sendStatusReply(server, Common.Status.BAD_REQUEST);
+        if (!seekInfo.hasStart() || !seekInfo.hasStop()) {
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
         }
 
+        ReadWriteBase ledger = chain.getLedgerResources().getReadWriteBase();
         IIterator cursor = null;
+        long height;
         try {
-            cursor = chain.getLedgerResources().getReadWriteBase().iterator(seekInfo.getStart());
+            height = ledger.height();
+            cursor = ledger.iterator(seekInfo.getStart());
         } catch (LedgerException e) {
-          throw new ConsenterException(e);
+            log.error(e.getMessage(), e);
+            sendErrorReply(server, Common.Status.SERVICE_UNAVAILABLE);
+            return;
         }
-        if (cursor instanceof FileLedgerIterator) {
-            FileLedgerIterator fileLedgerIterator = (FileLedgerIterator) cursor;
-            long number = fileLedgerIterator.getBlockNum();
-            long stopNumber = 0;
-            Ab.SeekPosition.TypeCase stop = seekInfo.getStop().getTypeCase();
-            switch (stop) {
-                case OLDEST:
-                    stopNumber = number;
-                    break;
-                case NEWEST:
-                    try {
-                        stopNumber = chain.getLedgerResources().getReadWriteBase().height() - 1;
-                    } catch (LedgerException e) {
-                        throw new ConsenterException(e);
-                    }
-                    break;
-                case SPECIFIED:
-                    stopNumber = stop.getNumber();
-                    if (stopNumber < number) {
-                        log.warn(String.format("[group: %s] Received invalid seekInfo message from %s: start number %d greater than stop number %d", chdr.getGroupId(), number, stopNumber));
-                        sendStatusReply(server, Common.Status.BAD_REQUEST);
-                    }
-                default:
-            }
-            {
-                if (seekInfo.getBehavior() == Ab.SeekInfo.SeekBehavior.FAIL_IF_NOT_READY) {
-                    try {
-                        if (number > chain.getLedgerResources().getReadWriteBase().height() - 1) {
-                            sendStatusReply(server, Common.Status.NOT_FOUND);
-                        }
-                    } catch (LedgerException e) {
-                        throw new ConsenterException(e);
-                    }
-                }
-                QueryResult queryResult = nextBlock(cursor);
-                Map.Entry<QueryResult, Common.Status> block = (Map.Entry<QueryResult, Common.Status>) queryResult.getObj();
-                try {
-                    cursor.close();
-                } catch (LedgerException e) {
-                    e.printStackTrace();
-                }
-                Common.Block blockData = (Common.Block) block.getKey().getObj();
-                Common.Status status = block.getValue();
-                blockData.getHeader().getNumber();
-                if (status != Common.Status.SUCCESS) {
-                    log.error(String.format("[group: %s] Error reading from group, cause was: %s", chdr.getGroupId(), status));
-                    sendStatusReply(server, status);
-                }
-                number++;
-                //TODO 去掉权限控制部分
-//                try {
-//                    accessControl.enaluate();
-//                } catch (ValidateException e) {
-//                    sendStatusReply(server, Common.Status.FORBIDDEN);
-//                }
-                log.debug(String.format("[group: %s] Delivering block for %s", chdr.getGroupId(), seekInfo));
-                try {
-                    sendBlockReply(server, blockData);
-                } catch (ConsenterException e) {
-                    log.error(e.getMessage());
-                }
-                if (stopNumber == blockData.getHeader().getNumber()) {
-                    return;
-                }
-            }
+        long number = startNumber(seekInfo.getStart(), cursor, height);
+        long stopNumber;
+        switch (seekInfo.getStop().getTypeCase()) {
+            case OLDEST:
+                stopNumber = number;
+                break;
+            case NEWEST:
+                stopNumber = height - 1;
+                break;
+            case SPECIFIED:
+                stopNumber = seekInfo.getStop().getSpecified().getNumber();
+                break;
+            default:
+                closeCursor(cursor);
+                sendErrorReply(server, Common.Status.BAD_REQUEST);
+                return;
         }
+        if (stopNumber < number) {
+            log.warn(String.format("[group: %s] Received invalid seekInfo message: start number %d greater than stop number %d", chdr.getGroupId(), number, stopNumber));
+            closeCursor(cursor);
+            sendErrorReply(server, Common.Status.BAD_REQUEST);
+            return;
+        }
+        if (seekInfo.getBehavior() == Ab.SeekInfo.SeekBehavior.FAIL_IF_NOT_READY && number > height - 1) {
+            closeCursor(cursor);
+            sendErrorReply(server, Common.Status.NOT_FOUND);
+            return;
+        }
+        //TODO 去掉权限控制部分
+        log.debug(String.format("[group: %s] Delivering blocks [%d, %d] for %s", chdr.getGroupId(), number, stopNumber, seekInfo));
+        new DeliverSession(chdr.getGroupId(), server, ledger, cursor, number, stopNumber, readAheadBlocks).start();
+    }
 
+    /**
+     * 迭代器返回的第一个区块号
+     */
+    private long startNumber(Ab.SeekPosition start, IIterator cursor, long height) {
+        if (cursor instanceof FileLedgerIterator) {
+            return ((FileLedgerIterator) cursor).getBlockNum();
+        }
+        switch (start.getTypeCase()) {
+            case NEWEST:
+                return height - 1;
+            case SPECIFIED:
+                return start.getSpecified().getNumber();
+            default:
+                return 0;
+        }
+    }
 
+    private void closeCursor(IIterator cursor) {
+        try {
+            cursor.close();
+        } catch (LedgerException e) {
+            log.error(e.getMessage(), e);
+        }
     }
 
+    /**
+     * 回复拒绝状态并读取流上的下一个请求
+     */
+    private void sendErrorReply(DeliverServer server, Common.Status status) throws ConsenterException {
+        sendStatusReply(server, status);
+        server.requestNext();
+    }
 
     public QueryResult nextBlock(IIterator cursor) throws ConsenterException {
         // FIXME: 2018/5/31
@@ -251,4 +261,8 @@ public class DeliverHandler implements IDeliverHandler {
         return timeWindow;
     }
 
+    public int getReadAheadBlocks() {
+        return readAheadBlocks;
+    }
+
 }
@@ -17,29 +17,71 @@ package org.bcia.julongchain.common.deliver;
 
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import com.google.protobuf.UnknownFieldSet;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 
 /**
  * Deliver服务实现发送接口
+ * 每个Deliver流一个实例, 流上的Seek请求依次处理;
+ * 基于gRPC流时关闭自动入站流控, 上一个请求处理完毕后才读取下一个请求, 并根据isReady控制区块的发送节奏;
+ * 客户端半关闭时若有正在发送的DeliverSession, 待其发送完毕后才结束流
  *
  * @author zhangmingyang
  * @Date: 2018/5/29
  * @company Dingxuan
  */
 public class DeliverServer implements ISender {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(DeliverServer.class);
+
     StreamObserver<Ab.DeliverResponse> responseObserver;
+    private ServerCallStreamObserver<Ab.DeliverResponse> serverCallObserver;
     private IPolicyChecker policyChecker;
     private ISender sender;
-    private Common.Envelope envelope;
+    private volatile Common.Envelope envelope;
+    private volatile Runnable onReadyListener;
+    private volatile Runnable onCancelListener;
+    /**
+     * 以下状态在synchronized中修改
+     */
+    private boolean sessionActive;
+    private boolean halfClosed;
+    private boolean completed;
 
     public DeliverServer(StreamObserver<Ab.DeliverResponse> responseObserver, Common.Envelope envelope) {
-        this.responseObserver = responseObserver;
+        this(responseObserver);
         this.envelope = envelope;
     }
 
+    /**
+     * 须在gRPC服务方法返回前创建, 以注册流的就绪及取消回调
+     */
+    public DeliverServer(StreamObserver<Ab.DeliverResponse> responseObserver) {
+        this.responseObserver = responseObserver;
+        if (responseObserver instanceof ServerCallStreamObserver) {
+            serverCallObserver = (ServerCallStreamObserver<Ab.DeliverResponse>) responseObserver;
+            serverCallObserver.disableAutoInboundFlowControl();
+            serverCallObserver.setOnReadyHandler(() -> {
+                Runnable listener = onReadyListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            });
+            serverCallObserver.setOnCancelHandler(() -> {
+                Runnable listener = onCancelListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            });
+        }
+    }
+
     public StreamObserver<Ab.DeliverResponse> getResponseObserver() {
         return responseObserver;
     }
@@ -56,8 +98,102 @@ public class DeliverServer implements ISender {
         return envelope;
     }
 
+    public void setEnvelope(Common.Envelope envelope) {
+        this.envelope = envelope;
+    }
+
+    /**
+     * 流是否可以继续写入而不在传输层堆积, 非gRPC流始终可写
+     */
+    public boolean isReady() {
+        return serverCallObserver == null || serverCallObserver.isReady();
+    }
+
+    public boolean isCancelled() {
+        return serverCallObserver != null && serverCallObserver.isCancelled();
+    }
+
+    /**
+     * 设置流由不可写变为可写时的回调, 为null时清除
+     */
+    public void setOnReadyListener(Runnable onReadyListener) {
+        this.onReadyListener = onReadyListener;
+    }
+
+    /**
+     * 设置客户端取消流时的回调, 为null时清除
+     */
+    public void setOnCancelListener(Runnable onCancelListener) {
+        this.onCancelListener = onCancelListener;
+    }
+
+    /**
+     * DeliverSession开始发送区块
+     */
+    synchronized void beginSession() {
+        sessionActive = true;
+    }
+
+    /**
+     * DeliverSession发送完毕或被关闭, 由DeliverSession在其自身的锁内调用, 此后该会话不再写入流;
+     * 客户端已半关闭时结束流, 否则读取流上的下一个请求
+     */
+    synchronized void endSession() {
+        sessionActive = false;
+        if (halfClosed) {
+            complete();
+        } else {
+            requestNext();
+        }
+    }
+
+    /**
+     * 客户端半关闭流, 没有正在发送的DeliverSession时立即结束流, 否则由endSession结束
+     */
+    public synchronized void halfClose() {
+        halfClosed = true;
+        if (!sessionActive) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        if (!isCancelled()) {
+            responseObserver.onCompleted();
+        }
+    }
+
+    /**
+     * 处理请求出错时回复错误状态并读取流上的下一个请求
+     */
+    public void replyError(Common.Status status) {
+        try {
+            send(new DeliverHandlerSupport().createStatusReply(status));
+        } catch (ConsenterException | RuntimeException e) {
+            log.error(e.getMessage(), e);
+        }
+        requestNext();
+    }
+
+    /**
+     * 当前请求处理完毕, 读取流上的下一个请求
+     */
+    public void requestNext() {
+        if (serverCallObserver != null && !serverCallObserver.isCancelled()) {
+            serverCallObserver.request(1);
+        }
+    }
+
     @Override
     public void send(Message msg) throws ConsenterException {
+        if (msg instanceof Ab.DeliverResponse) {
+            responseObserver.onNext((Ab.DeliverResponse) msg);
+            return;
+        }
         Ab.DeliverResponse deliverResponse = null;
         try {
             deliverResponse = Ab.DeliverResponse.parseFrom(msg.toByteArray());
@@ -66,4 +202,38 @@ public class DeliverServer implements ISender {
         }
         responseObserver.onNext(deliverResponse);
     }
+
+    /**
+     * 发送区块, 区块字节原样写入响应的block字段
+     *
+     * @param blockBytes 区块的序列化字节
+     */
+    public void sendBlockBytes(byte[] blockBytes) throws ConsenterException {
+        responseObserver.onNext(createBlockBytesReply(blockBytes));
+    }
+
+    /**
+     * 以区块字节构造响应
+     * 区块字节作为block字段号的未知字段携带, 序列化时原样写出, 与setBlock的编码相同, 客户端解析后即为block字段;
+     * 服务端无需反序列化区块, 也不会再次序列化. 注意在服务端该响应的getBlock()为空
+     */
+    static Ab.DeliverResponse createBlockBytesReply(byte[] blockBytes) throws ConsenterException {
+        UnknownFieldSet.Field blockField = UnknownFieldSet.Field.newBuilder()
+                .addLengthDelimited(UnsafeByteOperations.unsafeWrap(blockBytes))
+                .build();
+        Ab.DeliverResponse response = Ab.DeliverResponse.newBuilder()
+                .setUnknownFields(UnknownFieldSet.newBuilder()
+                        .addField(Ab.DeliverResponse.BLOCK_FIELD_NUMBER, blockField)
+                        .build())
+                .build();
+        if (response.getSerializedSize() > 0) {
+            return response;
+        }
+        //运行环境配置为丢弃proto3未知字段时退回到解析区块
+        try {
+            return Ab.DeliverResponse.newBuilder().setBlock(Common.Block.parseFrom(blockBytes)).build();
+        } catch (InvalidProtocolBufferException e) {
+            throw new ConsenterException(e);
+        }
+    }
 }
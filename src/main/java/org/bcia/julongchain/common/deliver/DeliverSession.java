@@ -0,0 +1,228 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.deliver;
+
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.protos.common.Common;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次Seek请求的区块发送
+ * 读取任务在共享的读取线程池中预读至多readAhead个区块的序列化字节, 只读取账本中已有的区块, 从不阻塞读取线程;
+ * 流可写时将预读的区块依次写出, 不可写时等待流的就绪回调;
+ * 读到账本末尾的追尾请求在新区块追加时由账本通知重新调度读取, 不轮询账本
+ * 发送到stopNumber后回复SUCCESS, 读取失败回复SERVICE_UNAVAILABLE, 随后读取流上的下一个请求, 客户端已半关闭时结束流
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class DeliverSession {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(DeliverSession.class);
+
+    private static final int READER_THREADS = 4;
+
+    private static final AtomicInteger READER_SEQ = new AtomicInteger();
+
+    private static final ExecutorService READER_POOL = Executors.newFixedThreadPool(READER_THREADS, r -> {
+        Thread t = new Thread(r, "deliver-reader-" + READER_SEQ.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String groupId;
+    private final DeliverServer server;
+    private final ReadWriteBase ledger;
+    private final IIterator cursor;
+    private final long stopNumber;
+    private final int readAhead;
+
+    private final Queue<byte[]> readAheadBlocks = new ArrayDeque<>();
+    private final AtomicBoolean reading = new AtomicBoolean();
+    private final Runnable appendListener = this::scheduleRead;
+
+    /**
+     * 下一个待读取的区块号, 仅在读取任务中修改
+     */
+    private volatile long nextReadNumber;
+    /**
+     * 下一个待发送的区块号, 在synchronized中修改
+     */
+    private long nextSendNumber;
+    private volatile boolean finished;
+
+    /**
+     * @param startNumber 起始区块号, 即cursor返回的第一个区块
+     * @param stopNumber  最后一个发送的区块号(含)
+     * @param readAhead   预读区块数
+     */
+    public DeliverSession(String groupId, DeliverServer server, ReadWriteBase ledger, IIterator cursor,
+                          long startNumber, long stopNumber, int readAhead) {
+        this.groupId = groupId;
+        this.server = server;
+        this.ledger = ledger;
+        this.cursor = cursor;
+        this.stopNumber = stopNumber;
+        this.readAhead = Math.max(1, readAhead);
+        this.nextReadNumber = startNumber;
+        this.nextSendNumber = startNumber;
+    }
+
+    public void start() {
+        server.beginSession();
+        server.setOnReadyListener(this::send);
+        server.setOnCancelListener(this::cancel);
+        ledger.addAppendListener(appendListener);
+        if (server.isCancelled()) {
+            cancel();
+            return;
+        }
+        scheduleRead();
+    }
+
+    /**
+     * 有可读取的区块且预读窗口未满时调度读取任务, 同一时刻至多一个读取任务
+     */
+    private void scheduleRead() {
+        if (finished || !canRead()) {
+            return;
+        }
+        if (reading.compareAndSet(false, true)) {
+            READER_POOL.execute(this::read);
+        }
+    }
+
+    private boolean canRead() {
+        if (nextReadNumber > stopNumber || bufferedCount() >= readAhead) {
+            return false;
+        }
+        try {
+            return nextReadNumber < ledger.height();
+        } catch (LedgerException e) {
+            log.error(e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private synchronized int bufferedCount() {
+        return readAheadBlocks.size();
+    }
+
+    private void read() {
+        try {
+            while (!finished && canRead()) {
+                byte[] blockBytes = cursor.nextBlockBytes();
+                nextReadNumber++;
+                synchronized (this) {
+                    readAheadBlocks.add(blockBytes);
+                }
+                send();
+            }
+        } catch (LedgerException e) {
+            log.error(String.format("[group: %s] Error reading from group, cause was: %s", groupId, e.getMessage()), e);
+            finish(Common.Status.SERVICE_UNAVAILABLE);
+            return;
+        } finally {
+            reading.set(false);
+        }
+        //读取期间到达的追加通知或窗口空出可能因读取任务正在运行而被忽略, 此处补做一次检查
+        scheduleRead();
+    }
+
+    /**
+     * 在流可写时写出预读的区块, 由读取任务及流的就绪回调调用
+     */
+    private void send() {
+        synchronized (this) {
+            while (!finished && server.isReady()) {
+                byte[] blockBytes = readAheadBlocks.poll();
+                if (blockBytes == null) {
+                    break;
+                }
+                try {
+                    server.sendBlockBytes(blockBytes);
+                } catch (ConsenterException | RuntimeException e) {
+                    log.error(String.format("[group: %s] Fail to send block %d: %s", groupId, nextSendNumber,
+                            e.getMessage()), e);
+                    close();
+                    return;
+                }
+                if (nextSendNumber++ == stopNumber) {
+                    finish(Common.Status.SUCCESS);
+                    return;
+                }
+            }
+        }
+        scheduleRead();
+    }
+
+    private synchronized void finish(Common.Status status) {
+        if (finished) {
+            return;
+        }
+        release();
+        try {
+            server.send(new DeliverHandlerSupport().createStatusReply(status));
+        } catch (ConsenterException | RuntimeException e) {
+            log.error(e.getMessage(), e);
+        }
+        server.endSession();
+    }
+
+    private void cancel() {
+        log.debug(String.format("[group: %s] Deliver stream cancelled at block %d", groupId, nextReadNumber));
+        close();
+    }
+
+    private synchronized void close() {
+        if (finished) {
+            return;
+        }
+        release();
+        server.endSession();
+    }
+
+    /**
+     * 停止读取及发送并释放资源
+     */
+    private void release() {
+        finished = true;
+        readAheadBlocks.clear();
+        ledger.removeAppendListener(appendListener);
+        server.setOnReadyListener(null);
+        server.setOnCancelListener(null);
+        try {
+            cursor.close();
+        } catch (LedgerException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
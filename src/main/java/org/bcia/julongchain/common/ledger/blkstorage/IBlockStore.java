@@ -90,6 +90,11 @@ public interface IBlockStore extends IFileLedgerBlockStore {
      */
     TransactionPackage.TxValidationCode retrieveTxValidationCodeByTxID (String txID) throws LedgerException;
 
+    /**
+     * 将已追加的区块落盘, 不受组合fsync策略影响
+     */
+    void sync() throws LedgerException;
+
     /**
      * 关闭
      */
@@ -0,0 +1,174 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.protos.common.Common;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已解码区块的LRU缓存
+ * 按区块序列化后的字节数限制容量, 提交区块时写入, 使追踪最新区块的deliver客户端以及gossip状态请求无需读取文件
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockCache {
+    private final long maxBytes;
+    private long currentBytes;
+    /**
+     * 区块号 -> 区块, 按访问顺序排列
+     */
+    private final LinkedHashMap<Long, Common.Block> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 区块文件位置 -> 区块号, 用于根据区块hash、交易ID查询到的位置命中缓存
+     */
+    private final Map<Long, Long> locations = new HashMap<>();
+    private final Map<Long, Long> blockLocations = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BlockCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 缓存是否启用
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * 根据区块号获取区块, 未命中返回null
+     */
+    public synchronized Common.Block get(long blockNum) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Common.Block block = blocks.get(blockNum);
+        record(block);
+        return block;
+    }
+
+    /**
+     * 根据区块文件位置获取区块, 未命中返回null
+     */
+    public synchronized Common.Block get(FileLocPointer flp) {
+        if (!isEnabled()) {
+            return null;
+        }
+        Long blockNum = locations.get(locationKey(flp));
+        Common.Block block = blockNum == null ? null : blocks.get(blockNum);
+        record(block);
+        return block;
+    }
+
+    /**
+     * 缓存区块, 超出容量时淘汰最久未访问的区块
+     */
+    public synchronized void put(Common.Block block, FileLocPointer flp) {
+        if (!isEnabled()) {
+            return;
+        }
+        long size = block.getSerializedSize();
+        if (size > maxBytes) {
+            return;
+        }
+        long blockNum = block.getHeader().getNumber();
+        remove(blockNum);
+        blocks.put(blockNum, block);
+        long locationKey = locationKey(flp);
+        locations.put(locationKey, blockNum);
+        blockLocations.put(blockNum, locationKey);
+        currentBytes += size;
+        Iterator<Map.Entry<Long, Common.Block>> itr = blocks.entrySet().iterator();
+        while (currentBytes > maxBytes && itr.hasNext()) {
+            Map.Entry<Long, Common.Block> eldest = itr.next();
+            itr.remove();
+            currentBytes -= eldest.getValue().getSerializedSize();
+            locations.remove(blockLocations.remove(eldest.getKey()));
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        locations.clear();
+        blockLocations.clear();
+        currentBytes = 0;
+    }
+
+    private void remove(long blockNum) {
+        Common.Block old = blocks.remove(blockNum);
+        if (old != null) {
+            currentBytes -= old.getSerializedSize();
+            locations.remove(blockLocations.remove(blockNum));
+        }
+    }
+
+    private void record(Common.Block block) {
+        if (block == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+    }
+
+    private static long locationKey(FileLocPointer flp) {
+        return ((long) flp.getFileSuffixNum() << 32) | (flp.getLocPointer().getOffset() & 0xFFFFFFFFL);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getSize() {
+        return blocks.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size=%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d",
+                getSize(), getCurrentBytes(), maxBytes, getHits(), getMisses(), getEvictions());
+    }
+}
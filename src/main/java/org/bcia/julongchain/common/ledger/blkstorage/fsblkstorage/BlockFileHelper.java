@@ -18,7 +18,6 @@ package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.protos.common.Common;
 
 import java.io.File;
 import java.util.List;
@@ -44,7 +43,6 @@ public class BlockFileHelper {
         long endOffsetLastBlock;
         long lastBlockNum = 0;
         byte[] lastBlockBytes;
-        Common.Block lastBlock;
         List<Object> list;
         File fileInfo;
         //检索最近添加的区块文件
@@ -75,8 +73,7 @@ public class BlockFileHelper {
         }
         //解析区块
         if(lastBlockBytes != null){
-            lastBlock = BlockSerialization.deserializeBlock(lastBlockBytes);
-            lastBlockNum = lastBlock.getHeader().getNumber();
+            lastBlockNum = BlockScanner.scanHeader(lastBlockBytes).getNumber();
         }
         //组装检查点
         return new CheckpointInfo(lastFileNum, (int) endOffsetLastBlock, lastFileNum == 0 && numBlocksInFile == 0, lastBlockNum);
@@ -30,8 +30,14 @@ import org.bcia.julongchain.protos.common.Ledger;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 import org.bouncycastle.util.encoders.Hex;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 管理block file
@@ -52,6 +58,8 @@ public class BlockFileManager {
     public static final int NUM_BLOCKS = 2;
     public static final Object LOCK = new Object();
 	public static final int PEEK_BYTES_LEN = 8;
+    private static final int INDEX_REBUILD_BATCH_BLOCKS = 1000;
+    private static final int HEADER_PEEK_BYTES = 256;
 
     private String rootDir;
     private Config config;
@@ -59,6 +67,8 @@ public class BlockFileManager {
     private Index index;
     private CheckpointInfo cpInfo;
     private BlockFileWriter currentFileWriter;
+    private BlockFileReaderPool readerPool;
+    private BlockCache blockCache;
     private Ledger.BlockchainInfo bcInfo;
     private String ledgerId;
 
@@ -99,11 +109,17 @@ public class BlockFileManager {
         //blkMgrInfoKey-checkpointInfo
         saveCurrentInfo(cpInfo, true);
         //写入文件 writer类
-        this.currentFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, cpInfo.getLastestFileChunkSuffixNum()));
+        this.currentFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, cpInfo.getLastestFileChunkSuffixNum()), config);
         //修剪文件为检查点保存的文件大小
         this.currentFileWriter.truncateFile(cpInfo.getLatestFileChunksize());
+        //区块文件读取池
+        this.readerPool = new BlockFileReaderPool(rootDir, config.getMaxOpenReadFiles(), config.isMmapSealedFiles());
+        //已解码区块缓存
+        this.blockCache = new BlockCache(config.getBlockCacheSize());
         //设置blockindex对象
         this.index = new BlockIndex(indexConfig, indexStore, id);
+        //区块文件回退后删除丢失区块的索引项
+        discardIndexBeyondCheckpoint();
         //设置blockchainINfo对象
         this.bcInfo = Ledger.BlockchainInfo.newBuilder()
                 .setHeight(0)
@@ -142,11 +158,15 @@ public class BlockFileManager {
         if(size < 0 || size == cpInfo.getLatestFileChunksize()){
             return;
         }
+        if(size < cpInfo.getLatestFileChunksize()){
+            rescanShortFile(rootDir, cpInfo, size);
+            return;
+        }
         //获取最新提交的区块
         List<Object> lastCompleteBlockInfo = scanForLastCompleteBlock(rootDir, cpInfo.getLastestFileChunkSuffixNum(), (long) cpInfo.getLatestFileChunksize());
         long endOffsetLastBlock = (long) lastCompleteBlockInfo.get(CURRENT_OFFSET);
         int numBlocks = (int) lastCompleteBlockInfo.get(NUM_BLOCKS);
-        cpInfo.setLastestFileChunkSuffixNum((int) endOffsetLastBlock);
+        cpInfo.setLatestFileChunksize((int) endOffsetLastBlock);
         if(numBlocks == 0){
             return;
         }
@@ -159,6 +179,33 @@ public class BlockFileManager {
         log.debug(String.format("Checkpoint after updates by scanning the last file segment: %s", cpInfo.toString()));
     }
 
+    /**
+     * 区块文件短于检查点: 按组合fsync策略写入时, 检查点及索引可能先于区块数据落盘, 崩溃后最后一次fsync之后的区块丢失
+     * 从文件头重新扫描当前文件, 检查点回退到最后一个完整的区块; 之前的文件在切换文件时已落盘, 不受影响
+     * 丢失区块的索引项由discardIndexBeyondCheckpoint()删除
+     */
+    private void rescanShortFile(String rootDir, CheckpointInfo cpInfo, long size) throws LedgerException {
+        int fileNum = cpInfo.getLastestFileChunkSuffixNum();
+        log.warn(String.format("Block file [%d] of ledger [%s] is shorter than checkpoint (%d < %d), " +
+                        "blocks after the last fsync were lost, rescanning the file",
+                fileNum, ledgerId, size, cpInfo.getLatestFileChunksize()));
+        List<Object> lastCompleteBlockInfo = scanForLastCompleteBlock(rootDir, fileNum, 0);
+        byte[] lastBlockBytes = (byte[]) lastCompleteBlockInfo.get(LAST_BLOCK_BYTES);
+        cpInfo.setLatestFileChunksize((int) (long) lastCompleteBlockInfo.get(CURRENT_OFFSET));
+        if (lastBlockBytes == null && fileNum > 0) {
+            //当前文件中没有完整的区块, 最后一个区块在已落盘的上一个文件中
+            lastBlockBytes = (byte[]) scanForLastCompleteBlock(rootDir, fileNum - 1, 0).get(LAST_BLOCK_BYTES);
+        }
+        if (lastBlockBytes == null) {
+            cpInfo.setChainEmpty(true);
+            cpInfo.setLastBlockNumber(0);
+        } else {
+            cpInfo.setChainEmpty(false);
+            cpInfo.setLastBlockNumber(BlockScanner.scan(lastBlockBytes, 0).getBlockHeader().getNumber());
+        }
+        log.warn(String.format("Checkpoint after rescanning block file [%d]: %s", fileNum, cpInfo));
+    }
+
     /**
      * 组装区块文件名
      * rootDir/blockfile_000000
@@ -172,8 +219,22 @@ public class BlockFileManager {
 		return String.format("%s/%s_%s", rootDir, BLOCKFILE_PREFIX, sb.reverse().toString().toUpperCase());
     }
 
-    public void close() {
+    /**
+     * 将已追加的区块落盘
+     */
+    public void sync() throws LedgerException {
+        currentFileWriter.sync();
+    }
 
+    public void close() {
+        try {
+            currentFileWriter.close();
+        } catch (LedgerException e) {
+            log.error("Got error when closing block file writer", e);
+        }
+        readerPool.close();
+        log.info(String.format("Block cache of ledger [%s]: %s", ledgerId, blockCache));
+        blockCache.clear();
     }
 
     /**
@@ -184,10 +245,15 @@ public class BlockFileManager {
                 0,
                 false,
                 cpInfo.getLastBlockNumber());
-        BlockFileWriter nextFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, newCpInfo.getLastestFileChunkSuffixNum()));
+        BlockFileWriter nextFileWriter = new BlockFileWriter(deriveBlockfilePath(this.rootDir, newCpInfo.getLastestFileChunkSuffixNum()), config);
+        //旧文件写满后落盘并关闭
+        currentFileWriter.close();
         saveCurrentInfo(newCpInfo, true);
         this.currentFileWriter = nextFileWriter;
         updateCheckpoint(newCpInfo);
+        //每个区块文件写满时输出一次缓存统计
+        log.info(String.format("Moved ledger [%s] to block file [%d], block cache: %s", ledgerId,
+                newCpInfo.getLastestFileChunkSuffixNum(), blockCache));
     }
 
     /**
@@ -219,19 +285,16 @@ public class BlockFileManager {
             currentOffset = 0;
         }
         try {
-            //添加区块长度
-            currentFileWriter.append(blockBytesLenEncoded, false);
+            //添加区块长度以及区块
+            currentFileWriter.append(blockBytesLenEncoded, blockBytes, true);
         } catch (LedgerException e) {
             currentFileWriter.truncateFile(cpInfo.getLatestFileChunksize());
             log.error("Got error when appending block to file ", e);
             throw e;
         }
-        //添加区块
-        currentFileWriter.append(blockBytes, true);
         //本次提交区块位置应为之前提交区块位置后8位
-        SerializedBlockInfo info = BlockSerialization.serializeBlock(block, cpInfo.getLatestFileChunksize() + BlockFileManager.PEEK_BYTES_LEN);
-		//block中包含的所有交易
-		List<TxIndexInfo> txOffsets = info.getTxOffsets();
+		//block中包含的所有交易, 直接从已序列化的字节中定位, 不再逐个解析Envelope
+		List<TxIndexInfo> txOffsets = BlockScanner.scanTxOffsets(blockBytes, cpInfo.getLatestFileChunksize() + BlockFileManager.PEEK_BYTES_LEN);
         //设置新的区块信息
         CheckpointInfo currentCPInfo = cpInfo;
         CheckpointInfo newCPInfo = new CheckpointInfo(currentCPInfo.getLastestFileChunkSuffixNum(),
@@ -243,17 +306,34 @@ public class BlockFileManager {
         FileLocPointer blockFLP = new FileLocPointer(newCPInfo.getLastestFileChunkSuffixNum(), currentOffset, 0);
         //组装区块索引
         BlockIndexInfo idxInfo = new BlockIndexInfo(block.getHeader().getNumber(),
-                Util.getHashBytes(blockHash.toByteArray()),
+                Util.getHashBytes(blockHash),
                 blockFLP,
                 txOffsets,
                 block.getMetadata());
         index.indexBlock(idxInfo);
+        //缓存最新提交的区块
+        blockCache.put(block, blockFLP);
         //更新检查点
         updateCheckpoint(newCPInfo);
         //更新区块链
         updateBlockchainInfo(blockHash.toByteArray(), block);
     }
 
+    /**
+     * 索引超过区块文件时(区块文件回退到最后一次fsync), 删除丢失区块的索引项并将索引检查点回退到最后一个区块
+     * 区块hash和交易ID的索引项无法从已丢失的区块得到, 由读取时的位置及内容校验排除
+     */
+    private void discardIndexBeyondCheckpoint() throws LedgerException {
+        long lastBlockIndexed = index.getLastBlockIndexed();
+        long lastBlockNum = cpInfo.getChainEmpty() ? -1 : cpInfo.getLastBlockNumber();
+        if (lastBlockIndexed <= lastBlockNum) {
+            return;
+        }
+        log.warn(String.format("Last block indexed [%d] is beyond last block present in block files [%d], " +
+                "discarding the index of lost blocks", lastBlockIndexed, lastBlockNum));
+        index.discardBlocks(lastBlockNum, lastBlockIndexed);
+    }
+
     /**
      * 同步索引
      */
@@ -297,53 +377,132 @@ public class BlockFileManager {
 
         log.debug(String.format("Start building index form block [%d] to last block [%d]"
                 , startingBlockNum, cpInfo.getLastBlockNumber()));
-        //初始化block流
-        BlockStream stream = new BlockStream(rootDir, startFileNum, startOffset, endFileNum);
-        byte[] blockBytes;
-        BlockPlacementInfo blockPlacementInfo;
-        //读取区块文件
-        if(skipFirstBlock){
-            blockBytes = stream.nextBlockBytes();
-            if(blockBytes == null){
-            	log.error("Got null blockBytes for block num = [{}], but it is forbid");
-                throw new LedgerException(String.format("Block bytes for block num = [%d] should not be null here." +
-                        " The indexes for the block are already present", lastBlockIndexed));
+        rebuildIndex(startFileNum, startOffset, skipFirstBlock, endFileNum, startingBlockNum);
+    }
+
+    /**
+     * 并行重建索引
+     * 每个区块文件由一个线程扫描, 主线程按文件顺序写入索引, 保证检查点连续
+     * 每批写入都会更新检查点, 中断后可从最后写入的区块继续
+     */
+    private void rebuildIndex(int startFileNum,
+                              long startOffset,
+                              boolean skipFirstBlock,
+                              int endFileNum,
+                              long startingBlockNum) throws LedgerException {
+        int fileCount = endFileNum - startFileNum + 1;
+        int threads = config.getIndexRebuildThreads() > 0 ?
+                config.getIndexRebuildThreads() : Runtime.getRuntime().availableProcessors();
+        threads = Math.max(1, Math.min(threads, fileCount));
+        long totalBlocks = cpInfo.getLastBlockNumber() - startingBlockNum + 1;
+        log.info(String.format("Rebuilding index of ledger [%s] for [%d] blocks in [%d] files with [%d] threads",
+                ledgerId, totalBlocks, fileCount, threads));
+
+        AtomicInteger threadNum = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "index-rebuild-" + ledgerId + "-" + threadNum.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        //限制已扫描但未写入的文件数量
+        int window = threads * 2;
+        Deque<Future<List<BlockIndexInfo>>> pending = new ArrayDeque<>();
+        int nextFileNum = startFileNum;
+        long expectedBlockNum = startingBlockNum;
+        long startTime = System.currentTimeMillis();
+        try {
+            while (nextFileNum <= endFileNum || !pending.isEmpty()) {
+                while (nextFileNum <= endFileNum && pending.size() < window) {
+                    final int fileNum = nextFileNum++;
+                    final long offset = fileNum == startFileNum ? startOffset : 0;
+                    final boolean skip = fileNum == startFileNum && skipFirstBlock;
+                    pending.addLast(executor.submit(() -> scanBlockFile(fileNum, offset, skip)));
+                }
+                List<BlockIndexInfo> infos = awaitScan(pending.pollFirst());
+                if (infos.isEmpty()) {
+                    continue;
+                }
+                for (BlockIndexInfo info : infos) {
+                    if (info.getBlockNum() != expectedBlockNum) {
+                        throw new LedgerException(String.format("Expected block [%d] in file [%d] but got block [%d]",
+                                expectedBlockNum, info.getFlp().getFileSuffixNum(), info.getBlockNum()));
+                    }
+                    expectedBlockNum++;
+                }
+                //文件内分批写入, 仅最后一批同步落盘
+                for (int from = 0; from < infos.size(); from += INDEX_REBUILD_BATCH_BLOCKS) {
+                    int to = Math.min(from + INDEX_REBUILD_BATCH_BLOCKS, infos.size());
+                    index.indexBlocks(infos.subList(from, to), to == infos.size());
+                }
+                logRebuildProgress(infos, expectedBlockNum - startingBlockNum, totalBlocks, startTime);
             }
+        } finally {
+            executor.shutdownNow();
         }
-        BlockIndexInfo blockIndexInfo = new BlockIndexInfo();
-        while(true){
-            AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> entry = stream.nextBlockBytesAndPlacementInfo();
-            blockBytes = entry.getKey();
-            blockPlacementInfo = entry.getValue();
-            if(blockBytes == null || blockBytes.length == 0){
-                break;
-            }
-            //解码block
-            SerializedBlockInfo info = BlockSerialization.extractSerializedBlockInfo(blockBytes, cpInfo.getLatestFileChunksize() + 8);
+        log.info(String.format("Finished building index. Last block indexed [%d]", expectedBlockNum - 1));
+    }
 
-            long numBytesToShift = blockPlacementInfo.getBlockBytesOffset() - blockPlacementInfo.getBlockStartOffset();
-            for(TxIndexInfo offset : info.getTxOffsets()){
-                offset.getLoc().setOffset(offset.getLoc().getOffset() + numBytesToShift);
+    /**
+     * 扫描区块文件, 获取每个区块的索引信息
+     * 仅按wire格式遍历区块字节, 不构造完整的Block对象
+     */
+    private List<BlockIndexInfo> scanBlockFile(int fileNum, long startOffset, boolean skipFirstBlock) throws LedgerException {
+        List<BlockIndexInfo> infos = new ArrayList<>();
+        BlockFileStream stream = new BlockFileStream(rootDir, fileNum, startOffset);
+        try {
+            if (skipFirstBlock) {
+                byte[] blockBytes = stream.nextBlockBytes();
+                if (blockBytes == null) {
+                    log.error("Got null blockBytes in file [{}] at offset [{}], but it is forbid", fileNum, startOffset);
+                    throw new LedgerException(String.format("Block bytes in file [%d] at offset [%d] should not be null here." +
+                            " The indexes for the block are already present", fileNum, startOffset));
+                }
+            }
+            while (true) {
+                AbstractMap.SimpleEntry<byte[], BlockPlacementInfo> entry = stream.nextBlockBytesAndPlacementInfo();
+                byte[] blockBytes = entry.getKey();
+                BlockPlacementInfo blockPlacementInfo = entry.getValue();
+                if (blockBytes == null || blockBytes.length == 0) {
+                    break;
+                }
+                //交易位置为区块字节在文件中的位置加上交易在区块中的位置
+                SerializedBlockInfo info = BlockScanner.scan(blockBytes, blockPlacementInfo.getBlockBytesOffset());
+                infos.add(new BlockIndexInfo(info.getBlockHeader().getNumber(),
+                        Util.getHashBytes(info.getBlockHeader()),
+                        new FileLocPointer(blockPlacementInfo.getFileNum(), (int) blockPlacementInfo.getBlockStartOffset(), 0),
+                        info.getTxOffsets(),
+                        info.getMetadata()));
             }
+        } finally {
+            stream.close();
+        }
+        return infos;
+    }
 
-            //更新blockIndexInfo
-            blockIndexInfo.setBlockHash(Util.getHashBytes(info.getBlockHeader().toByteArray()));
-            blockIndexInfo.setBlockNum(info.getBlockHeader().getNumber());
-            //封装文件信息
-            blockIndexInfo.setFlp(new FileLocPointer(blockPlacementInfo.getFileNum(),
-                    (int) blockPlacementInfo.getBlockStartOffset(),
-                    0));
-            blockIndexInfo.setTxOffsets(info.getTxOffsets());
-            blockIndexInfo.setMetadata(info.getMetadata());
-
-            log.debug(String.format("syncIndex() indexing block [%d]", blockIndexInfo.getBlockNum()));
-            //重新设置索引
-            index.indexBlock(blockIndexInfo);
-            if(blockIndexInfo.getBlockNum() % 10000 == 0){
-                log.info(String.format("Indexed block number [%d]", blockIndexInfo.getBlockNum()));
+    private List<BlockIndexInfo> awaitScan(Future<List<BlockIndexInfo>> future) throws LedgerException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerException("Interrupted while rebuilding index", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof LedgerException) {
+                throw (LedgerException) cause;
             }
+            throw new LedgerException(cause);
         }
-        log.info(String.format("Finished building index. Last block indexed [%d]", blockIndexInfo.getBlockNum()));
+    }
+
+    private void logRebuildProgress(List<BlockIndexInfo> infos, long indexedBlocks, long totalBlocks, long startTime) {
+        long elapsedMillis = Math.max(1, System.currentTimeMillis() - startTime);
+        double blocksPerSecond = indexedBlocks * 1000.0 / elapsedMillis;
+        long etaSeconds = blocksPerSecond > 0 ? (long) ((totalBlocks - indexedBlocks) / blocksPerSecond) : -1;
+        log.info(String.format("Indexed blocks [%d-%d] of file [%d], progress [%d/%d], [%.1f] blocks/s, ETA [%d]s",
+                infos.get(0).getBlockNum(),
+                infos.get(infos.size() - 1).getBlockNum(),
+                infos.get(0).getFlp().getFileSuffixNum(),
+                indexedBlocks, totalBlocks, blocksPerSecond, etaSeconds));
     }
 
     /**
@@ -379,9 +538,17 @@ public class BlockFileManager {
 			throw new LedgerException(errMsg);
 		}
         log.debug(String.format("retrieveBlockByHash() - blockHash = [%s]", Hex.toHexString(blockHash)));
-        FileLocPointer loc;
-		loc = index.getBlockLocByHash(blockHash);
-        return fetchBlock(loc);
+        FileLocPointer loc = index.getBlockLocByHash(blockHash);
+        if (!isWithinCheckpoint(loc)) {
+            return null;
+        }
+        Common.Block block = fetchBlock(loc);
+        //丢失区块的索引项可能指向重新追加的其他区块
+        if (!Arrays.equals(blockHash, Util.getHashBytes(block.getHeader()))) {
+            log.warn(String.format("Discarding stale index of block hash [%s] at [%s]", Hex.toHexString(blockHash), loc));
+            return null;
+        }
+        return block;
     }
 
     /**
@@ -392,9 +559,22 @@ public class BlockFileManager {
         if(blockNum == Long.MAX_VALUE){
             blockNum = getBlockchainInfo().getHeight() - 1;
         }
+        //区块文件回退后, 索引中可能残留已丢失区块的位置
+        if(blockNum >= getBlockchainInfo().getHeight()){
+            throw new LedgerException(String.format("Block [%d] is beyond the height [%d] of ledger [%s]",
+                    blockNum, getBlockchainInfo().getHeight(), ledgerId));
+        }
+        Common.Block block = blockCache.get(blockNum);
+        if (block != null) {
+            return block;
+        }
 
+        //已按区块号查询过缓存, 直接读取文件, 避免重复计入未命中
         FileLocPointer loc = index.getBlockLocByBlockNum(blockNum);
-        return fetchBlock(loc);
+        if (loc == null) {
+            return null;
+        }
+        return readBlock(loc);
     }
 
     /**
@@ -409,7 +589,18 @@ public class BlockFileManager {
         log.debug(String.format("retrieveBlockByTxID() - txID = [%s]", txID));
 
         FileLocPointer loc = index.getBlockLocByTxID(txID);
-        return fetchBlock(loc);
+        if (!isWithinCheckpoint(loc)) {
+            return null;
+        }
+        Common.Block block = fetchBlock(loc);
+        //丢失区块的索引项可能指向重新追加的其他区块
+        for (TxIndexInfo txIndexInfo : BlockScanner.scanTxOffsets(block.toByteArray(), 0)) {
+            if (txID.equals(txIndexInfo.getTxID())) {
+                return block;
+            }
+        }
+        log.warn(String.format("Discarding stale index of block of tx [%s] at [%s]", txID, loc));
+        return null;
     }
 
     /**
@@ -422,6 +613,10 @@ public class BlockFileManager {
 			throw new LedgerException(errMsg);
 		}
         log.debug(String.format("retrieveTxValidationCodeByTxID() - txID = [%s]", txID));
+		//校验码不含位置信息, 通过交易本身确认其不属于丢失的区块
+		if (retrieveTransactionByID(txID) == null) {
+			return null;
+		}
 		return index.getTxValidationCodeByTxID(txID);
     }
 
@@ -430,10 +625,25 @@ public class BlockFileManager {
      */
 	private Common.BlockHeader retrieveBlockHeaderByNumber(long blockNum) throws  LedgerException {
         log.debug(String.format("retrieveBlockHeaderByNumber - blockNum = [%d]", blockNum));
+        Common.Block cachedBlock = blockCache.get(blockNum);
+        if (cachedBlock != null) {
+            return cachedBlock.getHeader();
+        }
         FileLocPointer loc = index.getBlockLocByBlockNum(blockNum);
-        byte[] blockBytes = fetchBlockBytes(loc);
-        SerializedBlockInfo info = BlockSerialization.extractSerializedBlockInfo(blockBytes, loc.getLocPointer().getOffset() + 8);
-        return info.getBlockHeader();
+        if (loc == null) {
+            throw new LedgerException(String.format("No block location found for block num [%d]", blockNum));
+        }
+        int fileNum = loc.getFileSuffixNum();
+        long offset = loc.getLocPointer().getOffset();
+        //只读取区块头部所在的前缀
+        byte[] prefix = readerPool.readBlockPrefix(fileNum, isSealed(fileNum), offset, HEADER_PEEK_BYTES);
+        int headerLength = BlockScanner.headerPrefixLength(prefix);
+        if (headerLength < 0) {
+            prefix = readBlockBytes(fileNum, offset);
+        } else if (headerLength > prefix.length && prefix.length == HEADER_PEEK_BYTES) {
+            prefix = readerPool.readBlockPrefix(fileNum, isSealed(fileNum), offset, headerLength);
+        }
+        return BlockScanner.scanHeader(prefix);
     }
 
     /**
@@ -454,10 +664,21 @@ public class BlockFileManager {
 		}
         log.debug(String.format("retrieveTransactionByID() - txID = [%s]", txID));
         FileLocPointer loc = index.getTxLoc(txID);
-		if (loc == null) {
+		if (!isWithinCheckpoint(loc)) {
 			return null;
 		}
-        return fetchTransactionEnvelope(loc);
+        byte[] txEnvelopeBytes = fetchRawBytes(loc);
+        //丢失区块的索引项可能指向重新追加的其他交易
+        try {
+            if (txEnvelopeBytes == null || !txID.equals(BlockScanner.extractTxID(txEnvelopeBytes, 0, txEnvelopeBytes.length))) {
+                log.warn(String.format("Discarding stale index of tx [%s] at [%s]", txID, loc));
+                return null;
+            }
+        } catch (IOException e) {
+            log.warn(String.format("Discarding stale index of tx [%s] at [%s]: %s", txID, loc, e.getMessage()));
+            return null;
+        }
+        return parseTransactionEnvelope(txEnvelopeBytes, loc);
     }
 
     /**
@@ -477,6 +698,17 @@ public class BlockFileManager {
 		if (lp == null) {
 			return null;
 		}
+        Common.Block cachedBlock = blockCache.get(lp);
+        if (cachedBlock != null) {
+            return cachedBlock;
+        }
+        return readBlock(lp);
+    }
+
+    /**
+     * 从区块文件读取区块并写入缓存
+     */
+    private Common.Block readBlock(FileLocPointer lp) throws LedgerException {
         byte[] blockBytes = fetchBlockBytes(lp);
         if (blockBytes == null){
             throw new LedgerException(String.format("Fail to fetch block by [%s]", lp));
@@ -485,7 +717,9 @@ public class BlockFileManager {
         if(blockBytes[0] != BLOCK_BYTES_START){
             throw new LedgerException(String.format("Fetch error block by [%s]", lp));
         }
-        return BlockSerialization.deserializeBlock(blockBytes);
+        Common.Block block = BlockSerialization.deserializeBlock(blockBytes);
+        blockCache.put(block, lp);
+        return block;
    }
 
     /**
@@ -496,7 +730,13 @@ public class BlockFileManager {
 			return null;
 		}
         log.debug(String.format("Entering fetchTransactionEnvelope() %s", lp));
-        byte[] txEnvelopeBytes = fetchRawBytes(lp);
+        return parseTransactionEnvelope(fetchRawBytes(lp), lp);
+    }
+
+    /**
+     * 解析交易Envelope
+     */
+    private Common.Envelope parseTransactionEnvelope(byte[] txEnvelopeBytes, FileLocPointer lp) throws LedgerException {
         if (txEnvelopeBytes == null){
             throw new LedgerException(String.format("Fail to fetch envelope by [%s]", lp));
         }
@@ -521,15 +761,7 @@ public class BlockFileManager {
 		if (lp == null) {
 			return null;
 		}
-        BlockFileStream stream = null;
-        try {
-            stream = new BlockFileStream(rootDir, lp.getFileSuffixNum(), lp.getLocPointer().getOffset());
-            return stream.nextBlockBytes();
-        } finally {
-            if (stream != null) {
-                stream.close();
-            }
-        }
+        return readBlockBytes(lp.getFileSuffixNum(), lp.getLocPointer().getOffset());
     }
 
     /**
@@ -539,10 +771,52 @@ public class BlockFileManager {
 		if (lp == null) {
 			return null;
 		}
-        BlockFileReader reader;
-        String filePath = deriveBlockfilePath(rootDir, lp.getFileSuffixNum());
-        reader = new BlockFileReader(filePath);
-        return reader.read(lp.getLocPointer().getOffset(), lp.getLocPointer().getBytesLength());
+        int fileNum = lp.getFileSuffixNum();
+        return readerPool.read(fileNum, isSealed(fileNum), lp.getLocPointer().getOffset(), lp.getLocPointer().getBytesLength());
+    }
+
+    /**
+     * 读取区块文件fileNum中offset位置的区块
+     */
+    byte[] readBlockBytes(int fileNum, long offset) throws LedgerException {
+        return readerPool.readBlockBytes(fileNum, isSealed(fileNum), offset);
+    }
+
+    /**
+     * 区块文件fileNum当前长度
+     */
+    long getBlockFileSize(int fileNum) throws LedgerException {
+        return readerPool.fileSize(fileNum, isSealed(fileNum));
+    }
+
+    /**
+     * 从缓存中获取区块, 未命中时返回null
+     */
+    Common.Block getCachedBlock(long blockNum) {
+        return blockCache.get(blockNum);
+    }
+
+    /**
+     * 位置在检查点之内, 即不属于区块文件回退时丢失的区块
+     */
+    private boolean isWithinCheckpoint(FileLocPointer lp) {
+        if (lp == null) {
+            return false;
+        }
+        CheckpointInfo checkpointInfo = cpInfo;
+        int fileNum = lp.getFileSuffixNum();
+        long offset = lp.getLocPointer().getOffset();
+        return fileNum < checkpointInfo.getLastestFileChunkSuffixNum()
+                || (fileNum == checkpointInfo.getLastestFileChunkSuffixNum()
+                && offset < checkpointInfo.getLatestFileChunksize()
+                && offset + lp.getLocPointer().getBytesLength() <= checkpointInfo.getLatestFileChunksize());
+    }
+
+    /**
+     * 编号小于当前写入文件的区块文件已写满, 不会再被修改
+     */
+    private boolean isSealed(int fileNum) {
+        return fileNum < cpInfo.getLastestFileChunkSuffixNum();
     }
 
     /**
@@ -579,6 +853,11 @@ public class BlockFileManager {
             int numBlock = 0;
             stream = new BlockFileStream(rootDir, fileNum, startingOffset);
             while (true) {
+                //崩溃时写入中断的区块在重新打开时被截断
+                if(stream.isNextBlockPartial()){
+                    log.warn(String.format("Ignoring partially written block at the end of file [%d]", fileNum));
+                    break;
+                }
                 blockBytes = stream.nextBlockBytes();
                 if(blockBytes == null){
                     break;
@@ -622,6 +901,10 @@ public class BlockFileManager {
         this.db = db;
     }
 
+    public BlockCache getBlockCache() {
+        return blockCache;
+    }
+
     public Index getIndex() {
         return index;
     }
@@ -20,10 +20,14 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 读取文件
+ * 首次读取时打开只读FileChannel, 之后均使用定位读取, 直至close
  *
  * @author sunzongyu
  * @date 2018/04/09
@@ -32,6 +36,7 @@ import java.io.FileInputStream;
 public class BlockFileReader {
 	private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileReader.class);
     private File file;
+    private FileChannel channel;
 
     public BlockFileReader(String filePath){
         this.file = new File(filePath);
@@ -41,21 +46,17 @@ public class BlockFileReader {
      * 从offset位起,读取length字节
      */
     public byte[] read(long offset, long length) throws LedgerException {
-		FileInputStream fis;
-		byte[] result;
+		byte[] result = new byte[(int) length];
 		try {
-			result = new byte[(int) length];
-			fis = new FileInputStream(file);
-			//移动到指定位置
-			long skip = fis.skip(offset);
-			if (skip != offset) {
-				log.debug("Wrong file skip. Expect skip = [{}], actual skip = [{}]", offset, skip);
+			ByteBuffer buffer = ByteBuffer.wrap(result);
+			FileChannel fileChannel = getChannel();
+			while (buffer.hasRemaining()) {
+				int read = fileChannel.read(buffer, offset + buffer.position());
+				if (read < 0) {
+					log.debug("Wrong file read. Except read = [{}], actual read = [{}]", length, buffer.position());
+					break;
+				}
 			}
-			int read = fis.read(result);
-			if (read != length) {
-				log.debug("Wrong file read. Except read = [{}], actual read = [{}]", length, read);
-			}
-			fis.close();
 		} catch (Throwable e){
 			log.error(e.getMessage(), e);
 			throw new LedgerException(e);
@@ -63,8 +64,34 @@ public class BlockFileReader {
 		return result;
     }
 
-    public void close(){
-    	//nothing to do
+	/**
+	 * 当前文件长度
+	 */
+	public long size() throws LedgerException {
+		try {
+			return getChannel().size();
+		} catch (IOException e) {
+			throw new LedgerException(e);
+		}
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (channel == null) {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+		return channel;
+	}
+
+    public synchronized void close(){
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+		channel = null;
 	}
 
     public File getFile() {
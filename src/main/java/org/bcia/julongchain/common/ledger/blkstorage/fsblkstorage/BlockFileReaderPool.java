@@ -0,0 +1,306 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.core.ledger.util.Util;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 区块文件读取池
+ * 按文件编号缓存有限数量的只读FileChannel, 已写满(封存)的区块文件使用MappedByteBuffer,
+ * 所有读取均为定位读取, 避免每次查询打开、跳转、关闭文件
+ * 文件被淘汰或池关闭时, 在最后一个读取者释放后关闭FileChannel并立即解除内存映射,
+ * 不等待GC回收MappedByteBuffer, 避免长期运行的节点占用地址空间及文件句柄(Windows下映射未释放时文件无法删除)
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockFileReaderPool {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileReaderPool.class);
+
+    private final String rootDir;
+    private final int maxOpenFiles;
+    private final boolean mmapSealedFiles;
+    /**
+     * 按访问顺序排列, 超出容量时淘汰最久未使用的文件
+     */
+    private final LinkedHashMap<Integer, PooledReader> readers;
+
+    public BlockFileReaderPool(String rootDir, int maxOpenFiles, boolean mmapSealedFiles) {
+        this.rootDir = rootDir;
+        this.maxOpenFiles = maxOpenFiles <= 0 ? Config.DEFAULT_MAX_OPEN_READ_FILES : maxOpenFiles;
+        this.mmapSealedFiles = mmapSealedFiles;
+        this.readers = new LinkedHashMap<Integer, PooledReader>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PooledReader> eldest) {
+                if (size() > BlockFileReaderPool.this.maxOpenFiles) {
+                    eldest.getValue().retire();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 从文件fileNum的offset位起,读取length字节
+     * @param sealed 文件是否已写满, 写满的文件不会再变化, 可以映射到内存
+     */
+    public byte[] read(int fileNum, boolean sealed, long offset, long length) throws LedgerException {
+        PooledReader reader = acquire(fileNum, sealed);
+        try {
+            return reader.read(offset, (int) length);
+        } finally {
+            release(reader);
+        }
+    }
+
+    /**
+     * 读取offset位置的区块(8字节长度 + 区块字节)
+     * 到达文件结尾时返回null
+     */
+    public byte[] readBlockBytes(int fileNum, boolean sealed, long offset) throws LedgerException {
+        PooledReader reader = acquire(fileNum, sealed);
+        try {
+            long remainingBytes = reader.size() - offset;
+            if (remainingBytes <= 0) {
+                return null;
+            }
+            if (remainingBytes < BlockFileManager.PEEK_BYTES_LEN) {
+                throw new LedgerException(String.format("Remaining bytes length =[%d], we need at least [%d] bytes to get block",
+                        remainingBytes, BlockFileManager.PEEK_BYTES_LEN));
+            }
+            byte[] lenBytes = reader.read(offset, BlockFileManager.PEEK_BYTES_LEN);
+            long length = Util.bytesToLong(lenBytes, 0, BlockFileManager.PEEK_BYTES_LEN);
+            if (length + BlockFileManager.PEEK_BYTES_LEN > remainingBytes) {
+                log.error(String.format("At least [%d] bytes expected. Remaing bytes [%d]",
+                        length + BlockFileManager.PEEK_BYTES_LEN, remainingBytes));
+                throw new LedgerException("unexpected end of blockfile");
+            }
+            return reader.read(offset + BlockFileManager.PEEK_BYTES_LEN, (int) length);
+        } finally {
+            release(reader);
+        }
+    }
+
+    /**
+     * 读取offset位置区块的前maxLength字节, 区块不足maxLength字节时返回整个区块
+     * 用于只需要区块头部的场景
+     */
+    public byte[] readBlockPrefix(int fileNum, boolean sealed, long offset, int maxLength) throws LedgerException {
+        PooledReader reader = acquire(fileNum, sealed);
+        try {
+            long remainingBytes = reader.size() - offset;
+            if (remainingBytes < BlockFileManager.PEEK_BYTES_LEN) {
+                throw new LedgerException(String.format("Remaining bytes length =[%d], we need at least [%d] bytes to get block",
+                        remainingBytes, BlockFileManager.PEEK_BYTES_LEN));
+            }
+            byte[] lenBytes = reader.read(offset, BlockFileManager.PEEK_BYTES_LEN);
+            long length = Util.bytesToLong(lenBytes, 0, BlockFileManager.PEEK_BYTES_LEN);
+            if (length + BlockFileManager.PEEK_BYTES_LEN > remainingBytes) {
+                throw new LedgerException("unexpected end of blockfile");
+            }
+            return reader.read(offset + BlockFileManager.PEEK_BYTES_LEN, (int) Math.min(length, maxLength));
+        } finally {
+            release(reader);
+        }
+    }
+
+    /**
+     * 区块文件当前长度
+     */
+    public long fileSize(int fileNum, boolean sealed) throws LedgerException {
+        PooledReader reader = acquire(fileNum, sealed);
+        try {
+            return reader.size();
+        } finally {
+            release(reader);
+        }
+    }
+
+    /**
+     * 关闭所有文件
+     */
+    public synchronized void close() {
+        for (PooledReader reader : readers.values()) {
+            reader.retire();
+        }
+        readers.clear();
+    }
+
+    private synchronized PooledReader acquire(int fileNum, boolean sealed) throws LedgerException {
+        PooledReader reader = readers.get(fileNum);
+        //文件写满后重新以内存映射方式打开
+        if (reader != null && sealed && mmapSealedFiles && reader.mapped == null) {
+            readers.remove(fileNum);
+            reader.retire();
+            reader = null;
+        }
+        if (reader == null) {
+            reader = open(fileNum, sealed && mmapSealedFiles);
+            readers.put(fileNum, reader);
+        }
+        reader.refs++;
+        return reader;
+    }
+
+    private synchronized void release(PooledReader reader) {
+        reader.refs--;
+        if (reader.retired && reader.refs == 0) {
+            reader.close();
+        }
+    }
+
+    private PooledReader open(int fileNum, boolean mmap) throws LedgerException {
+        String filePath = BlockFileManager.deriveBlockfilePath(rootDir, fileNum);
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+            MappedByteBuffer mapped = null;
+            if (mmap) {
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            log.debug("Opened block file [{}] for reading, mapped = [{}]", filePath, mmap);
+            return new PooledReader(channel, mapped);
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+            throw new LedgerException(e);
+        }
+    }
+
+    /**
+     * 解除内存映射, JDK 9及以上使用Unsafe.invokeCleaner, JDK 8使用DirectBuffer.cleaner()
+     * 调用后不能再访问该映射, 只在没有读取者时调用
+     * @return 是否已解除映射, 不支持时返回false, 由GC回收
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = null;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                //JDK 8
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+                return true;
+            }
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner == null) {
+                return false;
+            }
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+            return true;
+        } catch (Exception e) {
+            log.warn("Can not unmap block file buffer, it will be released by GC: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 池中的单个文件
+     * refs、retired由BlockFileReaderPool加锁维护, 被淘汰的文件在最后一个读取者释放后关闭并解除映射
+     */
+    private static class PooledReader {
+        private final FileChannel channel;
+        private final MappedByteBuffer mapped;
+        private int refs;
+        private boolean retired;
+
+        PooledReader(FileChannel channel, MappedByteBuffer mapped) {
+            this.channel = channel;
+            this.mapped = mapped;
+        }
+
+        byte[] read(long offset, int length) throws LedgerException {
+            //损坏的长度或偏移量与读取文件时一样抛出LedgerException
+            if (offset < 0 || length < 0) {
+                throw new LedgerException(String.format("Invalid block file read, offset = [%d], length = [%d]",
+                        offset, length));
+            }
+            byte[] result = new byte[length];
+            if (mapped != null) {
+                if (offset + length > mapped.capacity()) {
+                    throw new LedgerException("unexpected end of blockfile");
+                }
+                ByteBuffer buffer = mapped.duplicate();
+                buffer.position((int) offset);
+                buffer.get(result);
+                return result;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(result);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new LedgerException("unexpected end of blockfile");
+                    }
+                }
+            } catch (IOException e) {
+                throw new LedgerException(e);
+            }
+            return result;
+        }
+
+        long size() throws LedgerException {
+            if (mapped != null) {
+                return mapped.capacity();
+            }
+            try {
+                return channel.size();
+            } catch (IOException e) {
+                throw new LedgerException(e);
+            }
+        }
+
+        void retire() {
+            retired = true;
+            if (refs == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            if (mapped != null) {
+                unmap(mapped);
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -95,6 +95,21 @@ public class BlockFileStream {
         return new AbstractMap.SimpleEntry<>(blockBytes, blockPlacementInfo);
     }
 
+    /**
+     * 当前位置之后是否只有写入中断的不完整区块, 读到文件结尾时返回false
+     */
+    public boolean isNextBlockPartial() throws LedgerException {
+        long remainingBytes = file.length() - currentOffset;
+        if (remainingBytes == 0) {
+            return false;
+        }
+        if (remainingBytes < BlockFileManager.PEEK_BYTES_LEN) {
+            return true;
+        }
+        byte[] lenBytes = reader.read(currentOffset, BlockFileManager.PEEK_BYTES_LEN);
+        return Util.bytesToLong(lenBytes, 0, BlockFileManager.PEEK_BYTES_LEN) + BlockFileManager.PEEK_BYTES_LEN > remainingBytes;
+    }
+
     /**
      * 下一区块
      */
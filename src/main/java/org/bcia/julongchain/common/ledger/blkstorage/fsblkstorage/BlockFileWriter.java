@@ -21,9 +21,19 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 写入文件
+ * 每个区块文件保持一个打开的FileChannel, 区块长度与区块内容通过一次聚集写入,
+ * 并按照配置的策略合并执行fsync(每个区块、每N个区块或每T毫秒);
+ * 按时间间隔落盘时由定时任务检查, 写入停止后最后的区块也会在T毫秒内落盘
  *
  * @author sunzongyu
  * @date 2018/04/12
@@ -32,12 +42,37 @@ import java.io.*;
 public class BlockFileWriter {
 	private static JulongChainLog log = JulongChainLogFactory.getLog(BlockFileWriter.class);
 
+    private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "blockfile-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
     private String filePath;
     private File file;
+    private FileChannel channel;
+    private int syncEveryNBlocks;
+    private long syncIntervalMillis;
+    /**
+     * 上次fsync之后写入的区块数量
+     */
+    private int unsyncedBlocks;
+    private long lastSyncTime;
+    private ScheduledFuture<?> syncTask;
 
     public BlockFileWriter(String filePath) throws LedgerException{
+        this(filePath, Config.DEFAULT_SYNC_EVERY_N_BLOCKS, Config.DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    public BlockFileWriter(String filePath, Config config) throws LedgerException{
+        this(filePath, config.getSyncEveryNBlocks(), config.getSyncIntervalMillis());
+    }
+
+    public BlockFileWriter(String filePath, int syncEveryNBlocks, long syncIntervalMillis) throws LedgerException{
         this.filePath = filePath;
         this.file = new File(filePath);
+        this.syncEveryNBlocks = syncEveryNBlocks;
+        this.syncIntervalMillis = syncIntervalMillis;
         open();
     }
 
@@ -45,24 +80,17 @@ public class BlockFileWriter {
      * 截断文件为指定大小
 	 * 主要用于在文件写入出现异常时恢复文件
      */
-    public void truncateFile(int targetSize) throws LedgerException {
-        if(file.length() <= targetSize){
-            return;
-        }
-        FileInputStream fis;
-        FileOutputStream fos;
+    public synchronized void truncateFile(int targetSize) throws LedgerException {
         try {
-            fis = new FileInputStream(file);
-            byte[] inputBytes = new byte[targetSize];
-            int read = fis.read(inputBytes);
-			if (read != targetSize) {
-				log.debug("Can not read specified size. Expected file size [{}], actual file size [{}]", targetSize, read);
-			}
-            fis.close();
-            fos = new FileOutputStream(file);
-            fos.write(inputBytes);
-            fos.close();
-        } catch (Throwable e) {
+            if(channel.size() <= targetSize){
+                return;
+            }
+            channel.truncate(targetSize);
+            channel.position(targetSize);
+            channel.force(false);
+            unsyncedBlocks = 0;
+            lastSyncTime = System.currentTimeMillis();
+        } catch (IOException e) {
             throw new LedgerException(e);
         }
     }
@@ -71,23 +99,131 @@ public class BlockFileWriter {
 	 * 将字节b写入文件
 	 */
     public void append(byte[] b, Boolean sync) throws LedgerException {
-        FileOutputStream fos;
+        append(new ByteBuffer[]{ByteBuffer.wrap(b)}, sync);
+    }
+
+	/**
+	 * 将区块长度与区块字节通过一次聚集写入文件
+	 */
+    public void append(byte[] lenBytes, byte[] blockBytes, Boolean sync) throws LedgerException {
+        append(new ByteBuffer[]{ByteBuffer.wrap(lenBytes), ByteBuffer.wrap(blockBytes)}, sync);
+    }
+
+    private synchronized void append(ByteBuffer[] buffers, Boolean sync) throws LedgerException {
+        try {
+            long remaining = 0;
+            for (ByteBuffer buffer : buffers) {
+                remaining += buffer.remaining();
+            }
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+            if (Boolean.TRUE.equals(sync)) {
+                unsyncedBlocks++;
+                if (shouldSync()) {
+                    sync();
+                }
+            }
+        } catch (IOException e) {
+            throw new LedgerException(e);
+        }
+    }
+
+	/**
+	 * 根据fsync策略判断本次写入后是否需要落盘
+	 */
+    private boolean shouldSync() {
+        if (syncEveryNBlocks <= 1 && syncIntervalMillis <= 0) {
+            return true;
+        }
+        if (syncEveryNBlocks > 1 && unsyncedBlocks >= syncEveryNBlocks) {
+            return true;
+        }
+        return syncIntervalMillis > 0 && System.currentTimeMillis() - lastSyncTime >= syncIntervalMillis;
+    }
+
+	/**
+	 * 将已写入的数据强制刷入磁盘
+	 */
+    public synchronized void sync() throws LedgerException {
+        if (unsyncedBlocks == 0) {
+            return;
+        }
         try {
-            fos = new FileOutputStream(file, true);
-            fos.write(b);
-            fos.close();
+            channel.force(false);
         } catch (IOException e) {
             throw new LedgerException(e);
         }
+        log.debug("Synced [{}] blocks to file [{}]", unsyncedBlocks, filePath);
+        unsyncedBlocks = 0;
+        lastSyncTime = System.currentTimeMillis();
+    }
+
+	/**
+	 * 定时任务调用, 距上次落盘已超过syncIntervalMillis时落盘
+	 */
+    private synchronized void syncIfDue() {
+        if (channel == null || !channel.isOpen() || System.currentTimeMillis() - lastSyncTime < syncIntervalMillis) {
+            return;
+        }
+        try {
+            sync();
+        } catch (LedgerException e) {
+            log.error(String.format("Sync file [%s] failed: %s", filePath, e.getMessage()), e);
+        }
+    }
+
+    synchronized int getUnsyncedBlocks() {
+        return unsyncedBlocks;
     }
 
 	/**
 	 * 打开文件（文件不存在时创建文件）
 	 */
-	public void open() throws LedgerException{
+	public synchronized void open() throws LedgerException{
         if (!IoUtil.createFileIfMissing(filePath)) {
             throw new LedgerException("Can not create file " + filePath);
         }
+        if (channel != null && channel.isOpen()) {
+            return;
+        }
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        } catch (IOException e) {
+            throw new LedgerException(e);
+        }
+        unsyncedBlocks = 0;
+        lastSyncTime = System.currentTimeMillis();
+        if (syncIntervalMillis > 0) {
+            syncTask = SYNC_TIMER.scheduleWithFixedDelay(this::syncIfDue, syncIntervalMillis, syncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+	/**
+	 * 落盘未同步的数据并关闭文件
+	 */
+    public synchronized void close() throws LedgerException {
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+        if (channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.force(false);
+            unsyncedBlocks = 0;
+        } catch (IOException e) {
+            throw new LedgerException(e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
     }
 
     public String getFilePath() {
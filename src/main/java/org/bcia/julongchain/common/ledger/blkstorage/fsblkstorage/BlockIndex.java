@@ -15,7 +15,7 @@
  */
 package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 
-import org.apache.commons.lang3.ArrayUtils;
+import com.google.protobuf.ByteString;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
 import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
@@ -23,12 +23,11 @@ import org.bcia.julongchain.common.ledger.util.IDBProvider;
 import org.bcia.julongchain.common.ledger.util.leveldbhelper.UpdateBatch;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
 import org.bcia.julongchain.core.ledger.util.Util;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
-import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,14 +47,6 @@ public class BlockIndex implements Index {
     private IDBProvider db;
     private String ledgerId;
 
-	private static final String BLOCK_NUM_IDX_KEY_PREFIX      		= "n";
-    private static final String BLOCK_HASH_IDX_KEY_PREFIX			= "h";
-    private static final String TX_ID_IDX_KEY_PREFIX 				= "t";
-    private static final String BLOCK_NUM_TRAN_NUM_IDX_KEY_PREFIX	= "a";
-    private static final String BLOCK_TX_ID_IDX_KEY_PREFIX          = "b";
-    private static final String TX_VALIDATION_RESULT_IDX_KEY_PREFIX = "v";
-    private static final String INDEX_CHECK_POINT_KEY_STR			= "indexCheckpointKey";
-
     public BlockIndex(IndexConfig indexConfig, IDBProvider db, String id) {
         String[] indexItems = indexConfig.getAttrsToIndex();
         log.debug(String.format("newBlockIndex() - indexItems length: [%d]", indexItems.length));
@@ -74,7 +65,7 @@ public class BlockIndex implements Index {
     @Override
     public long getLastBlockIndexed() throws LedgerException {
         byte[] blockNumBytes;
-        blockNumBytes = db.get(constructIndexCheckpointKey());
+        blockNumBytes = db.get(BlockIndexCodec.indexCheckpointKey());
         if (blockNumBytes == null){
         	log.info("Got null result");
         	return -1;
@@ -84,68 +75,114 @@ public class BlockIndex implements Index {
 
     /**
      * 设置索引
+     * 交易ID只编码一次, 交易位置在txID索引和blockNumTranNum索引间共用
      */
     @Override
     public void indexBlock(BlockIndexInfo blockIndexInfo) throws LedgerException {
+        indexBlocks(Collections.singletonList(blockIndexInfo), true);
+    }
+
+    /**
+     * 将多个连续区块的索引写入同一批次
+     * 检查点设置为最后一个区块, 批次原子写入, 因此中断后可从检查点继续重建
+     */
+    @Override
+    public void indexBlocks(List<BlockIndexInfo> blockIndexInfos, boolean sync) throws LedgerException {
         if(indexItemsMap.size() == 0){
            log.debug("No indexing block, as nothing to index");
            return;
         }
-        log.debug(String.format("Indexing block [%s]", blockIndexInfo));
+        if(blockIndexInfos.isEmpty()){
+            return;
+        }
+        UpdateBatch batch = new UpdateBatch();
+        for (BlockIndexInfo blockIndexInfo : blockIndexInfos) {
+            addToBatch(batch, blockIndexInfo);
+        }
+        long lastBlockNum = blockIndexInfos.get(blockIndexInfos.size() - 1).getBlockNum();
+        batch.put(BlockIndexCodec.indexCheckpointKey(), BlockIndexCodec.encodeLong(lastBlockNum));
+        db.writeBatch(batch, sync);
+    }
+
+    /**
+     * 删除丢失区块的区块号及区块号-交易序号索引项
+     * 区块hash和交易ID的索引项需要区块内容才能定位, 保留在索引中
+     */
+    @Override
+    public void discardBlocks(long lastBlockNum, long lastBlockIndexed) throws LedgerException {
+        boolean indexBlockNumTranNum = Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM));
+        UpdateBatch batch = new UpdateBatch();
+        for (long blockNum = lastBlockNum + 1; blockNum <= lastBlockIndexed; blockNum++) {
+            batch.delete(BlockIndexCodec.blockNumKey(blockNum));
+            if (!indexBlockNumTranNum) {
+                continue;
+            }
+            for (long tranNum = 0; db.get(BlockIndexCodec.blockNumTranNumKey(blockNum, tranNum)) != null; tranNum++) {
+                batch.delete(BlockIndexCodec.blockNumTranNumKey(blockNum, tranNum));
+            }
+        }
+        if (lastBlockNum < 0) {
+            batch.delete(BlockIndexCodec.indexCheckpointKey());
+        } else {
+            batch.put(BlockIndexCodec.indexCheckpointKey(), BlockIndexCodec.encodeLong(lastBlockNum));
+        }
+        db.writeBatch(batch, true);
+    }
+
+    private void addToBatch(UpdateBatch batch, BlockIndexInfo blockIndexInfo) {
+        log.debug("Indexing block [{}]", blockIndexInfo);
         FileLocPointer flp = blockIndexInfo.getFlp();
         List<TxIndexInfo> txOffsets = blockIndexInfo.getTxOffsets();
-        TxValidationFlags txsfltr = new TxValidationFlags(blockIndexInfo.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE).size());
-        UpdateBatch batch = new UpdateBatch();
-        byte[] flpBytes = flp.marshal();
+        Common.BlockMetadata metadata = blockIndexInfo.getMetadata();
+        ByteString txsfltr = metadata.getMetadataCount() > Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE ?
+                metadata.getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE) : ByteString.EMPTY;
+        byte[] flpBytes = BlockIndexCodec.encodeFlp(flp.getFileSuffixNum(),
+                flp.getLocPointer().getOffset(), flp.getLocPointer().getBytesLength());
+        boolean indexTxID = Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_TX_ID));
+        boolean indexBlockNumTranNum = Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM));
+        boolean indexBlockTxID = Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID));
+        boolean indexTxValidationCode = Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE));
+        boolean debug = log.isDebugEnabled();
 
         //index1 blockHash数据 - getBlockByHash()
         if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_HASH))){
-            batch.put(constructBlockHashKey(blockIndexInfo.getBlockHash()), flpBytes);
+            batch.put(BlockIndexCodec.blockHashKey(blockIndexInfo.getBlockHash()), flpBytes);
         }
 
         //index2 blockNum数据 - getBlockByNum()
         if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_NUM))){
-            batch.put(constructBlockNumKey(blockIndexInfo.getBlockNum()), flpBytes);
+            batch.put(BlockIndexCodec.blockNumKey(blockIndexInfo.getBlockNum()), flpBytes);
         }
 
-        //index3 用来通过txid获取tx - getTxById()
-        if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_TX_ID))){
-            for(TxIndexInfo txOffset : txOffsets){
-                FileLocPointer txFlp = new FileLocPointer(flp.getFileSuffixNum(), txOffset.getLoc());
-                log.debug(String.format("Adding txLoc [%s] for txID: [%s] to index", txFlp, txOffset.getTxID()));
-                byte[] txFlpBytes = txFlp.marshal();
-                batch.put(constructTxIDKey(txOffset.getTxID()), txFlpBytes);
+        for (int i = 0; i < txOffsets.size(); i++) {
+            TxIndexInfo txOffset = txOffsets.get(i);
+            String txID = txOffset.getTxID();
+            byte[] txFlpBytes = null;
+            if (indexTxID || indexBlockNumTranNum) {
+                LocPointer txLoc = txOffset.getLoc();
+                txFlpBytes = BlockIndexCodec.encodeFlp(flp.getFileSuffixNum(), txLoc.getOffset(), txLoc.getBytesLength());
+                if (debug) {
+                    log.debug("Adding txLoc [{}, {}] for tx num: [{}] ID: [{}] to index", flp.getFileSuffixNum(), txLoc, i, txID);
+                }
             }
-        }
-
-        //index4 查询历史数据 - getTxLocByBlockNumTranNum()
-        if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM))){
-            for(int i = 0; i < txOffsets.size(); i++){
-                TxIndexInfo txOffset = txOffsets.get(i);
-                FileLocPointer txFlp = new FileLocPointer(flp.getFileSuffixNum(), txOffset.getLoc());
-                log.debug(String.format("Adding txLoc [%s] for tx num: [%d] ID: [%s] to blockNumTranNum index", txFlp, i, txOffset.getTxID()));
-                byte[] txFlpBytes = txFlp.marshal();
-                batch.put(constructBlockNumTranNumKey(blockIndexInfo.getBlockNum(), (long) i), txFlpBytes);
+            //index3 用来通过txid获取tx - getTxById()
+            if (indexTxID) {
+                batch.put(BlockIndexCodec.txIDKey(txID), txFlpBytes);
             }
-        }
-
-        //index5 通过txid获取区块 - getBlockByTxId()
-        if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID))){
-            for(TxIndexInfo txOffset : txOffsets){
-                batch.put(constructBlockTxIDKey(txOffset.getTxID()), flpBytes);
+            //index4 查询历史数据 - getTxLocByBlockNumTranNum()
+            if (indexBlockNumTranNum) {
+                batch.put(BlockIndexCodec.blockNumTranNumKey(blockIndexInfo.getBlockNum(), i), txFlpBytes);
             }
-        }
-
-        //index6 根据txid获取交易有效标志 - getTxValidationCodeByTxID()gggggg
-        if(Boolean.TRUE.equals(indexItemsMap.get(BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE))){
-            for (int i = 0; i < txOffsets.size(); i++) {
-                TxIndexInfo txOffset = txOffsets.get(i);
-                batch.put(constructTxValidationCodeIDKey(txOffset.getTxID()), String.valueOf(txsfltr.flag(i).getNumber()).getBytes(StandardCharsets.UTF_8));
+            //index5 通过txid获取区块 - getBlockByTxId()
+            if (indexBlockTxID) {
+                batch.put(BlockIndexCodec.blockTxIDKey(txID), flpBytes);
+            }
+            //index6 根据txid获取交易有效标志 - getTxValidationCodeByTxID()
+            if (indexTxValidationCode) {
+                int code = i < txsfltr.size() ? txsfltr.byteAt(i) & 0xFF : TransactionPackage.TxValidationCode.VALID_VALUE;
+                batch.put(BlockIndexCodec.txValidationCodeKey(txID), BlockIndexCodec.encodeValidationCode(code));
             }
         }
-
-        batch.put(constructIndexCheckpointKey(), Util.longToBytes(blockIndexInfo.getBlockNum(), BlockFileManager.PEEK_BYTES_LEN));
-        db.writeBatch(batch, true);
     }
 
     /**
@@ -157,7 +194,7 @@ public class BlockIndex implements Index {
         	log.error("Function getBlockLocByHash is not indexed");
         	return null;
         }
-        byte[] b = db.get(constructBlockHashKey(blockHash));
+        byte[] b = db.get(BlockIndexCodec.blockHashKey(blockHash));
         if(b == null){
         	log.info("Get block loc by hash got null result");
         	return null;
@@ -176,7 +213,7 @@ public class BlockIndex implements Index {
 	        log.error("Function getBlockLocByBlockNum is not indexed");
 	        return null;
         }
-        byte[] b = db.get(constructBlockNumKey(blockID));
+        byte[] b = db.get(BlockIndexCodec.blockNumKey(blockID));
         if(b == null){
 	        log.info("Get block loc by block num got null result");
         	return null;
@@ -195,7 +232,7 @@ public class BlockIndex implements Index {
 	        log.error("Function getTxLoc is not indexed");
 	        return null;
         }
-        byte[] b = db.get(constructTxIDKey(txID));
+        byte[] b = db.get(BlockIndexCodec.txIDKey(txID));
         if(b == null){
 	        log.info("Get tx loc got null result");
         	return null;
@@ -214,7 +251,7 @@ public class BlockIndex implements Index {
 	        log.error("Function getBlockLocByTxID is not indexed");
 	        return null;
         }
-        byte[] b = db.get(constructBlockTxIDKey(txID));
+        byte[] b = db.get(BlockIndexCodec.blockTxIDKey(txID));
         if(b == null){
 	        log.info("Get block loc by tx id got null result");
         	return null;
@@ -233,7 +270,7 @@ public class BlockIndex implements Index {
 	        log.error("Function getTxLocByBlockNumTranNum is not indexed");
 	        return null;
         }
-        byte[] b = db.get(constructBlockNumTranNumKey(blockNum, tranNum));
+        byte[] b = db.get(BlockIndexCodec.blockNumTranNumKey(blockNum, tranNum));
         if(b == null){
 	        log.info("Get tx loc by block num tran num got null result");
         	return null;
@@ -252,67 +289,16 @@ public class BlockIndex implements Index {
 	        log.error("Function getTxValidationCodeByTxID is not indexed");
 	        return null;
         }
-        byte[] raw = db.get(constructTxValidationCodeIDKey(txID));
+        byte[] raw = db.get(BlockIndexCodec.txValidationCodeKey(txID));
         if(raw == null){
 	        log.info("Get tx validation code by tx id got null result");
         	return null;
-        } else if (raw.length != 1){
-        	log.error("Got wrong txValidationCode which length is 1");
-        	return null;
         }
-        return TransactionPackage.TxValidationCode.forNumber(Integer.valueOf(new String(raw, StandardCharsets.UTF_8)));
-    }
-
-    private byte[] constructBlockNumKey(long blockNum) {
-        byte[] blkNumBytes = Util.longToBytes(blockNum, BlockFileManager.PEEK_BYTES_LEN);
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, BLOCK_NUM_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, blkNumBytes);
-        return result;
-    }
-
-    private byte[] constructBlockHashKey(byte[] blockHash) {
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, BLOCK_HASH_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, blockHash);
-        return result;
-    }
-
-    private byte[] constructTxIDKey(String txID) {
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, TX_ID_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, txID.getBytes(StandardCharsets.UTF_8));
-        return result;
-    }
-
-    private byte[] constructBlockTxIDKey(String txID) {
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, BLOCK_TX_ID_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, txID.getBytes(StandardCharsets.UTF_8));
-        return result;
-    }
-
-    private byte[] constructTxValidationCodeIDKey(String txID) {
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, TX_VALIDATION_RESULT_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, txID.getBytes(StandardCharsets.UTF_8));
-        return result;
-    }
-
-    private byte[] constructBlockNumTranNumKey(long blockNum, long txNum) {
-        byte[] blkNumBytes = Util.longToBytes(blockNum, BlockFileManager.PEEK_BYTES_LEN);
-        byte[] txNumBytes = Util.longToBytes(txNum, BlockFileManager.PEEK_BYTES_LEN);
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, BLOCK_NUM_TRAN_NUM_IDX_KEY_PREFIX.getBytes(StandardCharsets.UTF_8));
-        result = ArrayUtils.addAll(result, blkNumBytes);
-        result = ArrayUtils.addAll(result, txNumBytes);
-        return result;
-    }
-
-    private byte[] constructIndexCheckpointKey(){
-        byte[] result = new byte[0];
-        result = ArrayUtils.addAll(result, INDEX_CHECK_POINT_KEY_STR.getBytes(StandardCharsets.UTF_8));
-        return result;
+        TransactionPackage.TxValidationCode code = BlockIndexCodec.decodeValidationCode(raw);
+        if (code == null) {
+        	log.error("Got wrong txValidationCode of length [{}]", raw.length);
+        }
+        return code;
     }
 
     public Map<String, Boolean> getIndexItemsMap() {
@@ -0,0 +1,177 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.protos.node.TransactionPackage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 区块索引键值编解码
+ * 所有键一次分配为精确长度, 区块号、交易序号编码为8字节大端整数以保证有序,
+ * 交易验证码编码为1字节
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockIndexCodec {
+    static final byte BLOCK_NUM_IDX_KEY_PREFIX = 'n';
+    static final byte BLOCK_HASH_IDX_KEY_PREFIX = 'h';
+    static final byte TX_ID_IDX_KEY_PREFIX = 't';
+    static final byte BLOCK_NUM_TRAN_NUM_IDX_KEY_PREFIX = 'a';
+    static final byte BLOCK_TX_ID_IDX_KEY_PREFIX = 'b';
+    static final byte TX_VALIDATION_RESULT_IDX_KEY_PREFIX = 'v';
+    private static final byte[] INDEX_CHECK_POINT_KEY = "indexCheckpointKey".getBytes(StandardCharsets.UTF_8);
+
+    private static final int LONG_LEN = 8;
+    /**
+     * fileSuffixNum + offset + bytesLength
+     */
+    public static final int FLP_LEN = 3 * LONG_LEN;
+
+    /**
+     * 每个验证码对应的1字节值, 所有交易共用, 不可修改
+     */
+    private static final byte[][] VALIDATION_CODE_VALUES = new byte[256][];
+
+    static {
+        for (int i = 0; i < VALIDATION_CODE_VALUES.length; i++) {
+            VALIDATION_CODE_VALUES[i] = new byte[]{(byte) i};
+        }
+    }
+
+    private BlockIndexCodec() {
+    }
+
+    public static byte[] blockNumKey(long blockNum) {
+        byte[] key = new byte[1 + LONG_LEN];
+        key[0] = BLOCK_NUM_IDX_KEY_PREFIX;
+        putLong(key, 1, blockNum);
+        return key;
+    }
+
+    public static byte[] blockNumTranNumKey(long blockNum, long txNum) {
+        byte[] key = new byte[1 + 2 * LONG_LEN];
+        key[0] = BLOCK_NUM_TRAN_NUM_IDX_KEY_PREFIX;
+        putLong(key, 1, blockNum);
+        putLong(key, 1 + LONG_LEN, txNum);
+        return key;
+    }
+
+    public static byte[] blockHashKey(byte[] blockHash) {
+        return prefixed(BLOCK_HASH_IDX_KEY_PREFIX, blockHash);
+    }
+
+    public static byte[] txIDKey(String txID) {
+        return prefixed(TX_ID_IDX_KEY_PREFIX, txID);
+    }
+
+    public static byte[] blockTxIDKey(String txID) {
+        return prefixed(BLOCK_TX_ID_IDX_KEY_PREFIX, txID);
+    }
+
+    public static byte[] txValidationCodeKey(String txID) {
+        return prefixed(TX_VALIDATION_RESULT_IDX_KEY_PREFIX, txID);
+    }
+
+    public static byte[] indexCheckpointKey() {
+        return INDEX_CHECK_POINT_KEY;
+    }
+
+    /**
+     * 编码区块(交易)位置, 与FileLocPointer.marshal()格式一致
+     */
+    public static byte[] encodeFlp(int fileSuffixNum, long offset, long bytesLength) {
+        byte[] value = new byte[FLP_LEN];
+        putLong(value, 0, fileSuffixNum);
+        putLong(value, LONG_LEN, offset);
+        putLong(value, 2 * LONG_LEN, bytesLength);
+        return value;
+    }
+
+    public static byte[] encodeLong(long value) {
+        byte[] bytes = new byte[LONG_LEN];
+        putLong(bytes, 0, value);
+        return bytes;
+    }
+
+    /**
+     * 编码交易验证码为1字节
+     */
+    public static byte[] encodeValidationCode(int code) {
+        return VALIDATION_CODE_VALUES[code & 0xFF];
+    }
+
+    /**
+     * 解码交易验证码
+     * 兼容旧版本以十进制字符串保存的验证码
+     */
+    public static TransactionPackage.TxValidationCode decodeValidationCode(byte[] raw) {
+        if (raw == null || raw.length == 0) {
+            return null;
+        }
+        if (raw.length == 1) {
+            TransactionPackage.TxValidationCode code = TransactionPackage.TxValidationCode.forNumber(raw[0] & 0xFF);
+            if (code != null) {
+                return code;
+            }
+        }
+        int legacy = 0;
+        for (byte b : raw) {
+            if (b < '0' || b > '9') {
+                return null;
+            }
+            legacy = legacy * 10 + (b - '0');
+        }
+        return TransactionPackage.TxValidationCode.forNumber(legacy);
+    }
+
+    /**
+     * 大端写入8字节
+     */
+    static void putLong(byte[] dest, int pos, long value) {
+        for (int i = LONG_LEN - 1; i >= 0; i--) {
+            dest[pos + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static byte[] prefixed(byte prefix, byte[] content) {
+        byte[] key = new byte[1 + content.length];
+        key[0] = prefix;
+        System.arraycopy(content, 0, key, 1, content.length);
+        return key;
+    }
+
+    /**
+     * 交易ID通常为ASCII字符, 直接写入键中, 避免中间数组
+     */
+    private static byte[] prefixed(byte prefix, String content) {
+        int len = content.length();
+        for (int i = 0; i < len; i++) {
+            if (content.charAt(i) >= 0x80) {
+                return prefixed(prefix, content.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        byte[] key = new byte[1 + len];
+        key[0] = prefix;
+        for (int i = 0; i < len; i++) {
+            key[i + 1] = (byte) content.charAt(i);
+        }
+        return key;
+    }
+}
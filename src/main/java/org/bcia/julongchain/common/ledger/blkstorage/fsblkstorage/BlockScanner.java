@@ -0,0 +1,245 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.Parser;
+import com.google.protobuf.WireFormat;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.protos.common.Common;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于CodedInputStream按wire格式遍历区块字节
+ * 仅解析区块头部、metadata, 以及每个Envelope中的交易ID, 不构造完整的Block对象
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockScanner {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(BlockScanner.class);
+
+    private static final int BLOCK_HEADER_FIELD = 1;
+    private static final int BLOCK_HEADER_TAG = (BLOCK_HEADER_FIELD << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+    private static final int BLOCK_DATA_FIELD = 2;
+    private static final int BLOCK_METADATA_FIELD = 3;
+    private static final int BLOCK_DATA_DATA_FIELD = 1;
+    private static final int ENVELOPE_PAYLOAD_FIELD = 1;
+    private static final int PAYLOAD_HEADER_FIELD = 1;
+    private static final int HEADER_GROUP_HEADER_FIELD = 1;
+    private static final int GROUP_HEADER_TX_ID_FIELD = 5;
+
+    private BlockScanner() {
+    }
+
+    /**
+     * 遍历区块, 获取区块头部、metadata及每个交易的位置
+     * @param blockBytes 区块序列化字节
+     * @param blockPosition 区块字节在区块文件中的起始位置
+     */
+    public static SerializedBlockInfo scan(byte[] blockBytes, long blockPosition) throws LedgerException {
+        Common.BlockHeader header = null;
+        Common.BlockMetadata metadata = null;
+        List<TxIndexInfo> txOffsets = new ArrayList<>();
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(blockBytes);
+            while (true) {
+                int tag = in.readTag();
+                if (tag == 0) {
+                    break;
+                }
+                switch (WireFormat.getTagFieldNumber(tag)) {
+                    case BLOCK_HEADER_FIELD:
+                        header = parseEmbedded(in, blockBytes, Common.BlockHeader.parser());
+                        break;
+                    case BLOCK_DATA_FIELD:
+                        int length = in.readRawVarint32();
+                        int dataStart = in.getTotalBytesRead();
+                        scanData(blockBytes, dataStart, length, blockPosition, txOffsets);
+                        in.skipRawBytes(length);
+                        break;
+                    case BLOCK_METADATA_FIELD:
+                        metadata = parseEmbedded(in, blockBytes, Common.BlockMetadata.parser());
+                        break;
+                    default:
+                        in.skipField(tag);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Got error when scanning block bytes");
+            throw new LedgerException(e);
+        }
+        return new SerializedBlockInfo(header == null ? Common.BlockHeader.getDefaultInstance() : header,
+                txOffsets,
+                metadata == null ? Common.BlockMetadata.getDefaultInstance() : metadata);
+    }
+
+    /**
+     * 仅获取区块中交易的位置及交易ID, 区块头部和metadata直接跳过
+     * 用于已持有Block对象的场景
+     */
+    public static List<TxIndexInfo> scanTxOffsets(byte[] blockBytes, long blockPosition) throws LedgerException {
+        List<TxIndexInfo> txOffsets = new ArrayList<>();
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(blockBytes);
+            while (true) {
+                int tag = in.readTag();
+                if (tag == 0) {
+                    break;
+                }
+                if (WireFormat.getTagFieldNumber(tag) == BLOCK_DATA_FIELD) {
+                    int length = in.readRawVarint32();
+                    scanData(blockBytes, in.getTotalBytesRead(), length, blockPosition, txOffsets);
+                    in.skipRawBytes(length);
+                } else {
+                    in.skipField(tag);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Got error when scanning transactions in block bytes");
+            throw new LedgerException(e);
+        }
+        return txOffsets;
+    }
+
+    /**
+     * 仅解析区块头部
+     * 区块头部为第一个字段时, 只访问头部对应的字节, blockBytes可以只是区块的前缀
+     */
+    public static Common.BlockHeader scanHeader(byte[] blockBytes) throws LedgerException {
+        try {
+            CodedInputStream in = CodedInputStream.newInstance(blockBytes);
+            while (true) {
+                int tag = in.readTag();
+                if (tag == 0) {
+                    return Common.BlockHeader.getDefaultInstance();
+                }
+                if (WireFormat.getTagFieldNumber(tag) == BLOCK_HEADER_FIELD) {
+                    return parseEmbedded(in, blockBytes, Common.BlockHeader.parser());
+                }
+                in.skipField(tag);
+            }
+        } catch (IOException e) {
+            log.error("Got error when scanning block header");
+            throw new LedgerException(e);
+        }
+    }
+
+    /**
+     * 区块前缀中包含完整头部所需的字节数
+     * 区块头部不是第一个字段时返回-1, 此时需要读取整个区块
+     */
+    public static int headerPrefixLength(byte[] blockPrefix) {
+        if (blockPrefix.length == 0 || (blockPrefix[0] & 0xFF) != BLOCK_HEADER_TAG) {
+            return -1;
+        }
+        int length = 0;
+        int pos = 1;
+        for (int shift = 0; shift < 32 && pos < blockPrefix.length; shift += 7) {
+            byte b = blockPrefix[pos++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return pos + length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 遍历BlockData中的每个Envelope
+     */
+    private static void scanData(byte[] blockBytes, int start, int length, long blockPosition,
+                                 List<TxIndexInfo> txOffsets) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(blockBytes, start, length);
+        while (true) {
+            int tag = in.readTag();
+            if (tag == 0) {
+                return;
+            }
+            if (WireFormat.getTagFieldNumber(tag) != BLOCK_DATA_DATA_FIELD) {
+                in.skipField(tag);
+                continue;
+            }
+            int envelopeLength = in.readRawVarint32();
+            int envelopeStart = start + in.getTotalBytesRead();
+            String txID = extractTxID(blockBytes, envelopeStart, envelopeLength);
+            txOffsets.add(new TxIndexInfo(txID, new LocPointer(blockPosition + envelopeStart, envelopeLength)));
+            in.skipRawBytes(envelopeLength);
+        }
+    }
+
+    /**
+     * 从Envelope字节中获取交易ID
+     * Envelope.payload -> Payload.header -> Header.group_header -> GroupHeader.tx_id
+     */
+    static String extractTxID(byte[] buf, int offset, int length) throws IOException {
+        int[] range = {offset, length};
+        if (!findField(buf, range, ENVELOPE_PAYLOAD_FIELD)
+                || !findField(buf, range, PAYLOAD_HEADER_FIELD)
+                || !findField(buf, range, HEADER_GROUP_HEADER_FIELD)
+                || !findField(buf, range, GROUP_HEADER_TX_ID_FIELD)) {
+            return "";
+        }
+        return new String(buf, range[0], range[1], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 在range指定的消息中查找长度分隔字段fieldNumber, 找到时将range更新为该字段内容的位置
+     * 重复出现时以最后一次为准, 与protobuf解析语义一致
+     */
+    private static boolean findField(byte[] buf, int[] range, int fieldNumber) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(buf, range[0], range[1]);
+        boolean found = false;
+        int foundStart = 0;
+        int foundLength = 0;
+        while (true) {
+            int tag = in.readTag();
+            if (tag == 0) {
+                break;
+            }
+            if (WireFormat.getTagFieldNumber(tag) == fieldNumber
+                    && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED) {
+                foundLength = in.readRawVarint32();
+                foundStart = range[0] + in.getTotalBytesRead();
+                in.skipRawBytes(foundLength);
+                found = true;
+            } else {
+                in.skipField(tag);
+            }
+        }
+        if (found) {
+            range[0] = foundStart;
+            range[1] = foundLength;
+        }
+        return found;
+    }
+
+    private static <T> T parseEmbedded(CodedInputStream in, byte[] buf, Parser<T> parser)
+            throws IOException {
+        int length = in.readRawVarint32();
+        int start = in.getTotalBytesRead();
+        T message = parser.parseFrom(buf, start, length);
+        in.skipRawBytes(length);
+        return message;
+    }
+}
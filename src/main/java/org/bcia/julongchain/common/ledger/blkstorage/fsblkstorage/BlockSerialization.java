@@ -63,9 +63,11 @@ public class BlockSerialization {
         }
     }
 
+    /**
+     * 从区块字节中获取头部、metadata及交易位置, 不反序列化整个区块
+     */
     public static SerializedBlockInfo extractSerializedBlockInfo(byte[] serializedBlockBytes, long blockPosition) throws LedgerException {
-        Block block = deserializeBlock(serializedBlockBytes);
-        return new SerializedBlockInfo(block.getHeader(), addDataBytes(block, blockPosition), block.getMetadata());
+        return BlockScanner.scan(serializedBlockBytes, blockPosition);
     }
 
     /**
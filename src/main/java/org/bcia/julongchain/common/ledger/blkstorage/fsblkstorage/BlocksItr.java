@@ -20,6 +20,7 @@ import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.protos.common.Common;
 
 /**
  *  区块迭代器
@@ -35,7 +36,12 @@ public class BlocksItr implements IResultsIterator {
     private BlockFileManager mgr;
     private long maxBlockNumAvailable;
     private long blockNumToRetrieve;
-    private BlockStream stream;
+    /**
+     * 下一区块所在的区块文件编号及位置
+     */
+    private int currentFileNum;
+    private long currentOffset;
+    private boolean streamInit;
     private Boolean closeMarker;
 
     public BlocksItr() {
@@ -72,7 +78,56 @@ public class BlocksItr implements IResultsIterator {
      */
     public void initStream() throws LedgerException{
         FileLocPointer lp = mgr.getIndex().getBlockLocByBlockNum(blockNumToRetrieve);
-        stream = new BlockStream(mgr.getRootDir(), lp.getFileSuffixNum(), lp.getLocPointer().getOffset(), -1);
+        currentFileNum = lp.getFileSuffixNum();
+        currentOffset = lp.getLocPointer().getOffset();
+        streamInit = true;
+    }
+
+    /**
+     * 优先从区块缓存获取下一区块, 否则通过区块文件读取池定位读取
+     * 当前文件读取完毕时移动到下一文件
+     */
+    private Common.Block nextBlock() throws LedgerException {
+        skipExhaustedFiles();
+        //缓存命中时仅移动读取位置, 文件中存储的即为区块的序列化字节
+        Common.Block cachedBlock = mgr.getCachedBlock(blockNumToRetrieve);
+        if (cachedBlock != null) {
+            currentOffset += BlockFileManager.PEEK_BYTES_LEN + cachedBlock.getSerializedSize();
+            return cachedBlock;
+        }
+        return BlockSerialization.deserializeBlock(readCurrentBlockBytes());
+    }
+
+    /**
+     * 获取下一区块的序列化字节, 缓存未命中时直接返回区块文件中的字节, 不经过反序列化
+     */
+    private byte[] nextBlockBytes() throws LedgerException {
+        skipExhaustedFiles();
+        Common.Block cachedBlock = mgr.getCachedBlock(blockNumToRetrieve);
+        if (cachedBlock != null) {
+            currentOffset += BlockFileManager.PEEK_BYTES_LEN + cachedBlock.getSerializedSize();
+            return cachedBlock.toByteArray();
+        }
+        return readCurrentBlockBytes();
+    }
+
+    private void skipExhaustedFiles() throws LedgerException {
+        while (currentFileNum < mgr.getCpInfo().getLastestFileChunkSuffixNum()
+                && currentOffset >= mgr.getBlockFileSize(currentFileNum)) {
+            log.debug(String.format("Current file [%d] exhausted. Moving to next file", currentFileNum));
+            currentFileNum++;
+            currentOffset = 0;
+        }
+    }
+
+    private byte[] readCurrentBlockBytes() throws LedgerException {
+        byte[] blockBytes = mgr.readBlockBytes(currentFileNum, currentOffset);
+        if (blockBytes == null) {
+            throw new LedgerException(String.format("Fail to read block [%d] from file [%d] at offset [%d]",
+                    blockNumToRetrieve, currentFileNum, currentOffset));
+        }
+        currentOffset += BlockFileManager.PEEK_BYTES_LEN + blockBytes.length;
+        return blockBytes;
     }
 
     /**
@@ -88,21 +143,45 @@ public class BlocksItr implements IResultsIterator {
      */
     @Override
     public synchronized QueryResult next() throws LedgerException {
+        if (!prepareNext()) {
+            return null;
+        }
+        Common.Block block = nextBlock();
+        blockNumToRetrieve++;
+        return new QueryResult(block);
+    }
+
+    /**
+     * 迭代区块文件, 返回区块的序列化字节
+     * 供只需转发区块的场景(如Deliver)使用, 避免反序列化后再序列化
+     * @return 区块字节, 迭代器关闭时返回null
+     */
+    public synchronized byte[] nextBytes() throws LedgerException {
+        if (!prepareNext()) {
+            return null;
+        }
+        byte[] blockBytes = nextBlockBytes();
+        blockNumToRetrieve++;
+        return blockBytes;
+    }
+
+    /**
+     * 等待待读取的区块写入并初始化文件流
+     * @return 迭代器已关闭时返回false
+     */
+    private boolean prepareNext() throws LedgerException {
         //当区块长度不足时等待
         if(maxBlockNumAvailable < blockNumToRetrieve){
             maxBlockNumAvailable = waitForBlock(blockNumToRetrieve);
         }
         if(closeMarker){
-            return null;
+            return false;
         }
-        if(stream == null){
+        if(!streamInit){
             log.debug("Initializing block stream for iterator, maxBlockNumAvaliable = " + maxBlockNumAvailable);
-            this.stream = new BlockStream();
             initStream();
         }
-        byte[] nextBlockBytes = stream.nextBlockBytes();
-        blockNumToRetrieve++;
-        return new QueryResult(BlockSerialization.deserializeBlock(nextBlockBytes));
+        return true;
     }
 
     @Override
@@ -110,9 +189,6 @@ public class BlocksItr implements IResultsIterator {
 		closeMarker = true;
 		synchronized (BlockFileManager.LOCK){
 			BlockFileManager.LOCK.notifyAll();
-			if(stream != null){
-				stream.close();
-			}
 		}
     }
 
@@ -140,12 +216,12 @@ public class BlocksItr implements IResultsIterator {
         this.blockNumToRetrieve = blockNumToRetrieve;
     }
 
-    public BlockStream getStream() {
-        return stream;
+    public int getCurrentFileNum() {
+        return currentFileNum;
     }
 
-    public void setStream(BlockStream stream) {
-        this.stream = stream;
+    public long getCurrentOffset() {
+        return currentOffset;
     }
 
     public Boolean getCloseMarker() {
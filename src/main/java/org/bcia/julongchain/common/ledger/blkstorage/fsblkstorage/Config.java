@@ -28,9 +28,42 @@ public class Config {
     public static final String CHAINS_DIR = "chains";
     public static final String INDEX_DIR = "index";
     public static final int DEFAULT_MAX_BLOCKFILE_SIZE = 64 * 1024 * 1024;
+    public static final int DEFAULT_SYNC_EVERY_N_BLOCKS = 1;
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 0;
+    public static final int DEFAULT_MAX_OPEN_READ_FILES = 16;
+    public static final long DEFAULT_BLOCK_CACHE_SIZE = 32 * 1024 * 1024;
+    public static final int DEFAULT_INDEX_REBUILD_THREADS = Runtime.getRuntime().availableProcessors();
 
     private String blockStorageDir;
     private int maxBlockFileSize;
+    /**
+     * 每写入N个区块执行一次fsync, 小于等于1时每个区块都执行fsync
+     */
+    private int syncEveryNBlocks = DEFAULT_SYNC_EVERY_N_BLOCKS;
+    /**
+     * 距上次fsync超过T毫秒时执行fsync, 小于等于0时不按时间合并
+     */
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL_MILLIS;
+    /**
+     * 读取区块时最多同时打开的区块文件数量
+     */
+    private int maxOpenReadFiles = DEFAULT_MAX_OPEN_READ_FILES;
+    /**
+     * 已写满的区块文件是否映射到内存中读取
+     */
+    private boolean mmapSealedFiles = true;
+    /**
+     * 已解码区块缓存的容量(字节), 小于等于0时不缓存
+     */
+    private long blockCacheSize = DEFAULT_BLOCK_CACHE_SIZE;
+    /**
+     * 重建索引时并行扫描区块文件的线程数
+     */
+    private int indexRebuildThreads = DEFAULT_INDEX_REBUILD_THREADS;
+    /**
+     * 每个账本的区块索引是否使用独立的leveldb
+     */
+    private boolean levelDBPerGroup = false;
 
     public Config(){}
 
@@ -66,4 +99,60 @@ public class Config {
     public void setMaxBlockFileSize(int maxBlockFileSize) {
         this.maxBlockFileSize = maxBlockFileSize;
     }
+
+    public int getSyncEveryNBlocks() {
+        return syncEveryNBlocks;
+    }
+
+    public void setSyncEveryNBlocks(int syncEveryNBlocks) {
+        this.syncEveryNBlocks = syncEveryNBlocks;
+    }
+
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public void setSyncIntervalMillis(long syncIntervalMillis) {
+        this.syncIntervalMillis = syncIntervalMillis;
+    }
+
+    public int getMaxOpenReadFiles() {
+        return maxOpenReadFiles;
+    }
+
+    public void setMaxOpenReadFiles(int maxOpenReadFiles) {
+        this.maxOpenReadFiles = maxOpenReadFiles;
+    }
+
+    public boolean isMmapSealedFiles() {
+        return mmapSealedFiles;
+    }
+
+    public void setMmapSealedFiles(boolean mmapSealedFiles) {
+        this.mmapSealedFiles = mmapSealedFiles;
+    }
+
+    public long getBlockCacheSize() {
+        return blockCacheSize;
+    }
+
+    public void setBlockCacheSize(long blockCacheSize) {
+        this.blockCacheSize = blockCacheSize;
+    }
+
+    public int getIndexRebuildThreads() {
+        return indexRebuildThreads;
+    }
+
+    public void setIndexRebuildThreads(int indexRebuildThreads) {
+        this.indexRebuildThreads = indexRebuildThreads;
+    }
+
+    public boolean isLevelDBPerGroup() {
+        return levelDBPerGroup;
+    }
+
+    public void setLevelDBPerGroup(boolean levelDBPerGroup) {
+        this.levelDBPerGroup = levelDBPerGroup;
+    }
 }
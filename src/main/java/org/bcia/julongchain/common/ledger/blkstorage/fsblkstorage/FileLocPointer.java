@@ -15,7 +15,6 @@
  */
 package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.core.ledger.util.Util;
 
 /**
@@ -46,11 +45,7 @@ public class FileLocPointer {
     }
 
     public byte[] marshal() {
-        byte[] fileSUffixNumBytes = Util.longToBytes(fileSuffixNum, BlockFileManager.PEEK_BYTES_LEN);
-        byte[] offsetBytes = Util.longToBytes(locPointer.getOffset(), BlockFileManager.PEEK_BYTES_LEN);
-        byte[] bytesLengthBytes = Util.longToBytes(locPointer.getBytesLength(), BlockFileManager.PEEK_BYTES_LEN);
-        byte[] result = ArrayUtils.addAll(fileSUffixNumBytes, offsetBytes);
-        return ArrayUtils.addAll(result, bytesLengthBytes);
+        return BlockIndexCodec.encodeFlp(fileSuffixNum, locPointer.getOffset(), locPointer.getBytesLength());
     }
 
     public void unmarshal(byte[] b) {
@@ -99,6 +99,11 @@ public class FsBlockStore implements IBlockStore {
         return blockFileManager.retrieveTxValidationCodeByTxID(txID);
     }
 
+    @Override
+    public void sync() throws LedgerException {
+        blockFileManager.sync();
+    }
+
     @Override
     public void shutdown() {
         blockFileManager.close();
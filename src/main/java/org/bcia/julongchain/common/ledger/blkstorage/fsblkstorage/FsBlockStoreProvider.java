@@ -46,7 +46,7 @@ public class FsBlockStoreProvider implements IBlockStoreProvider {
      */
     public FsBlockStoreProvider(Config config, IndexConfig indexConfig) throws LedgerException {
         this.indexConfig = indexConfig;
-        this.leveldbProvider = new LevelDBProvider(config.getIndexDir());
+        this.leveldbProvider = new LevelDBProvider(config.getIndexDir(), config.isLevelDBPerGroup());
         this.config = config;
         log.debug("Creating fsBlockStore using path = " + config.getChainsDir());
     }
@@ -18,6 +18,8 @@ package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
+import java.util.List;
+
 /**
  * 索引接口
  * 用于对区块文件进行索引
@@ -38,6 +40,18 @@ public interface Index {
 	 */
 	void indexBlock(BlockIndexInfo blockIndexInfo) throws LedgerException;
 
+	/**
+	 * 对连续的多个区块进行索引, 写入同一批次
+	 * 检查点设置为列表中最后一个区块
+	 */
+	void indexBlocks(List<BlockIndexInfo> blockIndexInfos, boolean sync) throws LedgerException;
+
+	/**
+	 * 删除区块lastBlockNum之后直到lastBlockIndexed的区块号索引项, 索引检查点回退到lastBlockNum
+	 * lastBlockNum为-1时表示不保留任何区块
+	 */
+	void discardBlocks(long lastBlockNum, long lastBlockIndexed) throws LedgerException;
+
 	/**
 	 * 根据blockHash获取block位置
 	 */
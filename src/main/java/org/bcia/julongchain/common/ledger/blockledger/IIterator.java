@@ -18,6 +18,9 @@ package org.bcia.julongchain.common.ledger.blockledger;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.protos.common.Common;
+
+import java.util.Map;
 
 /**
  * 迭代器接口
@@ -34,6 +37,18 @@ public interface IIterator extends IResultsIterator {
     @Override
     QueryResult next() throws LedgerException;
 
+    /**
+     * 返回下一个block的序列化字节
+     * 默认取出区块后序列化, 以字节形式存储区块的实现应直接返回存储的字节
+     */
+    default byte[] nextBlockBytes() throws LedgerException {
+        Map.Entry<QueryResult, Common.Status> entry = (Map.Entry<QueryResult, Common.Status>) next().getObj();
+        if (entry.getValue() != Common.Status.SUCCESS || entry.getKey() == null) {
+            throw new LedgerException(String.format("Fail to read next block, status: %s", entry.getValue()));
+        }
+        return ((Common.Block) entry.getKey().getObj()).toByteArray();
+    }
+
 	/**
 	 * 判断区块链是否准备完成
 	 * 用于查询区块时,解除进程阻塞判断
@@ -19,15 +19,20 @@ import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * 账本读写基类
- * 提供账本读写方法
+ * 提供账本读写方法, 以及区块追加后的通知, 供追尾读取的客户端在新区块写入时被唤醒而不必轮询
  *
  * @author sunzongyu
  * @date 2018/04/26
  * @company Dingxuan
  */
 public abstract class ReadWriteBase implements IReader, IWriter {
+    private final List<Runnable> appendListeners = new CopyOnWriteArrayList<>();
+
     @Override
     public abstract IIterator iterator(Ab.SeekPosition startType) throws LedgerException;
 
@@ -36,4 +41,24 @@ public abstract class ReadWriteBase implements IReader, IWriter {
 
     @Override
     public abstract void append(Common.Block block) throws LedgerException;
+
+    /**
+     * 注册区块追加监听, 每次append成功后在追加线程中回调, 回调须快速返回
+     */
+    public void addAppendListener(Runnable listener) {
+        appendListeners.add(listener);
+    }
+
+    public void removeAppendListener(Runnable listener) {
+        appendListeners.remove(listener);
+    }
+
+    /**
+     * 由子类在区块追加完成后调用
+     */
+    protected void notifyAppended() {
+        for (Runnable listener : appendListeners) {
+            listener.run();
+        }
+    }
 }
@@ -57,7 +57,7 @@ public class Util {
                 throw new LedgerException("Error seeking to newest block for group with non-zero height");
             }
             nextBlockNumber = block.getHeader().getNumber() + 1;
-            previousBlockHash = getHashBytes(block.getHeader().toByteArray());
+            previousBlockHash = getHashBytes(block.getHeader());
             String s = Hex.toHexString(previousBlockHash);
         }
         //添加区块Data
@@ -73,7 +73,7 @@ public class Util {
                         .setPreviousHash(previousBlockHash == null ? ByteString.EMPTY : ByteString.copyFrom(previousBlockHash))
 						.setDataHash(dataByteString.equals(ByteString.EMPTY) ?
 								ByteString.EMPTY :
-								ByteString.copyFrom(getHashBytes(dataByteString.toByteArray())))
+								ByteString.copyFrom(getHashBytes(dataByteString)))
 						.build())
                 .setData(dataBuilder)
                 .setMetadata(Common.BlockMetadata.newBuilder()
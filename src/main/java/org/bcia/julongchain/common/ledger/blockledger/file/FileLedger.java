@@ -85,6 +85,7 @@ public class FileLedger extends ReadWriteBase {
         synchronized (LOCK){
             LOCK.notifyAll();
         }
+        notifyAppended();
     }
 
     public IFileLedgerBlockStore getBlockStore() {
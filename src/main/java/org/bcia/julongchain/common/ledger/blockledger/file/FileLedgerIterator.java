@@ -17,6 +17,7 @@ package org.bcia.julongchain.common.ledger.blockledger.file;
 
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage.BlocksItr;
 import org.bcia.julongchain.common.ledger.blockledger.IIterator;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
@@ -66,6 +67,21 @@ public class FileLedgerIterator implements IIterator {
         return new QueryResult(map);
     }
 
+    /**
+     * 区块文件迭代器直接返回文件中的区块字节
+     */
+    @Override
+    public byte[] nextBlockBytes() throws LedgerException {
+        if (!(commonIterator instanceof BlocksItr)) {
+            return IIterator.super.nextBlockBytes();
+        }
+        byte[] blockBytes = ((BlocksItr) commonIterator).nextBytes();
+        if (blockBytes == null) {
+            throw new LedgerException("Block iterator is closed");
+        }
+        return blockBytes;
+    }
+
     @Override
     public void readyChain() throws LedgerException{
         synchronized (FileLedger.LOCK) {
@@ -165,11 +165,12 @@ public class JsonLedger extends ReadWriteBase {
 					Hex.toHexString(lastHash)));
         }
         writeBlock(block);
-        lastHash = getHashBytes(block.getHeader().toByteArray());
+        lastHash = getHashBytes(block.getHeader());
         height++;
         synchronized (LOCK) {
             LOCK.notifyAll();
         }
+        notifyAppended();
     }
 
     private synchronized void writeBlock(Common.Block block) throws LedgerException{
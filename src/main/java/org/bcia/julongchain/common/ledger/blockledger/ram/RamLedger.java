@@ -130,13 +130,14 @@ public class RamLedger extends ReadWriteBase {
             throw new LedgerException(String.format("Block number should have been %d but was %d", this.newest.getBlock().getHeader().getNumber() + 1, block.getHeader().getNumber()));
         }
         if(this.newest.getBlock().getHeader().getNumber() + 1 != 0){
-			ByteString preHash = ByteString.copyFrom(getHashBytes(this.newest.getBlock().getHeader().toByteArray()));
+			ByteString preHash = ByteString.copyFrom(getHashBytes(this.newest.getBlock().getHeader()));
 			if(!block.getHeader().getPreviousHash().equals(preHash)){
                 throw new LedgerException("Block have had wrong previous hash");
             }
         }
 
         appendBlock(block);
+        notifyAppended();
     }
 
     private void appendBlock(Common.Block block){
@@ -162,9 +162,9 @@ public class Utils {
 		Common.BlockData data = builder.build();
 
 		Common.BlockHeader blockHeader = Common.BlockHeader.newBuilder()
-				.setPreviousHash(ByteString.copyFrom(Util.getHashBytes(preBlock.getHeader().toByteArray())))
+				.setPreviousHash(ByteString.copyFrom(Util.getHashBytes(preBlock.getHeader())))
 				.setNumber(preBlock.getHeader().getNumber() + 1)
-				.setDataHash(ByteString.copyFrom(Util.getHashBytes(data.toByteArray())))
+				.setDataHash(ByteString.copyFrom(Util.getHashBytes(data)))
 				.build();
 
 		Common.BlockMetadata metadata = Common.BlockMetadata.newBuilder()
@@ -15,16 +15,24 @@
  */
 package org.bcia.julongchain.common.ledger.util.leveldbhelper;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.exception.LevelDBException;
 import org.bcia.julongchain.common.ledger.util.IDBHandler;
 import org.bcia.julongchain.common.ledger.util.IDBProvider;
+import org.bcia.julongchain.core.ledger.leveldb.LevelDBStats;
+import org.bcia.julongchain.core.ledger.leveldb.LevelDBUtil;
 
+import java.io.File;
 import java.nio.charset.StandardCharsets;
-import java.util.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 提供操作leveldb的方法
+ * 共享模式下所有账本使用同一个leveldb, key以ledgerID为前缀
+ * 分组模式下每个账本使用dbPath下独立的leveldb, key不加前缀
+ * 分组模式下dbPath只是各账本leveldb的父目录, 根provider不对应任何leveldb, 只能通过getDBHandle使用
  *
  * @author sunzongyu
  * @date 2018/04/03
@@ -36,20 +44,56 @@ public class LevelDBProvider implements IDBProvider {
 	private static byte[] DB_LEDGERID_KEY_SEP = new String(new char[]{Character.MIN_VALUE}).getBytes(StandardCharsets.UTF_8);
 	private String dbPath;
 	private String ledgerID = null;
-	static Map<String, IDBProvider> dbs = new HashMap<>();
+	/**
+	 * ledgerID + 分隔符, 仅共享模式下使用
+	 */
+	private byte[] keyPrefix = null;
+	private boolean dbPerGroup;
+	static ConcurrentMap<String, IDBProvider> dbs = new ConcurrentHashMap<>();
 
 	public LevelDBProvider(String dbPath) throws LevelDBException {
+		this(dbPath, false);
+	}
+
+	/**
+	 * @param dbPerGroup 为true时每个账本使用独立的leveldb
+	 */
+	public LevelDBProvider(String dbPath, boolean dbPerGroup) throws LevelDBException {
+		this.dbPath = dbPath;
+		this.dbPerGroup = dbPerGroup;
+		//分组模式下不在dbPath打开leveldb, 避免各账本的leveldb嵌套在另一个leveldb目录中
+		if (!dbPerGroup) {
+			createDB();
+		}
+	}
+
+	/**
+	 * 账本handle, 分组模式下打开账本独占的leveldb
+	 */
+	private LevelDBProvider(String dbPath, boolean dbPerGroup, String ledgerID) throws LevelDBException {
 		this.dbPath = dbPath;
+		this.dbPerGroup = dbPerGroup;
+		createDB();
+		setLedgerID(ledgerID);
+	}
+
+	private void createDB() throws LevelDBException {
 		db = new LevelDBHandler();
 		db.createDB(dbPath);
 	}
 
 	public IDBProvider getDBHandle(String ledgerID) throws LevelDBException{
-		IDBProvider db = dbs.get(ledgerID + dbPath);
-		if(db == null) {
-			db = new LevelDBProvider(dbPath);
-			db.setLedgerID(ledgerID);
-			dbs.put(ledgerID + dbPath, db);
+		String handlePath = dbPerGroup ? dbPath + File.separator + ledgerID : dbPath;
+		IDBProvider db = dbs.get(ledgerID + handlePath);
+		if (db != null) {
+			return db;
+		}
+		synchronized (dbs) {
+			db = dbs.get(ledgerID + handlePath);
+			if(db == null) {
+				db = new LevelDBProvider(handlePath, dbPerGroup, ledgerID);
+				dbs.put(ledgerID + handlePath, db);
+			}
 		}
 		return db;
 	}
@@ -72,59 +116,111 @@ public class LevelDBProvider implements IDBProvider {
 		this.db = db;
 	}
 
+	public boolean isDbPerGroup() {
+		return dbPerGroup;
+	}
+
+	/**
+	 * 当前leveldb的统计信息
+	 * 分组模式下为本账本独占的leveldb, 共享模式下为所有账本共用的leveldb
+	 */
+	public LevelDBStats getStats() throws LevelDBException {
+		checkDB();
+		return LevelDBUtil.getDB(dbPath).getStats();
+	}
+
 	@Override
 	public void close() throws LevelDBException {
-		db.close();
+		//分组模式的根provider没有打开leveldb
+		if (db != null) {
+			db.close();
+		}
 	}
 
 	@Override
 	public byte[] get(byte[] key) throws LevelDBException {
-		return db.get(constructLevelKey(ledgerID, key));
+		checkDB();
+		return db.get(toLevelKey(key));
 	}
 
 	@Override
 	public void put(byte[] key, byte[] value, boolean sync) throws LevelDBException {
-		db.put(constructLevelKey(ledgerID, key), value, sync);
+		checkDB();
+		db.put(toLevelKey(key), value, sync);
 	}
 
 	@Override
 	public void delete(byte[] key, boolean sync) throws LevelDBException {
-		db.delete(constructLevelKey(ledgerID, key), sync);
+		checkDB();
+		db.delete(toLevelKey(key), sync);
 	}
 
 	@Override
 	public void writeBatch(UpdateBatch batch, boolean sync) throws LevelDBException {
+		checkDB();
+		if (keyPrefix == null) {
+			db.writeBatch(batch, sync);
+			return;
+		}
 		UpdateBatch b = new UpdateBatch();
-		b.addAll(batch, ledgerID);
+		b.addAll(batch, keyPrefix);
 		db.writeBatch(b, sync);
 	}
 
 	@Override
 	public Iterator<Map.Entry<byte[], byte[]>> getIterator(byte[] startKey) throws LevelDBException {
-		return db.getIterator(constructLevelKey(ledgerID, startKey));
+		checkDB();
+		return db.getIterator(startKey == null ? keyPrefix : toLevelKey(startKey));
+	}
+
+	private void checkDB() throws LevelDBException {
+		if (db == null) {
+			throw new LevelDBException("LevelDB provider of [" + dbPath + "] is per group, use getDBHandle(ledgerID)");
+		}
+	}
+
+	private byte[] toLevelKey(byte[] key) {
+		return keyPrefix == null ? key : constructLevelKey(keyPrefix, key);
 	}
 
 	public static byte[] constructLevelKey(String ledgerID, byte[] key) {
 		if (ledgerID == null) {
 			return key;
 		}
-		byte[] arr = ArrayUtils.addAll(ledgerID.getBytes(StandardCharsets.UTF_8), DB_LEDGERID_KEY_SEP);
-		arr = ArrayUtils.addAll(arr, key);
+		return constructLevelKey(keyPrefix(ledgerID), key);
+	}
+
+	/**
+	 * 前缀 + key, 只复制一次
+	 */
+	static byte[] constructLevelKey(byte[] prefix, byte[] key) {
+		int keyLength = key == null ? 0 : key.length;
+		byte[] arr = new byte[prefix.length + keyLength];
+		System.arraycopy(prefix, 0, arr, 0, prefix.length);
+		if (keyLength > 0) {
+			System.arraycopy(key, 0, arr, prefix.length, keyLength);
+		}
 		return arr;
 	}
 
+	private static byte[] keyPrefix(String ledgerID) {
+		byte[] id = ledgerID.getBytes(StandardCharsets.UTF_8);
+		byte[] prefix = new byte[id.length + DB_LEDGERID_KEY_SEP.length];
+		System.arraycopy(id, 0, prefix, 0, id.length);
+		System.arraycopy(DB_LEDGERID_KEY_SEP, 0, prefix, id.length, DB_LEDGERID_KEY_SEP.length);
+		return prefix;
+	}
+
+	/**
+	 * 去掉leveldb key中的ledgerID前缀, 得到应用写入的key
+	 */
 	public byte[] retrieveAppKey(byte[] levelKey) {
-		if (levelKey == null) {
-			return null;
-		}
-		String str = new String(levelKey, StandardCharsets.UTF_8);
-		String follow = null;
-		int start = 0;
-		while(str.indexOf(new String(DB_NAME_KEY_SEP, StandardCharsets.UTF_8), start) != -1){
-			start++;
+		if (levelKey == null || keyPrefix == null || levelKey.length < keyPrefix.length) {
+			return levelKey;
 		}
-		follow = str.substring(start, str.length());
-		return follow.getBytes(StandardCharsets.UTF_8);
+		byte[] appKey = new byte[levelKey.length - keyPrefix.length];
+		System.arraycopy(levelKey, keyPrefix.length, appKey, 0, appKey.length);
+		return appKey;
 	}
 
 	@Override
@@ -135,5 +231,7 @@ public class LevelDBProvider implements IDBProvider {
 	@Override
 	public void setLedgerID(String ledgerID) {
 		this.ledgerID = ledgerID;
+		//分组模式下账本独占leveldb, 无需前缀
+		this.keyPrefix = ledgerID == null || dbPerGroup ? null : keyPrefix(ledgerID);
 	}
-}
\ No newline at end of file
+}
@@ -15,11 +15,9 @@
  */
 package org.bcia.julongchain.common.ledger.util.leveldbhelper;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -60,10 +58,15 @@ public class UpdateBatch  {
 		if(ledgerID == null){
 			kvs = updateBatch.getKvs();
 		} else {
-			byte[] b = ArrayUtils.addAll(ledgerID.getBytes(StandardCharsets.UTF_8), new byte[]{0x00});
 			updateBatch.getKvs().forEach((k, v) -> kvs.put(LevelDBProvider.constructLevelKey(ledgerID, k), v));
 		}
+	}
 
+	/**
+	 * 批量添加K-V, key加上给定的前缀
+	 */
+	void addAll(UpdateBatch updateBatch, byte[] keyPrefix){
+		updateBatch.getKvs().forEach((k, v) -> kvs.put(LevelDBProvider.constructLevelKey(keyPrefix, k), v));
 	}
 
 	public Map<byte[], byte[]> getKvs() {
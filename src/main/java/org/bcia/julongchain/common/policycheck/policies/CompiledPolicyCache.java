@@ -0,0 +1,132 @@
+/**
+ * Copyright Aisino. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bcia.julongchain.common.policycheck.policies;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.PolicyException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.policies.policy.IPolicy;
+import org.bcia.julongchain.msp.IIdentityDeserializer;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 已编译签名策略缓存, 以(群组, 策略哈希)为键
+ * 缓存项记录编译时使用的身份反序列化器, 群组MSP更新后反序列化器变化时重新编译
+ * @author agent
+ * @date 2026/10/17
+ * @company Aisino
+ */
+public class CompiledPolicyCache {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(CompiledPolicyCache.class);
+
+    /**
+     * 缓存策略数上限, 超过时清空重建
+     */
+    private static final int MAX_ENTRIES = 1024;
+    private static final ConcurrentMap<Key, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private static class Key {
+        private final String groupId;
+        private final ByteString policyHash;
+
+        private Key(String groupId, ByteString policyHash) {
+            this.groupId = groupId;
+            this.policyHash = policyHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(groupId, key.groupId) && policyHash.equals(key.policyHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(groupId, policyHash);
+        }
+    }
+
+    private static class Entry {
+        private final IIdentityDeserializer deserializer;
+        private final IPolicy policy;
+
+        private Entry(IIdentityDeserializer deserializer, IPolicy policy) {
+            this.deserializer = deserializer;
+            this.policy = policy;
+        }
+    }
+
+    /**
+     * 获取已编译的策略, 未缓存时编译并缓存
+     * @param groupId
+     * @param deserializer
+     * @param policyBytes
+     * @return
+     * @throws PolicyException
+     */
+    public static IPolicy getOrCompile(String groupId, IIdentityDeserializer deserializer, byte[] policyBytes)
+            throws PolicyException {
+        Key key = new Key(groupId, hash(policyBytes));
+        Entry entry = CACHE.get(key);
+        if (entry != null && entry.deserializer == deserializer) {
+            return entry.policy;
+        }
+
+        IPolicy policy = new PolicyProvider(deserializer).makePolicy(policyBytes);
+        if (policy == null) {
+            return null;
+        }
+        if (CACHE.size() >= MAX_ENTRIES) {
+            log.info("Compiled policy cache is full, clearing " + CACHE.size() + " entries");
+            CACHE.clear();
+        }
+        CACHE.put(key, new Entry(deserializer, policy));
+        return policy;
+    }
+
+    /**
+     * 清除群组的所有缓存策略
+     * @param groupId
+     */
+    public static void invalidateGroup(String groupId) {
+        CACHE.keySet().removeIf(key -> Objects.equals(groupId, key.groupId));
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    private static ByteString hash(byte[] policyBytes) throws PolicyException {
+        try {
+            return ByteString.copyFrom(MessageDigest.getInstance("SHA-256").digest(policyBytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new PolicyException(e);
+        }
+    }
+}
@@ -20,18 +20,60 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.PolicyException;
 import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.groupconfig.GroupConfigBundle;
+import org.bcia.julongchain.common.groupconfig.IGroupConfigBundle;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.policies.*;
 import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
 import org.bcia.julongchain.protos.common.Configtx;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * 类描述
  * 提供通道策略管理
+ * 每个群组的策略管理者由已提交的群组配置构造一次后缓存, 提交新的配置区块时按配置序号原子替换,
+ * ACL检查只需查表. 未注册的群组每次使用默认配置构造, 不缓存
+ * 节点不支持退出群组, 注册表只随加入的群组增长, 不会缩减
  * @author yuanjun
  * @date 21/05/18
  * @company Aisino
  */
 public class GroupPolicyManagerGetter implements IGroupPolicyManagerGetter {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(GroupPolicyManagerGetter.class);
+
+    private static final ConcurrentMap<String, RegisteredPolicyManager> POLICY_MANAGERS = new ConcurrentHashMap<>();
+
+    private static class RegisteredPolicyManager {
+        private final long sequence;
+        private final IPolicyManager policyManager;
+
+        private RegisteredPolicyManager(long sequence, IPolicyManager policyManager) {
+            this.sequence = sequence;
+            this.policyManager = policyManager;
+        }
+    }
+
+    /**
+     * 注册群组配置对应的策略管理者, 配置序号不小于当前序号时替换
+     * @param groupId
+     * @param groupConfigBundle
+     */
+    public static void register(String groupId, IGroupConfigBundle groupConfigBundle) {
+        long sequence = groupConfigBundle.getConfigtxValidator() == null ? 0 :
+                groupConfigBundle.getConfigtxValidator().getSequence();
+        RegisteredPolicyManager registered = new RegisteredPolicyManager(sequence, groupConfigBundle
+                .getPolicyManager());
+        RegisteredPolicyManager current = POLICY_MANAGERS.merge(groupId, registered,
+                (old, latest) -> latest.sequence >= old.sequence ? latest : old);
+        if (current == registered) {
+            log.info("Registered policy manager of group " + groupId + " at config sequence " + sequence);
+        } else {
+            log.warn("Ignored policy manager of group " + groupId + " at stale config sequence " + sequence);
+        }
+    }
+
     /**
      * 通过groupid获取策略管理的对象
      * @param groupId
@@ -41,15 +83,21 @@ public class GroupPolicyManagerGetter implements IGroupPolicyManagerGetter {
      */
     @Override
     public IPolicyManager getPolicyManager(String groupId) throws InvalidProtocolBufferException, PolicyException {
+        RegisteredPolicyManager registered = POLICY_MANAGERS.get(groupId);
+        if (registered != null) {
+            return registered.policyManager;
+        }
+
+        //未注册的群组使用默认配置构造策略管理者, 不写入缓存, 以免任意群组ID使缓存无限增长
         GroupConfigBundle groupConfigBundle = null;
         ChainSupport chainSupport = new ChainSupport();
         try {
             groupConfigBundle = chainSupport.createBundle(groupId, Configtx.Config.getDefaultInstance());
         } catch (ValidateException e) {
-            e.printStackTrace();
+            log.error(e.getMessage(), e);
+            throw new PolicyException(e);
         }
         return groupConfigBundle.getPolicyManager();
-
     }
 
 }
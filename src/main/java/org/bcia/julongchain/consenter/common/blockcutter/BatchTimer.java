@@ -0,0 +1,96 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.blockcutter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批次超时定时器
+ * 所有链共用一个调度线程, 每次启动定时器生成新的代数, 超时回调带上该代数;
+ * 回调在共用的调度线程中执行, 不得阻塞, 只负责把超时事件投递给链自己的队列或线程; 排序线程处理时通过isCurrent判断, 已停止或重新启动过的定时器的超时被忽略
+ * start/stop/isCurrent只能由链的排序线程调用
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BatchTimer {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "batch-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 超时回调, 参数为定时器启动时的代数
+     */
+    public interface TimeoutListener {
+        void onTimeout(long generation);
+    }
+
+    private final TimeoutListener listener;
+
+    private long generation;
+
+    private boolean running;
+
+    private ScheduledFuture<?> future;
+
+    public BatchTimer(TimeoutListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 启动定时器, 之前启动的定时器失效
+     *
+     * @param timeoutMillis 超时时间(毫秒)
+     */
+    public void start(long timeoutMillis) {
+        stop();
+        long current = ++generation;
+        running = true;
+        future = SCHEDULER.schedule(() -> listener.onTimeout(current), timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止定时器, 已投递但尚未处理的超时事件随之失效
+     */
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        generation++;
+        running = false;
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    /**
+     * 超时事件是否来自当前运行的定时器
+     */
+    public boolean isCurrent(long timeoutGeneration) {
+        return running && timeoutGeneration == generation;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+}
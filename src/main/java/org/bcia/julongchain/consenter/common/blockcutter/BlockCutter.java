@@ -15,20 +15,23 @@
  */
 package org.bcia.julongchain.consenter.common.blockcutter;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.consensus.IReceiver;
 import org.bcia.julongchain.consenter.entity.BatchesMes;
 import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Configuration;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * 区块剪切处理类
+ * 非线程安全: 每条链只能由其唯一的排序线程调用ordered及cut, 批次超时也须通过该线程触发cut
+ * 待处理消息保存在可增长的缓冲区中, 同时累计消息字节数
  *
  * @author zhangmingyang
  * @Date: 2018/3/15
@@ -38,9 +41,13 @@ import java.util.List;
 public class BlockCutter implements IReceiver {
     private static JulongChainLog log = JulongChainLogFactory.getLog(BlockCutter.class);
 
+    private static final int INITIAL_CAPACITY = 16;
+
     private IConsenterConfig sharedConfigManager;
 
-    private List<Common.Envelope> pendBatch=new ArrayList<>();
+    private Common.Envelope[] pendingBatch = new Common.Envelope[INITIAL_CAPACITY];
+
+    private int pendingCount;
 
     private int pendingBatchSizeBytes;
 
@@ -53,52 +60,57 @@ public class BlockCutter implements IReceiver {
     }
 
     @Override
-    public  BatchesMes ordered(Common.Envelope msg) {
-
+    public BatchesMes ordered(Common.Envelope msg) {
+        Configuration.BatchSize batchSize = sharedConfigManager.getBatchSize();
+        int preferredMaxBytes = batchSize.getPreferredMaxBytes();
         int messageSizeBytes = getMessageSizeBytes(msg);
 
+        List<Common.Envelope[]> messageBatches = new ArrayList<>(2);
         BatchesMes batchesMes = new BatchesMes();
-        if (messageSizeBytes > sharedConfigManager.getBatchSize().getPreferredMaxBytes()) {
-
-            log.debug(String.format("The current message, with %s bytes, is larger than the preferred batch size of %s bytes and will be isolated.", messageSizeBytes, sharedConfigManager.getBatchSize().getPreferredMaxBytes()));
-
-            if (pendBatch.size() > 0) {
-                Common.Envelope[] messageBatch = cut();
-                batchesMes.setMessageBatches((Common.Envelope[][]) ArrayUtils.add(batchesMes.getMessageBatches(), messageBatch));
+        if (messageSizeBytes > preferredMaxBytes) {
+            log.debug(String.format("The current message, with %s bytes, is larger than the preferred batch size of %s bytes and will be isolated.", messageSizeBytes, preferredMaxBytes));
+            if (pendingCount > 0) {
+                messageBatches.add(cut());
             }
-            batchesMes.setMessageBatches((Common.Envelope[][]) ArrayUtils.add(batchesMes.getMessageBatches(), new Common.Envelope[]{msg}));
+            messageBatches.add(new Common.Envelope[]{msg});
+            return toBatchesMes(batchesMes, messageBatches);
         }
 
-        boolean messageWillOverflowBatchSizeBytes = pendingBatchSizeBytes + messageSizeBytes > sharedConfigManager.getBatchSize().getPreferredMaxBytes();
+        boolean messageWillOverflowBatchSizeBytes = pendingBatchSizeBytes + messageSizeBytes > preferredMaxBytes;
         if (messageWillOverflowBatchSizeBytes) {
             log.debug(String.format("The current message, with %s bytes, will overflow the pending batch of %s bytes.", messageSizeBytes, pendingBatchSizeBytes));
             log.debug("Pending batch would overflow if current message is added, cutting batch now.");
-            Common.Envelope[] messageBatch = cut();
-            batchesMes.setMessageBatches((Common.Envelope[][]) ArrayUtils.add(batchesMes.getMessageBatches(), messageBatch));
+            messageBatches.add(cut());
         }
         log.debug("Enqueuing message into batch");
 
-        pendBatch.add(msg);
-
+        if (pendingCount == pendingBatch.length) {
+            pendingBatch = Arrays.copyOf(pendingBatch, pendingBatch.length * 2);
+        }
+        pendingBatch[pendingCount++] = msg;
         pendingBatchSizeBytes += messageSizeBytes;
 
-        batchesMes.setPending(true);
-        if (pendBatch.size() >= sharedConfigManager.getBatchSize().getMaxMessageCount()) {
+        if (pendingCount >= batchSize.getMaxMessageCount()) {
             log.debug("Batch size met,cutting batch");
-            Common.Envelope[] messageBatch = cut();
-            Common.Envelope[][] messageBatches = ArrayUtils.add(batchesMes.getMessageBatches(), messageBatch);
-            batchesMes.setMessageBatches(messageBatches);
-            batchesMes.setPending(true);
+            messageBatches.add(cut());
         }
+        return toBatchesMes(batchesMes, messageBatches);
+    }
+
+    private BatchesMes toBatchesMes(BatchesMes batchesMes, List<Common.Envelope[]> messageBatches) {
+        if (!messageBatches.isEmpty()) {
+            batchesMes.setMessageBatches(messageBatches.toArray(new Common.Envelope[messageBatches.size()][]));
+        }
+        batchesMes.setPending(pendingCount > 0);
         return batchesMes;
     }
 
     @Override
     public Common.Envelope[] cut() {
-        log.info("This Batches is cutting.....");
-        Common.Envelope[] batch = new Common.Envelope[pendBatch.size()];
-        pendBatch.toArray(batch);
-        pendBatch.clear();
+        log.debug("Cutting batch of " + pendingCount + " messages, " + pendingBatchSizeBytes + " bytes");
+        Common.Envelope[] batch = Arrays.copyOf(pendingBatch, pendingCount);
+        Arrays.fill(pendingBatch, 0, pendingCount, null);
+        pendingCount = 0;
         this.pendingBatchSizeBytes = 0;
         return batch;
     }
@@ -115,6 +127,11 @@ public class BlockCutter implements IReceiver {
     public void setSharedConfigManager(IConsenterConfig sharedConfigManager) {
         this.sharedConfigManager = sharedConfigManager;
     }
+
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
     public int getPendingBatchSizeBytes() {
         return pendingBatchSizeBytes;
     }
@@ -16,29 +16,29 @@
 package org.bcia.julongchain.consenter.common.broadcast;
 
 import com.google.protobuf.InvalidProtocolBufferException;
-import io.grpc.Grpc;
-import io.grpc.stub.StreamObserver;
+import io.grpc.stub.ServerCallStreamObserver;
 import org.bcia.julongchain.common.exception.ConsenterException;
-import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
-import org.bcia.julongchain.consenter.common.server.ConsenterServer;
 import org.bcia.julongchain.consenter.common.server.IBroadcastHandler;
-import org.bcia.julongchain.consenter.consensus.singleton.Singleton;
-import org.bcia.julongchain.consenter.entity.ConfigMessage;
+import org.bcia.julongchain.consenter.consensus.IChain;
 import org.bcia.julongchain.consenter.entity.ConfigMsg;
-import org.bcia.julongchain.consenter.entity.NormalMessage;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
-import org.bcia.julongchain.tools.configtxgen.entity.GenesisConfigFactory;
 
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 /**
  * broadcast服务对消息的排队
+ * 各客户端流并发处理, 同一流内的消息按到达顺序逐条处理, 每条消息都返回一个响应;
+ * 流采用手动流控, 一条消息处理完成后才向客户端请求下一条, 目标链入口队列已满时推迟请求, 将背压传递给客户端,
+ * 已到达的消息若无法入队则返回SERVICE_UNAVAILABLE, 不在内存中无限缓存
  *
  * @author zhangmingyang
  * @Date: 2018/3/8
@@ -46,6 +46,17 @@ import java.util.Map;
  */
 public class BroadcastHandler implements IBroadcastHandler {
     private static JulongChainLog log = JulongChainLogFactory.getLog(BroadcastHandler.class);
+    /**
+     * 链入口队列已满时, 重新检查是否可以请求下一条消息的间隔(毫秒)
+     */
+    private static final long RESUME_INTERVAL = 10;
+
+    private static final ScheduledExecutorService RESUME_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "broadcast-resume");
+        t.setDaemon(true);
+        return t;
+    });
+
     private IGroupSupportRegistrar sm;
 
     public BroadcastHandler(IGroupSupportRegistrar sm) {
@@ -53,77 +64,115 @@ public class BroadcastHandler implements IBroadcastHandler {
     }
 
     @Override
-    public void handle(Common.Envelope envelope, StreamObserver<Ab.BroadcastResponse> responseObserver) throws ConsenterException {
-        synchronized (BroadcastHandler.class) {
-            if (ConsenterConstants.SINGLETON.equals(GenesisConfigFactory.getGenesisConfig().getConsenter().getConsenterType())) {
-                Common.GroupHeader groupHeader = null;
-                ChainSupport chainSupport = null;
-                boolean isConfig = false;
-                String remoteAddr = ConsenterServer.serverCallCapture.get().getAttributes()
-                        .get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR).toString();
-                if(envelope.toByteArray().length==0){
-                    throw new ConsenterException("Envelop Message length is:"+envelope.toByteArray().length);
-                }
-                try {
-                    Map<String, Object> map = sm.broadcastGroupSupport(envelope);
-                    groupHeader = (Common.GroupHeader) map.get(ConsenterConstants.GROUPHEADER);
-                    isConfig = (boolean) map.get(ConsenterConstants.ISCONFIG);
-                    chainSupport = (ChainSupport) map.get(ConsenterConstants.CHAINSUPPORT);
-                } catch (InvalidProtocolBufferException e) {
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.INTERNAL_SERVER_ERROR).build());
-                    responseObserver.onCompleted();
-                }
-                try {
-                    chainSupport.getChain().waitReady();
-                } catch (ConsenterException e) {
-                    log.warn(String.format("[group: %s] Rejecting broadcast of message from %s with SERVICE_UNAVAILABLE: rejected by Consenter: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
-                    responseObserver.onCompleted();
-                }
-                if (!isConfig) {
-                    //普通消息
-                    log.debug(String.format("[group: %s] Broadcast is processing normal message from %s with txid '%s' of type %s", groupHeader.getGroupId(), remoteAddr, groupHeader.getTxId(), groupHeader.getType()));
-                    long configSeq = 0;
-                    try {
-                        configSeq = chainSupport.getProcessor().processNormalMsg(envelope);
-                    } catch (InvalidProtocolBufferException e) {
-                        log.warn(String.format("[channel: %s] Rejecting broadcast of normal message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                        responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setInfo(e.getMessage()).build());
-                        responseObserver.onCompleted();
-                    }
-                    Singleton singleton = null;
-                    singleton = Singleton.getInstance(chainSupport);
-                    NormalMessage normalMessage = new NormalMessage(configSeq, envelope);
+    public void handle(Common.Envelope envelope, String remoteAddr, ServerCallStreamObserver<Ab.BroadcastResponse> responseObserver) {
+        IChain chain = null;
+        try {
+            chain = process(envelope, remoteAddr, responseObserver);
+        } catch (RuntimeException e) {
+            log.error(String.format("Broadcast of message from %s failed: %s", remoteAddr, e.getMessage()), e);
+            reply(responseObserver, Common.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+        } finally {
+            requestNext(chain, responseObserver);
+        }
+    }
 
-                    try {
-                        singleton.pushToQueue(normalMessage);
-                    } catch (ValidateException e) {
-                        responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SERVICE_UNAVAILABLE).build());
-                        responseObserver.onCompleted();
-                    }
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
-                    responseObserver.onCompleted();
-                } else {
-                    //配置消息
-                    ConfigMsg configMsg = null;
-                    try {
-                        log.info(String.format("[group: %s] Broadcast is processing config update message from %s", groupHeader.getGroupId(), remoteAddr));
-                        configMsg = chainSupport.getProcessor().processConfigUpdateMsg(envelope);
-                    } catch (ConsenterException e) {
-                        log.warn(String.format("[group: %s] Rejecting broadcast of config message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
-                    }
-                    Singleton singleton = null;
-                    singleton = Singleton.getInstance(chainSupport);
-                    ConfigMessage configMessage = new ConfigMessage(configMsg.getConfigSeq(), configMsg.getConfig());
-                    try {
-                        singleton.pushToQueue(configMessage);
+    /**
+     * 处理一条消息并返回响应
+     *
+     * @return 消息的目标链, 消息无法解析时为null
+     */
+    private IChain process(Common.Envelope envelope, String remoteAddr, ServerCallStreamObserver<Ab.BroadcastResponse> responseObserver) {
+        if (envelope.getSerializedSize() == 0) {
+            log.warn(String.format("Rejecting broadcast of empty message from %s", remoteAddr));
+            reply(responseObserver, Common.Status.BAD_REQUEST, "Envelope message is empty");
+            return null;
+        }
+        Map<String, Object> map;
+        try {
+            map = sm.broadcastGroupSupport(envelope);
+        } catch (InvalidProtocolBufferException e) {
+            log.warn(String.format("Rejecting broadcast of message from %s because of error: %s", remoteAddr, e.getMessage()));
+            reply(responseObserver, Common.Status.BAD_REQUEST, e.getMessage());
+            return null;
+        }
+        Common.GroupHeader groupHeader = (Common.GroupHeader) map.get(ConsenterConstants.GROUPHEADER);
+        boolean isConfig = (boolean) map.get(ConsenterConstants.ISCONFIG);
+        ChainSupport chainSupport = (ChainSupport) map.get(ConsenterConstants.CHAINSUPPORT);
+        IChain chain = chainSupport.getChain();
 
-                    } catch (ValidateException e) {
-                        throw new ConsenterException(e.getMessage());
-                    }
-                    responseObserver.onNext(Ab.BroadcastResponse.newBuilder().setStatus(Common.Status.SUCCESS).build());
-                }
+        try {
+            chain.waitReady();
+        } catch (ConsenterException e) {
+            log.warn(String.format("[group: %s] Rejecting broadcast of message from %s with SERVICE_UNAVAILABLE: rejected by Consenter: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+            reply(responseObserver, Common.Status.SERVICE_UNAVAILABLE, e.getMessage());
+            return chain;
+        }
+
+        long configSeq;
+        Common.Envelope config = null;
+        if (!isConfig) {
+            //普通消息
+            log.debug(String.format("[group: %s] Broadcast is processing normal message from %s with txid '%s' of type %s", groupHeader.getGroupId(), remoteAddr, groupHeader.getTxId(), groupHeader.getType()));
+            try {
+                configSeq = chainSupport.getProcessor().processNormalMsg(envelope);
+            } catch (InvalidProtocolBufferException e) {
+                log.warn(String.format("[group: %s] Rejecting broadcast of normal message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+                reply(responseObserver, Common.Status.BAD_REQUEST, e.getMessage());
+                return chain;
+            }
+        } else {
+            //配置消息
+            log.info(String.format("[group: %s] Broadcast is processing config update message from %s", groupHeader.getGroupId(), remoteAddr));
+            try {
+                ConfigMsg configMsg = chainSupport.getProcessor().processConfigUpdateMsg(envelope);
+                configSeq = configMsg.getConfigSeq();
+                config = configMsg.getConfig();
+            } catch (ConsenterException e) {
+                log.warn(String.format("[group: %s] Rejecting broadcast of config message from %s because of error: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+                reply(responseObserver, Common.Status.BAD_REQUEST, e.getMessage());
+                return chain;
             }
         }
+
+        try {
+            if (!isConfig) {
+                chain.order(envelope, configSeq);
+            } else {
+                chain.configure(config, configSeq);
+            }
+        } catch (ConsenterException e) {
+            log.warn(String.format("[group: %s] Rejecting broadcast of message from %s with SERVICE_UNAVAILABLE: rejected by Consenter: %s", groupHeader.getGroupId(), remoteAddr, e.getMessage()));
+            reply(responseObserver, Common.Status.SERVICE_UNAVAILABLE, e.getMessage());
+            return chain;
+        }
+
+        log.debug(String.format("[group: %s] Broadcast has successfully enqueued message of type %s from %s", groupHeader.getGroupId(), groupHeader.getType(), remoteAddr));
+        reply(responseObserver, Common.Status.SUCCESS, null);
+        return chain;
+    }
+
+    private static void reply(ServerCallStreamObserver<Ab.BroadcastResponse> responseObserver, Common.Status status, String info) {
+        if (responseObserver.isCancelled()) {
+            return;
+        }
+        Ab.BroadcastResponse.Builder builder = Ab.BroadcastResponse.newBuilder().setStatus(status);
+        if (info != null) {
+            builder.setInfo(info);
+        }
+        responseObserver.onNext(builder.build());
+    }
+
+    /**
+     * 向客户端请求下一条消息, 目标链入口队列已满时定期重试, 直到链可以接收消息或客户端取消
+     */
+    private static void requestNext(IChain chain, ServerCallStreamObserver<Ab.BroadcastResponse> responseObserver) {
+        if (responseObserver.isCancelled()) {
+            return;
+        }
+        if (chain == null || chain.isAcceptable()) {
+            responseObserver.request(1);
+            return;
+        }
+        RESUME_SCHEDULER.schedule(() -> requestNext(chain, responseObserver), RESUME_INTERVAL, TimeUnit.MILLISECONDS);
     }
 }
@@ -31,6 +31,7 @@ import org.bcia.julongchain.consenter.common.server.PreStart;
 import org.bcia.julongchain.consenter.util.ConsenterConstants;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  * 普通启动方式
@@ -53,7 +54,10 @@ public class StartCmd implements IConsenterCmd {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        DeliverHandler deliverHandler = new DeliverHandler(registrar, consenterConfig.getGeneral().getAuthentication().get(ConsenterConstants.TIMEWONDW));
+        Map<String, Integer> deliverConfig = consenterConfig.getGeneral().getDeliver();
+        int readAheadBlocks = deliverConfig != null && deliverConfig.get(ConsenterConstants.READ_AHEAD_BLOCKS) != null
+                ? deliverConfig.get(ConsenterConstants.READ_AHEAD_BLOCKS) : DeliverHandler.DEFAULT_READ_AHEAD_BLOCKS;
+        DeliverHandler deliverHandler = new DeliverHandler(registrar, consenterConfig.getGeneral().getAuthentication().get(ConsenterConstants.TIMEWONDW), readAheadBlocks);
 
         consenterServer = new ConsenterServer(Integer.valueOf(consenterConfig.getGeneral().getListenPort()));
         BroadcastHandler broadCastHandle = new BroadcastHandler(registrar);
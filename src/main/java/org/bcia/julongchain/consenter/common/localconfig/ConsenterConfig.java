@@ -55,6 +55,7 @@ public class ConsenterConfig {
         private Map<String,String> profile;
         private Bccsp bccsp;
         private Map<String,Integer> authentication;
+        private Map<String,Integer> deliver;
 
         public String getLedgerType() {
             return ledgerType;
@@ -184,6 +185,14 @@ public class ConsenterConfig {
             this.authentication = authentication;
         }
 
+        public Map<String, Integer> getDeliver() {
+            return deliver;
+        }
+
+        public void setDeliver(Map<String, Integer> deliver) {
+            this.deliver = deliver;
+        }
+
         public String getGossipAddress() {
             return gossipAddress;
         }
@@ -24,14 +24,27 @@ import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.groupconfig.IGroupConfigBundle;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.util.LatencyHistogram;
+import org.bcia.julongchain.consenter.consensus.IChain;
 import org.bcia.julongchain.consenter.util.BlockHelper;
 import org.bcia.julongchain.consenter.util.CommonUtils;
 import org.bcia.julongchain.consenter.util.Utils;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.common.Configtx;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 区块写入对象
+ * 每个链拥有独立的BlockWriter, 区块创建及写入只在本链的锁内串行, 不同群组之间并行出块
+ * 写入分为流水线: 组装元数据(调用线程) -> 签名(签名线程池) -> 按序追加账本(追加线程池),
+ * 区块N签名及落盘时即可创建区块N+1
  *
  * @author zhangmingyang
  * @Date: 2018/3/16
@@ -48,26 +61,65 @@ public class BlockWriter {
 
     private long lastConfigSeq;
 
-    private  Common.Block lastBlock;
+    private volatile Common.Block lastBlock;
+
+    /**
+     * 本链的区块写入锁
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 每条链在途(已提交写入但未追加到账本)的区块数上限
+     */
+    private static final int MAX_PENDING_BLOCKS = 8;
+    /**
+     * 每隔多少个区块输出一次各阶段耗时
+     */
+    private static final int LATENCY_REPORT_INTERVAL = 1000;
+
+    /**
+     * 所有链共用的区块签名线程池
+     */
+    private static final ExecutorService SIGNING_POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), namedDaemonThreadFactory("block-signer"));
+    /**
+     * 所有链共用的账本追加线程池, 同一条链的区块通过appendTail串行追加
+     */
+    private static final ExecutorService APPEND_POOL = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors()), namedDaemonThreadFactory("block-appender"));
+
+    private final Semaphore pendingBlocks = new Semaphore(MAX_PENDING_BLOCKS);
+    /**
+     * 最近一个区块的追加任务, 下一个区块在其完成后追加
+     */
+    private volatile CompletableFuture<Void> appendTail = CompletableFuture.completedFuture(null);
+    /**
+     * 第一个写入失败的原因, 非null时拒绝后续写入
+     */
+    private volatile Throwable failure;
+    private final Object failureLock = new Object();
+
+    private final LatencyHistogram assembleLatency = new LatencyHistogram("assemble");
+    private final LatencyHistogram signLatency = new LatencyHistogram("sign");
+    private final LatencyHistogram appendLatency = new LatencyHistogram("append");
+    private final LatencyHistogram totalLatency = new LatencyHistogram("total");
 
     public BlockWriter(ChainSupport support, Registrar registrar, Common.Block lastBlock) {
-        synchronized (BlockWriter.class) {
-            this.support = support;
-            this.registrar = registrar;
-            this.lastBlock = lastBlock;
-            this.lastConfigSeq = support.getSequence();
-        }
+        this.support = support;
+        this.registrar = registrar;
+        this.lastBlock = lastBlock;
+        this.lastConfigSeq = support.getSequence();
     }
 
 
     public Common.Block createNextBlock(Common.Envelope[] messages) {
-        synchronized (BlockWriter.class) {
+        synchronized (lock) {
 
             byte[] previousBlockHash = BlockHelper.hash(lastBlock.getHeader().toByteArray());
             Common.BlockData.Builder data = Common.BlockData.newBuilder();
 
             for (int i = 0; i < messages.length; i++) {
-                data.addData(ByteString.copyFrom(messages[i].toByteArray()));
+                data.addData(messages[i].toByteString());
             }
 
             Common.Block block = BlockHelper.createBlock(lastBlock.getHeader().getNumber() + 1, previousBlockHash);
@@ -83,6 +135,15 @@ public class BlockWriter {
     }
 
     public void writeConfigBlock(Common.Block block, byte[] encodedMetadataValue) throws ConsenterException {
+        synchronized (lock) {
+            applyConfigBlock(block);
+            writeBlock(block, encodedMetadataValue);
+            //配置块写入账本后再处理后续消息
+            awaitAppended();
+        }
+    }
+
+    private void applyConfigBlock(Common.Block block) throws ConsenterException {
         Common.Envelope ctx = CommonUtils.extractEnvelop(block, 0);
         Common.Payload payload = Utils.unmarshalPayload(ctx.getPayload().toByteArray());
         if (payload.getHeader() == null) {
@@ -113,69 +174,113 @@ public class BlockWriter {
             default:
                 log.error(String.format("Told to write a config block with unknown header type: %s", groupHeader.getType()));
         }
-
-        writeBlock(block, encodedMetadataValue);
     }
 
-    public void writeBlock(Common.Block block, byte[] encodedMetadataValue) {
-        synchronized (BlockWriter.class) {
-
+    /**
+     * 写入区块
+     * 在调用线程内一次性组装共识元数据及最新配置块元数据, 签名在签名线程池执行, 追加账本按区块顺序执行,
+     * 返回后即可创建下一个区块. 在途区块数超过上限时阻塞, 等待之前的区块写入账本
+     * 任一区块签名或追加失败时后续区块无法接续, 写入器进入失败状态并停止所属的链, 之后的写入均被拒绝
+     *
+     * @param block
+     * @param encodedMetadataValue
+     * @throws ConsenterException 之前的区块写入失败
+     */
+    public void writeBlock(Common.Block block, byte[] encodedMetadataValue) throws ConsenterException {
+        synchronized (lock) {
+            checkNotFailed();
+            long writeStart = System.nanoTime();
+            pendingBlocks.acquireUninterruptibly();
             lastBlock = block;
-            commitBlock(encodedMetadataValue);
-        }
-    }
+            long blockNumber = block.getHeader().getNumber();
 
-    private  void commitBlock(byte[] encodedMetadataValue) {
-        if (encodedMetadataValue != null) {
-            Common.Metadata metadata = null;
+            CompletableFuture<Common.Block> signedFuture;
             try {
-                metadata = Common.Metadata.parseFrom(encodedMetadataValue);
-            } catch (InvalidProtocolBufferException e) {
-                e.printStackTrace();
+                Common.Block assembledBlock = assembleMetadata(block, encodedMetadataValue);
+                assembleLatency.recordSince(writeStart);
+                signedFuture = CompletableFuture.supplyAsync(() -> signBlock(assembledBlock), SIGNING_POOL);
+            } catch (RuntimeException e) {
+                pendingBlocks.release();
+                fail(blockNumber, e);
+                throw new ConsenterException(e);
             }
-            Common.Block.Builder block = Common.Block.newBuilder(lastBlock);
-            block.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.CONSENTER_VALUE, ByteString.copyFrom(Utils.marshalOrPanic(metadata)));
-            lastBlock = block.build();
-        }
-        addBlockSignature(lastBlock);
-        addLastConfigSignature(lastBlock);
-        try {
-            support.getLedgerResources().getReadWriteBase().append(lastBlock);
-        } catch (LedgerException e) {
-            e.printStackTrace();
+            //allOf在两者都完成(包括异常完成)后完成, handleAsync总会执行并正常完成, appendTail不会停留在异常状态
+            appendTail = CompletableFuture.allOf(appendTail, signedFuture).handleAsync((ignored, throwable) -> {
+                try {
+                    if (failure == null) {
+                        appendBlock(signedFuture.join());
+                    }
+                } catch (CompletionException e) {
+                    fail(blockNumber, e.getCause());
+                } catch (LedgerException | RuntimeException e) {
+                    fail(blockNumber, e);
+                } finally {
+                    pendingBlocks.release();
+                    totalLatency.recordSince(writeStart);
+                    reportLatency(blockNumber);
+                }
+                return null;
+            }, APPEND_POOL);
         }
     }
 
+    /**
+     * 等待已提交的区块全部写入账本
+     *
+     * @throws ConsenterException 有区块写入失败
+     */
+    public void awaitAppended() throws ConsenterException {
+        appendTail.join();
+        checkNotFailed();
+    }
 
-    public  void addBlockSignature(Common.Block block) {
+    public boolean isFailed() {
+        return failure != null;
+    }
 
-        try {
-            Common.SignatureHeader signatureHeader = Common.SignatureHeader.parseFrom(Utils.marshalOrPanic(CommonUtils.newSignatureHeaderOrPanic(support.getLocalSigner())));
-            //构建MetadataSignatureBuilder 对象
-            Common.MetadataSignature.Builder blockSignatureBuilder = Common.MetadataSignature
-                    .newBuilder()
-                    .setSignatureHeader(signatureHeader.toByteString());
-            byte[] blockSignatureValue = new byte[0];
-            blockSignatureBuilder.setSignature(ByteString.copyFrom(
-                    CommonUtils.signOrPanic(support.getLocalSigner(), Utils.concatenateBytes(blockSignatureValue, blockSignatureBuilder.getSignatureHeader().toByteArray(),
-                            block.getHeader().toByteArray()))));
-
-            Common.MetadataSignature metadataSignature = Common.MetadataSignature.parseFrom(blockSignatureBuilder.build().toByteArray());
-            Common.Metadata metadata = Common.Metadata.newBuilder()
-                    .addSignatures(metadataSignature)
-                    .setValue(ByteString.copyFrom(blockSignatureValue)).build();
-            Common.Block.Builder updateBlockBuilder = Common.Block.newBuilder(block);
-            updateBlockBuilder.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.SIGNATURES_VALUE, ByteString.copyFrom(metadata.toByteArray()));
-            Common.Block updateBlock = updateBlockBuilder.build();
-            //ProtoUtils.printMessageJson(block1);
-            lastBlock = updateBlock;
-        } catch (InvalidProtocolBufferException e) {
-            e.printStackTrace();
+    private void checkNotFailed() throws ConsenterException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new ConsenterException(String.format("[group: %s] Block writer is failed, no more blocks accepted: %s",
+                    support.getGroupId(), cause.getMessage()));
         }
+    }
 
+    /**
+     * 区块签名或追加失败, 已创建的后续区块的previousHash指向未写入的区块, 停止链
+     */
+    private void fail(long blockNumber, Throwable cause) {
+        synchronized (failureLock) {
+            if (failure != null) {
+                return;
+            }
+            failure = cause;
+        }
+        log.error(String.format("[group: %s] Write block %d failed, halting the chain", support.getGroupId(),
+                blockNumber), cause);
+        IChain chain = support.getChain();
+        if (chain != null) {
+            chain.halt();
+        }
     }
 
-     private void addLastConfigSignature(Common.Block block) {
+    /**
+     * 在一次构建中设置共识元数据及最新配置块元数据
+     */
+    private Common.Block assembleMetadata(Common.Block block, byte[] encodedMetadataValue) {
+        Common.Block.Builder blockBuilder = Common.Block.newBuilder(block);
+        Common.BlockMetadata.Builder metadataBuilder = blockBuilder.getMetadataBuilder();
+        if (encodedMetadataValue != null) {
+            try {
+                Common.Metadata metadata = Common.Metadata.parseFrom(encodedMetadataValue);
+                metadataBuilder.setMetadata(Common.BlockMetadataIndex.CONSENTER_VALUE,
+                        ByteString.copyFrom(Utils.marshalOrPanic(metadata)));
+            } catch (InvalidProtocolBufferException e) {
+                log.error(String.format("[group: %s] Invalid consenter metadata of block %d", support.getGroupId(),
+                        block.getHeader().getNumber()), e);
+            }
+        }
+
         long configSeq = support.getSequence();
         if (configSeq > lastConfigSeq) {
             log.debug(String.format("[group: %s] Detected lastConfigSeq transitioning from %d to %d, setting lastConfigBlockNum from %d to %d",
@@ -185,21 +290,82 @@ public class BlockWriter {
         }
         try {
             Common.LastConfig lastConfig = Common.LastConfig.newBuilder().setIndex(lastConfigBlockNum).build();
-            byte[] lastConfigValue = Utils.marshalOrPanic(lastConfig);
-
-            Common.MetadataSignature lastConfigSignature = Common.MetadataSignature.parseFrom(Utils.marshalOrPanic(CommonUtils.newSignatureHeaderOrPanic(support.getLocalSigner())));
-            Common.MetadataSignature metadataSignature = Common.MetadataSignature.parseFrom(lastConfigSignature.toByteArray());
+            Common.MetadataSignature lastConfigSignature = Common.MetadataSignature.parseFrom(
+                    Utils.marshalOrPanic(CommonUtils.newSignatureHeaderOrPanic(support.getLocalSigner())));
             Common.Metadata metadata = Common.Metadata.newBuilder()
-                    .addSignatures(metadataSignature)
-                    .setValue(ByteString.copyFrom(lastConfigValue)).build();
-            Common.Block.Builder updateblock = Common.Block.newBuilder(block);
-            updateblock.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.LAST_CONFIG_VALUE, ByteString.copyFrom(metadata.toByteArray()));
-            lastBlock = updateblock.build();
+                    .addSignatures(lastConfigSignature)
+                    .setValue(lastConfig.toByteString()).build();
+            metadataBuilder.setMetadata(Common.BlockMetadataIndex.LAST_CONFIG_VALUE, metadata.toByteString());
         } catch (InvalidProtocolBufferException e) {
-            e.printStackTrace();
+            log.error(e.getMessage(), e);
         }
+        return blockBuilder.build();
+    }
+
+    /**
+     * 对区块头签名并设置签名元数据, 在签名线程池中执行
+     */
+    private Common.Block signBlock(Common.Block block) {
+        long signStart = System.nanoTime();
+        ByteString signatureHeader = CommonUtils.newSignatureHeaderOrPanic(support.getLocalSigner()).toByteString();
+        byte[] blockSignatureValue = new byte[0];
+        byte[] signature = CommonUtils.signOrPanic(support.getLocalSigner(), Utils.concatenateBytes(blockSignatureValue,
+                signatureHeader.toByteArray(), block.getHeader().toByteArray()));
+        Common.MetadataSignature metadataSignature = Common.MetadataSignature.newBuilder()
+                .setSignatureHeader(signatureHeader)
+                .setSignature(ByteString.copyFrom(signature))
+                .build();
+        Common.Metadata metadata = Common.Metadata.newBuilder()
+                .addSignatures(metadataSignature)
+                .setValue(ByteString.copyFrom(blockSignatureValue)).build();
+        Common.Block.Builder blockBuilder = Common.Block.newBuilder(block);
+        blockBuilder.getMetadataBuilder().setMetadata(Common.BlockMetadataIndex.SIGNATURES_VALUE, metadata.toByteString());
+        Common.Block signedBlock = blockBuilder.build();
+        signLatency.recordSince(signStart);
+        return signedBlock;
+    }
+
+    /**
+     * 追加区块到账本, 按区块顺序执行
+     */
+    private void appendBlock(Common.Block block) throws LedgerException {
+        long appendStart = System.nanoTime();
+        support.getLedgerResources().getReadWriteBase().append(block);
+        appendLatency.recordSince(appendStart);
     }
 
+    private void reportLatency(long blockNumber) {
+        if (blockNumber % LATENCY_REPORT_INTERVAL != 0) {
+            return;
+        }
+        log.info(String.format("[group: %s] Block writer latency up to block %d:\n%s\n%s\n%s\n%s",
+                support.getGroupId(), blockNumber, assembleLatency, signLatency, appendLatency, totalLatency));
+    }
+
+    private static ThreadFactory namedDaemonThreadFactory(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    public LatencyHistogram getAssembleLatency() {
+        return assembleLatency;
+    }
+
+    public LatencyHistogram getSignLatency() {
+        return signLatency;
+    }
+
+    public LatencyHistogram getAppendLatency() {
+        return appendLatency;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
 
     public static void setLog(JulongChainLog log) {
         BlockWriter.log = log;
@@ -187,7 +187,7 @@ public class ChainSupport implements IStandardGroupSupport, IConsenterSupport {
     }
 
     @Override
-    public void writeBlock(Common.Block block, byte[] encodedMetadataValue) {
+    public void writeBlock(Common.Block block, byte[] encodedMetadataValue) throws ConsenterException {
         blockWriter.writeBlock(block, encodedMetadataValue);
     }
 
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.grpc.*;
 import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.bcia.julongchain.common.deliver.DeliverServer;
 import org.bcia.julongchain.common.deliver.IDeliverHandler;
@@ -38,7 +39,6 @@ import org.bcia.julongchain.protos.consenter.AtomicBroadcastGrpc;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -51,7 +51,6 @@ import java.util.concurrent.atomic.AtomicReference;
 public class ConsenterServer {
     private int port;
     private Server server;
-    public static final AtomicReference<ServerCall<?, ?>> serverCallCapture = new AtomicReference<ServerCall<?, ?>>();
     private static JulongChainLog log = JulongChainLogFactory.getLog(ConsenterServer.class);
     private static IBroadcastHandler broadcastHandler;
     private static IDeliverHandler deliverHandler;
@@ -73,7 +72,7 @@ public class ConsenterServer {
 
     public void start() throws IOException {
         List<ServerInterceptor> allInterceptors = ImmutableList.<ServerInterceptor>builder()
-                .add(RequestHeadersInterceptor.recordServerCallInterceptor(serverCallCapture)).build();
+                .add(RequestHeadersInterceptor.remoteAddressInterceptor()).build();
         //server = ServerBuilder.forPort(port)
         server = NettyServerBuilder.forPort(port)
                 .addService(ServerInterceptors.intercept(new ConsenterServerImpl(), allInterceptors))
@@ -112,14 +111,16 @@ public class ConsenterServer {
 
         @Override
         public StreamObserver<Common.Envelope> broadcast(StreamObserver<Ab.BroadcastResponse> responseObserver) {
+            ServerCallStreamObserver<Ab.BroadcastResponse> serverCallStreamObserver =
+                    (ServerCallStreamObserver<Ab.BroadcastResponse>) responseObserver;
+            //手动流控, 每条消息处理完成后由broadcastHandler请求下一条
+            serverCallStreamObserver.disableAutoInboundFlowControl();
+            String remoteAddr = RequestHeadersInterceptor.REMOTE_ADDRESS.get();
+            serverCallStreamObserver.request(1);
             return new StreamObserver<Common.Envelope>() {
                 @Override
                 public void onNext(Common.Envelope envelope) {
-                    try {
-                        broadcastHandler.handle(envelope, responseObserver);
-                    } catch (ConsenterException e) {
-                        log.error(e.getMessage());
-                    }
+                    broadcastHandler.handle(envelope, remoteAddr, serverCallStreamObserver);
                 }
 
                 @Override
@@ -136,13 +137,18 @@ public class ConsenterServer {
 
         @Override
         public StreamObserver<Common.Envelope> deliver(StreamObserver<Ab.DeliverResponse> responseObserver) {
+            //每个流一个DeliverServer, 上一个请求的区块发送完毕后才读取下一个请求
+            DeliverServer deliverServer = new DeliverServer(responseObserver);
+            deliverServer.requestNext();
             return new StreamObserver<Common.Envelope>() {
                 @Override
                 public void onNext(Common.Envelope envelope) {
-                    DeliverServer deliverServer = new DeliverServer(responseObserver, envelope);
+                    deliverServer.setEnvelope(envelope);
                     try {
                         deliverHandler.handle(deliverServer);
-                    } catch (ConsenterException e) {
+                    } catch (ConsenterException | RuntimeException e) {
+                        log.error(e.getMessage(), e);
+                        deliverServer.replyError(Common.Status.SERVICE_UNAVAILABLE);
                     }
                 }
 
@@ -153,7 +159,8 @@ public class ConsenterServer {
 
                 @Override
                 public void onCompleted() {
-
+                    //正在发送的区块发送完毕后才结束流
+                    deliverServer.halfClose();
                 }
             };
         }
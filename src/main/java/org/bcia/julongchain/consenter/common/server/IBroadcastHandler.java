@@ -15,14 +15,10 @@
  */
 package org.bcia.julongchain.consenter.common.server;
 
-import io.grpc.stub.StreamObserver;
-import org.bcia.julongchain.common.exception.ConsenterException;
-import org.bcia.julongchain.common.exception.ValidateException;
+import io.grpc.stub.ServerCallStreamObserver;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Ab;
 
-import java.io.IOException;
-
 /**
  * IBroadcastHandler，提供给boradcast
  * 服务处理接收到的消息
@@ -31,5 +27,11 @@ import java.io.IOException;
  * @company Dingxuan
  */
 public interface IBroadcastHandler {
-   void handle(Common.Envelope envelope, StreamObserver<Ab.BroadcastResponse> responseObserver) throws ConsenterException;
+   /**
+    * 处理客户端流中的一条消息并返回响应, 处理完成后由实现向客户端请求下一条消息
+    * @param envelope
+    * @param remoteAddr 客户端地址
+    * @param responseObserver 已关闭自动流控的响应流
+    */
+   void handle(Common.Envelope envelope, String remoteAddr, ServerCallStreamObserver<Ab.BroadcastResponse> responseObserver);
 }
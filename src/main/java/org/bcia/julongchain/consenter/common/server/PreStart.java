@@ -17,6 +17,7 @@ package org.bcia.julongchain.consenter.common.server;
 
 
 import org.bcia.julongchain.common.exception.JulongChainException;
+import org.bcia.julongchain.common.groupconfig.GroupConfigConstant;
 import org.bcia.julongchain.common.genesis.GenesisBlockFactory;
 import org.bcia.julongchain.common.ledger.blockledger.IFactory;
 import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
@@ -29,6 +30,7 @@ import org.bcia.julongchain.consenter.common.bootstrap.file.BootStrapHelper;
 import org.bcia.julongchain.consenter.common.localconfig.ConsenterConfig;
 import org.bcia.julongchain.consenter.common.multigroup.Registrar;
 import org.bcia.julongchain.consenter.consensus.IConsensusPlugin;
+import org.bcia.julongchain.consenter.consensus.kafka.KafkaConsenter;
 import org.bcia.julongchain.consenter.consensus.singleton.Singleton;
 import org.bcia.julongchain.core.common.grpc.GrpcServerConfig;
 import org.bcia.julongchain.core.common.grpc.SecureOptions;
@@ -39,7 +41,9 @@ import org.bcia.julongchain.tools.configtxgen.entity.GenesisConfig;
 import org.bcia.julongchain.tools.configtxgen.entity.GenesisConfigFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -63,11 +67,22 @@ public class PreStart {
         }
         Map<String, IConsensusPlugin> consenters = new HashMap<>();
         consenters.put("Singleton", new Singleton());
+        consenters.put(GroupConfigConstant.CONSENSUS_TYPE_KAFKA, new KafkaConsenter(localKafkaBrokers(consenterConfig)));
         Registrar registrar = new Registrar();
         defaultRegistrar = registrar.newRegistrar(lf, consenters, signer);
         return defaultRegistrar;
     }
 
+    /**
+     * consenter.yaml中配置的kafka broker, 群组配置中没有broker时使用
+     */
+    private static List<String> localKafkaBrokers(ConsenterConfig consenterConfig) {
+        if (consenterConfig.getKafka() == null || consenterConfig.getKafka().getServer() == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(consenterConfig.getKafka().getServer().values());
+    }
+
     private static void initBootstrapGroup(ConsenterConfig consenterConfig, IFactory blockLedger) throws JulongChainException {
         Common.Block genesisBlock = null;
         switch (consenterConfig.getGeneral().getGenesisMethod()) {
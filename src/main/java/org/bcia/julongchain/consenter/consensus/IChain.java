@@ -30,15 +30,25 @@ public interface IChain {
      * 普通消息排序
      * @param env
      * @param configSeq
+     * @throws ConsenterException 链无法接收消息, 如入口队列已满
      */
-    void order(Common.Envelope env, long configSeq);
+    void order(Common.Envelope env, long configSeq) throws ConsenterException;
 
     /**
      * 配置消息排序
      * @param config
      * @param configSeq
+     * @throws ConsenterException 链无法接收消息, 如入口队列已满
      */
-    void configure(Common.Envelope config, long configSeq);
+    void configure(Common.Envelope config, long configSeq) throws ConsenterException;
+
+    /**
+     * 链当前是否还能接收消息, broadcast据此决定是否继续向客户端请求下一条消息
+     * @return
+     */
+    default boolean isAcceptable() {
+        return true;
+    }
 
     /**
      * 排序前准备
@@ -15,375 +15,481 @@
  */
 package org.bcia.julongchain.consenter.consensus.kafka;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.consenter.common.blockcutter.BlockCutter;
+import org.bcia.julongchain.consenter.common.blockcutter.BatchTimer;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
 import org.bcia.julongchain.consenter.consensus.IChain;
-import org.bcia.julongchain.consenter.entity.ChainEntity;
-import org.bcia.julongchain.consenter.util.ConsenterConstants;
-import org.bcia.julongchain.consenter.util.YamlLoader;
-import org.bcia.julongchain.consenter.util.Utils;
-import org.bcia.julongchain.gossip.Node1;
+import org.bcia.julongchain.consenter.entity.BatchesMes;
+import org.bcia.julongchain.consenter.entity.ConfigMsg;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.consenter.Kafka;
-import org.springframework.beans.factory.annotation.Autowired;
 
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
+ * kafka排序链
+ * 每个群组对应kafka中的一个主题, 只使用0号分区; 所有consenter节点把消息发送到该分区, 再按分区中的顺序消费并切块,
+ * 因此各节点生成相同的区块. 批次超时时向分区发送切块消息, 各节点在该消息的位置切块.
+ * 每个区块的consenter元数据记录已写入区块的最后一条消息的偏移量, 重启后从下一条消息继续消费
+ *
  * @author yangdong
  * @Date: 2018/3/19
  * @company Shudun
  */
 public class Chain implements IChain {
-
-    private static JulongChainLog log = JulongChainLogFactory.getLog(Node1.class);
-    //TODO 使用自动注入报错，暂时new方式
-    private DataMessageHandle dataMessageHandle=new DataMessageHandle();
-    @Autowired
-    private KafkaProduce kafkaProduce;
-    //TODO 使用自动注入报错，暂时new方式
-    private KafkaSimpleConsumer kafkaSimpleConsumer=new KafkaSimpleConsumer();
-    @Autowired
-    private YamlLoader yamlLoader =new YamlLoader();
-    //TODO 不知如何获取
-    private ChainEntity chain=new ChainEntity();
-    Map map=(HashMap) YamlLoader.readYamlFile(ConsenterConstants.ORDERER_CONFIG).get(ConsenterConstants.KAFKA);
-    BlockCutter blockCutter=new BlockCutter();
+    private static JulongChainLog log = JulongChainLogFactory.getLog(Chain.class);
+    /**
+     * 群组对应主题中使用的分区
+     */
+    private static final int PARTITION = 0;
+    /**
+     * 消费者单次拉取的最长等待时间(毫秒)
+     */
+    private static final long POLL_TIMEOUT_MS = 100;
+    /**
+     * 连接kafka失败后的重试间隔(毫秒)
+     */
+    private static final long RETRY_INTERVAL_MS = 5000;
+    /**
+     * 等待连接消息写入的最长时间(毫秒)
+     */
+    private static final long CONNECT_TIMEOUT_MS = 30000;
+    /**
+     * 普通消息及配置消息等待kafka确认的最长时间(毫秒), 超时的消息向客户端返回SERVICE_UNAVAILABLE
+     */
+    private static final long SEND_TIMEOUT_MS = 10000;
+
+    private final ChainSupport support;
+    private final String bootstrapServers;
+    private final TopicPartition topicPartition;
+    private final DataMessageHandle dataMessageHandle = new DataMessageHandle();
+    /**
+     * 批次超时定时器, 超时后向分区发送切块消息
+     */
+    private final BatchTimer batchTimer;
+    /**
+     * 发送切块消息的线程, 每条链一个, 避免kafka发送阻塞所有链共用的定时器调度线程
+     */
+    private final ExecutorService timeToCutSender;
+    private final Thread processThread;
+
+    /**
+     * 以下状态只由消费线程读写
+     * lastOffsetPersisted: 已写入区块的最后一条消息的偏移量
+     * lastOriginalOffsetProcessed: 已处理的重新排序消息的最大原始偏移量
+     * lastResubmittedConfigOffset: 最后一次重新排序的配置消息的偏移量
+     */
+    private long lastOffsetPersisted;
+    private long lastOriginalOffsetProcessed;
+    private long lastResubmittedConfigOffset;
+    /**
+     * 最后切割的区块号, 由消费线程更新, 切块消息发送线程读取以生成切块消息
+     */
+    private volatile long lastCutBlockNumber;
+
+    private volatile KafkaProduce producer;
+    private volatile KafkaConsumer<byte[], byte[]> consumer;
+    private volatile boolean ready;
+    private volatile boolean halted;
+
+    public Chain(ChainSupport support, String bootstrapServers, long lastOffsetPersisted,
+                 long lastOriginalOffsetProcessed, long lastResubmittedConfigOffset) throws ConsenterException {
+        this.support = support;
+        this.bootstrapServers = bootstrapServers;
+        this.topicPartition = new TopicPartition(support.getGroupId(), PARTITION);
+        this.lastOffsetPersisted = lastOffsetPersisted;
+        this.lastOriginalOffsetProcessed = lastOriginalOffsetProcessed;
+        this.lastResubmittedConfigOffset = lastResubmittedConfigOffset;
+        try {
+            this.lastCutBlockNumber = support.getLedgerResources().getReadWriteBase().height() - 1;
+        } catch (LedgerException e) {
+            throw new ConsenterException(e);
+        }
+        this.timeToCutSender = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "kafka-ttc-" + support.getGroupId());
+            t.setDaemon(true);
+            return t;
+        });
+        this.batchTimer = new BatchTimer(generation -> {
+            if (!timeToCutSender.isShutdown()) {
+                timeToCutSender.execute(this::sendTimeToCut);
+            }
+        });
+        this.processThread = new Thread(this::processMessagesToBlocks, "kafka-" + support.getGroupId());
+        this.processThread.setDaemon(true);
+    }
 
     @Override
-    public void order(Common.Envelope env, long configSeq) {
-        this.orderHandle(env,configSeq,(long)0);
+    public void order(Common.Envelope env, long configSeq) throws ConsenterException {
+        waitReady();
+        producer().send(topicPartition, dataMessageHandle.newNormalMessage(env.toByteString(), configSeq, 0), SEND_TIMEOUT_MS);
     }
 
     @Override
-    public void configure(Common.Envelope config, long configSeq) {
-       this.configureHandle(config,configSeq,(long)0);
+    public void configure(Common.Envelope config, long configSeq) throws ConsenterException {
+        waitReady();
+        producer().send(topicPartition, dataMessageHandle.newConfigMessage(config.toByteString(), configSeq, 0), SEND_TIMEOUT_MS);
     }
 
     @Override
-    public void waitReady() {
+    public void waitReady() throws ConsenterException {
+        if (halted) {
+            throw new ConsenterException(String.format("[group: %s] Kafka chain is halted", support.getGroupId()));
+        }
+        if (!ready) {
+            throw new ConsenterException(String.format("[group: %s] Backing Kafka cluster has not completed booting, try again later",
+                    support.getGroupId()));
+        }
     }
 
     @Override
     public void start() {
-        //新启动一个线程，来处理消费消息
-        Thread t = new Thread(new Runnable(){
-            @Override
-            public void run(){
-                startThread();
-            }});
-        t.start();
+        log.info(String.format("[group: %s] Starting Kafka chain, last offset persisted: %d", support.getGroupId(), lastOffsetPersisted));
+        processThread.start();
     }
 
-    //Halt释放被分配给这个Chain的资源
+    /**
+     * 释放为此链分配的资源, 消费线程退出时关闭生产者和消费者
+     */
     @Override
     public void halt() {
-
-    }
-
-    //调用kafka的客户端，实现kafka生产者
-    //enqueue接受信息并返回真或假otheriwse验收
-    public void enqueue(Kafka.KafkaMessage kafkaMessage){
-        log.debug("[channel: %s] Enqueueing envelope...", chain.getChainID());
-        String topic = (String)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.TOPIC);
-        int partitionID = (int)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.PARTITION_ID);
-        // 获取kafkaInfo，从配置文件获取（现在这里定义，TODO该成全局）
-        KafkaTopicPartitionInfo kafkaInfo=new KafkaTopicPartitionInfo(topic,partitionID);
-        //创建生产者消息
-        ProducerMessage message=dataMessageHandle.newProducerMessage(kafkaInfo,kafkaMessage.toByteArray());
-        //调用生产者发送消息
-        kafkaProduce.send(message);
-
-
-    }
-   //实现kafka消费者，start调用该方法
-    public void processMessagesToBlocks(byte[] message,Long offset) throws IOException {
-
-        //解析数据，分类处理
-        String json=new String(message);
-        ObjectMapper mapper = new ObjectMapper();
-        //1.转换ProducerMessage
-        ProducerMessage producerMessage = mapper.readValue(json, ProducerMessage.class);
-        //2.转换kafkaMessageByte字节数组
-        byte[] kafkaMessageByte=producerMessage.getValue();
-        //3.转换Kafka.KafkaMessage
-        Kafka.KafkaMessage kafkaMessage=Kafka.KafkaMessage.parseFrom(kafkaMessageByte);
-
-        //解压消费消息所携带的数据的类型，进入不同分支，处理消息
-        switch(kafkaMessage.getTypeCase()){
-            case REGULAR:        //orderer的正常消息
-                processRegular(kafkaMessage.getRegular(),offset);
-            case CONNECT:        //KAFKA与Orderer的连接消息
-                processConnect(chain.getChainID());
-            case TIME_TO_CUT:   //orderer的生产块事件消息
-                processTimeToCut(kafkaMessage.getTimeToCut(),offset);
-                log.debug("[channel: %s] Consenter for channel exiting", chain.getChainID());
+        halted = true;
+        ready = false;
+        KafkaConsumer<byte[], byte[]> currentConsumer = consumer;
+        if (currentConsumer != null) {
+            currentConsumer.wakeup();
         }
+        processThread.interrupt();
     }
 
-    private Object processConnect(String channelName){
-        log.debug("[channel: %s] It's a connect message - ignoring", channelName);
-        return null;
-    }
-
-
-
-    //处理消息（重发消息，切块等）区分值三种（未知，配置，正常）的消息类型
-    //processMessagesToBlocks()调用该方法
-    public void processRegular(Kafka.KafkaMessageRegular  kafkaMessageRegular,Long receivedOffset){
-          int seq = chain.sequence();
-          Common.Envelope env= Common.Envelope.newBuilder().build();
-        //TODO env赋值
-
-        //处理NORMAL消息
-        if(Kafka.KafkaMessageRegular.Class.NORMAL==kafkaMessageRegular.getClass_()){
-
-            //校验偏移量
-            if(Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset()!=0){
-                //TODO 考虑offset
-                if(Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset()<= chain.getLastOriginalOffsetProcessed()){
-                    }
-            }
-          //校验seq
-            if(Kafka.KafkaMessageRegular.newBuilder().getConfigSeq()<seq){
-            Long configSeq= chain.processNormalMsg(env);
-                orderHandle(env, configSeq, receivedOffset);
-            }
-
-            //这里的任何消息可能已经或可能没有被重新验证和重新排序，但它们在这里是绝对有效的
-            //如果消息是预先lastoriginaloffsetprocessed重新验证，重新排序
-            long offset= Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset();
-            if(offset == 0 ) {
-                offset = chain.getLastOriginalOffsetProcessed();
+    /**
+     * 消费线程: 连接kafka后按偏移量顺序消费消息并切块
+     */
+    private void processMessagesToBlocks() {
+        try {
+            if (!connect()) {
+                return;
             }
-            //提交批处理
-            commitNormalMsg(env, offset);
-            //处理CONFIG消息
-        }else if(Kafka.KafkaMessageRegular.Class.CONFIG==kafkaMessageRegular.getClass_()){
-            //校验偏移量
-            if(Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset()!=0){
-                //TODO 考虑offset
-                if(Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset()<= chain.getLastOriginalOffsetProcessed()){
+            ready = true;
+            log.info(String.format("[group: %s] Kafka chain is ready, consuming from offset %d", support.getGroupId(),
+                    lastOffsetPersisted + 1));
+            while (!halted) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(POLL_TIMEOUT_MS);
+                for (ConsumerRecord<byte[], byte[]> record : records) {
+                    processMessage(record.value(), record.offset());
                 }
             }
-            //校验seq
-            if(Kafka.KafkaMessageRegular.newBuilder().getConfigSeq()<seq){
-                Long configSeq= chain.processNormalMsg(env);
-                configureHandle(env,configSeq, receivedOffset);
+        } catch (WakeupException | InterruptException e) {
+            if (!halted) {
+                log.error(String.format("[group: %s] Kafka consumer interrupted: %s", support.getGroupId(), e.getMessage()), e);
             }
+        } catch (RuntimeException e) {
+            log.error(String.format("[group: %s] Kafka chain stopped: %s", support.getGroupId(), e.getMessage()), e);
+        } finally {
+            ready = false;
+            batchTimer.stop();
+            timeToCutSender.shutdownNow();
+            closeKafkaObjects();
+            log.info(String.format("[group: %s] Kafka chain exited", support.getGroupId()));
+        }
+    }
 
-            //这里的任何消息可能已经或可能没有被重新验证和重新排序，但它们在这里是绝对有效的
-            //如果消息是预先lastoriginaloffsetprocessed重新验证，重新排序
-            long offset= Kafka.KafkaMessageRegular.newBuilder().getOriginalOffset();
-            if(offset == 0 ) {
-                offset = chain.getLastOriginalOffsetProcessed();
+    /**
+     * 创建生产者, 发送连接消息确认分区可写, 再创建消费者并定位到上次写入区块的消息之后; 失败时重试直到链停止
+     *
+     * @return 链停止时返回false
+     */
+    private boolean connect() {
+        while (!halted) {
+            try {
+                producer = new KafkaProduce(bootstrapServers);
+                producer.sendAsync(topicPartition, dataMessageHandle.newConnectMessage())
+                        .get(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+                Properties props = new Properties();
+                props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+                props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+                props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+                //偏移量由区块元数据记录, 不提交到kafka
+                props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+                consumer = new KafkaConsumer<>(props);
+                consumer.assign(Collections.singletonList(topicPartition));
+                if (lastOffsetPersisted < 0) {
+                    consumer.seekToBeginning(Collections.singletonList(topicPartition));
+                } else {
+                    consumer.seek(topicPartition, lastOffsetPersisted + 1);
+                }
+                return true;
+            } catch (ConsenterException | ExecutionException | TimeoutException | KafkaException e) {
+                log.warn(String.format("[group: %s] Can not connect to Kafka cluster %s, retry in %dms: %s",
+                        support.getGroupId(), bootstrapServers, RETRY_INTERVAL_MS, e.getMessage()));
+                closeKafkaObjects();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            try {
+                Thread.sleep(RETRY_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
-            //提交批处理
-            commitConfigMsg(env, offset);
-            //处理UNKNOWN消息
-        }else if(Kafka.KafkaMessageRegular.Class.UNKNOWN==kafkaMessageRegular.getClass_()){
-                //TODO 执行util.ChannelHeader()
-
         }
+        return false;
     }
 
-    //批量处理Normal消息
-    private void commitNormalMsg(Common.Envelope message,long newOffset){
-        Common.Envelope []  batches={};
-        boolean pending=false;
-        //TODO orderer提供方法（go中返回值应该是两个数组类型和布尔类型）
-       // Common.Envelope [] batches=blockCutter.ordered(message);
-        log.debug("[channel: %s] Ordering results: items in batch = %d, pending = %v", chain.getChainID(), batches.length, pending);
-        if (batches.length==0){
-            chain.setLastOriginalOffsetProcessed(newOffset);
-            if(chain.getTimer()==null){
-                //TODO 等待一段时间
-                //go中  chain.timer = time.After(chain.SharedConfig().BatchTimeout())
-            }
+    /**
+     * 处理一条kafka消息
+     *
+     * @param message 消息的序列化字节
+     * @param offset  消息在分区中的偏移量
+     */
+    void processMessage(byte[] message, long offset) {
+        Kafka.KafkaMessage kafkaMessage;
+        try {
+            kafkaMessage = Kafka.KafkaMessage.parseFrom(message);
+        } catch (InvalidProtocolBufferException e) {
+            log.error(String.format("[group: %s] Unable to unmarshal consumed message at offset %d: %s",
+                    support.getGroupId(), offset, e.getMessage()));
+            return;
         }
-            chain.setTimer(null);
-            long offset = newOffset;
-            if(pending || batches.length>2  ){
-                offset--;
-            }else{
-                chain.setLastOriginalOffsetProcessed(offset);
+        try {
+            switch (kafkaMessage.getTypeCase()) {
+                case REGULAR:
+                    processRegular(kafkaMessage.getRegular(), offset);
+                    break;
+                case CONNECT:
+                    log.debug(String.format("[group: %s] It's a connect message - ignoring", support.getGroupId()));
+                    break;
+                case TIME_TO_CUT:
+                    processTimeToCut(kafkaMessage.getTimeToCut(), offset);
+                    break;
+                default:
+                    log.warn(String.format("[group: %s] Unknown Kafka message at offset %d - ignoring", support.getGroupId(), offset));
             }
-            Common.Envelope [] block={};
-            //TODO orderer提供方法(为block赋值)
-            //block = chain.CreateNextBlock(batches[0])
-            Kafka.KafkaMetadata.Builder kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
-            kafkaMetadataBuilder.setLastOffsetPersisted(newOffset);
-            kafkaMetadataBuilder.setLastOriginalOffsetProcessed(chain.getLastOriginalOffsetProcessed());
-            byte[]  metadata= Utils.marshalOrPanic(kafkaMetadataBuilder.build());
-
-            //TODO orderer提供方法(WriteBlock写块)
-            //chain.WriteBlock(block, metadata)
-            int lastCutBlockNumber= chain.getLastCutBlockNumber();
-            lastCutBlockNumber++;
-            log.debug("[channel: %s] Batch filled, just cut block %d - last persisted offset is now %d", chain.getChainID(), chain.getLastCutBlockNumber(), offset);
+        } catch (ConsenterException e) {
+            log.error(String.format("[group: %s] Process message at offset %d failed: %s", support.getGroupId(),
+                    offset, e.getMessage()), e);
+        }
+    }
 
-            if(batches.length==2){
-                chain.setLastOriginalOffsetProcessed(newOffset);
-                offset++;
-                //TODO orderer提供方法(为block赋值)
-                //block = chain.CreateNextBlock(batches[1]);
-                 kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
-                kafkaMetadataBuilder.setLastOffsetPersisted(newOffset);
-                kafkaMetadataBuilder.setLastOriginalOffsetProcessed(chain.getLastOriginalOffsetProcessed());
-                metadata= Utils.marshalOrPanic(kafkaMetadataBuilder.build());
+    /**
+     * 处理普通消息和配置消息, 配置已更新的消息重新校验后重新排序
+     */
+    private void processRegular(Kafka.KafkaMessageRegular regular, long receivedOffset) throws ConsenterException {
+        Common.Envelope env;
+        try {
+            env = Common.Envelope.parseFrom(regular.getPayload());
+        } catch (InvalidProtocolBufferException e) {
+            log.error(String.format("[group: %s] Unable to unmarshal envelope at offset %d: %s", support.getGroupId(),
+                    receivedOffset, e.getMessage()));
+            return;
+        }
+        //其他节点已重新排序过的消息
+        if (regular.getOriginalOffset() != 0 && regular.getOriginalOffset() <= lastOriginalOffsetProcessed) {
+            log.debug(String.format("[group: %s] Message at offset %d is a re-ordered message with original offset %d, already processed - ignoring",
+                    support.getGroupId(), receivedOffset, regular.getOriginalOffset()));
+            return;
+        }
+        long seq = support.getSequence();
+
+        switch (regular.getClass_()) {
+            case NORMAL:
+                if (regular.getConfigSeq() < seq) {
+                    long configSeq;
+                    try {
+                        configSeq = support.getProcessor().processNormalMsg(env);
+                    } catch (InvalidProtocolBufferException e) {
+                        log.warn(String.format("[group: %s] Discarding bad normal message at offset %d: %s",
+                                support.getGroupId(), receivedOffset, e.getMessage()));
+                        return;
+                    }
+                    //重新排序的消息同样等待确认, 失败时该消息丢失, 须记录错误
+                    producer().send(topicPartition, dataMessageHandle.newNormalMessage(regular.getPayload(), configSeq, receivedOffset),
+                            SEND_TIMEOUT_MS);
+                    log.debug(String.format("[group: %s] Resubmitted normal message at offset %d", support.getGroupId(), receivedOffset));
+                    return;
+                }
+                commitNormalMsg(env, regular.getOriginalOffset() == 0 ? lastOriginalOffsetProcessed : regular.getOriginalOffset(), receivedOffset);
+                break;
+            case CONFIG:
+                if (regular.getConfigSeq() < seq) {
+                    ConfigMsg configMsg = support.getProcessor().processConfigMsg(env);
+                    producer().send(topicPartition, dataMessageHandle.newConfigMessage(configMsg.getConfig().toByteString(),
+                            configMsg.getConfigSeq(), receivedOffset), SEND_TIMEOUT_MS);
+                    lastResubmittedConfigOffset = receivedOffset;
+                    log.debug(String.format("[group: %s] Resubmitted config message at offset %d", support.getGroupId(), receivedOffset));
+                    return;
+                }
+                commitConfigMsg(env, regular.getOriginalOffset() == 0 ? lastOriginalOffsetProcessed : regular.getOriginalOffset(), receivedOffset);
+                break;
+            default:
+                log.warn(String.format("[group: %s] Unknown class of regular message at offset %d - ignoring",
+                        support.getGroupId(), receivedOffset));
+        }
+    }
 
-                //TODO orderer提供方法(WriteBlock写块)
-                //chain.WriteBlock(block, metadata)
-                 lastCutBlockNumber= chain.getLastCutBlockNumber();
-                lastCutBlockNumber++;
-                log.debug("[channel: %s] Batch filled, just cut block %d - last persisted offset is now %d", chain.getChainID(), chain.getLastCutBlockNumber(), offset);
+    /**
+     * 普通消息交给剪切器, 写入剪切出的区块
+     *
+     * @param newOffset      消息的原始偏移量, 非重新排序的消息为lastOriginalOffsetProcessed
+     * @param receivedOffset 消息在分区中的偏移量
+     */
+    private void commitNormalMsg(Common.Envelope message, long newOffset, long receivedOffset) throws ConsenterException {
+        BatchesMes batchesMes = support.getCutter().ordered(message);
+        Common.Envelope[][] batches = batchesMes.getMessageBatches();
+        int batchCount = batches == null ? 0 : batches.length;
+        log.debug(String.format("[group: %s] Ordering results: items in batch = %d, pending = %s", support.getGroupId(),
+                batchCount, batchesMes.isPending()));
+        if (batchCount == 0) {
+            lastOriginalOffsetProcessed = newOffset;
+            if (!batchTimer.isRunning()) {
+                batchTimer.start(batchTimeout());
             }
+            return;
         }
 
+        long previousOriginalOffset = lastOriginalOffsetProcessed;
+        lastOriginalOffsetProcessed = newOffset;
+        for (int i = 0; i < batchCount; i++) {
+            //当前消息在最后一个批次中(没有留作待处理消息)时, 该区块持久化到当前偏移量, 否则只到前一条消息
+            boolean containsCurrent = i == batchCount - 1 && !batchesMes.isPending();
+            writeBlock(batches[i], containsCurrent ? receivedOffset : receivedOffset - 1,
+                    containsCurrent ? newOffset : previousOriginalOffset);
+        }
+        if (batchesMes.isPending()) {
+            batchTimer.start(batchTimeout());
+        } else {
+            batchTimer.stop();
+        }
+    }
 
-
-    //批量处理config消息
-    private void commitConfigMsg(Common.Envelope message,long newOffset){
-        log.debug("[channel: %s] Received config message", chain.getChainID());
-        Common.Envelope [] batch={};
-        //TODO orderer提供方法(为batch赋值)
-        //batch = chain.BlockCutter().Cut()
-        if(batch !=null){
-            log.debug("[channel: %s] Cut pending messages into block", chain.getChainID());
-            Common.Envelope [] block={};
-            //TODO orderer提供方法(为block赋值)
-            //block = chain.CreateNextBlock(batch)
-            Kafka.KafkaMetadata.Builder kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
-            kafkaMetadataBuilder.setLastOffsetPersisted(newOffset);
-            kafkaMetadataBuilder.setLastOriginalOffsetProcessed(chain.getLastOriginalOffsetProcessed());
-            byte[]  metadata= Utils.marshalOrPanic(kafkaMetadataBuilder.build());
-
-            //TODO orderer提供方法(WriteBlock写块)
-            //chain.WriteBlock(block, metadata)
-            int lastCutBlockNumber= chain.getLastCutBlockNumber();
-            lastCutBlockNumber++;
+    /**
+     * 配置消息: 先将待处理消息写为一个区块, 再单独写配置区块
+     */
+    private void commitConfigMsg(Common.Envelope message, long newOffset, long receivedOffset) throws ConsenterException {
+        log.debug(String.format("[group: %s] Received config message", support.getGroupId()));
+        Common.Envelope[] batch = support.getCutter().cut();
+        if (batch.length != 0) {
+            log.debug(String.format("[group: %s] Cut pending messages into block", support.getGroupId()));
+            writeBlock(batch, receivedOffset - 1, lastOriginalOffsetProcessed);
         }
-        log.debug("[channel: %s] Creating isolated block for config message", chain.getChainID());
-        chain.setLastOriginalOffsetProcessed(newOffset);
-        Common.Envelope [] block={};
-        //TODO orderer提供方法(为block赋值)
-        //block = chain.CreateNextBlock(batch)
-        Kafka.KafkaMetadata.Builder kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
-        kafkaMetadataBuilder.setLastOffsetPersisted(newOffset);
-        kafkaMetadataBuilder.setLastOriginalOffsetProcessed(chain.getLastOriginalOffsetProcessed());
-        byte[]  metadata= Utils.marshalOrPanic(kafkaMetadataBuilder.build());
 
-        //TODO orderer提供方法(WriteBlock写块)
-        //chain.WriteBlock(block, metadata)
-        int lastCutBlockNumber= chain.getLastCutBlockNumber();
+        log.debug(String.format("[group: %s] Creating isolated block for config message", support.getGroupId()));
+        lastOriginalOffsetProcessed = newOffset;
+        Common.Block block = support.createNextBlock(new Common.Envelope[]{message});
+        support.writeConfigBlock(block, encodeMetadata(receivedOffset, lastOriginalOffsetProcessed));
+        lastOffsetPersisted = receivedOffset;
         lastCutBlockNumber++;
-        chain.setTimer(null);
-
+        batchTimer.stop();
     }
 
-
-
-    //到时间切块方法
-    //processMessagesToBlocks()调用该方法
-    public void sendTimeToCut(){
-
+    /**
+     * 切块消息: 区块号为下一个区块时切割待处理消息, 其他节点发送的重复或过期切块消息被忽略
+     */
+    private void processTimeToCut(Kafka.KafkaMessageTimeToCut timeToCut, long receivedOffset) throws ConsenterException {
+        long ttcNumber = timeToCut.getBlockNumber();
+        log.debug(String.format("[group: %s] It's a time-to-cut message for block %d", support.getGroupId(), ttcNumber));
+        if (ttcNumber == lastCutBlockNumber + 1) {
+            batchTimer.stop();
+            Common.Envelope[] batch = support.getCutter().cut();
+            if (batch.length == 0) {
+                log.warn(String.format("[group: %s] Got right time-to-cut message (for block %d), no pending requests though; this might indicate a bug",
+                        support.getGroupId(), ttcNumber));
+                return;
+            }
+            writeBlock(batch, receivedOffset, lastOriginalOffsetProcessed);
+            log.debug(String.format("[group: %s] Proper time-to-cut received, just cut block %d", support.getGroupId(), lastCutBlockNumber));
+        } else if (ttcNumber > lastCutBlockNumber + 1) {
+            log.error(String.format("[group: %s] Got larger time-to-cut message (%d) than allowed/expected (%d) - this might indicate a bug",
+                    support.getGroupId(), ttcNumber, lastCutBlockNumber + 1));
+        } else {
+            log.debug(String.format("[group: %s] Ignoring stale time-to-cut-message for block %d", support.getGroupId(), ttcNumber));
+        }
     }
-    //发送连接消息
-    //processMessagesToBlocks()调用该方法
-    public void sendConnectMessage(){
 
+    private void writeBlock(Common.Envelope[] batch, long offset, long originalOffset) throws ConsenterException {
+        Common.Block block = support.createNextBlock(batch);
+        support.writeBlock(block, encodeMetadata(offset, originalOffset));
+        lastOffsetPersisted = offset;
+        lastCutBlockNumber++;
+        log.debug(String.format("[group: %s] Batch filled, just cut block %d - last persisted offset is now %d",
+                support.getGroupId(), lastCutBlockNumber, offset));
     }
-   //到时间切块
-   //processMessagesToBlocks()调用该方法
-   public void processTimeToCut(Kafka.KafkaMessageTimeToCut kafkaMessageTimeToCut,Long receivedOffset){
-       long ttcNumber= kafkaMessageTimeToCut.getBlockNumber();
-       log.debug("[channel: %s] It's a time-to-cut message for block %d", chain.getChainID(), ttcNumber);
-       if(ttcNumber==chain.getLastCutBlockNumber()+1){
-           chain.setTimer(null);
-           log.debug("[channel: %s] Nil'd the timer", chain.getChainID());
-           Common.Envelope [] batch={};
-           //TODO orderer提供方法(为batch赋值)
-            //batch=chain.BlockCutter().Cut();
-            if(batch.length==0){
-                 log.error("got right time-to-cut message (for block %d),"+
-                        " no pending requests though; this might indicate a bug", chain.getLastCutBlockNumber()+1);
-            }
-           Common.Envelope [] block={};
-           //TODO orderer提供方法(为block赋值)
-           //block = chain.CreateNextBlock(batch)
-           Kafka.KafkaMetadata.Builder kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
-           kafkaMetadataBuilder.setLastOffsetPersisted(receivedOffset);
-           kafkaMetadataBuilder.setLastOriginalOffsetProcessed(chain.getLastOriginalOffsetProcessed());
-           byte[]  metadata= Utils.marshalOrPanic(kafkaMetadataBuilder.build());
 
-           //TODO orderer提供方法(WriteBlock写块)
-           //chain.WriteBlock(block, metadata)
-           int lastCutBlockNumber= chain.getLastCutBlockNumber();
-           lastCutBlockNumber++;
-            log.debug("[channel: %s] Proper time-to-cut received, just cut block %d", chain.getChainID(), chain.getLastCutBlockNumber());
-       }else if(ttcNumber > chain.getLastCutBlockNumber()+1){
-           log.error("got larger time-to-cut message (%d) than allowed/expected (%d)"+
-                           " - this might indicate a bug", ttcNumber, chain.getLastCutBlockNumber()+1);
-       }
-        log.debug("[channel: %s] Ignoring stale time-to-cut-message for block %d", chain.getChainID(), ttcNumber);
-   }
-    //1.创建生产者，消费者，分区消费者，父类消费者，2.调用消费者方法，调用方法
-    //start方法调用该方法
-    public void startThread(){
-        int maxReads =(int) ((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.MAX_READS);
-        String topic = (String)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.TOPIC);
-        int partitionID = (int)((HashMap)map.get(ConsenterConstants.COMSUMER)).get(ConsenterConstants.PARTITION_ID);
+    /**
+     * 区块consenter元数据, 值为KafkaMetadata
+     */
+    private byte[] encodeMetadata(long offset, long originalOffset) {
+        Kafka.KafkaMetadata kafkaMetadata = dataMessageHandle.newKafkaMetadata(offset, originalOffset, lastResubmittedConfigOffset);
+        return Common.Metadata.newBuilder().setValue(kafkaMetadata.toByteString()).build().toByteArray();
+    }
 
-        KafkaTopicPartitionInfo topicPartitionInfo = new KafkaTopicPartitionInfo(topic, partitionID);
-        List<KafkaBrokerInfo> seeds = new ArrayList<KafkaBrokerInfo>();
-        Map serversMap= (HashMap)map.get(ConsenterConstants.SERVER);
-        for(int i=1;i<=serversMap.size();i++){
-            String index="brokerHost"+i;
-            String host=(String)serversMap.get(index);
-            String[] hostArray=host.split(":");
-            KafkaBrokerInfo kafkaInfo=new KafkaBrokerInfo(hostArray[0],Integer.parseInt(hostArray[1]));
-            seeds.add(kafkaInfo);
-        }
+    /**
+     * 批次超时, 在切块消息发送线程中向分区发送下一个区块的切块消息
+     */
+    private void sendTimeToCut() {
+        long blockNumber = lastCutBlockNumber + 1;
         try {
-            kafkaSimpleConsumer.run((long)maxReads, topicPartitionInfo, seeds);
-        } catch (Exception e) {
-            e.printStackTrace();
+            //不等待确认; 丢失时其他消息或下一次超时会再次触发切块
+            producer().sendAsync(topicPartition, dataMessageHandle.newTimeToCutMessage(blockNumber));
+            log.debug(String.format("[group: %s] Sent time-to-cut message for block %d", support.getGroupId(), blockNumber));
+        } catch (ConsenterException e) {
+            log.error(String.format("[group: %s] Send time-to-cut message for block %d failed: %s", support.getGroupId(),
+                    blockNumber, e.getMessage()));
         }
-
     }
 
-   //关掉生产者，消费者
-    //halt方法调用该方法
-    public void closeKafkaObjects(){
-
+    private KafkaProduce producer() throws ConsenterException {
+        KafkaProduce currentProducer = producer;
+        if (currentProducer == null) {
+            throw new ConsenterException(String.format("[group: %s] Kafka producer is not available", support.getGroupId()));
+        }
+        return currentProducer;
     }
 
-    //order具体操作
-    public void orderHandle(Common.Envelope env, Long configSeq,Long originalOffset) {
-        //转换Kafka数据类型
-        Kafka.KafkaMessage kafkaMessage=dataMessageHandle.newNormalMessage(env.toByteArray(),configSeq,originalOffset);
-        //调用enqueue()方法
-        enqueue(kafkaMessage);
-
-    }
-    //configure具体操作
-    public void configureHandle(Common.Envelope config, long configSeq,Long originalOffset) {
-        //转换Kafka数据类型
-        Kafka.KafkaMessage kafkaMessage=dataMessageHandle.newConfigMessage(config.toByteArray(),configSeq,originalOffset);
-        //调用enqueue()方法
-        enqueue(kafkaMessage);
+    private long batchTimeout() {
+        return support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig().getBatchTimeout();
     }
 
-    public static void main(String[] args) {
-        Chain cc=new Chain();
-      // cc.start();
-        cc.enqueue(null);
+    /**
+     * 关掉生产者, 消费者
+     */
+    private void closeKafkaObjects() {
+        if (consumer != null) {
+            try {
+                consumer.close();
+            } catch (KafkaException e) {
+                log.warn(String.format("[group: %s] Close Kafka consumer failed: %s", support.getGroupId(), e.getMessage()));
+            }
+            consumer = null;
+        }
+        if (producer != null) {
+            try {
+                producer.close();
+            } catch (KafkaException e) {
+                log.warn(String.format("[group: %s] Close Kafka producer failed: %s", support.getGroupId(), e.getMessage()));
+            }
+            producer = null;
+        }
     }
-
-}
\ No newline at end of file
+}
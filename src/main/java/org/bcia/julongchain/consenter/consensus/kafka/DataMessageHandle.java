@@ -1,5 +1,5 @@
 /**
- * Copyright Dingxuan. All Rights Reserved.
+ * Copyright DingXuan. All Rights Reserved.
  * <p>
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,10 +17,10 @@ package org.bcia.julongchain.consenter.consensus.kafka;
 
 import com.google.protobuf.ByteString;
 import org.bcia.julongchain.protos.consenter.Kafka;
-import org.springframework.beans.factory.annotation.Autowired;
 
 /**
- * 类描述
+ * kafka消息构造
+ * 普通消息和配置消息直接携带信封的序列化字节, 不经过字符串或JSON转换
  *
  * @author yangdong
  * @date 2018/3/19
@@ -29,24 +29,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 public class DataMessageHandle {
 
-    @Autowired
-    private ProducerMessage producerMessage;
-
     //转换kafka连接消息
     public Kafka.KafkaMessage newConnectMessage(){
         Kafka.KafkaMessageConnect.Builder kafkaConectMessage= Kafka.KafkaMessageConnect.newBuilder();
-        kafkaConectMessage.setPayload(null);
         Kafka.KafkaMessage.Builder kafkaBuilder=Kafka.KafkaMessage.newBuilder();
         kafkaBuilder.setConnect(kafkaConectMessage);
         return kafkaBuilder.build();
     }
 
     //转换Enqueue（普通）方法所用消息格式
-    public Kafka.KafkaMessage newNormalMessage(byte [] payload, long configSeq, long originalOffset){
+    public Kafka.KafkaMessage newNormalMessage(ByteString payload, long configSeq, long originalOffset){
 
         // 组织KafkaMessageRegular
         Kafka.KafkaMessageRegular.Builder kafkaRegularBuilder=Kafka.KafkaMessageRegular.newBuilder();
-        kafkaRegularBuilder.setPayload(ByteString.copyFrom(payload));
+        kafkaRegularBuilder.setPayload(payload);
         kafkaRegularBuilder.setConfigSeq(configSeq);
         kafkaRegularBuilder.setOriginalOffset(originalOffset);
         kafkaRegularBuilder.setClass_(Kafka.KafkaMessageRegular.Class.NORMAL);
@@ -58,10 +54,10 @@ public class DataMessageHandle {
     }
 
     //转换Enqueue（配置）方法所用消息格式
-    public Kafka.KafkaMessage newConfigMessage(byte [] config, long configSeq, long originalOffset){
+    public Kafka.KafkaMessage newConfigMessage(ByteString config, long configSeq, long originalOffset){
         // 组织KafkaMessageRegular
         Kafka.KafkaMessageRegular.Builder kafkaRegularBuilder=Kafka.KafkaMessageRegular.newBuilder();
-        kafkaRegularBuilder.setPayload(ByteString.copyFrom(config));
+        kafkaRegularBuilder.setPayload(config);
         kafkaRegularBuilder.setConfigSeq(configSeq);
         kafkaRegularBuilder.setOriginalOffset(originalOffset);
         kafkaRegularBuilder.setClass_(Kafka.KafkaMessageRegular.Class.CONFIG);
@@ -82,13 +78,12 @@ public class DataMessageHandle {
         return kafkaBuilder.build();
     }
 
-    //生产者消息转换
-    public ProducerMessage newProducerMessage(KafkaTopicPartitionInfo kafkaInfo,byte [] pld){
-        producerMessage.setTopic(kafkaInfo.topic);
-        producerMessage.setKey(kafkaInfo.partitionID);
-        producerMessage.setValue(pld);
-        return producerMessage;
+    //转换区块的consenter元数据
+    public Kafka.KafkaMetadata newKafkaMetadata(long lastOffsetPersisted, long lastOriginalOffsetProcessed, long lastResubmittedConfigOffset){
+        Kafka.KafkaMetadata.Builder kafkaMetadataBuilder=Kafka.KafkaMetadata.newBuilder();
+        kafkaMetadataBuilder.setLastOffsetPersisted(lastOffsetPersisted);
+        kafkaMetadataBuilder.setLastOriginalOffsetProcessed(lastOriginalOffsetProcessed);
+        kafkaMetadataBuilder.setLastResubmittedConfigOffset(lastResubmittedConfigOffset);
+        return kafkaMetadataBuilder.build();
     }
-
-
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.kafka;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.consenter.consensus.IConsensusPlugin;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Kafka;
+
+import java.util.List;
+
+/**
+ * kafka排序插件
+ * 为每个群组创建一条kafka链, 从最后一个区块的consenter元数据恢复消费位置
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Shudun
+ */
+public class KafkaConsenter implements IConsensusPlugin {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(KafkaConsenter.class);
+    /**
+     * 群组配置中没有kafka broker时使用的本地配置
+     */
+    private final List<String> defaultBrokers;
+
+    public KafkaConsenter(List<String> defaultBrokers) {
+        this.defaultBrokers = defaultBrokers;
+    }
+
+    @Override
+    public IChain handleChain(ChainSupport consenterSupport, Common.Metadata metadata) throws ConsenterException {
+        long lastOffsetPersisted = -1;
+        long lastOriginalOffsetProcessed = 0;
+        long lastResubmittedConfigOffset = 0;
+        if (metadata != null && !metadata.getValue().isEmpty()) {
+            try {
+                Kafka.KafkaMetadata kafkaMetadata = Kafka.KafkaMetadata.parseFrom(metadata.getValue());
+                lastOffsetPersisted = kafkaMetadata.getLastOffsetPersisted();
+                lastOriginalOffsetProcessed = kafkaMetadata.getLastOriginalOffsetProcessed();
+                lastResubmittedConfigOffset = kafkaMetadata.getLastResubmittedConfigOffset();
+            } catch (InvalidProtocolBufferException e) {
+                throw new ConsenterException(String.format("[group: %s] Ledger may be corrupted: cannot unmarshal consenter metadata in most recent block",
+                        consenterSupport.getGroupId()), e);
+            }
+        }
+
+        List<String> brokers = consenterSupport.getLedgerResources().getMutableResources().getGroupConfig()
+                .getConsenterConfig().getKafkaBrokers();
+        if (brokers == null || brokers.isEmpty()) {
+            brokers = defaultBrokers;
+        }
+        if (brokers == null || brokers.isEmpty()) {
+            throw new ConsenterException(String.format("[group: %s] No Kafka brokers configured", consenterSupport.getGroupId()));
+        }
+        log.info(String.format("[group: %s] Creating Kafka chain, brokers: %s, last offset persisted: %d",
+                consenterSupport.getGroupId(), brokers, lastOffsetPersisted));
+        return new Chain(consenterSupport, String.join(",", brokers), lastOffsetPersisted,
+                lastOriginalOffsetProcessed, lastResubmittedConfigOffset);
+    }
+}
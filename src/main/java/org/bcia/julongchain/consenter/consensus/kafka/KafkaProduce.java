@@ -1,5 +1,5 @@
 /**
- * Copyright Dingxuan. All Rights Reserved.
+ * Copyright DingXuan. All Rights Reserved.
  * <p>
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,19 +15,31 @@
  */
 package org.bcia.julongchain.consenter.consensus.kafka;
 
-import kafka.javaapi.producer.Producer;
-import kafka.producer.KeyedMessage;
-import kafka.producer.ProducerConfig;
-import org.bcia.julongchain.consenter.util.ConsenterConstants;
-import org.bcia.julongchain.consenter.util.YamlLoader;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.protos.consenter.Kafka;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 
 /**
- * 类描述
+ * kafka生产者
+ * 消息以protobuf序列化字节发送; 开启幂等发送, 同一分区的消息按发送顺序写入且重试不会产生重复;
+ * 客户端按linger.ms/batch.size聚合后批量发送, 发送缓冲区满时最多阻塞MAX_BLOCK_MS后拒绝消息;
+ * send等待服务端确认, 多个调用线程的消息仍在同一批次中发送; sendAsync不等待确认
+ * 线程安全, 一条链的各线程共用一个实例
  *
  * @author yangdong
  * @date 2018/3/19
@@ -35,87 +47,123 @@ import java.util.Properties;
  */
 
 public class KafkaProduce {
-    private final Producer<String, String> producer;
-   // public final static String TOPIC = "test2";
-
-
-
-    Map map=(HashMap) YamlLoader.readYamlFile(ConsenterConstants.ORDERER_CONFIG).get(ConsenterConstants.KAFKA);
-
-
-
-    private KafkaProduce(){
-        StringBuffer sbBrokerHost=new StringBuffer();
-        StringBuffer sbZookeeperHost=new StringBuffer();
-
-        Map serversMap= (HashMap)map.get(ConsenterConstants.SERVER);
-        for(int i=1;i<=serversMap.size();i++){
-            String index="brokerHost"+i;
-            StringBuffer host=new StringBuffer((String)serversMap.get(index));
-            sbBrokerHost=sbBrokerHost.append(host);
-        }
-
-        Map zookeeperMap= (HashMap)map.get(ConsenterConstants.ZOOKEEPER);
-        for(int i=1;i<=zookeeperMap.size();i++){
-            String index="ZKHost"+i;
-            StringBuffer host=new StringBuffer((String)zookeeperMap.get(index));
-            sbZookeeperHost=sbZookeeperHost.append(host);
-        }
-
+    private static JulongChainLog log = JulongChainLogFactory.getLog(KafkaProduce.class);
+    /**
+     * 消息在客户端等待聚合的最长时间(毫秒)
+     */
+    private static final int LINGER_MS = 5;
+    /**
+     * 单个分区批次的最大字节数
+     */
+    private static final int BATCH_SIZE = 256 * 1024;
+    /**
+     * 发送缓冲区满或元数据不可用时send的最长阻塞时间(毫秒)
+     */
+    private static final int MAX_BLOCK_MS = 1000;
+    /**
+     * 关闭时等待未确认消息的最长时间(毫秒), 超时后放弃未确认的消息
+     */
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final KafkaProducer<byte[], byte[]> producer;
+
+    public KafkaProduce(String bootstrapServers) {
         Properties props = new Properties();
-
-        // 此处配置的是kafka的broker地址:端口列表
-        // props.put("metadata.broker.list", "192.168.128.129:9092");
-        props.put("zookeeper.connect", sbZookeeperHost.toString());//声明zk
-        props.put("metadata.broker.list",sbBrokerHost.toString());// 声明kafka broker
-        //配置value的序列化类
-        props.put("serializer.class", "kafka.serializer.StringEncoder");
-        //配置key的序列化类
-        props.put("key.serializer.class", "kafka.serializer.StringEncoder");
-
-        //request.required.acks
-        //0, which means that the producer never waits for an acknowledgement from the broker (the same behavior as 0.7). This option provides the lowest latency but the weakest durability guarantees (some data will be lost when a server fails).
-        //1, which means that the producer gets an acknowledgement after the leader replica has received the data. This option provides better durability as the client waits until the server acknowledges the request as successful (only messages that were written to the now-dead leader but not yet replicated will be lost).
-        //-1, which means that the producer gets an acknowledgement after all in-sync replicas have received the data. This option provides the best durability, we guarantee that no messages will be lost as long as at least one in sync replica remains.
-        props.put("request.required.acks","-1");
-
-        producer = new Producer<String, String>(new ProducerConfig(props));
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        //幂等发送要求acks=all、重试次数大于0且每个连接未确认的请求不超过5个
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.RETRIES_CONFIG, Integer.MAX_VALUE);
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, LINGER_MS);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, BATCH_SIZE);
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, MAX_BLOCK_MS);
+        producer = new KafkaProducer<>(props);
     }
 
-
-    //发送消息到kafka服务端
-    public void send(ProducerMessage message){
-        String key = String.valueOf(message.getKey());
-        String dataStr=new String(message.getValue());
-        producer.send(new KeyedMessage<String, String>(message.getTopic(),key ,dataStr));
+    /**
+     * 发送消息并等待服务端确认(acks=all)
+     * 用于普通消息及配置消息, 确认后broadcast才向客户端返回SUCCESS
+     *
+     * @param topicPartition 链对应的分区
+     * @param message
+     * @param timeoutMillis  等待确认的最长时间(毫秒)
+     * @return 消息写入的位置
+     * @throws ConsenterException 发送失败或超时未确认
+     */
+    public RecordMetadata send(TopicPartition topicPartition, Kafka.KafkaMessage message, long timeoutMillis)
+            throws ConsenterException {
+        Future<RecordMetadata> future = sendAsync(topicPartition, message);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new ConsenterException(String.format("[topic: %s] Can not send %s message: %s",
+                    topicPartition.topic(), message.getTypeCase(), e.getCause().getMessage()), e.getCause());
+        } catch (TimeoutException e) {
+            throw new ConsenterException(String.format("[topic: %s] Send %s message not acknowledged in %dms",
+                    topicPartition.topic(), message.getTypeCase(), timeoutMillis), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConsenterException(e);
+        }
     }
 
-
-
-
-    /*public void produce() {
-        int messageNo = 1;
-        final int COUNT = 101;
-
-        int messageCount = 0;
-        while (messageNo < COUNT) {
-            String key = String.valueOf(messageNo);
-            String data = "Hello kafka message luis :" + key;
-            producer.send(new KeyedMessage<String, String>(TOPIC, key ,data));
-
-            System.out.println(data);
-            messageNo ++;
-            messageCount++;
+    /**
+     * 异步发送消息到kafka服务端, 不等待确认, 发送失败记录日志
+     *
+     * @param topicPartition 链对应的分区
+     * @param message
+     * @return 发送结果
+     * @throws ConsenterException 发送缓冲区已满或生产者已关闭
+     */
+    public Future<RecordMetadata> sendAsync(TopicPartition topicPartition, Kafka.KafkaMessage message) throws ConsenterException {
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(topicPartition.topic(),
+                topicPartition.partition(), null, message.toByteArray());
+        Future<RecordMetadata> future;
+        try {
+            future = producer.send(record, (metadata, exception) -> {
+                if (exception != null) {
+                    log.error(String.format("[topic: %s] Send %s message failed: %s", topicPartition.topic(),
+                            message.getTypeCase(), exception.getMessage()), exception);
+                }
+            });
+        } catch (KafkaException e) {
+            throw new ConsenterException(String.format("[topic: %s] Can not send %s message: %s",
+                    topicPartition.topic(), message.getTypeCase(), e.getMessage()), e);
         }
+        //缓冲区满、元数据超时等错误不抛出, 而是返回已失败的结果
+        if (future.isDone()) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new ConsenterException(String.format("[topic: %s] Can not send %s message: %s",
+                        topicPartition.topic(), message.getTypeCase(), e.getCause().getMessage()), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConsenterException(e);
+            }
+        }
+        return future;
+    }
 
-        System.out.println("Producer端一共产生了" + messageCount + "条消息！");
-    }*/
-
-  /*  public static void main( String[] args )
-    {
-        new KafkaProduce().produce();
-    }*/
-  public static void main(String[] args) {
-      KafkaProduce kk=new KafkaProduce();
-  }
+    /**
+     * 关闭生产者, 至多阻塞CLOSE_TIMEOUT_MS
+     * 服务端不可达时幂等生产者的发送线程一直等待获取producerId, KafkaProducer.close在强制关闭后仍会无限等待该线程,
+     * 因此在守护线程中关闭; 发送线程在服务端恢复后自行退出
+     */
+    public void close() {
+        Thread closer = new Thread(() -> producer.close(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS), "kafka-producer-closer");
+        closer.setDaemon(true);
+        closer.start();
+        try {
+            closer.join(CLOSE_TIMEOUT_MS + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (closer.isAlive()) {
+            log.warn("Kafka producer did not close in time, broker may not be available");
+        }
+    }
 }
@@ -16,31 +16,30 @@
 package org.bcia.julongchain.consenter.consensus.singleton;
 
 import com.google.protobuf.InvalidProtocolBufferException;
-import org.apache.activemq.thread.SchedulerTimerTask;
 import org.bcia.julongchain.common.exception.ConsenterException;
-import org.bcia.julongchain.common.exception.LedgerException;
-import org.bcia.julongchain.common.exception.PolicyException;
-import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.common.util.ValidateUtils;
-import org.bcia.julongchain.common.util.producer.Consumer;
 import org.bcia.julongchain.common.util.producer.Producer;
+import org.bcia.julongchain.consenter.common.blockcutter.BatchTimer;
 import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
 import org.bcia.julongchain.consenter.consensus.IChain;
 import org.bcia.julongchain.consenter.consensus.IConsensusPlugin;
 import org.bcia.julongchain.consenter.entity.BatchesMes;
+import org.bcia.julongchain.consenter.entity.ConfigMessage;
+import org.bcia.julongchain.consenter.entity.ConfigMsg;
 import org.bcia.julongchain.consenter.entity.Message;
 import org.bcia.julongchain.consenter.entity.NormalMessage;
+import org.bcia.julongchain.consenter.entity.TimeToCutMessage;
 import org.bcia.julongchain.protos.common.Common;
 
-import java.sql.Time;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 
 /**
  * 简单排序插件
+ * 无参构造的实例作为插件注册, 通过handleChain为每个群组创建一条链;
+ * 每条链有独立的有界消息队列和排序线程, 由排序线程依次完成区块剪切和写区块, 各群组之间互不阻塞
  *
  * @author zhangmingyang
  * @Date: 2018/3/7
@@ -48,81 +47,136 @@ import java.util.concurrent.*;
  */
 public class Singleton implements IChain, IConsensusPlugin {
     private static JulongChainLog log = JulongChainLogFactory.getLog(Singleton.class);
+    /**
+     * 入口队列中等待排序的最大消息数, 超出时拒绝新消息, 由broadcast向客户端返回SERVICE_UNAVAILABLE
+     */
+    private static final int MAX_PENDING_MESSAGES = 10000;
+    /**
+     * 队列为超时事件预留的容量, 超时事件不占用入口容量
+     */
+    private static final int TIMER_EVENT_CAPACITY = 64;
+
+    private ChainSupport support;
     private BlockingQueue<Message> blockingQueue;
     private Producer<Message> producer;
-    private Consumer<Message> consumer;
-    private static Singleton instance;
-    private static ChainSupport support;
-    private volatile boolean needDelay;
-
-    public static Singleton getInstance(ChainSupport consenterSupport) {
-        synchronized (Singleton.class) {
-            if (consenterSupport == null) {
-                return instance;
-            } else {
-                support = consenterSupport;
+    /**
+     * 入口队列剩余容量, 普通消息及配置消息入队时获取, 排序线程取出后释放
+     */
+    private Semaphore ingressPermits;
+    /**
+     * 批次超时定时器, 超时事件投递到消息队列, 由排序线程切割批次
+     */
+    private BatchTimer batchTimer;
+    private Thread orderingThread;
+    private volatile boolean halted;
+
+    public Singleton() {
+    }
+
+    public Singleton(ChainSupport consenterSupport) {
+        support = consenterSupport;
+        blockingQueue = new LinkedBlockingQueue<>(MAX_PENDING_MESSAGES + TIMER_EVENT_CAPACITY);
+        ingressPermits = new Semaphore(MAX_PENDING_MESSAGES);
+        producer = new Producer<Message>(blockingQueue);
+        //超时回调运行在所有链共用的调度线程中, 只做不阻塞的入队
+        batchTimer = new BatchTimer(generation -> {
+            if (!blockingQueue.offer(new TimeToCutMessage(generation))) {
+                log.warn(String.format("[group: %s] Message queue is full, dropping batch timeout event",
+                        support.getGroupId()));
             }
-            return instance;
-        }
+        });
+        orderingThread = new Thread(this::orderLoop, "singleton-" + consenterSupport.getGroupId());
+        orderingThread.setDaemon(true);
     }
 
     @Override
-    public void order(Common.Envelope env, long configSeq) {
+    public IChain handleChain(ChainSupport consenterSupport, Common.Metadata metadata) throws ConsenterException {
+        return new Singleton(consenterSupport);
     }
 
     @Override
-    public void configure(Common.Envelope config, long configSeq) {
+    public void order(Common.Envelope env, long configSeq) throws ConsenterException {
+        enqueue(new NormalMessage(configSeq, env));
     }
 
     @Override
-    public void waitReady() {
-        return;
+    public void configure(Common.Envelope config, long configSeq) throws ConsenterException {
+        enqueue(new ConfigMessage(configSeq, config));
     }
 
     @Override
-    public void start() {
-        consumer.start();
+    public boolean isAcceptable() {
+        return !halted && ingressPermits.availablePermits() > 0;
     }
 
     @Override
-    public void halt() {
+    public void waitReady() {
+        return;
     }
 
     @Override
-    public IChain handleChain(ChainSupport consenterSupport, Common.Metadata metadata) throws ConsenterException {
-        return new Singleton(consenterSupport);
+    public void start() {
+        log.info(String.format("[group: %s] Starting singleton chain", support.getGroupId()));
+        orderingThread.start();
     }
 
-
-    public Singleton() {
+    @Override
+    public void halt() {
+        halted = true;
+        orderingThread.interrupt();
     }
 
-
-    public Singleton(ChainSupport consenterSupport) {
-        support = consenterSupport;
-        instance = this;
-        blockingQueue = new LinkedBlockingQueue<>();
-        producer = new Producer<Message>(blockingQueue);
-        consumer = new Consumer<Message>(blockingQueue) {
-            @Override
-            public boolean consume(Message message) {
+    /**
+     * 排序线程主循环, 链停止后退出
+     */
+    private void orderLoop() {
+        try {
+            while (!halted) {
+                Message message = blockingQueue.take();
                 try {
                     doProcess(message);
                 } catch (ConsenterException e) {
                     log.error(e.getMessage());
+                } catch (RuntimeException e) {
+                    log.error(e.getMessage(), e);
+                } finally {
+                    if (!(message instanceof TimeToCutMessage)) {
+                        ingressPermits.release();
+                    }
                 }
-                return true;
             }
-        };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batchTimer.stop();
+            log.info(String.format("[group: %s] Singleton chain halted", support.getGroupId()));
+        }
     }
 
     /**
-     * 区块处理
+     * 区块处理, 只在排序线程中调用
      *
      * @param message
      * @throws ConsenterException
      */
-    public void doProcess(Message message) throws ConsenterException {
+    void doProcess(Message message) throws ConsenterException {
+
+        if (message instanceof TimeToCutMessage) {
+            //忽略已停止或已重新启动的定时器的超时
+            if (!batchTimer.isCurrent(((TimeToCutMessage) message).getGeneration())) {
+                return;
+            }
+            batchTimer.stop();
+            Common.Envelope[] batch = support.getCutter().cut();
+            if (batch.length == 0) {
+                log.warn("Batch timer expired with no pending requests, this might indicate a bug");
+                return;
+            }
+            log.debug("Batch timer expired, creating block");
+            Common.Block block = support.createNextBlock(batch);
+            support.writeBlock(block, null);
+            return;
+        }
 
         long seq = support.getSequence();
 
@@ -137,75 +191,58 @@ public class Singleton implements IChain, IConsensusPlugin {
             }
             BatchesMes batchesMes = support.getCutter().ordered(message.getMessage());
             Common.Envelope[][] batches = batchesMes.getMessageBatches();
-            if (batches == null && !needDelay) {
-                needDelay = true;
-                Timer timer = new Timer();
-                timer.schedule(new TimerTask() {
-                    @Override
-                    public void run() {
-
-                        if (needDelay) {
-                            needDelay = false;
-                            Common.Envelope[] batch = support.getCutter().cut();
-                            if (null == batch || batch.length == 0) {
-                                log.warn("Batch timer expired with no pending requests, this might indicate a bug");
-                                return;
-                            }
-                            log.debug("Batch timer expired, creating block");
-                            Common.Block block = support.createNextBlock(batch);
-                            support.writeBlock(block, null);
-                            return;
-                        }
-                    }
-                }, support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig().getBatchTimeout());
-
-            }
-            if (batches == null) {
-
-            } else {
+            if (batches != null) {
                 for (Common.Envelope[] env : batches) {
-                    log.info("Ready to cut the batches....");
+                    log.debug("Ready to cut the batches....");
                     Common.Block block = support.createNextBlock(env);
                     support.writeBlock(block, null);
-                    log.info("Write the Block finished");
-                }
-                if (batches.length > 0) {
-                    needDelay = false;
+                    log.debug("Write the Block finished");
                 }
             }
+            //有待处理消息时启动定时器, 待处理消息已全部切割时停止
+            if (batchTimer.isRunning() && !batchesMes.isPending()) {
+                batchTimer.stop();
+            } else if (!batchTimer.isRunning() && batchesMes.isPending()) {
+                batchTimer.start(support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig().getBatchTimeout());
+            }
 
         } else {
+            Common.Envelope config = message.getMessage();
             if (message.getConfigSeq() < seq) {
-                try {
-                    support.getProcessor().processConfigMsg(message.getMessage());
-                } catch (ConsenterException e) {
-                    log.error(e.getMessage());
-                    throw new ConsenterException(e);
-                    //return;
-                }
+                //配置已更新, 按最新配置重新校验
+                ConfigMsg configMsg = support.getProcessor().processConfigMsg(config);
+                config = configMsg.getConfig();
             }
+            //配置区块只包含配置交易, 先将待处理消息写为一个区块
             Common.Envelope[] batch = support.getCutter().cut();
             if (batch.length != 0) {
                 Common.Block block = support.createNextBlock(batch);
                 support.writeBlock(block, null);
-            } else {
-                Common.Block block = support.createNextBlock(new Common.Envelope[]{message.getMessage()});
-                support.writeConfigBlock(block, null);
             }
-            needDelay = false;
+            Common.Block block = support.createNextBlock(new Common.Envelope[]{config});
+            support.writeConfigBlock(block, null);
+            batchTimer.stop();
         }
 
     }
 
     /**
-     * 消息放入队列
+     * 普通消息及配置消息入队, 入口队列已满时不等待, 直接拒绝
      *
      * @param message
-     * @return
-     * @throws ValidateException
+     * @throws ConsenterException
      */
-    public boolean pushToQueue(Message message) throws ValidateException {
-        ValidateUtils.isNotNull(message, "message can not be null");
-        return producer.produce(message);
+    private void enqueue(Message message) throws ConsenterException {
+        if (halted) {
+            throw new ConsenterException(String.format("[group: %s] Singleton chain is halted", support.getGroupId()));
+        }
+        if (!ingressPermits.tryAcquire()) {
+            throw new ConsenterException(String.format("[group: %s] Singleton ingress queue is full, pending messages: %d",
+                    support.getGroupId(), MAX_PENDING_MESSAGES));
+        }
+        if (!producer.produce(message)) {
+            ingressPermits.release();
+            throw new ConsenterException(String.format("[group: %s] Can not put message into Singleton queue", support.getGroupId()));
+        }
     }
 }
@@ -0,0 +1,36 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.entity;
+
+/**
+ * 批次超时消息, 由批次定时器投递到链的消息队列, 由排序线程切割批次
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class TimeToCutMessage extends Message {
+    private long generation;
+
+    public TimeToCutMessage(long generation) {
+        super(0, null);
+        this.generation = generation;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+}
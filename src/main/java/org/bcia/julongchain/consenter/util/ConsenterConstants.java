@@ -44,6 +44,8 @@ public class ConsenterConstants {
 
     public static final String TIMEWONDW = "timeWindow";
 
+    public static final String READ_AHEAD_BLOCKS = "readAheadBlocks";
+
     public static final String ISCONFIG = "isConfig";
     public static final String GROUPHEADER = "groupHeader";
     public static final String CHAINSUPPORT = "chainsupport";
@@ -15,6 +15,9 @@
  */
 package org.bcia.julongchain.consenter.util;
 
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Grpc;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
 import io.grpc.ServerCallHandler;
@@ -29,6 +32,11 @@ import java.util.concurrent.atomic.AtomicReference;
  * @company Dingxuan
  */
 public class RequestHeadersInterceptor {
+    /**
+     * 当前调用的客户端地址
+     */
+    public static final Context.Key<String> REMOTE_ADDRESS = Context.key("remoteAddress");
+
     /**
      * Capture the request attributes. Useful for testing ServerCalls.
      * {@link ServerCall#getAttributes()}
@@ -47,4 +55,21 @@ public class RequestHeadersInterceptor {
         };
     }
 
+    /**
+     * 将客户端地址记录到调用的Context中, 服务方法内通过REMOTE_ADDRESS.get()读取
+     */
+    public static ServerInterceptor remoteAddressInterceptor() {
+        return new ServerInterceptor() {
+            @Override
+            public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+                    ServerCall<ReqT, RespT> call,
+                    Metadata requestHeaders,
+                    ServerCallHandler<ReqT, RespT> next) {
+                Context context = Context.current().withValue(REMOTE_ADDRESS,
+                        String.valueOf(call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR)));
+                return Contexts.interceptCall(context, call, requestHeaders, next);
+            }
+        };
+    }
+
 }
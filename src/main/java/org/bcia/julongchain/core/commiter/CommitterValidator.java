@@ -30,6 +30,8 @@ import org.bcia.julongchain.common.util.proto.BlockUtils;
 import org.bcia.julongchain.core.common.sysscprovider.SmartContractInstance;
 import org.bcia.julongchain.core.common.validation.MsgValidation;
 import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
+import org.bcia.julongchain.core.node.NodeConfig;
+import org.bcia.julongchain.core.node.NodeConfigFactory;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.ProposalPackage;
 import org.bcia.julongchain.protos.node.ProposalResponsePackage;
@@ -37,9 +39,17 @@ import org.bcia.julongchain.protos.node.SmartContractPackage;
 import org.bcia.julongchain.protos.node.TransactionPackage;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Committer节点校验器
+ * 区块内各交易的解析、签名校验、交易id查重及VSSC校验在验证线程池中并行执行, 结果按交易序号收集,
+ * 与交易顺序相关的重复交易id标记及智能合约升级冲突检查随后顺序执行.
+ * 配置交易会更新群组配置, 在调用线程上按交易顺序验证并应用, 其后的交易在配置应用后才开始验证
  *
  * @author zhouhui
  * @date 2018/05/23
@@ -48,13 +58,24 @@ import java.util.*;
 public class CommitterValidator implements ICommitterValidator {
     private static JulongChainLog log = JulongChainLogFactory.getLog(CommitterValidator.class);
 
+    /**
+     * 所有群组共用的交易验证线程池, 大小为1时顺序验证
+     */
+    private static final int VALIDATOR_POOL_SIZE = resolvePoolSize();
+    private static volatile ExecutorService validatorPool;
+
     private ICommitterSupport committerSupport;
     private IVsscValidator vsscValidator;
+    private int validatorPoolSize;
 
     public CommitterValidator(ICommitterSupport committerSupport) {
-        this.committerSupport = committerSupport;
+        this(committerSupport, new VsscValidator(committerSupport), VALIDATOR_POOL_SIZE);
+    }
 
-        this.vsscValidator = new VsscValidator(committerSupport);
+    CommitterValidator(ICommitterSupport committerSupport, IVsscValidator vsscValidator, int validatorPoolSize) {
+        this.committerSupport = committerSupport;
+        this.vsscValidator = vsscValidator;
+        this.validatorPoolSize = validatorPoolSize;
     }
 
     @Override
@@ -79,11 +100,10 @@ public class CommitterValidator implements ICommitterValidator {
         Map<Integer, SmartContractInstance> txInvokedSCInstances = new HashMap<>();
         Map<Integer, SmartContractInstance> txUpgradedSCInstances = new HashMap<>();
 
-        BlockValidationResult result = new BlockValidationResult();
+        BlockValidationResult[] results = validateTxs(block, txCount);
         for (int i = 0; i < txCount; i++) {
-            BlockValidationRequest request = new BlockValidationRequest(block, block.getData().getData(i)
-                    .toByteArray(), i, this);
-            validateTx(request, result);
+            BlockValidationResult result = results[i];
+            txValidationFlags.setFlag(i, result.getTxValidationCode());
 
             if (result.getTxValidationCode().equals(TransactionPackage.TxValidationCode.VALID)) {
                 txIdArray[i] = result.getTxId();
@@ -111,6 +131,126 @@ public class CommitterValidator implements ICommitterValidator {
         return newBlockBuilder.build();
     }
 
+    /**
+     * 验证区块内的每一笔交易, 结果按交易序号排列.
+     * 配置交易之前的交易全部验证完成后, 在调用线程上验证并应用配置交易, 再继续验证其后的交易,
+     * 结果与顺序验证一致
+     *
+     * @param block
+     * @param txCount
+     * @return
+     * @throws ValidateException
+     */
+    private BlockValidationResult[] validateTxs(Common.Block block, int txCount) throws ValidateException {
+        BlockValidationResult[] results = new BlockValidationResult[txCount];
+        if (txCount == 1 || validatorPoolSize <= 1) {
+            for (int i = 0; i < txCount; i++) {
+                results[i] = validateTx(block, i);
+            }
+            return results;
+        }
+
+        int start = 0;
+        for (int i = 0; i < txCount; i++) {
+            if (isConfigTx(block, i)) {
+                validateTxsInPool(block, start, i, results);
+                results[i] = validateTx(block, i);
+                start = i + 1;
+            }
+        }
+        validateTxsInPool(block, start, txCount, results);
+        return results;
+    }
+
+    /**
+     * 在验证线程池中并行验证[from, to)区间内的交易
+     *
+     * @param block
+     * @param from
+     * @param to
+     * @param results
+     * @throws ValidateException
+     */
+    private void validateTxsInPool(Common.Block block, int from, int to, BlockValidationResult[] results)
+            throws ValidateException {
+        if (to - from <= 1) {
+            for (int i = from; i < to; i++) {
+                results[i] = validateTx(block, i);
+            }
+            return;
+        }
+
+        ExecutorService pool = getValidatorPool();
+        List<Future<BlockValidationResult>> futures = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            int txIndex = i;
+            futures.add(pool.submit(() -> validateTx(block, txIndex)));
+        }
+
+        try {
+            for (int i = from; i < to; i++) {
+                results[i] = futures.get(i - from).get();
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new ValidateException("Interrupted while validating block " + block.getHeader().getNumber());
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            log.error(e.getMessage(), e);
+            throw new ValidateException("Validate block " + block.getHeader().getNumber() + " failed: " + e.getCause()
+                    .getMessage());
+        }
+    }
+
+    /**
+     * 是否为配置交易, 无法解析的交易由后续验证标记为无效
+     *
+     * @param block
+     * @param txIndex
+     * @return
+     */
+    private boolean isConfigTx(Common.Block block, int txIndex) {
+        try {
+            Common.Envelope envelope = Common.Envelope.parseFrom(block.getData().getData(txIndex));
+            Common.Payload payload = Common.Payload.parseFrom(envelope.getPayload());
+            Common.GroupHeader groupHeader = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+            return groupHeader.getType() == Common.HeaderType.CONFIG_VALUE;
+        } catch (InvalidProtocolBufferException e) {
+            return false;
+        }
+    }
+
+    private BlockValidationResult validateTx(Common.Block block, int txIndex) {
+        BlockValidationRequest request = new BlockValidationRequest(block, block.getData().getData(txIndex)
+                .toByteArray(), txIndex, this);
+        BlockValidationResult result = new BlockValidationResult();
+        validateTx(request, result);
+        return result;
+    }
+
+    private static int resolvePoolSize() {
+        NodeConfig.Node node = NodeConfigFactory.getNodeConfig().getNode();
+        int poolSize = node == null ? 0 : node.getValidatorPoolSize();
+        return poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ExecutorService getValidatorPool() {
+        if (validatorPool == null) {
+            synchronized (CommitterValidator.class) {
+                if (validatorPool == null) {
+                    AtomicInteger threadNum = new AtomicInteger(0);
+                    validatorPool = Executors.newFixedThreadPool(VALIDATOR_POOL_SIZE, r -> {
+                        Thread t = new Thread(r, "committer-validator-" + threadNum.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    });
+                }
+            }
+        }
+        return validatorPool;
+    }
+
     private TxValidationFlags invalidTxsForUpgradeSC(Map<Integer, SmartContractInstance> txInvokedSCInstances,
                                                      Map<Integer, SmartContractInstance> txUpgradedSCInstances,
                                                      TxValidationFlags txValidationFlags) {
@@ -197,6 +337,7 @@ public class CommitterValidator implements ICommitterValidator {
     private void validateTx(BlockValidationRequest request, BlockValidationResult result) {
         if (request.getData() == null) {
             result.setTxIndex(request.getTxIndex());
+            result.setTxValidationCode(TransactionPackage.TxValidationCode.NIL_ENVELOPE);
             return;
         }
 
@@ -223,6 +364,8 @@ public class CommitterValidator implements ICommitterValidator {
                 validateTxObjs[3];
         ProposalResponsePackage.ProposalResponsePayload proposalResponsePayload = (ProposalResponsePackage
                 .ProposalResponsePayload) validateTxObjs[4];
+        TransactionPackage.SmartContractActionPayload actionPayload = (TransactionPackage.SmartContractActionPayload)
+                validateTxObjs[5];
 
         if (!chainExists(groupHeader.getGroupId())) {
             result.setTxIndex(request.getTxIndex());
@@ -249,7 +392,7 @@ public class CommitterValidator implements ICommitterValidator {
                 }
 
                 TransactionPackage.TxValidationCode txValidationCode = vsscValidator.vsscValidateTx(groupHeader,
-                        extension, request.getData(), proposalResponsePayload);
+                        extension, request.getData(), proposalResponsePayload, actionPayload);
                 if (!txValidationCode.equals(TransactionPackage.TxValidationCode.VALID)) {
                     result.setTxIndex(request.getTxIndex());
                     result.setTxValidationCode(TransactionPackage.TxValidationCode.INVALID_OTHER_REASON);
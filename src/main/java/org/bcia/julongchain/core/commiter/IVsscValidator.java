@@ -28,9 +28,20 @@ import org.bcia.julongchain.protos.node.TransactionPackage;
  * @company Dingxuan
  */
 public interface IVsscValidator {
+    /**
+     * 校验背书交易, 使用默认VSSC的智能合约在进程内直接校验背书策略, 自定义VSSC通过智能合约调用校验
+     *
+     * @param groupHeader             已解析的群组头部
+     * @param extension               已解析的智能合约头部扩展
+     * @param envelopeBytes           交易信封, 仅在调用自定义VSSC时使用
+     * @param proposalResponsePayload 已解析的提案响应负载
+     * @param actionPayload           已解析的智能合约动作负载, 包含背书
+     * @return
+     */
     TransactionPackage.TxValidationCode vsscValidateTx(Common.GroupHeader groupHeader,
                                                        ProposalPackage.SmartContractHeaderExtension extension,
                                                        byte[] envelopeBytes,
                                                        ProposalResponsePackage.ProposalResponsePayload
-                                                               proposalResponsePayload);
+                                                               proposalResponsePayload,
+                                                       TransactionPackage.SmartContractActionPayload actionPayload);
 }
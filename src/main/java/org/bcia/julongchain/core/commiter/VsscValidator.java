@@ -33,7 +33,9 @@ import org.bcia.julongchain.core.ledger.IQueryExecutor;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.CollHashedRwSet;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.NsRwSet;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.core.ledger.sceventmgmt.SmartContractDataCache;
 import org.bcia.julongchain.core.smartcontract.SmartContractExecutor;
+import org.bcia.julongchain.core.ssc.vssc.EndorsementPolicyValidator;
 import org.bcia.julongchain.node.common.helper.SpecHelper;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.*;
@@ -67,7 +69,9 @@ public class VsscValidator implements IVsscValidator {
                                                               ProposalPackage.SmartContractHeaderExtension extension,
                                                               byte[] envelopeBytes,
                                                               ProposalResponsePackage.ProposalResponsePayload
-                                                                      proposalResponsePayload) {
+                                                                      proposalResponsePayload,
+                                                              TransactionPackage.SmartContractActionPayload
+                                                                      actionPayload) {
         ProposalPackage.SmartContractAction action = null;
         try {
             ValidateUtils.isNotNull(proposalResponsePayload.getExtension(), "Extension can not be null");
@@ -161,12 +165,10 @@ public class VsscValidator implements IVsscValidator {
                     return TransactionPackage.TxValidationCode.EXPIRED_SMARTCONTRACT;
                 }
 
-                try {
-                    vsscValidateTxForSC(envelopeBytes, groupHeader.getTxId(), groupHeader.getGroupId(), vsscInstance
-                            .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy);
-                } catch (SmartContractException e) {
-                    log.warn("VSSC validate fail");
-                    return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+                TransactionPackage.TxValidationCode txValidationCode = validateEndorsement(groupHeader, namespace,
+                        envelopeBytes, actionPayload, vsscInstance, policy);
+                if (txValidationCode != TransactionPackage.TxValidationCode.VALID) {
+                    return txValidationCode;
                 }
             }
         } else {
@@ -186,18 +188,55 @@ public class VsscValidator implements IVsscValidator {
             SmartContractInstance vsscInstance = (SmartContractInstance) infos[1];
             byte[] policy = (byte[]) infos[2];
 
-            try {
-                vsscValidateTxForSC(envelopeBytes, groupHeader.getTxId(), groupHeader.getGroupId(), vsscInstance
-                        .getSmartContractName(), vsscInstance.getSmartContractVersion(), policy);
-            } catch (SmartContractException e) {
-                log.warn("VSSC validate fail");
-                return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+            TransactionPackage.TxValidationCode txValidationCode = validateEndorsement(groupHeader, scName,
+                    envelopeBytes, actionPayload, vsscInstance, policy);
+            if (txValidationCode != TransactionPackage.TxValidationCode.VALID) {
+                return txValidationCode;
             }
         }
 
         return TransactionPackage.TxValidationCode.VALID;
     }
 
+    /**
+     * 校验背书策略
+     * 默认VSSC直接在进程内校验已解析的背书, 不需要重新解析交易;
+     * 自定义VSSC以及需要LSSC专项校验(依赖智能合约桩读取状态)的交易仍通过智能合约调用校验
+     *
+     * @param groupHeader
+     * @param namespace
+     * @param envelopeBytes
+     * @param actionPayload
+     * @param vsscInstance
+     * @param policy
+     * @return
+     */
+    private TransactionPackage.TxValidationCode validateEndorsement(Common.GroupHeader groupHeader, String namespace,
+                                                                   byte[] envelopeBytes,
+                                                                   TransactionPackage.SmartContractActionPayload
+                                                                           actionPayload,
+                                                                   SmartContractInstance vsscInstance, byte[] policy) {
+        if (actionPayload != null && CommConstant.VSSC.equals(vsscInstance.getSmartContractName())
+                && !CommConstant.LSSC.equals(namespace)) {
+            return EndorsementPolicyValidator.validate(groupHeader.getGroupId(), groupHeader.getTxId(),
+                    actionPayload, policy);
+        }
+
+        ProposalResponsePackage.Response response = null;
+        try {
+            response = vsscValidateTxForSC(envelopeBytes, groupHeader.getTxId(), groupHeader.getGroupId(),
+                    vsscInstance.getSmartContractName(), vsscInstance.getSmartContractVersion(), policy);
+        } catch (SmartContractException e) {
+            log.warn("VSSC validate fail");
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+        if (response == null || response.getStatus() != Common.Status.SUCCESS_VALUE) {
+            log.warn("VSSC validate fail: " + (response == null ? "no response" : response.getMessage()));
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+        return TransactionPackage.TxValidationCode.VALID;
+    }
+
     private Object[] getInfoForValidate(String groupId, String scId) throws ValidateException,
             InvalidProtocolBufferException, LedgerException {
         SmartContractInstance scInstance = new SmartContractInstance();
@@ -205,7 +244,7 @@ public class VsscValidator implements IVsscValidator {
         byte[] policy = null;
 
         if (!sysSmartContractProvider.isSysSmartContract(scId)) {
-            SmartContractDataPackage.SmartContractData scData = getSCData(scId);
+            SmartContractDataPackage.SmartContractData scData = getSCData(groupId, scId);
             scInstance.setSmartContractName(scData.getName());
             scInstance.setSmartContractVersion(scData.getVersion());
 
@@ -227,11 +266,17 @@ public class VsscValidator implements IVsscValidator {
         return new Object[]{scInstance, vsscInstance, policy};
     }
 
-    private SmartContractDataPackage.SmartContractData getSCData(String scId) throws ValidateException,
-            LedgerException, InvalidProtocolBufferException {
+    private SmartContractDataPackage.SmartContractData getSCData(String groupId, String scId) throws
+            ValidateException, LedgerException, InvalidProtocolBufferException {
+        SmartContractDataPackage.SmartContractData cached = SmartContractDataCache.get(groupId, scId);
+        if (cached != null) {
+            return cached;
+        }
+
         INodeLedger nodeLedger = committerSupport.getLedger();
         ValidateUtils.isNotNull(nodeLedger, "NodeLedger can not be null");
 
+        long generation = SmartContractDataCache.generation(groupId);
         IQueryExecutor queryExecutor = null;
         byte[] bytes = null;
         try {
@@ -249,6 +294,7 @@ public class VsscValidator implements IVsscValidator {
         ValidateUtils.isNotNull(scData.getVssc(), "LSSC's vssc can not be null");
         ValidateUtils.isNotNull(scData.getPolicy(), "LSSC's policy can not be null");
 
+        SmartContractDataCache.put(groupId, scId, scData, generation);
         return scData;
     }
 
@@ -243,6 +243,7 @@ public class MsgValidation {
         }
 
         ProposalResponsePackage.ProposalResponsePayload proposalResponsePayload = null;
+        TransactionPackage.SmartContractActionPayload actionPayload = null;
         switch (groupHeader.getType()) {
             case Common.HeaderType.ENDORSER_TRANSACTION_VALUE:
                 try {
@@ -254,7 +255,9 @@ public class MsgValidation {
                 }
 
                 try {
-                    proposalResponsePayload = validateEndorserTransaction(payload);
+                    Object[] endorserTxObjs = validateEndorserTransaction(payload);
+                    proposalResponsePayload = (ProposalResponsePackage.ProposalResponsePayload) endorserTxObjs[0];
+                    actionPayload = (TransactionPackage.SmartContractActionPayload) endorserTxObjs[1];
                 } catch (JulongChainException e) {
                     log.error(e.getMessage(), e);
                     return new Object[]{TransactionPackage.TxValidationCode.INVALID_ENDORSER_TRANSACTION};
@@ -284,10 +287,18 @@ public class MsgValidation {
         }
 
         return new Object[]{TransactionPackage.TxValidationCode.VALID, payload, groupHeader, extension,
-                proposalResponsePayload};
+                proposalResponsePayload, actionPayload};
     }
 
-    private static ProposalResponsePackage.ProposalResponsePayload validateEndorserTransaction(Common.Payload payload)
+    /**
+     * 校验背书交易
+     *
+     * @param payload
+     * @return [0]ProposalResponsePayload, [1]SmartContractActionPayload
+     * @throws JulongChainException
+     * @throws InvalidProtocolBufferException
+     */
+    private static Object[] validateEndorserTransaction(Common.Payload payload)
             throws JulongChainException, InvalidProtocolBufferException {
         ValidateUtils.isNotNull(payload, "Payload can not be null");
         ValidateUtils.isNotNull(payload.getHeader(), "Payload.header can not be null");
@@ -325,10 +336,10 @@ public class MsgValidation {
                 throw new ValidateException("Wrong proposalResponsePayload.proposalHash");
             }
 
-            return proposalResponsePayload;
+            return new Object[]{proposalResponsePayload, actionPayload};
         }
 
-        return null;
+        return new Object[]{null, null};
     }
 
     private static void validateConfigTransaction(Common.Payload payload) throws ValidateException {
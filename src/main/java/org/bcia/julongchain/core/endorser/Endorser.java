@@ -49,6 +49,10 @@ import org.springframework.stereotype.Component;
 @Component
 public class Endorser implements IEndorserServer {
     private static JulongChainLog log = JulongChainLogFactory.getLog(Endorser.class);
+    /**
+     * 模拟与区块提交冲突时最多模拟的次数
+     */
+    private static final int MAX_SIMULATION_ATTEMPTS = 3;
 
     private IEndorserSupport endorserSupport;
 
@@ -269,56 +273,71 @@ public class Endorser implements IEndorserServer {
         //获取SmartContractInvocationSpec
         SmartContractPackage.SmartContractInvocationSpec invocationSpec = getInvocationSpec(proposal);
 
-        ITxSimulator txSimulator = endorserSupport.getTxSimulator(groupId, txId);
+        for (int attempt = 1; ; attempt++) {
+            ITxSimulator txSimulator = endorserSupport.getTxSimulator(groupId, txId);
+            //模拟器持有提交屏障的读锁, 任何情况下都要释放
+            try {
+                String version = null;
+                ISmartContractDefinition scDefinition = null;
+                if (endorserSupport.isSysSmartContract(scName)) {
+                    //TODO:从配置文件中读取?
+                    version = CommConstant.METADATA_VERSION;
+                } else {
+                    scDefinition = endorserSupport.getSmartContractDefinition(groupId, scName, txId, signedProposal,
+                            proposal, txSimulator);
+                    version = scDefinition.getSmartContractVersion();
+
+                    //TODO：检查实例化策略
+                    endorserSupport.checkInstantiationPolicy(scName, version, scDefinition);
+                }
 
-        String version = null;
-        ISmartContractDefinition scDefinition = null;
-        if (endorserSupport.isSysSmartContract(scName)) {
-            //TODO:从配置文件中读取?
-            version = CommConstant.METADATA_VERSION;
-        } else {
-            scDefinition = endorserSupport.getSmartContractDefinition(groupId, scName, txId, signedProposal,
-                    proposal, txSimulator);
-            version = scDefinition.getSmartContractVersion();
+                Object[] objs = callSmartContract(groupId, scName, version, txId, signedProposal, proposal, invocationSpec);
+                ProposalResponsePackage.Response response = (ProposalResponsePackage.Response) objs[0];
+                SmartContractEventPackage.SmartContractEvent scEvent = (SmartContractEventPackage.SmartContractEvent) objs[1];
 
-            //TODO：检查实例化策略
-            endorserSupport.checkInstantiationPolicy(scName, version, scDefinition);
-        }
+                if (response.getStatus() >= Common.Status.BAD_REQUEST_VALUE) {
+                    throw new NodeException("Call smart contract fail");
+                }
 
-        Object[] objs = callSmartContract(groupId, scName, version, txId, signedProposal, proposal, invocationSpec);
-        ProposalResponsePackage.Response response = (ProposalResponsePackage.Response) objs[0];
-        SmartContractEventPackage.SmartContractEvent scEvent = (SmartContractEventPackage.SmartContractEvent) objs[1];
+                byte[] publicSimulateBytes = new byte[0];
+                if (groupId != null && txSimulator != null) {
+                    TxSimulationResults simulationResults = null;
+                    try {
+                        simulationResults = txSimulator.getTxSimulationResults();
+                    } catch (LedgerException e) {
+                        log.error(e.getMessage(), e);
+                        throw new NodeException("Get TxSimulation fail");
+                    }
 
-        if (response.getStatus() >= Common.Status.BAD_REQUEST_VALUE) {
-            throw new NodeException("Call smart contract fail");
-        }
+                    //乐观模式下模拟期间有区块提交, 读到的状态可能不一致, 重新模拟
+                    //最后一次仍冲突时直接使用结果, 提交时的MVCC校验会使读到过期版本的交易无效
+                    if (txSimulator.isCommitRaced() && attempt < MAX_SIMULATION_ATTEMPTS) {
+                        log.info("Simulation of tx " + txId + " raced with a block commit, retry " + attempt);
+                        continue;
+                    }
 
-        byte[] publicSimulateBytes = new byte[0];
-        if (groupId != null && txSimulator != null) {
-            TxSimulationResults simulationResults = null;
-            try {
-                simulationResults = txSimulator.getTxSimulationResults();
-            } catch (LedgerException e) {
-                log.error(e.getMessage(), e);
-                throw new NodeException("Get TxSimulation fail");
-            }
+                    if (simulationResults.getPrivateReadWriteSet() != null) {
+                        if (scIDBuilder.getName().equals(CommConstant.LSSC)) {
+                            log.error("Should not be lssc here");
+                            throw new NodeException("Should not be lssc here");
+                        }
 
-            if (simulationResults.getPrivateReadWriteSet() != null) {
-                if (scIDBuilder.getName().equals(CommConstant.LSSC)) {
-                    log.error("Should not be lssc here");
-                    throw new NodeException("Should not be lssc here");
-                }
+                        distributor.distributePrivateData(groupId, txId, simulationResults.getPrivateReadWriteSet());
+                    }
 
-                distributor.distributePrivateData(groupId, txId, simulationResults.getPrivateReadWriteSet());
-            }
+                    Rwset.TxReadWriteSet readWriteSet = simulationResults.getPublicReadWriteSet();
+                    if (readWriteSet != null) {
+                        publicSimulateBytes = readWriteSet.toByteArray();
+                    }
+                }
 
-            Rwset.TxReadWriteSet readWriteSet = simulationResults.getPublicReadWriteSet();
-            if (readWriteSet != null) {
-                publicSimulateBytes = readWriteSet.toByteArray();
+                return new Object[]{response, publicSimulateBytes, scDefinition, scEvent};
+            } finally {
+                if (txSimulator != null) {
+                    txSimulator.done();
+                }
             }
         }
-
-        return new Object[]{response, publicSimulateBytes, scDefinition, scEvent};
     }
 
     /**
@@ -125,4 +125,9 @@ public class MockTxSimulator implements ITxSimulator {
     public void setPrivateData(String namespace, String collection, String key, byte[] value) throws LedgerException {
 
     }
+
+    @Override
+    public boolean isCommitRaced() {
+        return false;
+    }
 }
@@ -29,5 +29,14 @@ import java.util.List;
  */
 public interface IStateListener {
 
+   /**
+    * 区块验证后、状态提交前调用, 此时状态数据库中仍为提交前的值
+    */
    void handleStateUpdates(String ledgerID, List<KvRwset.KVWrite> stateUpdates) throws JulongChainException;
+
+   /**
+    * 包含该命名空间更新的区块写入状态数据库后调用
+    */
+   default void stateCommitDone(String ledgerID) {
+   }
 }
@@ -58,6 +58,13 @@ public interface ITxSimulator extends IQueryExecutor {
      */
     TxSimulationResults getTxSimulationResults() throws LedgerException;
 
+    /**
+     * 乐观模式下, 模拟期间是否有区块提交
+     * 为true时模拟结果可能基于不一致的状态, 应重新模拟
+     * 在done()或getTxSimulationResults()之后调用
+     */
+    boolean isCommitRaced();
+
     /**
      * 设置private data
      */
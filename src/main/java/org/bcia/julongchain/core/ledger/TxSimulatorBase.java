@@ -104,4 +104,9 @@ public abstract class TxSimulatorBase implements ITxSimulator {
     public void done() {
 
     }
+
+    @Override
+    public boolean isCommitRaced() {
+        return false;
+    }
 }
@@ -31,6 +31,7 @@ import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.core.ledger.ledgerstorage.Store;
 import org.bcia.julongchain.core.ledger.sceventmgmt.ISmartContractLifecycleEventListener;
 import org.bcia.julongchain.core.ledger.sceventmgmt.ScEventManager;
+import org.bcia.julongchain.core.ledger.sceventmgmt.SmartContractDataCache;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.common.Ledger;
 import org.bcia.julongchain.protos.node.TransactionPackage;
@@ -98,6 +99,12 @@ public class KvLedger implements INodeLedger {
 		//循环添加需要恢复的db
 		for(IRecoverable recoverable : recoverables){
 			long firstBlockNum = recoverable.shouldRecover();
+			//提交状态前区块已落盘, 状态数据库超过区块存储说明区块文件被外部损坏, 重新提交会得到不同的验证结果
+			if(recoverable == txtmgmt && firstBlockNum - 1 > lastAvailableBlockNum){
+				throw new LedgerException(String.format("State database of ledger [%s] is at block [%d], beyond the last block [%d] " +
+						"in block storage, remove the state and history databases to rebuild them from the block files",
+						ledgerID, firstBlockNum - 1, lastAvailableBlockNum));
+			}
 			if(firstBlockNum  == -1 || firstBlockNum - 1 != lastAvailableBlockNum){
 				Recoverer recoverer = new Recoverer(firstBlockNum, recoverable);
 				recoverers.add(recoverer);
@@ -318,6 +325,7 @@ public class KvLedger implements INodeLedger {
 	 */
 	@Override
 	public void close() {
+		SmartContractDataCache.invalidateGroup(ledgerID);
 		blockStore.shutdown();
 		try {
 			txtmgmt.shutdown();
@@ -339,6 +347,8 @@ public class KvLedger implements INodeLedger {
 		//提交区块私有信息
 		blockStore.commitWithPvtData(blockAndPvtData);
 		log.info(String.format("Group %s: Committed block %d to storage", ledgerID, blockNo));
+		//状态数据库不能先于区块落盘, 否则崩溃后区块文件回退时状态中已包含丢失的区块
+		blockStore.sync();
 		log.debug(String.format("Group %s: Committing block %d transaction to state db", ledgerID, blockNo));
 		//提交stateDB数据
 		txtmgmt.commit();
@@ -38,14 +38,14 @@ public class HistoryLevelDBProvider implements IHistoryDBProvider {
 
     public HistoryLevelDBProvider() throws LedgerException{
         String dbPath = LedgerConfig.getHistoryLevelDBPath();
-        this.provider = new LevelDBProvider(dbPath);
+        this.provider = new LevelDBProvider(dbPath, LedgerConfig.isLevelDBPerGroup());
         log.debug(String.format("Create historyDB using dbPath = %s", this.provider.getDBPath()));
     }
 
     @Override
     public IHistoryDB getDBHandle(String dbName) throws LedgerException {
-	    provider = ((LevelDBProvider) provider).getDBHandle(dbName);
-        return new HistoryLevelDB(provider, dbName);
+	    IDBProvider handle = ((LevelDBProvider) provider).getDBHandle(dbName);
+        return new HistoryLevelDB(handle, dbName);
     }
 
     @Override
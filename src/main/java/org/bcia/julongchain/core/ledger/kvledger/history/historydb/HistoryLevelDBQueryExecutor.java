@@ -19,6 +19,8 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.IResultsIterator;
 import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+import org.bcia.julongchain.common.ledger.util.IDBProvider;
+import org.bcia.julongchain.common.ledger.util.leveldbhelper.LevelDBProvider;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.core.ledger.kvledger.history.IHistoryQueryExecutor;
@@ -53,9 +55,12 @@ public class HistoryLevelDBQueryExecutor implements IHistoryQueryExecutor {
             throw new LedgerException(msg);
         }
         byte[] compositeStartKey = HistoryDBHelper.constructPartialCompositeHistoryKey(namespace, key, false);
-        DBIterator iterator = (DBIterator) historyDB.getProvider().getIterator((compositeStartKey));
+        IDBProvider provider = historyDB.getProvider();
+        DBIterator iterator = (DBIterator) provider.getIterator((compositeStartKey));
+        //独立leveldb中的key不含ledgerID前缀
+        boolean ledgerIDPrefixed = !(provider instanceof LevelDBProvider) || !((LevelDBProvider) provider).isDbPerGroup();
 
-	    return new HistoryScanner(compositeStartKey, namespace, key, iterator, blockStore, ledgerID);
+	    return new HistoryScanner(compositeStartKey, namespace, key, iterator, blockStore, ledgerID, ledgerIDPrefixed);
     }
     private byte[] constructHistoryKey(byte[] key){
     	byte[] sep = new byte[]{0x00};
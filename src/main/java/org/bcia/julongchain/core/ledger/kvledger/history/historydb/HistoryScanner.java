@@ -57,6 +57,10 @@ public class HistoryScanner implements IResultsIterator {
     private long blockNum;
     private long tranNum;
     private String ledgerID;
+    /**
+     * leveldb中的key是否以ledgerID为前缀(共享leveldb)
+     */
+    private boolean ledgerIDPrefixed;
 
     public HistoryScanner(byte[] compositePartialKey,
                           String nameSpace,
@@ -64,6 +68,17 @@ public class HistoryScanner implements IResultsIterator {
                           DBIterator dbItr,
                           IBlockStore blockStore,
                           String ledgerID){
+        this(compositePartialKey, nameSpace, key, dbItr, blockStore, ledgerID, true);
+    }
+
+    public HistoryScanner(byte[] compositePartialKey,
+                          String nameSpace,
+                          String key,
+                          DBIterator dbItr,
+                          IBlockStore blockStore,
+                          String ledgerID,
+                          boolean ledgerIDPrefixed){
+        this.ledgerIDPrefixed = ledgerIDPrefixed;
         this.compositePartialKey = compositePartialKey;
         this.nameSpace = nameSpace;
         this.key = key;
@@ -78,7 +93,8 @@ public class HistoryScanner implements IResultsIterator {
             return null;
         }
         Map.Entry<byte[], byte[]> entry = dbItr.next();
-        byte[] historyKey = HistoryDBHelper.removeLedgerIDFromHistoryKey(ledgerID, entry.getKey());
+        byte[] historyKey = ledgerIDPrefixed ?
+                HistoryDBHelper.removeLedgerIDFromHistoryKey(ledgerID, entry.getKey()) : entry.getKey();
 		String historyKeyStr = new String(historyKey, StandardCharsets.UTF_8);
 		if (!historyKeyContainsKey(historyKeyStr)) {
 			return null;
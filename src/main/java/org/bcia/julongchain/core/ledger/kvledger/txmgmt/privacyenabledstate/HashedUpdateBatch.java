@@ -36,7 +36,7 @@ public class HashedUpdateBatch {
 
     public boolean contains(String ns, String coll, byte[] keyHash){
         NsBatch nsBatch = map.getMap().get(ns);
-        if(ns == null){
+        if(nsBatch == null){
             return false;
         }
         return nsBatch.getBatch().exists(coll, new String(keyHash, StandardCharsets.UTF_8));
@@ -16,7 +16,6 @@ limitations under the License.
 package org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil;
 
 import com.google.protobuf.ByteString;
-import org.apache.commons.lang3.ArrayUtils;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
@@ -142,14 +141,14 @@ public class MerkleTree {
     }
 
     public static byte[] computeCombinedHash(List<byte[]> hashes) throws LedgerException{
-        byte[] combinedHash = new byte[]{};
-        for(byte[] h : hashes){
-			if (h == null) {
-				continue;
-			}
-            combinedHash = ArrayUtils.addAll(combinedHash, h);
+        //没有任何数据时结果为空数组, 而不是空数组的hash
+        int length = 0;
+        for (byte[] h : hashes) {
+            if (h != null) {
+                length += h.length;
+            }
         }
-        return combinedHash.length == 0 ? new byte[]{} : Util.getHashBytes(combinedHash);
+        return length == 0 ? new byte[]{} : Util.getHashBytes(hashes);
     }
 
     public Map<Integer, List<byte[]>> getTree() {
@@ -114,7 +114,7 @@ public class RWSetBuilder {
     private void setPvtCollectionHash(String ns, String coll, ByteString pvtDataProto) throws LedgerException {
         CollHashRwBuilder collHashBuilder = getOrCreateCollHashedRwBuilder(ns, coll);
         //TODO SM3 Hash
-        collHashBuilder.setPvtDataHash(Util.getHashBytes(pvtDataProto.toByteArray()));
+        collHashBuilder.setPvtDataHash(Util.getHashBytes(pvtDataProto));
     }
 
     /**
@@ -71,13 +71,13 @@ public class RangeQueryResultsHelper {
     }
 
     public void processPendingResults() throws LedgerException{
-        byte[] b = serializeKVReads(pendingResults);
+        KvRwset.QueryReads queryReads = serializeKVReads(pendingResults);
         pendingResults.clear();
-        mt.update(Util.getHashBytes(b));
+        mt.update(Util.getHashBytes(queryReads));
     }
 
-    private byte[] serializeKVReads(List<KvRwset.KVRead> list){
-    	return KvRwset.QueryReads.newBuilder().addAllKvReads(list).build().toByteArray();
+    private KvRwset.QueryReads serializeKVReads(List<KvRwset.KVRead> list){
+    	return KvRwset.QueryReads.newBuilder().addAllKvReads(list).build();
     }
 
     public Map.Entry<List<KvRwset.KVRead>, KvRwset.QueryReadsMerkleSummary> done() throws LedgerException{
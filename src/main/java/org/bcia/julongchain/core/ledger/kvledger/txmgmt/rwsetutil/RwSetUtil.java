@@ -177,10 +177,7 @@ public class RwSetUtil {
         ByteString keyHash = ByteString.copyFrom(Util.getHashBytes(key.getBytes()));
         ByteString valueHash = ByteString.EMPTY;
         if (value.size() != 0) {
-            valueHash = ByteString.copyFrom(Util.getHashBytes(value.toByteArray()));
-        }
-        if(value.size() != 0){
-            valueHash = ByteString.copyFrom(Util.getHashBytes(value.toByteArray()));
+            valueHash = ByteString.copyFrom(Util.getHashBytes(value));
         }
         return builder
                 .setKeyHash(keyHash)
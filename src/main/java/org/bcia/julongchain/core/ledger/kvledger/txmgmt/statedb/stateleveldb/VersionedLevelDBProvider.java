@@ -38,14 +38,14 @@ public class VersionedLevelDBProvider implements IVersionedDBProvider {
 
     public VersionedLevelDBProvider() throws LedgerException {
         String dbPath = LedgerConfig.getStateLevelDBPath();
-        this.db = new LevelDBProvider(dbPath);
+        this.db = new LevelDBProvider(dbPath, LedgerConfig.isLevelDBPerGroup());
         log.debug("Create vdb using path " + this.db.getDBPath());
     }
 
     @Override
     public IVersionedDB getDBHandle(String id) throws LedgerException {
-    	this.db = ((LevelDBProvider) db).getDBHandle(id);
-        return new VersionedLevelDB(db, db.getDb().getDbName());
+    	IDBProvider handle = ((LevelDBProvider) db).getDBHandle(id);
+        return new VersionedLevelDB(handle, handle.getDb().getDbName());
     }
 
     @Override
@@ -31,16 +31,20 @@ import org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.ITxManager;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.IValidator;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valimpl.DefaultValidator;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * 交易管理者类
+ * 提交区块时持有写锁, 查询器及模拟器从创建到done()持有读锁, 保证整个模拟读到同一个已提交状态
+ * 查询器及模拟器用完必须调用done(), 否则区块无法提交; 被遗弃的模拟器由TxSimulatorRegistry按存活时间释放
+ * 乐观模式(可选)下模拟器不加锁, 只记录开始时的提交状态, done()时若期间有区块提交则需重新模拟
  *
  * @author sunzongyu
  * @date 2018/04/17
@@ -55,7 +59,12 @@ public class LockBasedTxManager implements ITxManager {
     private UpdateBatch batch;
     private Common.Block currentBlock;
     private Map<String, IStateListener> stateListeners;
-    private static Map<String, LockBasedTxSimulator> txSimulatorMap = new HashMap<>();
+    private final TxSimulatorRegistry simulatorRegistry;
+    /**
+     * 提交屏障, 读共享, 提交独占
+     */
+    private final StampedLock commitLock = new StampedLock();
+    private boolean optimisticSimulation;
 
     public LockBasedTxManager(String ledgerID,
                               IDB db,
@@ -65,34 +74,66 @@ public class LockBasedTxManager implements ITxManager {
         this.db = db;
         this.stateListeners = stateListeners;
         this.validator = new DefaultValidator(this, db);
+        this.optimisticSimulation = LedgerConfig.isOptimisticSimulation();
+        this.simulatorRegistry = new TxSimulatorRegistry(ledgerID, LedgerConfig.getTxSimulatorTTLMillis());
     }
 
 	/**
-	 * 创建新的交易查询器
+	 * 创建新的交易查询器, 正在提交区块时等待提交完成
 	 * @param txid 交易id
 	 */
     @Override
-    public synchronized IQueryExecutor newQueryExecutor(String txid) throws LedgerException {
+    public IQueryExecutor newQueryExecutor(String txid) throws LedgerException {
         return new LockBasedQueryExecutor(this, txid);
     }
 
 	/**
-	 * 创建新的交易模拟器
+	 * 创建新的交易模拟器, 非乐观模式下正在提交区块时等待提交完成
 	 * @param txid 交易id
 	 */
     @Override
-    public synchronized ITxSimulator newTxSimulator(String txid) throws LedgerException {
-	    if (txSimulatorMap.containsKey(txid)) {
-		    log.debug("Contains tx simulator with txid: " + txid);
-		    return txSimulatorMap.get(txid);
-	    } else {
-		    log.debug("Constructing new tx simulator");
-		    LockBasedTxSimulator simulator = new LockBasedTxSimulator(this, txid);
-		    txSimulatorMap.put(txid, simulator);
-		    return simulator;
-	    }
+    public ITxSimulator newTxSimulator(String txid) throws LedgerException {
+	    return simulatorRegistry.getOrCreate(txid, id -> new LockBasedTxSimulator(this, id));
     }
 
+	/**
+	 * 获取提交屏障的读锁, 正在提交时等待
+	 * 读锁不可重入, 持有读锁的线程在释放前不能再创建查询器或模拟器, 否则可能与等待中的提交死锁
+	 */
+	long acquireReadLock() {
+		return commitLock.readLock();
+	}
+
+	/**
+	 * 释放读锁, 可由获取读锁以外的线程调用
+	 */
+	void releaseReadLock(long stamp) {
+		commitLock.unlockRead(stamp);
+	}
+
+	/**
+	 * 记录模拟开始时的提交状态
+	 * 正在提交时返回0, 此时isCommitRaced总是返回true
+	 */
+	long beginSimulation() {
+		return commitLock.tryOptimisticRead();
+	}
+
+	/**
+	 * 自stamp记录后是否有区块开始提交
+	 */
+	boolean isCommitRaced(long stamp) {
+		return !commitLock.validate(stamp);
+	}
+
+	public boolean isOptimisticSimulation() {
+		return optimisticSimulation;
+	}
+
+	public void setOptimisticSimulation(boolean optimisticSimulation) {
+		this.optimisticSimulation = optimisticSimulation;
+	}
+
 	/**
 	 * 验证交易有效性以及准备更新包
 	 */
@@ -150,9 +191,15 @@ public class LockBasedTxManager implements ITxManager {
             if(batch == null){
                 throw new LedgerException("validateAndPrepare() method should have been called before calling commit()");
             }
-            db.applyPrivacyAwareUpdates(batch,
-                    new LedgerHeight(currentBlock.getHeader().getNumber(), (long) (currentBlock.getData().getDataList().size() - 1)));
+            long stamp = commitLock.writeLock();
+            try {
+                db.applyPrivacyAwareUpdates(batch,
+                        new LedgerHeight(currentBlock.getHeader().getNumber(), (long) (currentBlock.getData().getDataList().size() - 1)));
+            } finally {
+                commitLock.unlockWrite(stamp);
+            }
             log.debug("Update committed to state db");
+            invokeCommitDoneListeners(batch);
         } finally {
             clearCache();
             batch = null;
@@ -167,6 +214,7 @@ public class LockBasedTxManager implements ITxManager {
 
     @Override
     public void shutdown() throws LedgerException {
+        simulatorRegistry.close();
         db.close();
     }
 
@@ -203,6 +251,21 @@ public class LockBasedTxManager implements ITxManager {
         }
     }
 
+    /**
+     * 通知更新了对应命名空间的监听器状态已提交
+     */
+    private void invokeCommitDoneListeners(UpdateBatch batch) {
+        if (stateListeners == null) {
+            return;
+        }
+        for (String ns : batch.getPubUpdateBatch().getBatch().getUpdatedNamespaces()) {
+            IStateListener listener = stateListeners.get(ns);
+            if (listener != null) {
+                listener.stateCommitDone(ledgerID);
+            }
+        }
+    }
+
     public String getLedgerID() {
         return ledgerID;
     }
@@ -251,11 +314,14 @@ public class LockBasedTxManager implements ITxManager {
         this.stateListeners = stateListeners;
     }
 
-	public static void setTxSimulatorMap(Map<String, LockBasedTxSimulator> txSimulatorMap) {
-		LockBasedTxManager.txSimulatorMap = txSimulatorMap;
+	public TxSimulatorRegistry getSimulatorRegistry() {
+		return simulatorRegistry;
 	}
 
-	public static Map<String, LockBasedTxSimulator> getTxSimulatorMap() {
-		return txSimulatorMap;
+	/**
+	 * 当前账本存活的交易模拟器数量
+	 */
+	public int getLiveSimulatorCount() {
+		return simulatorRegistry.getLiveCount();
 	}
 }
@@ -143,9 +143,15 @@ public class LockBasedTxSimulator implements ITxSimulator {
 
     @Override
     public void done() {
+		queryExecutor.getHelper().getTxMgr().getSimulatorRegistry().remove(queryExecutor.getTxID(), this);
 		queryExecutor.done();
     }
 
+    @Override
+    public boolean isCommitRaced() {
+        return queryExecutor.getHelper().isCommitRaced();
+    }
+
     public void checkBeforeWrite() throws LedgerException {
         if(pvtdataQueriesPerformed){
             throw new LedgerException(String.format("Tx %s, Transaction has already performed queries on pvt data. Writes are not allowed", queryExecutor.getTxID()));
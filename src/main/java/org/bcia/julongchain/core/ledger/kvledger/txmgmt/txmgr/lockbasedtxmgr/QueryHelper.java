@@ -41,15 +41,48 @@ public class QueryHelper {
     private RWSetBuilder rwSetBuilder;
     private List<ResultsItr> itrs = new ArrayList<>();
     private boolean doneInvoked = false;
+    /**
+     * 乐观模式下不持有读锁, 仅用于会生成读写集的模拟器
+     */
+    private boolean optimistic;
+    /**
+     * 非乐观模式下为读锁, 乐观模式下为模拟开始时的提交状态
+     */
+    private long stamp;
+    private boolean readPerformed = false;
+    private boolean commitRaced = false;
+
+    /**
+     * 状态读取操作
+     */
+    private interface StateReader<T> {
+        T read() throws LedgerException;
+    }
 
     public QueryHelper(LockBasedTxManager txMgr, RWSetBuilder rwSetBuilder) {
         this.txMgr = txMgr;
         this.rwSetBuilder = rwSetBuilder;
+        this.optimistic = rwSetBuilder != null && txMgr.isOptimisticSimulation();
+        //读锁持有到done(), 期间的读取(包括范围迭代)看到同一个已提交状态
+        this.stamp = optimistic ? txMgr.beginSimulation() : txMgr.acquireReadLock();
+    }
+
+    /**
+     * 乐观模式下, 模拟期间是否有区块提交, 在done()时确定
+     * 此时读取到的状态可能不一致, 需要重新模拟
+     */
+    public boolean isCommitRaced() {
+        return commitRaced;
+    }
+
+    private <T> T read(StateReader<T> reader) throws LedgerException {
+        readPerformed = true;
+        return reader.read();
     }
 
     public byte[] getState(String ns, String key) throws LedgerException{
         checkDone();
-        VersionedValue versionedValue = txMgr.getDb().getState(ns, key);
+        VersionedValue versionedValue = read(() -> txMgr.getDb().getState(ns, key));
         if(versionedValue == null){
         	versionedValue = new VersionedValue(null, null);
         }
@@ -61,7 +94,7 @@ public class QueryHelper {
 
     public List<byte[]> getStateMultipleKeys(String ns, List<String> keys) throws LedgerException{
         checkDone();
-        List<VersionedValue> versionedValues = txMgr.getDb().getStateMultipleKeys(ns, keys);
+        List<VersionedValue> versionedValues = read(() -> txMgr.getDb().getStateMultipleKeys(ns, keys));
         List<byte[]> values = new ArrayList<>();
         for (int i = 0; i < versionedValues.size(); i++) {
 			VersionedValue value = versionedValues.get(i);
@@ -75,7 +108,7 @@ public class QueryHelper {
 
     public IResultsIterator getStateRangeScanIterator(String ns, String startKey, String endKey) throws LedgerException{
         checkDone();
-        ResultsItr itr = new ResultsItr(ns, startKey, endKey, txMgr.getDb(), rwSetBuilder, true, LedgerConfig.getMaxDegreeQueryReadsHashing());
+        ResultsItr itr = read(() -> new ResultsItr(ns, startKey, endKey, txMgr.getDb(), rwSetBuilder, true, LedgerConfig.getMaxDegreeQueryReadsHashing()));
         itrs.add(itr);
         return itr;
     }
@@ -85,17 +118,17 @@ public class QueryHelper {
      */
     public IResultsIterator executeQuery(String ns, String query) throws LedgerException {
         checkDone();
-        IResultsIterator dbItr = txMgr.getDb().executeQuery(ns, query);
+        IResultsIterator dbItr = read(() -> txMgr.getDb().executeQuery(ns, query));
         return new QueryResultsItr(dbItr ,rwSetBuilder);
     }
 
     public byte[] getPrivateData(String ns, String coll, String key) throws LedgerException {
         checkDone();
-        VersionedValue versionedValue = txMgr.getDb().getPrivateData(ns, coll, key);
+        VersionedValue versionedValue = read(() -> txMgr.getDb().getPrivateData(ns, coll, key));
         byte[] val = versionedValue.getValue();
         LedgerHeight ver = versionedValue.getHeight();
         byte[] keyHash = Util.getHashBytes(key.getBytes(StandardCharsets.UTF_8));
-        LedgerHeight hashVersion = txMgr.getDb().getKeyHashVersion(ns, coll, keyHash);
+        LedgerHeight hashVersion = read(() -> txMgr.getDb().getKeyHashVersion(ns, coll, keyHash));
         if(!LedgerHeight.areSame(ver, hashVersion)){
             throw new LedgerException(String.format("Private data matching public hash version is not available.Pub version %s. Pvt version %s",
                     ver, hashVersion));
@@ -106,7 +139,7 @@ public class QueryHelper {
 
     public List<byte[]> getPrivateDataMultipleKeys(String ns, String coll, List<String> keys) throws LedgerException {
         checkDone();
-        List<VersionedValue> versionedValues = txMgr.getDb().getPrivateDataMultipleKeys(ns, coll, keys);
+        List<VersionedValue> versionedValues = read(() -> txMgr.getDb().getPrivateDataMultipleKeys(ns, coll, keys));
         List<byte[]> values = new ArrayList<>();
         for (int i = 0; i < versionedValues.size() ; i++) {
             byte[] val = versionedValues.get(i).getValue();
@@ -119,7 +152,7 @@ public class QueryHelper {
 
     public IResultsIterator getPrivateDataRangeScanIterator(String ns, String coll, String startKey, String endKey) throws LedgerException {
         checkDone();
-        IResultsIterator dbitr = txMgr.getDb().getPrivateDataRangeScanIterator(ns, coll, startKey, endKey);
+        IResultsIterator dbitr = read(() -> txMgr.getDb().getPrivateDataRangeScanIterator(ns, coll, startKey, endKey));
         return new PvtdataIResultsItr(ns, coll, dbitr);
     }
 
@@ -128,11 +161,14 @@ public class QueryHelper {
      */
     public IResultsIterator executeQueryOnPrivateData(String ns, String coll, String query) throws LedgerException {
         checkDone();
-        IResultsIterator dbitr = txMgr.getDb().executeQueryOnPrivateData(ns, coll, query);
+        IResultsIterator dbitr = read(() -> txMgr.getDb().executeQueryOnPrivateData(ns, coll, query));
         return new PvtdataIResultsItr(ns, coll, dbitr);
     }
 
-    public void done() throws LedgerException{
+    /**
+     * 模拟器可能同时被调用者及TxSimulatorRegistry的清理线程done(), 读锁只能释放一次
+     */
+    public synchronized void done() throws LedgerException{
         if(doneInvoked){
             return;
         }
@@ -157,8 +193,16 @@ public class QueryHelper {
             }
         } finally {
             doneInvoked = true;
-            for(IResultsIterator itr : itrs){
-                itr.close();
+            try {
+                for (IResultsIterator itr : itrs) {
+                    itr.close();
+                }
+            } finally {
+                if (optimistic) {
+                    commitRaced = readPerformed && txMgr.isCommitRaced(stamp);
+                } else {
+                    txMgr.releaseReadLock(stamp);
+                }
             }
         }
     }
@@ -0,0 +1,201 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.lockbasedtxmgr;
+
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 单个账本的交易模拟器注册表
+ * 同一txid重复获取时返回同一个模拟器, 模拟器done()时移除
+ * 超过存活时间未被访问的模拟器视为被遗弃, 由后台线程调用done()释放
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class TxSimulatorRegistry {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(TxSimulatorRegistry.class);
+
+    /**
+     * 清理间隔下限
+     */
+    private static final long MIN_SWEEP_INTERVAL_MILLIS = 1000;
+    /**
+     * 所有账本共用的清理线程
+     */
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tx-simulator-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+    /**
+     * 所有账本存活的模拟器总数
+     */
+    private static final AtomicInteger TOTAL_LIVE = new AtomicInteger(0);
+
+    private final String ledgerID;
+    private final long ttlMillis;
+    private final ConcurrentMap<String, Entry> simulators = new ConcurrentHashMap<>();
+    private final ScheduledFuture<?> sweepTask;
+
+    /**
+     * 交易模拟器创建接口
+     */
+    interface SimulatorFactory {
+        LockBasedTxSimulator create(String txID);
+    }
+
+    private static class Entry {
+        private final LockBasedTxSimulator simulator;
+        private volatile long lastAccess;
+
+        private Entry(LockBasedTxSimulator simulator) {
+            this.simulator = simulator;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    public TxSimulatorRegistry(String ledgerID, long ttlMillis) {
+        this.ledgerID = ledgerID;
+        this.ttlMillis = ttlMillis;
+        if (ttlMillis > 0) {
+            long interval = Math.max(ttlMillis / 2, MIN_SWEEP_INTERVAL_MILLIS);
+            this.sweepTask = REAPER.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweepTask = null;
+        }
+    }
+
+    /**
+     * 获取txid对应的模拟器, 不存在时创建
+     */
+    LockBasedTxSimulator getOrCreate(String txID, SimulatorFactory factory) {
+        Entry entry = simulators.get(txID);
+        if (entry == null) {
+            //创建模拟器可能等待区块提交, 不能在computeIfAbsent内创建, 否则会阻塞清理线程
+            log.debug("Constructing new tx simulator");
+            Entry created = new Entry(factory.create(txID));
+            entry = simulators.putIfAbsent(txID, created);
+            if (entry == null) {
+                TOTAL_LIVE.incrementAndGet();
+                entry = created;
+            } else {
+                created.simulator.done();
+            }
+        } else {
+            log.debug("Contains tx simulator with txid: " + txID);
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.simulator;
+    }
+
+    /**
+     * 移除模拟器, 仅当注册的仍是该模拟器时移除
+     */
+    void remove(String txID, LockBasedTxSimulator simulator) {
+        Entry entry = simulators.get(txID);
+        if (entry != null && entry.simulator == simulator && simulators.remove(txID, entry)) {
+            TOTAL_LIVE.decrementAndGet();
+        }
+    }
+
+    /**
+     * 释放超过存活时间未被访问的模拟器
+     * @return 释放的模拟器数量
+     */
+    int sweep() {
+        long deadline = System.currentTimeMillis() - ttlMillis;
+        List<Map.Entry<String, Entry>> expired = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : simulators.entrySet()) {
+            if (e.getValue().lastAccess < deadline) {
+                expired.add(e);
+            }
+        }
+        int count = 0;
+        for (Map.Entry<String, Entry> e : expired) {
+            Entry entry = e.getValue();
+            //清理期间可能再次被访问
+            if (entry.lastAccess >= deadline || !simulators.remove(e.getKey(), entry)) {
+                continue;
+            }
+            TOTAL_LIVE.decrementAndGet();
+            count++;
+            try {
+                entry.simulator.done();
+            } catch (RuntimeException ex) {
+                log.error("Can not release abandoned tx simulator " + e.getKey(), ex);
+            }
+        }
+        if (count > 0) {
+            log.warn(String.format("Released %d abandoned tx simulators of ledger [%s], %d still live",
+                    count, ledgerID, simulators.size()));
+        } else {
+            log.debug(String.format("Ledger [%s] live tx simulators: %d", ledgerID, simulators.size()));
+        }
+        return count;
+    }
+
+    /**
+     * 释放所有模拟器并停止清理
+     */
+    void close() {
+        if (sweepTask != null) {
+            sweepTask.cancel(false);
+        }
+        for (String txID : new ArrayList<>(simulators.keySet())) {
+            Entry entry = simulators.remove(txID);
+            if (entry == null) {
+                continue;
+            }
+            TOTAL_LIVE.decrementAndGet();
+            try {
+                entry.simulator.done();
+            } catch (RuntimeException ex) {
+                log.error("Can not release tx simulator " + txID, ex);
+            }
+        }
+    }
+
+    /**
+     * 当前账本存活的模拟器数量
+     */
+    public int getLiveCount() {
+        return simulators.size();
+    }
+
+    /**
+     * 所有账本存活的模拟器数量
+     */
+    public static int getTotalLiveCount() {
+        return TOTAL_LIVE.get();
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+}
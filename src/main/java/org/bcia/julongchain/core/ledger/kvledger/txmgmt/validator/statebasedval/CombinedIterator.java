@@ -132,8 +132,9 @@ public class CombinedIterator implements IResultsIterator {
         if(o2 == null){
             return -1;
         }
-        return ((VersionedKV) o1.getObj()).getCompositeKey().getKey()
-                .compareTo(((VersionedKV) o2.getObj()).getCompositeKey().getKey());
+        //next()只处理-1、0、1
+        return Integer.signum(((VersionedKV) o1.getObj()).getCompositeKey().getKey()
+                .compareTo(((VersionedKV) o2.getObj()).getCompositeKey().getKey()));
     }
 
     private QueryResult serveEndKeyIfNeeded() throws LedgerException {
@@ -41,9 +41,17 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * statedb验证器
+ * 交易数达到并行阈值的区块分两阶段验证:
+ * 1. 批量预取区块内所有读键的已提交版本, 并行验证各交易的读集合与已提交状态是否一致
+ * 2. 按区块顺序检查各交易的读集合是否被之前的有效交易写过, 与顺序验证结果一致
+ * 范围查询的结果可能因之前交易的删除重新一致, 第一阶段的范围查询失败在第二阶段结合区块内更新重新验证
  *
  * @author sunzongyu
  * @date 2018/04/19
@@ -52,10 +60,45 @@ import java.util.Map;
 public class Validator implements InternalValidator {
     private static JulongChainLog log = JulongChainLogFactory.getLog(Validator.class);
 
+    /**
+     * 启用并行验证的最小交易数
+     */
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 32;
+    /**
+     * 每个工作线程分到的任务数
+     */
+    private static final int TASKS_PER_THREAD = 4;
+    private static final ForkJoinPool VALIDATION_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    /**
+     * 第一阶段范围查询验证使用的空更新包
+     */
+    private static final PubUpdateBatch EMPTY_UPDATES = new PubUpdateBatch();
+
     private IDB db;
+    private int parallelThreshold;
+
+    /**
+     * 第一阶段的验证结果
+     * RANGE_CONFLICT: 键读取一致, 但范围查询与已提交状态不一致, 需结合区块内更新重新验证
+     */
+    private enum CommittedResult {
+        VALID, RANGE_CONFLICT, CONFLICT
+    }
+
+    /**
+     * 按下标执行的验证任务
+     */
+    private interface IndexedTask {
+        void run(int index) throws LedgerException;
+    }
 
     public Validator(IDB db) {
+        this(db, PARALLEL_VALIDATION_THRESHOLD);
+    }
+
+    Validator(IDB db, int parallelThreshold) {
         this.db = db;
+        this.parallelThreshold = parallelThreshold;
     }
 
     public void preLoadCommittedVersionOfRSet(Block block) throws LedgerException{
@@ -97,19 +140,232 @@ public class Validator implements InternalValidator {
         if(db.isBulkOptimizable()){
             preLoadCommittedVersionOfRSet(block);
         }
+        if(doMVCCValidation && block.getTxs().size() >= parallelThreshold){
+            return validateInParallel(block);
+        }
         PubAndHashUpdates updates = new PubAndHashUpdates();
         for(Transaction tx : block.getTxs()){
             TransactionPackage.TxValidationCode validationCode = validateEndorserTX(tx.getRwSet(), doMVCCValidation, updates);
-            tx.setValidationCode(validationCode);
-            if(TransactionPackage.TxValidationCode.VALID.equals(validationCode)){
-                log.debug(String.format("Block [%d] Transaction index [%d] txID [%s] marked as valid by state validator", block.getNum(), tx.getIndexInBlock(), tx.getId()));
-                LedgerHeight committingTxHeight = new LedgerHeight(block.getNum(), tx.getIndexInBlock());
-                updates.applyWriteSet(tx.getRwSet(), committingTxHeight);
+            applyValidationCode(block, tx, validationCode, updates);
+        }
+        return updates;
+    }
+
+    private void applyValidationCode(Block block, Transaction tx, TransactionPackage.TxValidationCode validationCode,
+                                     PubAndHashUpdates updates) throws LedgerException {
+        tx.setValidationCode(validationCode);
+        if(TransactionPackage.TxValidationCode.VALID.equals(validationCode)){
+            log.debug(String.format("Block [%d] Transaction index [%d] txID [%s] marked as valid by state validator", block.getNum(), tx.getIndexInBlock(), tx.getId()));
+            LedgerHeight committingTxHeight = new LedgerHeight(block.getNum(), tx.getIndexInBlock());
+            updates.applyWriteSet(tx.getRwSet(), committingTxHeight);
+        } else {
+            log.debug(String.format("Block [%d] Transaction id [%d] TxID [%s] marked as invalid by state validator.", block.getNum(), tx.getIndexInBlock(), tx.getId()));
+        }
+    }
+
+    /**
+     * 并行验证区块
+     * 读集合与已提交状态的比较相互独立, 并行执行
+     * 区块内交易之间的读写依赖按区块顺序处理, 后面的交易读取了之前有效交易写过的键时无效
+     */
+    private PubAndHashUpdates validateInParallel(Block block) throws LedgerException {
+        List<Transaction> txs = block.getTxs();
+        CommittedVersions versions = prefetchCommittedVersions(txs);
+        CommittedResult[] committedResults = new CommittedResult[txs.size()];
+        forEachInParallel(txs.size(),
+                i -> committedResults[i] = validateAgainstCommitted(txs.get(i).getRwSet(), versions));
+
+        PubAndHashUpdates updates = new PubAndHashUpdates();
+        for(int i = 0; i < txs.size(); i++){
+            Transaction tx = txs.get(i);
+            boolean valid = committedResults[i] != CommittedResult.CONFLICT && validateAgainstBlockUpdates(tx.getRwSet(),
+                    updates, committedResults[i] == CommittedResult.RANGE_CONFLICT);
+            TransactionPackage.TxValidationCode validationCode = valid
+                    ? TransactionPackage.TxValidationCode.VALID
+                    : TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT;
+            applyValidationCode(block, tx, validationCode, updates);
+        }
+        return updates;
+    }
+
+    /**
+     * 批量读取区块内所有读键(包括私有数据哈希键)的已提交版本
+     */
+    private CommittedVersions prefetchCommittedVersions(List<Transaction> txs) throws LedgerException {
+        Map<CompositeKey, Integer> pubIndex = new HashMap<>();
+        List<CompositeKey> pubKeys = new ArrayList<>();
+        Map<HashedCompositeKey, Integer> hashedIndex = new HashMap<>();
+        List<HashedCompositeKey> hashedKeys = new ArrayList<>();
+        List<byte[]> hashedKeyBytes = new ArrayList<>();
+        for(Transaction tx : txs){
+            for(NsRwSet nsRwSet : tx.getRwSet().getNsRwSets()){
+                String ns = nsRwSet.getNameSpace();
+                for(KvRwset.KVRead kvRead : nsRwSet.getKvRwSet().getReadsList()){
+                    CompositeKey key = new CompositeKey(ns, kvRead.getKey());
+                    if(!pubIndex.containsKey(key)){
+                        pubIndex.put(key, pubKeys.size());
+                        pubKeys.add(key);
+                    }
+                }
+                for(CollHashedRwSet col : nsRwSet.getCollHashedRwSets()){
+                    for(KvRwset.KVReadHash kvReadHash : col.getHashedRwSet().getHashedReadsList()){
+                        byte[] keyHash = kvReadHash.getKeyHash().toByteArray();
+                        HashedCompositeKey key = hashedKey(ns, col.getCollectionName(), keyHash);
+                        if(!hashedIndex.containsKey(key)){
+                            hashedIndex.put(key, hashedKeys.size());
+                            hashedKeys.add(key);
+                            hashedKeyBytes.add(keyHash);
+                        }
+                    }
+                }
+            }
+        }
+
+        LedgerHeight[] pubVersions = new LedgerHeight[pubKeys.size()];
+        LedgerHeight[] hashedVersions = new LedgerHeight[hashedKeys.size()];
+        forEachInParallel(pubKeys.size() + hashedKeys.size(), i -> {
+            if(i < pubVersions.length){
+                CompositeKey key = pubKeys.get(i);
+                pubVersions[i] = db.getHeight(key.getNamespace(), key.getKey());
             } else {
-                log.debug(String.format("Block [%d] Transaction id [%d] TxID [%s] marked as invalid by state validator.", block.getNum(), tx.getIndexInBlock(), tx.getId()));
+                int j = i - pubVersions.length;
+                HashedCompositeKey key = hashedKeys.get(j);
+                hashedVersions[j] = db.getKeyHashVersion(key.getNamespace(), key.getCollectionName(), hashedKeyBytes.get(j));
+            }
+        });
+        log.debug(String.format("Prefetched committed versions of %d public and %d hashed keys", pubKeys.size(), hashedKeys.size()));
+        return new CommittedVersions(pubIndex, pubVersions, hashedIndex, hashedVersions);
+    }
+
+    /**
+     * 仅与已提交状态比较读集合
+     * 范围查询失败不是最终结果, 之前交易的删除可能使范围查询结果重新一致
+     */
+    private CommittedResult validateAgainstCommitted(TxRwSet txRwSet, CommittedVersions versions) throws LedgerException {
+        CommittedResult result = CommittedResult.VALID;
+        for(NsRwSet nsRwSet : txRwSet.getNsRwSets()){
+            String ns = nsRwSet.getNameSpace();
+            for(KvRwset.KVRead kvRead : nsRwSet.getKvRwSet().getReadsList()){
+                LedgerHeight committedVersion = versions.getPubVersion(new CompositeKey(ns, kvRead.getKey()));
+                if(!LedgerHeight.areSame(committedVersion, RwSetUtil.newVersion(kvRead.getVersion()))){
+                    log.info("Version mismatch for key [" + ns + ":" + kvRead.getKey() + "]");
+                    return CommittedResult.CONFLICT;
+                }
+            }
+            if(result == CommittedResult.VALID
+                    && !validateRangeQueries(ns, nsRwSet.getKvRwSet().getRangeQueriesInfoList(), EMPTY_UPDATES)){
+                result = CommittedResult.RANGE_CONFLICT;
+            }
+            for(CollHashedRwSet col : nsRwSet.getCollHashedRwSets()){
+                for(KvRwset.KVReadHash kvReadHash : col.getHashedRwSet().getHashedReadsList()){
+                    LedgerHeight committedVersion = versions.getHashedVersion(
+                            hashedKey(ns, col.getCollectionName(), kvReadHash.getKeyHash().toByteArray()));
+                    if(!LedgerHeight.areSame(committedVersion, RwSetUtil.newVersion(kvReadHash.getVersion()))){
+                        log.debug(String.format("Version mismatch for key[%s:%s]", ns, col.getCollectionName()));
+                        return CommittedResult.CONFLICT;
+                    }
+                }
             }
         }
-        return updates;
+        return result;
+    }
+
+    /**
+     * 检查读集合是否与区块内之前的有效交易冲突
+     * 命名空间已有更新或第一阶段范围查询失败时, 范围查询按顺序验证的方式重新验证
+     */
+    private boolean validateAgainstBlockUpdates(TxRwSet txRwSet, PubAndHashUpdates updates, boolean recheckRangeQueries)
+            throws LedgerException {
+        for(NsRwSet nsRwSet : txRwSet.getNsRwSets()){
+            String ns = nsRwSet.getNameSpace();
+            for(KvRwset.KVRead kvRead : nsRwSet.getKvRwSet().getReadsList()){
+                if(updates.getPubUpdates().getBatch().exists(ns, kvRead.getKey())){
+                    return false;
+                }
+            }
+            List<KvRwset.RangeQueryInfo> rangeQueries = nsRwSet.getKvRwSet().getRangeQueriesInfoList();
+            boolean nsUpdated = !updates.getPubUpdates().getBatch().getUpdates(ns).isEmpty();
+            if(!rangeQueries.isEmpty() && (nsUpdated || recheckRangeQueries)
+                    && !validateRangeQueries(ns, rangeQueries, updates.getPubUpdates())){
+                return false;
+            }
+            for(CollHashedRwSet col : nsRwSet.getCollHashedRwSets()){
+                for(KvRwset.KVReadHash kvReadHash : col.getHashedRwSet().getHashedReadsList()){
+                    if(updates.getHashedUpdates().contains(ns, col.getCollectionName(), kvReadHash.getKeyHash().toByteArray())){
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将[0, count)分块提交到验证线程池并等待全部完成
+     */
+    private void forEachInParallel(int count, IndexedTask task) throws LedgerException {
+        if(count == 0){
+            return;
+        }
+        int chunk = Math.max(1, count / (VALIDATION_POOL.getParallelism() * TASKS_PER_THREAD));
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(int start = 0; start < count; start += chunk){
+            int from = start;
+            int to = Math.min(count, start + chunk);
+            tasks.add(() -> {
+                for(int i = from; i < to; i++){
+                    task.run(i);
+                }
+                return null;
+            });
+        }
+        try {
+            for(Future<Void> future : VALIDATION_POOL.invokeAll(tasks)){
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LedgerException("Interrupted while validating block", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof LedgerException){
+                throw (LedgerException) cause;
+            }
+            throw new LedgerException(cause);
+        }
+    }
+
+    /**
+     * 哈希键按ISO-8859-1转换为字符串, 不同的哈希值不会映射到同一个键
+     */
+    private static HashedCompositeKey hashedKey(String ns, String coll, byte[] keyHash){
+        return new HashedCompositeKey(ns, coll, new String(keyHash, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 预取的已提交版本, 不存在的键版本为null
+     */
+    private static class CommittedVersions {
+        private final Map<CompositeKey, Integer> pubIndex;
+        private final LedgerHeight[] pubVersions;
+        private final Map<HashedCompositeKey, Integer> hashedIndex;
+        private final LedgerHeight[] hashedVersions;
+
+        private CommittedVersions(Map<CompositeKey, Integer> pubIndex, LedgerHeight[] pubVersions,
+                                  Map<HashedCompositeKey, Integer> hashedIndex, LedgerHeight[] hashedVersions) {
+            this.pubIndex = pubIndex;
+            this.pubVersions = pubVersions;
+            this.hashedIndex = hashedIndex;
+            this.hashedVersions = hashedVersions;
+        }
+
+        private LedgerHeight getPubVersion(CompositeKey key) {
+            return pubVersions[pubIndex.get(key)];
+        }
+
+        private LedgerHeight getHashedVersion(HashedCompositeKey key) {
+            return hashedVersions[hashedIndex.get(key)];
+        }
     }
 
     private TransactionPackage.TxValidationCode validateEndorserTX(TxRwSet txRwSet, boolean doMVCCValidation, PubAndHashUpdates updates) throws LedgerException{
@@ -212,7 +468,7 @@ public class Validator implements InternalValidator {
     }
 
     public boolean validateKVReadHash(String ns, String collectionName, KvRwset.KVReadHash kvReadHash, HashedUpdateBatch updates) throws LedgerException{
-        if(updates.contains(ns, collectionName, kvReadHash.toByteArray())){
+        if(updates.contains(ns, collectionName, kvReadHash.getKeyHash().toByteArray())){
             return false;
         }
         LedgerHeight committedVersion = db.getKeyHashVersion(ns, collectionName, kvReadHash.getKeyHash().toByteArray());
@@ -85,7 +85,7 @@ public class Helper {
         for(Rwset.NsPvtReadWriteSet nsPvtRwSet : pvtData.getWriteSet().getNsPvtRwsetList()){
             for(Rwset.CollectionPvtReadWriteSet collPvtdata : nsPvtRwSet.getCollectionPvtRwsetList()){
                 //TODO SM3 hash
-                ByteString collPvtdataHash = ByteString.copyFrom(Util.getHashBytes(collPvtdata.getRwset().toByteArray()));
+                ByteString collPvtdataHash = ByteString.copyFrom(Util.getHashBytes(collPvtdata.getRwset()));
                 ByteString hashInPubdata = tx.retrieveHash(nsPvtRwSet.getNamespace(), collPvtdata.getCollectionName());
                 if(!collPvtdataHash.equals(hashInPubdata)){
                     throw new LedgerException("Hash of pvt data mismatch corresponding hash in pub data");
@@ -188,11 +188,9 @@ public class Helper {
         try {
             processor.generateSimulationResults(txEnv, sim, synchingState);
             simRes = sim.getTxSimulationResults();
-        } catch (LedgerException e) {
+        } finally {
             sim.done();
-            throw e;
         }
-        sim.done();
         return simRes.getPublicReadWriteSet();
     }
 
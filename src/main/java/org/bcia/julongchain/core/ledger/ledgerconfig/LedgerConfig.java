@@ -16,9 +16,11 @@ limitations under the License.
 package org.bcia.julongchain.core.ledger.ledgerconfig;
 
 
+import org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage.Config;
 import org.bcia.julongchain.core.node.NodeConfigFactory;
 
 import java.io.File;
+import java.util.Map;
 
 /**
  * 账本配置
@@ -45,13 +47,42 @@ public class LedgerConfig {
     private static final String DEFAULT_ROOT_DIR = NodeConfigFactory.getNodeConfig().getNode().getFileSystemPath();
     private static String ROOT_DIR = DEFAULT_ROOT_DIR;
     private static final int DEFAULT_MAX_BLOCKFILE_SIZE = 64 * 1024 * 1024;
+    private static final int DEFAULT_TX_SIMULATOR_TTL_SECONDS = 300;
     private static int MAX_BLOCKFILE_SIZE;
+    private static final String CONF_SYNC_EVERY_N_BLOCKS = "syncEveryNBlocks";
+    private static final String CONF_SYNC_INTERVAL_MILLIS = "syncIntervalMillis";
+    private static final String CONF_MAX_OPEN_READ_FILES = "maxOpenReadFiles";
+    private static final String CONF_MMAP_SEALED_FILES = "mmapSealedFiles";
+    private static final String CONF_BLOCK_CACHE_SIZE = "blockCacheSize";
+    private static final String CONF_INDEX_REBUILD_THREADS = "indexRebuildThreads";
+    private static final String CONF_LEVELDB_PER_GROUP = "levelDBPerGroup";
     private static final int MAX_BATCH_SIZE = Integer.valueOf(NodeConfigFactory.getNodeConfig().getLedger().getState().getCouchDBConfig().get("maxBatchUpdateSize"));
 
     public static boolean isCouchDBEnable(){
 	    return NodeConfigFactory.getNodeConfig().getLedger().getState().getStateDatabase().toLowerCase().contains("couchdb");
     }
 
+    /**
+     * 交易模拟是否使用乐观模式
+     * lock: 每次读取持有提交屏障的读锁; optimistic: 读取不加锁, 与提交冲突时重新模拟
+     */
+    public static boolean isOptimisticSimulation(){
+        String mode = NodeConfigFactory.getNodeConfig().getLedger().getState().getSimulationMode();
+        return mode != null && "optimistic".equalsIgnoreCase(mode.trim());
+    }
+
+    /**
+     * 交易模拟器存活时间(毫秒), 超过该时间未被访问的模拟器将被释放
+     * 配置单位为秒, 未配置时使用默认值, 小于0时不释放
+     */
+    public static long getTxSimulatorTTLMillis(){
+        int ttl = NodeConfigFactory.getNodeConfig().getLedger().getState().getTxSimulatorTTL();
+        if (ttl == 0) {
+            return DEFAULT_TX_SIMULATOR_TTL_SECONDS * 1000L;
+        }
+        return ttl < 0 ? 0 : ttl * 1000L;
+    }
+
     public static boolean isHistoryDBEnabled(){
 	    return NodeConfigFactory.getNodeConfig().getLedger().getHistory().get("enableHistoryDatabase");
     }
@@ -104,6 +135,73 @@ public class LedgerConfig {
         MAX_BLOCKFILE_SIZE = maxBlockfileSize;
     }
 
+	/**
+	 * 区块文件每写入N个区块执行一次fsync
+	 */
+	public static int getBlockfileSyncEveryNBlocks() {
+		String value = getBlockchainConfig(CONF_SYNC_EVERY_N_BLOCKS);
+		return value == null ? Config.DEFAULT_SYNC_EVERY_N_BLOCKS : Integer.parseInt(value);
+	}
+
+	/**
+	 * 区块文件距上次fsync超过该毫秒数时执行fsync
+	 */
+	public static long getBlockfileSyncIntervalMillis() {
+		String value = getBlockchainConfig(CONF_SYNC_INTERVAL_MILLIS);
+		return value == null ? Config.DEFAULT_SYNC_INTERVAL_MILLIS : Long.parseLong(value);
+	}
+
+	/**
+	 * 读取区块时最多同时打开的区块文件数量
+	 */
+	public static int getBlockfileMaxOpenReadFiles() {
+		String value = getBlockchainConfig(CONF_MAX_OPEN_READ_FILES);
+		return value == null ? Config.DEFAULT_MAX_OPEN_READ_FILES : Integer.parseInt(value);
+	}
+
+	/**
+	 * 已写满的区块文件是否映射到内存中读取
+	 */
+	public static boolean isBlockfileMmapEnabled() {
+		String value = getBlockchainConfig(CONF_MMAP_SEALED_FILES);
+		return value == null || Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * 每个账本已解码区块缓存的容量(字节)
+	 */
+	public static long getBlockCacheSize() {
+		String value = getBlockchainConfig(CONF_BLOCK_CACHE_SIZE);
+		return value == null ? Config.DEFAULT_BLOCK_CACHE_SIZE : Long.parseLong(value);
+	}
+
+	/**
+	 * 重建区块索引时并行扫描区块文件的线程数
+	 */
+	public static int getIndexRebuildThreads() {
+		String value = getBlockchainConfig(CONF_INDEX_REBUILD_THREADS);
+		return value == null ? Config.DEFAULT_INDEX_REBUILD_THREADS : Integer.parseInt(value);
+	}
+
+	/**
+	 * 区块索引、状态库、历史库是否为每个群组使用独立的leveldb
+	 * 默认关闭, 已有数据按ledgerID前缀存放在共享leveldb中, 开启后无法读取
+	 */
+	public static boolean isLevelDBPerGroup() {
+		String value = getBlockchainConfig(CONF_LEVELDB_PER_GROUP);
+		return value != null && Boolean.parseBoolean(value);
+	}
+
+	private static String getBlockchainConfig(String key) {
+		Map<String, String> blockchain = NodeConfigFactory.getNodeConfig().getLedger().getBlockchain();
+		if (blockchain == null) {
+			return null;
+		}
+		//yaml中的数字可能被解析为Integer
+		Object value = blockchain.get(key);
+		return value == null ? null : String.valueOf(value).trim();
+	}
+
 	public static int getMaxBatchSize() {
 		return MAX_BATCH_SIZE;
 	}
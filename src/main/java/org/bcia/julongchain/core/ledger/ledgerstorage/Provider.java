@@ -48,8 +48,15 @@ public class Provider {
         };
         IndexConfig indexConfig = new IndexConfig(attrsToIndex);
         //文件系统初始化参数
-		this.blkStoreProvider =
-				new FsBlockStoreProvider(new Config(LedgerConfig.getBlockStorePath(), LedgerConfig.getMaxBlockfileSize()), indexConfig);
+		Config blkStoreConfig = new Config(LedgerConfig.getBlockStorePath(), LedgerConfig.getMaxBlockfileSize());
+		blkStoreConfig.setSyncEveryNBlocks(LedgerConfig.getBlockfileSyncEveryNBlocks());
+		blkStoreConfig.setSyncIntervalMillis(LedgerConfig.getBlockfileSyncIntervalMillis());
+		blkStoreConfig.setMaxOpenReadFiles(LedgerConfig.getBlockfileMaxOpenReadFiles());
+		blkStoreConfig.setMmapSealedFiles(LedgerConfig.isBlockfileMmapEnabled());
+		blkStoreConfig.setBlockCacheSize(LedgerConfig.getBlockCacheSize());
+		blkStoreConfig.setIndexRebuildThreads(LedgerConfig.getIndexRebuildThreads());
+		blkStoreConfig.setLevelDBPerGroup(LedgerConfig.isLevelDBPerGroup());
+		this.blkStoreProvider = new FsBlockStoreProvider(blkStoreConfig, indexConfig);
         //pvtdata初始化
         this.pvtDataProvider = new PvtDataProvider();
     }
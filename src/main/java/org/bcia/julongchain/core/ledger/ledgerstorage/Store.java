@@ -87,6 +87,11 @@ public class Store implements IBlockStore {
         return blkStorage.retrieveTxValidationCodeByTxID(txID);
     }
 
+    @Override
+    public void sync() throws LedgerException {
+        blkStorage.sync();
+    }
+
     @Override
     public void shutdown() {
 
@@ -15,8 +15,13 @@
  */
 package org.bcia.julongchain.core.ledger.leveldb;
 
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.Options;
+import org.iq80.leveldb.Snapshot;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
 import org.iq80.leveldb.impl.DbImpl;
 
 import java.io.File;
@@ -24,19 +29,59 @@ import java.io.IOException;
 
 /**
  * 重写LevelDB，增加close方法
+ * 记录写入耗时, 关闭时输出统计信息
  *
  * @author wanliangbing
  * @date 2018/4/26
  * @company Dingxuan
  */
 public class LevelDB extends DbImpl implements DB {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(LevelDB.class);
+
+    private final LevelDBStats stats;
 
     public LevelDB(Options options, File databaseDir) throws IOException {
         super(options, databaseDir);
+        this.stats = new LevelDBStats(databaseDir);
+    }
+
+    @Override
+    public Snapshot put(byte[] key, byte[] value, WriteOptions options) {
+        long start = System.nanoTime();
+        try {
+            return super.put(key, value, options);
+        } finally {
+            stats.recordWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Snapshot delete(byte[] key, WriteOptions options) {
+        long start = System.nanoTime();
+        try {
+            return super.delete(key, options);
+        } finally {
+            stats.recordWrite(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Snapshot write(WriteBatch updates, WriteOptions options) {
+        long start = System.nanoTime();
+        try {
+            return super.write(updates, options);
+        } finally {
+            stats.recordWrite(System.nanoTime() - start);
+        }
+    }
+
+    public LevelDBStats getStats() {
+        return stats;
     }
 
     @Override
     public void close() {
+        log.info("Closing leveldb: " + stats);
         LevelDBUtil.removeDb(this);
         super.close();
     }
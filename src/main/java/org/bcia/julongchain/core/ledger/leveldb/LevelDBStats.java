@@ -0,0 +1,136 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.leveldb;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个leveldb的统计信息
+ * 磁盘占用按数据库目录中的文件计算, 写入耗时在每次写入时记录
+ * 所用的leveldb实现不提供leveldb.stats等属性, 无法区分合并造成的阻塞与其他原因(如同步写入的fsync)造成的慢写入
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class LevelDBStats {
+    /**
+     * 单次写入超过该时间视为慢写入
+     */
+    public static final long SLOW_WRITE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final String TABLE_SUFFIX = ".ldb";
+    private static final String LEGACY_TABLE_SUFFIX = ".sst";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final File dbDir;
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final AtomicLong maxWriteNanos = new AtomicLong();
+    private final AtomicLong slowWrites = new AtomicLong();
+
+    public LevelDBStats(File dbDir) {
+        this.dbDir = dbDir;
+    }
+
+    /**
+     * 记录一次写入
+     */
+    public void recordWrite(long nanos) {
+        writes.incrementAndGet();
+        writeNanos.addAndGet(nanos);
+        if (nanos >= SLOW_WRITE_NANOS) {
+            slowWrites.incrementAndGet();
+        }
+        long max;
+        while (nanos > (max = maxWriteNanos.get())) {
+            if (maxWriteNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 数据库目录占用的磁盘空间
+     */
+    public long getDiskSize() {
+        return sumFileSize(null);
+    }
+
+    /**
+     * 已合并为表文件的数据大小
+     */
+    public long getTableSize() {
+        return sumFileSize(TABLE_SUFFIX) + sumFileSize(LEGACY_TABLE_SUFFIX);
+    }
+
+    /**
+     * 表文件数量
+     */
+    public int getTableFileCount() {
+        File[] files = dbDir.listFiles((dir, name) -> name.endsWith(TABLE_SUFFIX) || name.endsWith(LEGACY_TABLE_SUFFIX));
+        return files == null ? 0 : files.length;
+    }
+
+    /**
+     * 预写日志文件大小
+     * 即当前memtable中尚未写入表文件的数据, 不包括level之间等待合并的数据
+     */
+    public long getLogFileBytes() {
+        return sumFileSize(LOG_SUFFIX);
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    public long getSlowWrites() {
+        return slowWrites.get();
+    }
+
+    public long getMaxWriteMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWriteNanos.get());
+    }
+
+    public long getAvgWriteMicros() {
+        long count = writes.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(writeNanos.get() / count);
+    }
+
+    private long sumFileSize(String suffix) {
+        File[] files = dbDir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long size = 0;
+        for (File file : files) {
+            if (file.isFile() && (suffix == null || file.getName().endsWith(suffix))) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LevelDBStats{dir=%s, diskSize=%d, tableFiles=%d, logFileBytes=%d, " +
+                        "writes=%d, avgWriteMicros=%d, maxWriteMillis=%d, slowWrites=%d}",
+                dbDir, getDiskSize(), getTableFileCount(), getLogFileBytes(),
+                getWrites(), getAvgWriteMicros(), getMaxWriteMillis(), getSlowWrites());
+    }
+}
@@ -22,6 +22,8 @@ import org.iq80.leveldb.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 提供操作leveldb的操作方法，如增，删，改，查
@@ -35,21 +37,27 @@ public class LevelDBUtil {
 	private static JulongChainLog log = JulongChainLogFactory.getLog(LevelDBUtil.class);
 
 	/** 保存当前打开的levelDB连接 */
-	private static Map<String, LevelDB> dbMap =
-			Collections.synchronizedMap(new HashMap<String, LevelDB>());
+	private static ConcurrentMap<String, LevelDB> dbMap = new ConcurrentHashMap<>();
 
 	/** 获取指定路径的 level db */
 	public static LevelDB getDB(String levelDbPath) throws LevelDBException {
-		try {
-			LevelDB db = dbMap.get(levelDbPath);
+		LevelDB db = dbMap.get(levelDbPath);
+		if (db != null) {
+			return db;
+		}
+		//同一路径只能打开一次
+		synchronized (dbMap) {
+			db = dbMap.get(levelDbPath);
 			if (db != null) {
 				return db;
 			}
-			db = new LevelDB(new Options().createIfMissing(Boolean.TRUE), new File(levelDbPath));
+			try {
+				db = new LevelDB(new Options().createIfMissing(Boolean.TRUE), new File(levelDbPath));
+			} catch (Exception e) {
+				throw new LevelDBException(e);
+			}
 			dbMap.put(levelDbPath, db);
 			return db;
-		} catch (Exception e) {
-			throw new LevelDBException(e);
 		}
 	}
 
@@ -59,12 +67,7 @@ public class LevelDBUtil {
 	 * @param db 移除的db
 	 */
 	public static void removeDb(LevelDB db) {
-		Set<Map.Entry<String, LevelDB>> entries = dbMap.entrySet();
-		for (Map.Entry<String, LevelDB> entry : entries) {
-			if (db == entry.getValue()) {
-				dbMap.remove(entry.getKey());
-			}
-		}
+		dbMap.entrySet().removeIf(entry -> db == entry.getValue());
 	}
 
 	/** 关闭 level db 连接 */
@@ -129,8 +132,9 @@ public class LevelDBUtil {
 					} else {
 						writeBatch.delete(k);
 					}
-					db.write(writeBatch, writeOptions);
 				});
+		//整个批次只写入一次
+		db.write(writeBatch, writeOptions);
 		closeWriteBatch(writeBatch);
 	}
 
@@ -27,6 +27,8 @@ import org.bcia.julongchain.protos.node.SmartContractDataPackage;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * kv账本监听
@@ -39,15 +41,21 @@ public class KVLedgerLSSCStateListener implements IStateListener {
     private static JulongChainLog log = JulongChainLogFactory.getLog(KVLedgerLSSCStateListener.class);
 
     private IPrivDataSupport privdata = new CollectionStoreSupport();
+    /**
+     * 各账本待提交区块中定义发生变化的智能合约, 状态提交后使其缓存失效
+     */
+    private final Map<String, List<String>> pendingInvalidations = new ConcurrentHashMap<>();
 
     @Override
     public void handleStateUpdates(String ledgerID, List<KvRwset.KVWrite> stateUpdates) throws JulongChainException {
         log.debug("Group [{}]: Handling state updates in LSSC namespace - stateUpdate", ledgerID);
         List<SmartContractDefinition> scDefinitions = new ArrayList<>();
+        List<String> updatedSmartContracts = new ArrayList<>();
         for(KvRwset.KVWrite kvWrite : stateUpdates){
             if (privdata.isCollectionConfigKey(kvWrite.getKey())) {
                 continue;
             }
+            updatedSmartContracts.add(kvWrite.getKey());
             if (kvWrite.getIsDelete()) {
                 continue;
             }
@@ -61,6 +69,20 @@ public class KVLedgerLSSCStateListener implements IStateListener {
             }
             scDefinitions.add(new SmartContractDefinition(smartContractData.getName(), smartContractData.getVersion(), smartContractData.getId().toByteArray()));
         }
+        //此时状态尚未提交, 现在失效缓存会使并发读取的旧定义以新的代数写入缓存, 因此在提交后失效
+        //验证失败或回滚的区块不会提交, 其记录由下一个区块覆盖
+        pendingInvalidations.put(ledgerID, updatedSmartContracts);
         ScEventManager.getMgr().handleSmartContractDeploy(ledgerID, scDefinitions.toArray(new SmartContractDefinition[0]));
     }
+
+    @Override
+    public void stateCommitDone(String ledgerID) {
+        List<String> updatedSmartContracts = pendingInvalidations.remove(ledgerID);
+        if (updatedSmartContracts == null) {
+            return;
+        }
+        for (String smartContractName : updatedSmartContracts) {
+            SmartContractDataCache.invalidate(ledgerID, smartContractName);
+        }
+    }
 }
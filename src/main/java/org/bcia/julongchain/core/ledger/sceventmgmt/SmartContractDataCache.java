@@ -0,0 +1,87 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.sceventmgmt;
+
+import org.bcia.julongchain.protos.node.SmartContractDataPackage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LSSC中智能合约定义(SmartContractData)的缓存
+ * 按(群组, 智能合约名称)缓存, 由KVLedgerLSSCStateListener在LSSC状态更新提交后失效, 账本关闭时清除群组缓存
+ * 每个群组维护一个代数, 读取状态前获取代数, 写入缓存时代数已变化说明读取期间有更新, 不写入缓存
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class SmartContractDataCache {
+    private static final ConcurrentMap<String, GroupCache> GROUPS = new ConcurrentHashMap<>();
+
+    private static class GroupCache {
+        private final ConcurrentMap<String, SmartContractDataPackage.SmartContractData> data = new ConcurrentHashMap<>();
+        private final AtomicLong generation = new AtomicLong(0);
+    }
+
+    private static GroupCache group(String groupId) {
+        return GROUPS.computeIfAbsent(groupId, id -> new GroupCache());
+    }
+
+    public static SmartContractDataPackage.SmartContractData get(String groupId, String smartContractName) {
+        GroupCache cache = GROUPS.get(groupId);
+        return cache == null ? null : cache.data.get(smartContractName);
+    }
+
+    /**
+     * 获取群组当前代数, 读取LSSC状态前调用
+     */
+    public static long generation(String groupId) {
+        return group(groupId).generation.get();
+    }
+
+    /**
+     * 缓存从状态中读取的智能合约定义
+     * @param generation 读取状态前获取的代数
+     */
+    public static void put(String groupId, String smartContractName,
+                           SmartContractDataPackage.SmartContractData data, long generation) {
+        GroupCache cache = group(groupId);
+        cache.data.put(smartContractName, data);
+        if (cache.generation.get() != generation) {
+            cache.data.remove(smartContractName, data);
+        }
+    }
+
+    /**
+     * 使智能合约定义的缓存失效, 须在新定义写入状态数据库之后调用
+     */
+    public static void invalidate(String groupId, String smartContractName) {
+        GroupCache cache = group(groupId);
+        cache.generation.incrementAndGet();
+        cache.data.remove(smartContractName);
+    }
+
+    /**
+     * 清除群组的所有缓存
+     */
+    public static void invalidateGroup(String groupId) {
+        GroupCache cache = group(groupId);
+        cache.generation.incrementAndGet();
+        cache.data.clear();
+    }
+}
@@ -17,9 +17,10 @@ package org.bcia.julongchain.core.ledger.util;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.bcia.julongchain.common.exception.JulongChainException;
+import org.bcia.julongchain.common.exception.CspException;
 import org.bcia.julongchain.common.exception.LedgerException;
 import org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage.BlockFileStream;
 import org.bcia.julongchain.common.ledger.util.IoUtil;
@@ -27,8 +28,8 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.MerkleTree;
 import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
-import org.bcia.julongchain.csp.factory.CspManager;
-import org.bcia.julongchain.csp.gm.dxct.sm3.SM3HashOpts;
+import org.bcia.julongchain.csp.gm.dxct.sm3.SM3;
+import org.bcia.julongchain.csp.gm.dxct.sm3.SM3Hash;
 import org.bcia.julongchain.protos.common.Common;
 import org.bcia.julongchain.protos.node.ProposalPackage;
 import org.bcia.julongchain.protos.node.ProposalResponsePackage;
@@ -178,20 +179,66 @@ public class Util {
         return buffer.putLong(longNum).array();
     }
 
+    /**
+     * 账本内部使用的sm3摘要, 每个线程复用一个
+     * 可配置的CSP均以sm3计算摘要, 账本内部直接计算, 不经过CSP
+     */
+    private static final ThreadLocal<SM3Hash> LEDGER_HASH = ThreadLocal.withInitial(SM3Hash::new);
+
     /**
      * 进行hash运算
      */
     public static byte[] getHashBytes(byte[] bytes) throws LedgerException {
-        byte[] target;
         if (bytes == null) {
         	bytes = new byte[0];
 		}
-		try {
-			target = CspManager.getDefaultCsp().hash(bytes, new SM3HashOpts());
-		} catch (JulongChainException e) {
-			throw new LedgerException(e);
-		}
-        return target;
+		return SM3.digest(bytes);
+    }
+
+    /**
+     * 对ByteString进行hash运算, 不复制为字节数组
+     */
+    public static byte[] getHashBytes(ByteString bytes) throws LedgerException {
+        SM3Hash hash = LEDGER_HASH.get();
+        hash.reset();
+        try {
+            if (bytes != null) {
+                hash.write(bytes);
+            }
+        } catch (CspException e) {
+            hash.reset();
+            throw new LedgerException(e);
+        }
+        return hash.digest();
+    }
+
+    /**
+     * 对多段数据依次拼接后的结果进行hash运算, 不实际拼接, 跳过null
+     * 结果与getHashBytes(拼接后的字节数组)相同, 全部为空时为空数组的hash
+     */
+    public static byte[] getHashBytes(List<byte[]> parts) throws LedgerException {
+        SM3Hash hash = LEDGER_HASH.get();
+        hash.reset();
+        for (byte[] part : parts) {
+            hash.write(part);
+        }
+        return hash.digest();
+    }
+
+    /**
+     * 对protobuf消息的序列化结果进行hash运算, 结果与getHashBytes(message.toByteArray())相同
+     * 序列化数据直接流式写入摘要, 不生成完整的字节数组
+     */
+    public static byte[] getHashBytes(MessageLite message) throws LedgerException {
+        SM3Hash hash = LEDGER_HASH.get();
+        hash.reset();
+        try {
+            hash.write(message);
+        } catch (CspException e) {
+            hash.reset();
+            throw new LedgerException(e);
+        }
+        return hash.digest();
     }
 
 
@@ -299,20 +346,20 @@ public class Util {
 					//读取block
 					block = Common.Block.parseFrom(blockBytes);
 					//更新区块头部hash
-					headerTree.update(Util.getHashBytes(block.getHeader().toByteArray()));
+					headerTree.update(Util.getHashBytes(block.getHeader()));
 					//更新区块previousHash
 					if (totalBlockNum > 0) {
 						previousHashTree.update(block.getHeader().getPreviousHash().toByteArray());
 					}
 					//更新区块data hash
-					dataHashTree.update(Util.getHashBytes(block.getData().toByteArray()));
+					dataHashTree.update(Util.getHashBytes(block.getData()));
 					//更新区块头部中data hash
 					dataHashInHeaderTree.update(block.getHeader().getDataHash().toByteArray());
 					totalBlockNum++;
 				} else {
 					//由于不存在以最后一个区块header hash为previous hash的区块，所以直接将最后一个区块的header hash加入
 					if (block != null) {
-						previousHashTree.update(Util.getHashBytes(block.getHeader().toByteArray()));
+						previousHashTree.update(Util.getHashBytes(block.getHeader()));
 					}
 					break;
 				}
@@ -340,6 +387,8 @@ public class Util {
 			log.error("Got error, total block number is " + totalBlockNum);
 			log.error(e.getMessage());
 			throw new LedgerException(e);
+		} finally {
+			stream.close();
 		}
 	}
 
@@ -356,8 +405,8 @@ public class Util {
 	}
 
 	public static void retrievalBlockFiles(String chainsDir) throws LedgerException{
+		BlockFileStream stream = new BlockFileStream(chainsDir, 0, 0);
 		try {
-			BlockFileStream stream = new BlockFileStream(chainsDir, 0, 0);
 			byte[] blockBytes = stream.nextBlockBytes();
 			Common.Block preBlock = null;
 			Common.Block currentBlock = blockBytes == null ?
@@ -370,7 +419,7 @@ public class Util {
 				}
 				//验证preHash和前一区块的header hash
 				if (preBlock != null) {
-					byte[] preHash = Util.getHashBytes(preBlock.getHeader().toByteArray());
+					byte[] preHash = Util.getHashBytes(preBlock.getHeader());
 					byte[] preHashInFollowedBlock = currentBlock.getHeader().getPreviousHash().toByteArray();
 					if (!Arrays.equals(preHash, preHashInFollowedBlock)) {
 						String errMsg = "Block" + currentBlock.getHeader().getNumber() + "'s preHash [" +
@@ -383,7 +432,7 @@ public class Util {
 						System.exit(1);
 					}
 				}
-				byte[] dataHash = Util.getHashBytes(currentBlock.getData().toByteArray());
+				byte[] dataHash = Util.getHashBytes(currentBlock.getData());
 				byte[] dataHashInHeader = currentBlock.getHeader().getDataHash().toByteArray();
 				//验证data hash和header中的dataHash
 				if (!Arrays.equals(dataHash, dataHashInHeader)) {
@@ -409,6 +458,8 @@ public class Util {
 			log.error("Check block chain files failed");
 			// TODO: 9/5/18 exit code undefine
 			System.exit(3);
+		} finally {
+			stream.close();
 		}
 	}
 }
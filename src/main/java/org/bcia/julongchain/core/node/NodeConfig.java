@@ -47,6 +47,7 @@ public class NodeConfig {
         private Events events;
         private Tls tls;
         private String fileSystemPath;
+        private int validatorPoolSize;
 
         public String getId() {
             return id;
@@ -127,6 +128,14 @@ public class NodeConfig {
         public void setFileSystemPath(String fileSystemPath) {
             this.fileSystemPath = fileSystemPath;
         }
+
+        public int getValidatorPoolSize() {
+            return validatorPoolSize;
+        }
+
+        public void setValidatorPoolSize(int validatorPoolSize) {
+            this.validatorPoolSize = validatorPoolSize;
+        }
     }
 
     public static class VM {
@@ -240,6 +249,7 @@ public class NodeConfig {
     public static class Ledger {
         private State state;
         private Map<String, Boolean> history;
+        private Map<String, String> blockchain;
 
         public State getState() {
             return state;
@@ -256,6 +266,14 @@ public class NodeConfig {
         public void setHistory(Map<String, Boolean> history) {
             this.history = history;
         }
+
+        public Map<String, String> getBlockchain() {
+            return blockchain;
+        }
+
+        public void setBlockchain(Map<String, String> blockchain) {
+            this.blockchain = blockchain;
+        }
     }
 
     public static class KeepAlive {
@@ -476,6 +494,8 @@ public class NodeConfig {
     public static class State {
         private String stateDatabase;
         private Map<String, String> couchDBConfig;
+        private String simulationMode;
+        private int txSimulatorTTL;
 
         public String getStateDatabase() {
             return stateDatabase;
@@ -492,5 +512,21 @@ public class NodeConfig {
         public void setCouchDBConfig(Map<String, String> couchDBConfig) {
             this.couchDBConfig = couchDBConfig;
         }
+
+        public String getSimulationMode() {
+            return simulationMode;
+        }
+
+        public void setSimulationMode(String simulationMode) {
+            this.simulationMode = simulationMode;
+        }
+
+        public int getTxSimulatorTTL() {
+            return txSimulatorTTL;
+        }
+
+        public void setTxSimulatorTTL(int txSimulatorTTL) {
+            this.txSimulatorTTL = txSimulatorTTL;
+        }
     }
 }
@@ -116,8 +116,11 @@ public class ConfigTxUtils {
     public static Configtx.Config retrievePersistedGroupConfig(INodeLedger nodeLedger) throws LedgerException,
             InvalidProtocolBufferException {
         IQueryExecutor queryExecutor = nodeLedger.newQueryExecutor();
-
-        return ConfigtxProcessor.retrievePersistedConfig(queryExecutor, ConfigtxProcessor.GROUP_CONFIG_KEY);
+        try {
+            return ConfigtxProcessor.retrievePersistedConfig(queryExecutor, ConfigtxProcessor.GROUP_CONFIG_KEY);
+        } finally {
+            queryExecutor.done();
+        }
     }
 
     /**
@@ -131,8 +134,11 @@ public class ConfigTxUtils {
     public static Configtx.Config retrievePersistedResourceConfig(INodeLedger nodeLedger) throws LedgerException,
             InvalidProtocolBufferException {
         IQueryExecutor queryExecutor = nodeLedger.newQueryExecutor();
-
-        return ConfigtxProcessor.retrievePersistedConfig(queryExecutor, ConfigtxProcessor.RESOURCES_CONFIG_KEY);
+        try {
+            return ConfigtxProcessor.retrievePersistedConfig(queryExecutor, ConfigtxProcessor.RESOURCES_CONFIG_KEY);
+        } finally {
+            queryExecutor.done();
+        }
     }
 
 
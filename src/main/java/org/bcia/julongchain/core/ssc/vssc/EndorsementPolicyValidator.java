@@ -0,0 +1,146 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ssc.vssc;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bcia.julongchain.common.exception.PolicyException;
+import org.bcia.julongchain.common.exception.SysSmartContractException;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.policies.policy.IPolicy;
+import org.bcia.julongchain.common.policycheck.policies.CompiledPolicyCache;
+import org.bcia.julongchain.common.util.BytesHexStrTranslate;
+import org.bcia.julongchain.common.util.Utils;
+import org.bcia.julongchain.common.util.proto.SignedData;
+import org.bcia.julongchain.msp.mgmt.MspMgmtMgr;
+import org.bcia.julongchain.protos.msp.Identities;
+import org.bcia.julongchain.protos.node.ProposalResponsePackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 背书策略校验
+ * 供Committer在进程内直接校验已解析的交易, 不经过VSSC智能合约调用
+ * VSSC智能合约也通过该类构造签名集合
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class EndorsementPolicyValidator {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(EndorsementPolicyValidator.class);
+
+    /**
+     * 校验交易的背书是否满足背书策略
+     *
+     * @param groupId     群组id
+     * @param txId        交易id
+     * @param scap        已解析的智能合约动作负载
+     * @param policyBytes 序列化的背书策略
+     * @return 满足时返回VALID, 否则返回ENDORSEMENT_POLICY_FAILURE
+     */
+    public static TransactionPackage.TxValidationCode validate(
+            String groupId,
+            String txId,
+            TransactionPackage.SmartContractActionPayload scap,
+            byte[] policyBytes) {
+        if (policyBytes == null || policyBytes.length == 0) {
+            log.warn("No policy supplied for transaction txid=" + txId);
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+
+        IPolicy policy = null;
+        try {
+            policy = CompiledPolicyCache.getOrCompile(groupId, MspMgmtMgr.getManagerForChain(groupId), policyBytes);
+        } catch (PolicyException e) {
+            log.error("Make policy failed for transaction txid=" + txId + ", err: " + e.getMessage());
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+        if (policy == null) {
+            log.error("Unsupported policy for transaction txid=" + txId);
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+
+        List<SignedData> signatureSet = null;
+        try {
+            signatureSet = deduplicateIdentity(scap);
+        } catch (SysSmartContractException e) {
+            log.warn(e.getMessage());
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+
+        try {
+            policy.evaluate(signatureSet);
+        } catch (PolicyException e) {
+            log.warn("Endorsement policy failure for transaction txid={}, err:{}", txId, e.getMessage());
+            if (signatureSet.size() < scap.getAction().getEndorsementsCount()) {
+                log.warn(VSSC.DUPLICATED_IDENTITY_ERROR);
+            }
+            return TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        }
+
+        return TransactionPackage.TxValidationCode.VALID;
+    }
+
+    /**
+     * 构造背书签名集合, 同一身份的重复背书只保留第一个
+     *
+     * @param scap
+     * @return
+     * @throws SysSmartContractException
+     */
+    public static List<SignedData> deduplicateIdentity(TransactionPackage.SmartContractActionPayload scap)
+            throws SysSmartContractException {
+        // this is the first part of the signed message
+        ByteString prespBytes = scap.getAction().getProposalResponsePayload();
+        // build the signature set for the evaluation
+        Map<String, SignedData> signatureMap = new HashMap<String, SignedData>();
+        List<SignedData> signatureSet = new LinkedList<SignedData>();
+        for (ProposalResponsePackage.Endorsement endorsement : scap.getAction().getEndorsementsList()) {
+            //unmarshal endorser bytes
+            Identities.SerializedIdentity serializedIdentity = null;
+            try {
+                serializedIdentity = Identities.SerializedIdentity.parseFrom(endorsement.getEndorser());
+            } catch (InvalidProtocolBufferException e) {
+                String msg = String.format("Unmarshal endorser error: %s", e.getMessage());
+                throw new SysSmartContractException(msg);
+            }
+            String identity = serializedIdentity.getMspid() + BytesHexStrTranslate.bytesToHexFun1(serializedIdentity
+                    .getIdBytes().toByteArray());
+            SignedData value = signatureMap.get(identity);
+            if (value != null) {
+                log.warn("Ignoring duplicated identity, Mspid: {}, pem:{}",
+                        serializedIdentity.getMspid(), serializedIdentity.getIdBytes().toString());
+                continue;
+            }
+
+            byte[] data = Utils.appendBytes(prespBytes.toByteArray(), endorsement.getEndorser().toByteArray());
+            SignedData signedData = new SignedData(data, endorsement.getEndorser().toByteArray(),
+                    endorsement.getSignature().toByteArray());
+            signatureSet.add(signedData);
+            signatureMap.put(identity, signedData);
+        }
+
+        log.debug("Signature set is of size {} out of {} endorsement(s)",
+                signatureSet.size(), scap.getAction().getEndorsementsCount());
+        return signatureSet;
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.bcia.julongchain.core.ssc.vssc;
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import org.bcia.julongchain.common.exception.JulongChainException;
 import org.bcia.julongchain.common.exception.LedgerException;
@@ -26,9 +25,7 @@ import org.bcia.julongchain.common.groupconfig.config.IApplicationConfig;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.policies.policy.IPolicy;
-import org.bcia.julongchain.common.policycheck.policies.PolicyProvider;
-import org.bcia.julongchain.common.util.BytesHexStrTranslate;
-import org.bcia.julongchain.common.util.Utils;
+import org.bcia.julongchain.common.policycheck.policies.CompiledPolicyCache;
 import org.bcia.julongchain.common.util.proto.ProtoUtils;
 import org.bcia.julongchain.common.util.proto.SignedData;
 import org.bcia.julongchain.core.common.privdata.*;
@@ -41,7 +38,6 @@ import org.bcia.julongchain.msp.IMspManager;
 import org.bcia.julongchain.msp.mgmt.GlobalMspManagement;
 import org.bcia.julongchain.msp.mgmt.MspMgmtMgr;
 import org.bcia.julongchain.protos.common.Common;
-import org.bcia.julongchain.protos.msp.Identities;
 import org.bcia.julongchain.protos.node.*;
 import org.springframework.stereotype.Component;
 
@@ -139,15 +135,17 @@ public class VSSC extends SystemSmartContractBase {
         IApplicationConfig ac = this.sscProvider.getApplicationConfig(groupHeader.getGroupId());
 
         IMspManager manager= MspMgmtMgr.getManagerForChain(groupHeader.getGroupId());
-        PolicyProvider policyProvider=new PolicyProvider(manager);
         IPolicy policy = null;
         try {
-            policy = policyProvider.makePolicy(policyBytes);
+            policy = CompiledPolicyCache.getOrCompile(groupHeader.getGroupId(), manager, policyBytes);
         } catch (PolicyException e) {
             String msg=String.format("VSSC error:make policy failed,err %s",e.getMessage());
             log.error(msg);
             return newErrorResponse(msg);
         }
+        if(policy==null){
+            return newErrorResponse("VSSC error: unsupported policy version");
+        }
 
         // validate the payload type
         if(groupHeader.getType()!= Common.HeaderType.ENDORSER_TRANSACTION.getNumber()){
@@ -176,7 +174,7 @@ public class VSSC extends SystemSmartContractBase {
             }
             List<SignedData> signatureSet =null;
             try {
-                signatureSet=deduplicateIdentity(scap);
+                signatureSet=EndorsementPolicyValidator.deduplicateIdentity(scap);
             } catch (SysSmartContractException e) {
                 return newErrorResponse(e.getMessage());
             }
@@ -264,6 +262,8 @@ public class VSSC extends SystemSmartContractBase {
             String msg=String.format("Could not retrieve state for smartcontract %s on group %s, error %s",
                     smartcontractID,groupID,e.getMessage());
             throw new SysSmartContractException(msg);
+        } finally {
+            qe.done();
         }
 
         if(bytes==null){
@@ -278,40 +278,4 @@ public class VSSC extends SystemSmartContractBase {
         }
         return data;
     }
-
-    private List<SignedData> deduplicateIdentity(TransactionPackage.SmartContractActionPayload scap)
-                                   throws SysSmartContractException{
-        // this is the first part of the signed message
-        ByteString prespBytes = scap.getAction().getProposalResponsePayload();
-        // build the signature set for the evaluation
-        Map<String,SignedData> signatureMap=new HashMap<String,SignedData>();
-        List<SignedData> signatureSet=new LinkedList<SignedData>();
-        for(ProposalResponsePackage.Endorsement endorsement:scap.getAction().getEndorsementsList()){
-            //unmarshal endorser bytes
-            Identities.SerializedIdentity serializedIdentity=null;
-            try {
-                serializedIdentity=Identities.SerializedIdentity.parseFrom(endorsement.getEndorser());
-            } catch (InvalidProtocolBufferException e) {
-                String msg=String.format("Unmarshal endorser error: %s",e.getMessage());
-                throw new SysSmartContractException(msg);
-            }
-            String identity = serializedIdentity.getMspid()+BytesHexStrTranslate.bytesToHexFun1(serializedIdentity.getIdBytes().toByteArray());
-            SignedData value = signatureMap.get(identity);
-            if(value!=null){
-                log.warn("Ignoring duplicated identity, Mspid: {}, pem:{}",
-                        serializedIdentity.getMspid(),serializedIdentity.getIdBytes().toString());
-                continue;
-            }
-
-            byte[] data=Utils.appendBytes(prespBytes.toByteArray(),endorsement.getEndorser().toByteArray());
-            SignedData signedData=new SignedData(data,endorsement.getEndorser().toByteArray(),
-                    endorsement.getSignature().toByteArray());
-            signatureSet.add(signedData);
-            signatureMap.put(identity,signedData);
-        }
-
-        log.debug("Signature set is of size {} out of {} endorsement(s)",
-                signatureSet.size(),scap.getAction().getEndorsementsCount());
-        return signatureSet;
-    }
 }
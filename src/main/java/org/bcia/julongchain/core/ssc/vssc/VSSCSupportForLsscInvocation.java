@@ -389,6 +389,8 @@ public class VSSCSupportForLsscInvocation {
             String msg=String.format("Could not retrieve state for smartcontract %s on group %s, error %s",
                     name,groupID,e.getMessage());
             throw new SysSmartContractException(msg);
+        } finally {
+            qe.done();
         }
 
         if(bytes==null){
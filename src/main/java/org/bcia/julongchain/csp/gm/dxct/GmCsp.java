@@ -21,6 +21,8 @@ import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.csp.gm.dxct.sm2.*;
 import org.bcia.julongchain.csp.gm.dxct.sm3.SM3;
+import org.bcia.julongchain.csp.gm.dxct.sm3.SM3Hash;
+import org.bcia.julongchain.csp.gm.dxct.sm3.SM3HashOpts;
 import org.bcia.julongchain.csp.gm.dxct.sm4.*;
 import org.bcia.julongchain.csp.gm.dxct.util.CryptoUtil;
 import org.bcia.julongchain.csp.intfs.ICsp;
@@ -141,7 +143,10 @@ public class GmCsp implements ICsp {
 
     @Override
     public IHash getHash(IHashOpts opts) throws CspException {
-        return null;
+        if (opts == null || opts instanceof SM3HashOpts) {
+            return new SM3Hash();
+        }
+        throw new CspException("HashOpts Not recognized!");
     }
 
     @Override
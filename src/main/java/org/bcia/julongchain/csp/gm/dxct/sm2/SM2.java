@@ -21,20 +21,32 @@ import org.bcia.julongchain.common.exception.ValidateException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.common.util.ValidateUtils;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.InvalidCipherTextException;
+import org.bouncycastle.crypto.digests.SM3Digest;
 import org.bouncycastle.crypto.engines.SM2Engine;
 import org.bouncycastle.crypto.generators.ECKeyPairGenerator;
 import org.bouncycastle.crypto.params.*;
 import org.bouncycastle.crypto.signers.SM2Signer;
+import org.bouncycastle.math.ec.ECAlgorithms;
 import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECFieldElement;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.Arrays;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 国密SM2实现
@@ -57,13 +69,46 @@ public class SM2 {
     private static BigInteger SM2_ECC_GY = new BigInteger("BC3736A2F4F6779C59BDCEE36B692153D0A9877CC62A474002DF32E52139F0A0", 16);
 
 
-    private static ECDomainParameters ecc_bc_spec;
-    private static ECCurve.Fp curve;
+    /**
+     * 默认用户标识, 与SM2Signer一致
+     */
+    private static final byte[] DEFAULT_USER_ID = "1234567812345678".getBytes();
+
+    /**
+     * 曲线及域参数为不可变的共享对象, 基点G的定点预计算表随G对象保留, 所有实例共用
+     */
+    private static final ECCurve.Fp curve = new ECCurve.Fp(SM2_ECC_P, SM2_ECC_A, SM2_ECC_B);
+    private static final ECDomainParameters ecc_bc_spec =
+            new ECDomainParameters(curve, curve.createPoint(SM2_ECC_GX, SM2_ECC_GY), SM2_ECC_N);
+
+    /**
+     * 公钥缓存数上限, 超过时清空重建
+     */
+    private static final int MAX_CACHED_PUBLIC_KEYS = 1024;
+    private static final ConcurrentMap<ByteBuffer, VerifyKey> PUBLIC_KEY_CACHE = new ConcurrentHashMap<>();
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<SM2Signer> SIGNER = ThreadLocal.withInitial(SM2Signer::new);
+    private static final ThreadLocal<SM3Digest> DIGEST = ThreadLocal.withInitial(SM3Digest::new);
+
+    /**
+     * 已解析的验签公钥
+     * 公钥点已规范化, 首次验签时计算的窗口预计算表随点对象保留;
+     * zDigest为已输入Z值的SM3状态, 验签时复制该状态后只需计算消息部分
+     */
+    private static class VerifyKey {
+        private final ECPoint q;
+        private final SM3Digest zDigest;
+
+        private VerifyKey(ECPoint q) {
+            this.q = q;
+            this.zDigest = new SM3Digest();
+            byte[] z = getZ(zDigest, q);
+            zDigest.update(z, 0, z.length);
+        }
+    }
 
     public SM2() {
-        curve = new ECCurve.Fp(SM2_ECC_P, SM2_ECC_A, SM2_ECC_B);
-        ECPoint ecc_point_g = curve.createPoint(SM2_ECC_GX, SM2_ECC_GY);
-        ecc_bc_spec = new ECDomainParameters(curve, ecc_point_g, SM2_ECC_N);
     }
 
     /**
@@ -121,10 +166,10 @@ public class SM2 {
         if (msg.length == 0) {
             throw new CspException("plainText's length is 0");
         }
-        SM2Signer signer = new SM2Signer();
+        SM2Signer signer = SIGNER.get();
         BigInteger d = byte2BigInteger(privateKey);
         ECPrivateKeyParameters privateKeyParameters = new ECPrivateKeyParameters(d, ecc_bc_spec);
-        signer.init(true, privateKeyParameters);
+        signer.init(true, new ParametersWithRandom(privateKeyParameters, RANDOM));
         signer.update(msg, 0, msg.length);
         byte[] sig = new byte[0];
         try {
@@ -163,11 +208,118 @@ public class SM2 {
         if (msg.length == 0) {
             throw new CspException("plainText's length is 0");
         }
-        SM2Signer signer = new SM2Signer();
-        ECPublicKeyParameters ecPub = new ECPublicKeyParameters(byte2ECpoint(publicKey), ecc_bc_spec);
-        signer.init(false, ecPub);
-        signer.update(msg, 0, msg.length);
-        return signer.verifySignature(signValue);
+        return verify(getVerifyKey(publicKey), signValue, msg);
+    }
+
+    /**
+     * 批量验证签名值, 供Committer一次验证区块内的全部背书
+     * 同一公钥只解析一次, 参数非法或公钥无法解析的项验证结果为false, 不影响其他项
+     *
+     * @param signedDataList
+     * @return 与输入顺序一致的验证结果
+     */
+    public boolean[] verifyBatch(List<SM2SignedData> signedDataList) {
+        boolean[] results = new boolean[signedDataList.size()];
+        for (int i = 0; i < results.length; i++) {
+            SM2SignedData signedData = signedDataList.get(i);
+            byte[] publicKey = signedData.getPublicKey();
+            byte[] signValue = signedData.getSignValue();
+            byte[] msg = signedData.getMsg();
+            if (publicKey == null || publicKey.length == 0 || signValue == null || signValue.length == 0
+                    || msg == null || msg.length == 0) {
+                log.warn("Invalid sm2 signed data at index " + i);
+                continue;
+            }
+            try {
+                results[i] = verify(getVerifyKey(publicKey), signValue, msg);
+            } catch (CspException e) {
+                log.warn("Verify sm2 signed data at index " + i + " failed: " + e.getMessage());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 获取已解析的公钥, 未缓存时解析并缓存
+     */
+    private static VerifyKey getVerifyKey(byte[] publicKey) throws CspException {
+        VerifyKey verifyKey = PUBLIC_KEY_CACHE.get(ByteBuffer.wrap(publicKey));
+        if (verifyKey != null) {
+            return verifyKey;
+        }
+        ECPoint q;
+        try {
+            q = byte2ECpoint(publicKey).normalize();
+        } catch (IllegalArgumentException e) {
+            throw new CspException("Invalid sm2 publicKey: " + e.getMessage());
+        }
+        if (q.isInfinity()) {
+            throw new CspException("Invalid sm2 publicKey: point at infinity");
+        }
+        verifyKey = new VerifyKey(q);
+        if (PUBLIC_KEY_CACHE.size() >= MAX_CACHED_PUBLIC_KEYS) {
+            log.info("Sm2 public key cache is full, clearing " + PUBLIC_KEY_CACHE.size() + " entries");
+            PUBLIC_KEY_CACHE.clear();
+        }
+        PUBLIC_KEY_CACHE.put(ByteBuffer.wrap(publicKey.clone()), verifyKey);
+        return verifyKey;
+    }
+
+    /**
+     * 按GM/T 0003.2验证签名, 与SM2Signer使用默认用户标识时的结果一致
+     */
+    private static boolean verify(VerifyKey verifyKey, byte[] signValue, byte[] msg) {
+        BigInteger[] rs = decode(signValue);
+        if (rs == null) {
+            return false;
+        }
+        BigInteger n = ecc_bc_spec.getN();
+        BigInteger r = rs[0];
+        BigInteger s = rs[1];
+        if (r.signum() <= 0 || r.compareTo(n) >= 0 || s.signum() <= 0 || s.compareTo(n) >= 0) {
+            return false;
+        }
+        BigInteger t = r.add(s).mod(n);
+        if (t.signum() == 0) {
+            return false;
+        }
+
+        SM3Digest digest = DIGEST.get();
+        digest.reset(verifyKey.zDigest);
+        digest.update(msg, 0, msg.length);
+        byte[] eHash = new byte[digest.getDigestSize()];
+        digest.doFinal(eHash, 0);
+        BigInteger e = new BigInteger(1, eHash);
+
+        ECPoint x1y1 = ECAlgorithms.sumOfTwoMultiplies(ecc_bc_spec.getG(), s, verifyKey.q, t).normalize();
+        if (x1y1.isInfinity()) {
+            return false;
+        }
+        return r.equals(e.add(x1y1.getAffineXCoord().toBigInteger()).mod(n));
+    }
+
+    /**
+     * 计算Z值: SM3(ENTL || ID || a || b || xG || yG || xA || yA)
+     */
+    private static byte[] getZ(SM3Digest digest, ECPoint q) {
+        int len = DEFAULT_USER_ID.length * 8;
+        digest.update((byte) (len >> 8 & 0xFF));
+        digest.update((byte) (len & 0xFF));
+        digest.update(DEFAULT_USER_ID, 0, DEFAULT_USER_ID.length);
+        addFieldElement(digest, curve.getA());
+        addFieldElement(digest, curve.getB());
+        addFieldElement(digest, ecc_bc_spec.getG().getAffineXCoord());
+        addFieldElement(digest, ecc_bc_spec.getG().getAffineYCoord());
+        addFieldElement(digest, q.getAffineXCoord());
+        addFieldElement(digest, q.getAffineYCoord());
+        byte[] z = new byte[digest.getDigestSize()];
+        digest.doFinal(z, 0);
+        return z;
+    }
+
+    private static void addFieldElement(SM3Digest digest, ECFieldElement v) {
+        byte[] p = v.getEncoded();
+        digest.update(p, 0, p.length);
     }
 
     /**
@@ -239,15 +391,29 @@ public class SM2 {
 
 
     /**
-     * 将摘要值r,s 转换为大整型数组
+     * 将签名值r,s 转换为大整型数组, 非规范DER编码时返回null
      *
      * @param sig
      * @return
      */
     private static BigInteger[] decode(byte[] sig) {
-        ASN1Sequence s = ASN1Sequence.getInstance(sig);
-        return new BigInteger[]{ASN1Integer.getInstance(s.getObjectAt(0)).getValue(),
-                ASN1Integer.getInstance(s.getObjectAt(1)).getValue()};
+        try {
+            ASN1Sequence s = ASN1Sequence.getInstance(sig);
+            if (s.size() != 2) {
+                return null;
+            }
+            BigInteger r = ASN1Integer.getInstance(s.getObjectAt(0)).getValue();
+            BigInteger v = ASN1Integer.getInstance(s.getObjectAt(1)).getValue();
+            ASN1EncodableVector vector = new ASN1EncodableVector();
+            vector.add(new ASN1Integer(r));
+            vector.add(new ASN1Integer(v));
+            if (!Arrays.constantTimeAreEqual(new DERSequence(vector).getEncoded(ASN1Encoding.DER), sig)) {
+                return null;
+            }
+            return new BigInteger[]{r, v};
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
     }
 
     /**
@@ -0,0 +1,47 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.csp.gm.dxct.sm2;
+
+/**
+ * sm2待验证的签名数据, 用于批量验签
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class SM2SignedData {
+    private byte[] publicKey;
+    private byte[] signValue;
+    private byte[] msg;
+
+    public SM2SignedData(byte[] publicKey, byte[] signValue, byte[] msg) {
+        this.publicKey = publicKey;
+        this.signValue = signValue;
+        this.msg = msg;
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    public byte[] getSignValue() {
+        return signValue;
+    }
+
+    public byte[] getMsg() {
+        return msg;
+    }
+}
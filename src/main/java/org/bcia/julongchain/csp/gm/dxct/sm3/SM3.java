@@ -19,15 +19,7 @@ package org.bcia.julongchain.csp.gm.dxct.sm3;
 import org.bcia.julongchain.common.exception.CspException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
-import org.bcia.julongchain.csp.gm.dxct.sm2.SM2;
-import org.bcia.julongchain.csp.gm.dxct.util.GmCspConstant;
 import org.bouncycastle.crypto.digests.SM3Digest;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.util.encoders.Hex;
-
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.Security;
 
 /**
  * 国密sm3实现
@@ -39,6 +31,12 @@ import java.security.Security;
 
 public class SM3 {
     private static JulongChainLog log = JulongChainLogFactory.getLog(SM3.class);
+
+    /**
+     * 每个线程复用一个摘要对象, 避免每次hash都注册Provider并查找MessageDigest
+     */
+    private static final ThreadLocal<SM3Digest> DIGEST = ThreadLocal.withInitial(SM3Digest::new);
+
     public SM3() {
     }
 
@@ -49,16 +47,21 @@ public class SM3 {
         if(msg.length==0){
             throw new CspException("Input parameter's length is empty");
         }
-        Security.addProvider(new BouncyCastleProvider());
-        MessageDigest messageDigest = null;
-        try {
-            messageDigest = MessageDigest.getInstance(GmCspConstant.SM3);
-        } catch (NoSuchAlgorithmException e) {
-            log.error(e.getMessage());
-          throw new CspException(e);
-        }
-        messageDigest.update(msg);
-        byte[] digest = messageDigest.digest();
+        return digest(msg);
+    }
+
+    /**
+     * 计算摘要, 不检查参数, 空数组返回空消息的摘要
+     *
+     * @param msg
+     * @return
+     */
+    public static byte[] digest(byte[] msg) {
+        SM3Digest sm3Digest = DIGEST.get();
+        sm3Digest.reset();
+        sm3Digest.update(msg, 0, msg.length);
+        byte[] digest = new byte[sm3Digest.getDigestSize()];
+        sm3Digest.doFinal(digest, 0);
         return digest;
     }
 }
@@ -0,0 +1,125 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.csp.gm.dxct.sm3;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import org.bcia.julongchain.common.exception.CspException;
+import org.bcia.julongchain.csp.intfs.IHash;
+import org.bouncycastle.crypto.digests.SM3Digest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 可增量计算的sm3摘要
+ * 数据可分多次写入, ByteString及protobuf消息直接流式写入摘要, 不需要先拼接为完整的字节数组
+ * 非线程安全
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class SM3Hash implements IHash {
+    private static final int BLOCK_SIZE = 64;
+
+    private final SM3Digest digest = new SM3Digest();
+
+    private final OutputStream outputStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    };
+
+    @Override
+    public int write(byte[] p) {
+        if (p == null) {
+            return 0;
+        }
+        digest.update(p, 0, p.length);
+        return p.length;
+    }
+
+    public void write(byte[] p, int offset, int length) {
+        digest.update(p, offset, length);
+    }
+
+    /**
+     * 写入ByteString, 由ByteString直接将内部数据写入摘要
+     */
+    public int write(ByteString data) throws CspException {
+        try {
+            data.writeTo(outputStream);
+        } catch (IOException e) {
+            throw new CspException(e);
+        }
+        return data.size();
+    }
+
+    /**
+     * 写入protobuf消息的序列化结果, 与写入message.toByteArray()的摘要相同
+     */
+    public int write(MessageLite message) throws CspException {
+        CodedOutputStream codedOutputStream = CodedOutputStream.newInstance(outputStream);
+        try {
+            message.writeTo(codedOutputStream);
+            codedOutputStream.flush();
+        } catch (IOException e) {
+            throw new CspException(e);
+        }
+        return message.getSerializedSize();
+    }
+
+    @Override
+    public byte[] sum(byte[] b) {
+        byte[] prefix = b == null ? new byte[0] : b;
+        byte[] result = new byte[prefix.length + digest.getDigestSize()];
+        System.arraycopy(prefix, 0, result, 0, prefix.length);
+        new SM3Digest(digest).doFinal(result, prefix.length);
+        return result;
+    }
+
+    /**
+     * 返回当前摘要并重置为初始状态
+     */
+    public byte[] digest() {
+        byte[] result = new byte[digest.getDigestSize()];
+        digest.doFinal(result, 0);
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        digest.reset();
+    }
+
+    @Override
+    public int size() {
+        return digest.getDigestSize();
+    }
+
+    @Override
+    public int blockSize() {
+        return BLOCK_SIZE;
+    }
+}
@@ -20,6 +20,7 @@ import java.util.Map;
 
 /**
  * LRU 缓存调度
+ * 非线程安全, 多线程访问时需通过Collections.synchronizedMap包装
  *
  * @author zhangmingyang
  * @date 2018/07/16
@@ -35,7 +36,7 @@ public class LRUCache<K, V> extends LinkedHashMap<K, V> {
 
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-        return size() >= cacheSize;
+        return size() > cacheSize;
 
     }
 
@@ -0,0 +1,100 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.msp.cache;
+
+import com.google.protobuf.ByteString;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 已验证签名缓存
+ * 同一提案的创建者签名在预处理及ACL检查中都会验证, 背书签名在提交时也会多次验证,
+ * 以(证书, 消息, 签名)的摘要为键记录验证通过的签名, 有效期内再次验证时直接返回
+ * 只缓存验证通过的结果
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class VerifiedSignatureCache {
+    /**
+     * 缓存大小
+     */
+    private static final int CACHE_SIZE = 4096;
+    /**
+     * 缓存有效期
+     */
+    private static final long TTL_MILLIS = 60 * 1000L;
+
+    private static final Map<ByteString, Long> VERIFIED =
+            Collections.synchronizedMap(new LRUCache<>(CACHE_SIZE));
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * 计算缓存键
+     *
+     * @param encodedCert 签名者的DER编码证书, 包含验证签名的公钥
+     * @param msg         签名消息
+     * @param sig         签名
+     * @return
+     */
+    public static ByteString key(byte[] encodedCert, byte[] msg, byte[] sig) {
+        MessageDigest digest = DIGEST.get();
+        digest.reset();
+        updateWithLength(digest, encodedCert);
+        updateWithLength(digest, msg);
+        updateWithLength(digest, sig);
+        return ByteString.copyFrom(digest.digest());
+    }
+
+    public static boolean isVerified(ByteString key) {
+        Long verifiedAt = VERIFIED.get(key);
+        if (verifiedAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - verifiedAt > TTL_MILLIS) {
+            VERIFIED.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    public static void markVerified(ByteString key) {
+        VERIFIED.put(key, System.currentTimeMillis());
+    }
+
+    public static void clear() {
+        VERIFIED.clear();
+    }
+
+    private static void updateWithLength(MessageDigest digest, byte[] data) {
+        int length = data == null ? 0 : data.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        if (length > 0) {
+            digest.update(data);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import org.bcia.julongchain.common.log.JulongChainLogFactory;
 import org.bcia.julongchain.csp.gm.dxct.sm2.SM2SignerOpts;
 import org.bcia.julongchain.csp.intfs.IKey;
 import org.bcia.julongchain.msp.IIdentity;
+import org.bcia.julongchain.msp.cache.VerifiedSignatureCache;
 import org.bcia.julongchain.msp.entity.IdentityIdentifier;
 import org.bcia.julongchain.msp.entity.OUIdentifier;
 import org.bcia.julongchain.msp.util.MspConstant;
@@ -53,6 +54,10 @@ public class Identity implements IIdentity {
     private Certificate certificate;
     private IKey pk;
     private Msp msp;
+    /**
+     * DER编码的证书, 作为已验证签名缓存的键, 编码失败时为null且不使用缓存
+     */
+    private byte[] encodedCert;
 
 
     public Identity() {
@@ -63,7 +68,8 @@ public class Identity implements IIdentity {
         Certificate cert = msp.sanitizeCert(certificate);
         byte[] digest = new byte[0];
         try {
-            digest = msp.getCsp().hash(cert.getEncoded(), null);
+            encodedCert = cert.getEncoded();
+            digest = msp.getCsp().hash(encodedCert, null);
         } catch (JulongChainException e) {
             log.error(e.getMessage());
         } catch (IOException e) {
@@ -114,6 +120,12 @@ public class Identity implements IIdentity {
 
     @Override
     public void verify(byte[] msg, byte[] sig) throws VerifyException {
+        //同一签名在提案预处理、ACL检查及背书策略校验中会重复验证, 先查已验证签名缓存
+        //证书摘要计算失败时身份ID为空, 因此缓存键使用证书本身
+        ByteString cacheKey = encodedCert == null ? null : VerifiedSignatureCache.key(encodedCert, msg, sig);
+        if (cacheKey != null && VerifiedSignatureCache.isVerified(cacheKey)) {
+            return;
+        }
         boolean verify = false;
         try {
             verify = msp.getCsp().verify(pk, sig, msg, new SM2SignerOpts());
@@ -123,6 +135,9 @@ public class Identity implements IIdentity {
         } catch (JulongChainException e) {
             throw new VerifyException(e.getMessage());
         }
+        if (cacheKey != null) {
+            VerifiedSignatureCache.markVerified(cacheKey);
+        }
     }
 
     @Override
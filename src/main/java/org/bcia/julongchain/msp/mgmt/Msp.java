@@ -34,6 +34,7 @@ import org.bcia.julongchain.csp.intfs.ICsp;
 import org.bcia.julongchain.msp.IIdentity;
 import org.bcia.julongchain.msp.IMsp;
 import org.bcia.julongchain.msp.ISigningIdentity;
+import org.bcia.julongchain.msp.cache.LRUCache;
 import org.bcia.julongchain.msp.entity.IdentityIdentifier;
 import org.bcia.julongchain.msp.entity.OUIdentifier;
 import org.bcia.julongchain.msp.entity.VerifyOptions;
@@ -53,9 +54,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.bcia.julongchain.msp.mgmt.MspValidate.validateIdentityOus;
 
@@ -88,6 +91,20 @@ public class Msp implements IMsp {
     private OUIdentifier nodeOU;
     private OUIdentifier orderOU;
     private MspConfigPackage.MSPConfig mspConfig;
+    /**
+     * 身份缓存大小
+     */
+    private static final int IDENTITY_CACHE_SIZE = 1024;
+    /**
+     * 反序列化身份缓存, 以序列化身份为键
+     */
+    private final Map<ByteString, IIdentity> deserializeIdentityCache =
+            Collections.synchronizedMap(new LRUCache<>(IDENTITY_CACHE_SIZE));
+    /**
+     * 身份验证结果缓存, 以身份标识为键, 验证失败时保存异常
+     */
+    private final Map<String, Optional<MspException>> validateIdentityCache =
+            Collections.synchronizedMap(new LRUCache<>(IDENTITY_CACHE_SIZE));
 
     public Msp() {
     }
@@ -99,11 +116,14 @@ public class Msp implements IMsp {
     @Override
     public IMsp setup(MspConfigPackage.MSPConfig config) {
         Msp msp = null;
+        //MSP配置变化, 之前缓存的身份及验证结果失效
+        clearIdentityCache();
         try {
             MspConfigPackage.JuLongMSPConfig fabricMSPConfig = MspConfigPackage.JuLongMSPConfig.parseFrom(config.getConfig());
             this.name = fabricMSPConfig.getName();
             this.csp = CspManager.getDefaultCsp();
             msp = internalSetupFunc(fabricMSPConfig);
+            clearIdentityCache();
             Identity id = (Identity) msp.getDefaultSigningIdentity().getIdentity();
             validateIdentityOus(this, id);
         } catch (InvalidProtocolBufferException e) {
@@ -157,11 +177,32 @@ public class Msp implements IMsp {
     public void validate(IIdentity id) throws MspException {
         if (id instanceof Identity) {
             Identity identity = (Identity) id;
-            MspValidate.validateIdentity(this, identity);
+            String key = identity.getIdentifier().getMspId() + identity.getIdentifier().getId();
+            Optional<MspException> cached = validateIdentityCache.get(key);
+            if (cached == null) {
+                try {
+                    MspValidate.validateIdentity(this, identity);
+                    cached = Optional.empty();
+                } catch (MspException e) {
+                    cached = Optional.of(e);
+                }
+                validateIdentityCache.put(key, cached);
+            }
+            if (cached.isPresent()) {
+                throw new MspException(cached.get().getMessage());
+            }
         }
 
     }
 
+    /**
+     * 清空身份缓存及验证结果缓存
+     */
+    public void clearIdentityCache() {
+        deserializeIdentityCache.clear();
+        validateIdentityCache.clear();
+    }
+
     @Override
     public void satisfiesPrincipal(IIdentity id, MspPrincipal.MSPPrincipal principal) throws MspException {
         switch (principal.getPrincipalClassification()) {
@@ -279,6 +320,11 @@ public class Msp implements IMsp {
 
     @Override
     public IIdentity deserializeIdentity(byte[] serializedIdentity) throws MspException {
+        ByteString key = ByteString.copyFrom(serializedIdentity);
+        IIdentity cached = deserializeIdentityCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
         Identities.SerializedIdentity sId = null;
         try {
@@ -289,7 +335,9 @@ public class Msp implements IMsp {
         if (!sId.getMspid().equals(name)) {
             throw new MspException(String.format("expected MSP ID %s, received %s", name, sId.getMspid()));
         }
-        return deserializeIdentityInternal(sId.getIdBytes().toByteArray());
+        IIdentity identity = deserializeIdentityInternal(sId.getIdBytes().toByteArray());
+        deserializeIdentityCache.put(key, identity);
+        return identity;
     }
 
     public IIdentity deserializeIdentityInternal(byte[] serializedIdentity) throws MspException {
@@ -81,6 +81,9 @@ public class MspManager implements IMspManager {
         } catch (Exception e) {
             throw new MspException(e.getMessage());
         }
+        if (msp == null) {
+            throw new MspException("MSP of the serialized identity is not found");
+        }
         return msp.deserializeIdentity(serializedID);
     }
 
@@ -18,6 +18,7 @@ package org.bcia.julongchain.msp.mgmt;
 import org.bcia.julongchain.common.exception.MspException;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.policycheck.policies.CompiledPolicyCache;
 import org.bcia.julongchain.msp.*;
 import org.bcia.julongchain.protos.msp.Identities;
 
@@ -121,6 +122,8 @@ public class MspMgmtMgr implements IMspManager {
     public void setMspManager(String groupId, IMspManager manager) {
         MspMgmtMgr mspManager = new MspMgmtMgr(manager, true);
         mspManagerMap.put(groupId, mspManager);
+        //按旧MSP编译的策略不再使用
+        CompiledPolicyCache.invalidateGroup(groupId);
     }
 
 
@@ -28,6 +28,7 @@ import org.bcia.julongchain.common.ledger.blockledger.IFileLedgerBlockStore;
 import org.bcia.julongchain.common.ledger.blockledger.file.FileLedger;
 import org.bcia.julongchain.common.log.JulongChainLog;
 import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.policycheck.policies.GroupPolicyManagerGetter;
 import org.bcia.julongchain.common.resourceconfig.IResourcesConfigBundle;
 import org.bcia.julongchain.common.resourceconfig.ResourcesConfigBundle;
 import org.bcia.julongchain.common.util.proto.BlockUtils;
@@ -256,6 +257,7 @@ public class Node {
         }
 
         LogSanityChecks.logPolicy(groupConfigBundle);
+        GroupPolicyManagerGetter.register(groupId, groupConfigBundle);
 
         //Gossip TODO
 
@@ -331,6 +333,9 @@ public class Node {
             public void onConfigBlockChanged(Common.Block configBlock) throws CommitterException {
                 try {
                     String groupIDFromBlock = BlockUtils.getGroupIDFromBlock(configBlock);
+                    //按新配置替换ACL检查使用的策略管理者
+                    GroupPolicyManagerGetter.register(groupIDFromBlock, GroupConfigBundle.parseFrom(BlockUtils
+                            .extractEnvelope(configBlock, 0)));
                     Group group = groupMap.get(groupIDFromBlock);
                     if (group != null) {
                         group.setConfigBlock(configBlock);
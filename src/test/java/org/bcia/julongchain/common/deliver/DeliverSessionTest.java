@@ -0,0 +1,239 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.deliver;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.IIterator;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Deliver区块发送测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class DeliverSessionTest {
+
+    @Test
+    public void deliverRange() throws Exception {
+        TestLedger ledger = new TestLedger(50);
+        RecordingObserver observer = new RecordingObserver();
+        DeliverSession session = new DeliverSession("myGroup", new DeliverServer(observer), ledger,
+                ledger.cursor(0), 0, 49, 4);
+        session.start();
+
+        observer.awaitResponses(51);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, observer.responses.get(i).getBlock().getHeader().getNumber());
+        }
+        assertEquals(Common.Status.SUCCESS, observer.responses.get(50).getStatus());
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    public void tailWakesOnAppend() throws Exception {
+        TestLedger ledger = new TestLedger(2);
+        RecordingObserver observer = new RecordingObserver();
+        DeliverSession session = new DeliverSession("myGroup", new DeliverServer(observer), ledger,
+                ledger.cursor(0), 0, 4, 16);
+        session.start();
+
+        observer.awaitResponses(2);
+        assertFalse(session.isFinished());
+        for (int i = 0; i < 3; i++) {
+            ledger.append(block(ledger.height()));
+        }
+
+        observer.awaitResponses(6);
+        assertEquals(4, observer.responses.get(4).getBlock().getHeader().getNumber());
+        assertEquals(Common.Status.SUCCESS, observer.responses.get(5).getStatus());
+    }
+
+    @Test
+    public void sendOnlyWhenReady() throws Exception {
+        TestLedger ledger = new TestLedger(10);
+        ServerCallStreamObserver<Ab.DeliverResponse> observer = mock(ServerCallStreamObserver.class);
+        when(observer.isReady()).thenReturn(false);
+        DeliverServer server = new DeliverServer(observer);
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(observer).setOnReadyHandler(onReady.capture());
+
+        DeliverSession session = new DeliverSession("myGroup", server, ledger, ledger.cursor(0), 0, 9, 4);
+        session.start();
+        Thread.sleep(200);
+        verify(observer, never()).onNext(any());
+
+        when(observer.isReady()).thenReturn(true);
+        onReady.getValue().run();
+        verify(observer, timeout(5000).times(11)).onNext(any());
+        verify(observer, timeout(5000)).request(1);
+        assertTrue(session.isFinished());
+    }
+
+    @Test
+    public void halfCloseCompletesAfterSession() throws Exception {
+        TestLedger ledger = new TestLedger(2);
+        ServerCallStreamObserver<Ab.DeliverResponse> observer = mock(ServerCallStreamObserver.class);
+        when(observer.isReady()).thenReturn(true);
+        DeliverServer server = new DeliverServer(observer);
+
+        DeliverSession session = new DeliverSession("myGroup", server, ledger, ledger.cursor(0), 0, 4, 4);
+        session.start();
+        //Seek后立即半关闭, 流须在区块发送完毕后才结束
+        server.halfClose();
+        verify(observer, timeout(5000).times(2)).onNext(any());
+        verify(observer, never()).onCompleted();
+
+        for (int i = 0; i < 3; i++) {
+            ledger.append(block(ledger.height()));
+        }
+        verify(observer, timeout(5000)).onCompleted();
+        InOrder inOrder = inOrder(observer);
+        inOrder.verify(observer, times(6)).onNext(any());
+        inOrder.verify(observer).onCompleted();
+        //半关闭后不再读取下一个请求
+        verify(observer, never()).request(1);
+    }
+
+    @Test
+    public void halfCloseWithoutSessionCompletes() throws Exception {
+        ServerCallStreamObserver<Ab.DeliverResponse> observer = mock(ServerCallStreamObserver.class);
+        DeliverServer server = new DeliverServer(observer);
+        server.halfClose();
+        server.halfClose();
+        verify(observer).onCompleted();
+    }
+
+    @Test
+    public void replyErrorRequestsNext() throws Exception {
+        RecordingObserver recorder = new RecordingObserver();
+        ServerCallStreamObserver<Ab.DeliverResponse> observer = mock(ServerCallStreamObserver.class);
+        doAnswer(invocation -> {
+            recorder.onNext(invocation.getArgument(0));
+            return null;
+        }).when(observer).onNext(any());
+        DeliverServer server = new DeliverServer(observer);
+
+        server.replyError(Common.Status.SERVICE_UNAVAILABLE);
+        recorder.awaitResponses(1);
+        assertEquals(Common.Status.SERVICE_UNAVAILABLE, recorder.responses.get(0).getStatus());
+        verify(observer).request(1);
+    }
+
+    private static Common.Block block(long number) {
+        return Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(number))
+                .setData(Common.BlockData.newBuilder().addData(ByteString.copyFromUtf8("block " + number)))
+                .build();
+    }
+
+    /**
+     * 客户端视角的响应, 经过序列化及解析
+     */
+    private static class RecordingObserver implements StreamObserver<Ab.DeliverResponse> {
+        private final List<Ab.DeliverResponse> responses = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onNext(Ab.DeliverResponse value) {
+            try {
+                responses.add(Ab.DeliverResponse.parseFrom(value.toByteArray()));
+            } catch (InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        private void awaitResponses(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (responses.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, responses.size());
+        }
+    }
+
+    private static class TestLedger extends ReadWriteBase {
+        private final List<Common.Block> blocks = new CopyOnWriteArrayList<>();
+
+        private TestLedger(int height) {
+            for (int i = 0; i < height; i++) {
+                blocks.add(block(i));
+            }
+        }
+
+        private IIterator cursor(long start) {
+            return new IIterator() {
+                private int next = (int) start;
+
+                @Override
+                public QueryResult next() {
+                    Common.Block block = blocks.get(next++);
+                    return new QueryResult(new AbstractMap.SimpleEntry<>(new QueryResult(block), Common.Status.SUCCESS));
+                }
+
+                @Override
+                public void readyChain() {
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public IIterator iterator(Ab.SeekPosition startType) {
+            return cursor(startType.getSpecified().getNumber());
+        }
+
+        @Override
+        public long height() {
+            return blocks.size();
+        }
+
+        @Override
+        public void append(Common.Block block) throws LedgerException {
+            blocks.add(block);
+            notifyAppended();
+        }
+    }
+}
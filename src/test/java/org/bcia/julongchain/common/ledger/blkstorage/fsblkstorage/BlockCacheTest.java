@@ -0,0 +1,82 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockCache测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockCacheTest {
+
+	private static Common.Block newBlock(long number, int dataSize) {
+		return Common.Block.newBuilder()
+				.setHeader(Common.BlockHeader.newBuilder().setNumber(number))
+				.setData(Common.BlockData.newBuilder().addData(ByteString.copyFrom(new byte[dataSize])))
+				.build();
+	}
+
+	@Test
+	public void getByNumberAndLocation() {
+		BlockCache cache = new BlockCache(1024 * 1024);
+		Common.Block block = newBlock(1, 100);
+		FileLocPointer flp = new FileLocPointer(0, 200, 0);
+		cache.put(block, flp);
+
+		assertSame(block, cache.get(1));
+		assertSame(block, cache.get(new FileLocPointer(0, 200, 0)));
+		assertNull(cache.get(2));
+		assertNull(cache.get(new FileLocPointer(1, 200, 0)));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void evictByBytes() {
+		//区块号为0时区块头为空, 序列化长度与其他区块不同, 因此从区块1开始
+		Common.Block block = newBlock(1, 1000);
+		long blockSize = block.getSerializedSize();
+		BlockCache cache = new BlockCache(blockSize * 2);
+		cache.put(block, new FileLocPointer(0, 0, 0));
+		cache.put(newBlock(2, 1000), new FileLocPointer(0, 2000, 0));
+		//访问区块1, 使区块2成为最久未访问的区块
+		assertNotNull(cache.get(1));
+		cache.put(newBlock(3, 1000), new FileLocPointer(0, 4000, 0));
+
+		assertNotNull(cache.get(1));
+		assertNull(cache.get(2));
+		assertNull(cache.get(new FileLocPointer(0, 2000, 0)));
+		assertNotNull(cache.get(3));
+		assertEquals(1, cache.getEvictions());
+		assertTrue(cache.getCurrentBytes() <= cache.getMaxBytes());
+	}
+
+	@Test
+	public void disabled() {
+		BlockCache cache = new BlockCache(0);
+		cache.put(newBlock(0, 10), new FileLocPointer(0, 0, 0));
+		assertNull(cache.get(0));
+		assertEquals(0, cache.getSize());
+	}
+}
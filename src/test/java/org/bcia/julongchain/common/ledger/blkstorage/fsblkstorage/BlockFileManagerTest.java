@@ -0,0 +1,214 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
+import org.bcia.julongchain.common.ledger.blkstorage.IBlockStore;
+import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockFileManager崩溃恢复测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockFileManagerTest {
+	private static final String LEDGER_ID = "recoverGroup";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void shortFileRescannedOnStartup() throws Exception {
+		Config config = new Config(folder.newFolder().getPath(), 0);
+		//按组合fsync策略写入, 检查点先于区块数据落盘
+		config.setSyncEveryNBlocks(100);
+		String blockFile = BlockFileManager.deriveBlockfilePath(config.getLedgerBlockDir(LEDGER_ID), 0);
+
+		FsBlockStoreProvider provider = new FsBlockStoreProvider(config, indexConfig());
+		IBlockStore store = provider.createBlockStore(LEDGER_ID);
+		Common.Block previous = null;
+		long sizeAfterBlock2 = 0;
+		for (long i = 0; i < 5; i++) {
+			previous = block(i, previous);
+			store.addBlock(previous);
+			if (i == 2) {
+				sizeAfterBlock2 = new RandomAccessFile(blockFile, "r").length();
+			}
+		}
+		store.shutdown();
+
+		//模拟崩溃: 最后一次fsync之后的区块3、4丢失, 区块3只留下部分字节
+		try (RandomAccessFile file = new RandomAccessFile(blockFile, "rw")) {
+			file.setLength(sizeAfterBlock2 + 5);
+		}
+
+		//重新打开区块存储, 索引库保持打开
+		store = provider.openBlockStore(LEDGER_ID);
+		try {
+			assertEquals(3, store.getBlockchainInfo().getHeight());
+			assertEquals(2, store.retrieveBlockByNumber(2).getHeader().getNumber());
+			try {
+				store.retrieveBlockByNumber(3);
+				fail("Lost block should not be readable");
+			} catch (LedgerException e) {
+				//区块3已丢失
+			}
+			//丢失的区块可重新追加
+			Common.Block block3 = block(3, store.retrieveBlockByNumber(2));
+			store.addBlock(block3);
+			assertEquals(4, store.getBlockchainInfo().getHeight());
+			assertEquals(block3, store.retrieveBlockByNumber(3));
+			assertEquals(sizeAfterBlock2 + 8 + block3.getSerializedSize(), new RandomAccessFile(blockFile, "r").length());
+		} finally {
+			store.shutdown();
+		}
+	}
+
+	@Test
+	public void lostBlocksNotFoundByTxIDOrHash() throws Exception {
+		Config config = new Config(folder.newFolder().getPath(), 0);
+		config.setSyncEveryNBlocks(100);
+		String blockFile = BlockFileManager.deriveBlockfilePath(config.getLedgerBlockDir(LEDGER_ID), 0);
+
+		FsBlockStoreProvider provider = new FsBlockStoreProvider(config, fullIndexConfig());
+		IBlockStore store = provider.createBlockStore(LEDGER_ID);
+		Common.Block previous = null;
+		long sizeAfterBlock2 = 0;
+		byte[] lostBlockHash = null;
+		for (long i = 0; i < 5; i++) {
+			previous = block(i, previous, "tx-" + i);
+			store.addBlock(previous);
+			if (i == 2) {
+				sizeAfterBlock2 = new RandomAccessFile(blockFile, "r").length();
+			} else if (i == 3) {
+				lostBlockHash = Util.getHashBytes(previous.getHeader());
+			}
+		}
+		store.shutdown();
+
+		//模拟崩溃: 索引已包含区块3、4, 区块文件只保留到区块2
+		try (RandomAccessFile file = new RandomAccessFile(blockFile, "rw")) {
+			file.setLength(sizeAfterBlock2 + 5);
+		}
+
+		store = provider.openBlockStore(LEDGER_ID);
+		try {
+			assertEquals(3, store.getBlockchainInfo().getHeight());
+			assertNotNull(store.retrieveTxByID("tx-2"));
+			assertLost(store, "tx-3", lostBlockHash);
+			assertNull(store.retrieveTxByBlockNumTranNum(3, 0));
+
+			//重新追加的区块3内容不同, 残留的索引项指向新区块的字节
+			Common.Block block3 = block(3, store.retrieveBlockByNumber(2), "tx-3b");
+			store.addBlock(block3);
+			assertLost(store, "tx-3", lostBlockHash);
+			assertNull(store.retrieveTxByID("tx-4"));
+			assertEquals(block3, store.retrieveBlockByTxID("tx-3b"));
+			assertEquals(block3, store.retrieveBlockByHash(Util.getHashBytes(block3.getHeader())));
+			assertNotNull(store.retrieveTxByID("tx-3b"));
+			assertEquals(TransactionPackage.TxValidationCode.VALID, store.retrieveTxValidationCodeByTxID("tx-3b"));
+		} finally {
+			store.shutdown();
+		}
+	}
+
+	@Test
+	public void blockCacheMissCountedOnce() throws Exception {
+		Config config = new Config(folder.newFolder().getPath(), 0);
+		FsBlockStoreProvider provider = new FsBlockStoreProvider(config, indexConfig());
+		FsBlockStore store = (FsBlockStore) provider.createBlockStore(LEDGER_ID);
+		try {
+			store.addBlock(block(0, null));
+			BlockCache blockCache = store.getBlockFileManager().getBlockCache();
+			blockCache.clear();
+
+			assertEquals(0, store.retrieveBlockByNumber(0).getHeader().getNumber());
+			assertEquals(1, blockCache.getMisses());
+			assertEquals(0, blockCache.getHits());
+			//读取文件后写入缓存
+			store.retrieveBlockByNumber(0);
+			assertEquals(1, blockCache.getMisses());
+			assertEquals(1, blockCache.getHits());
+		} finally {
+			store.shutdown();
+		}
+	}
+
+	private static void assertLost(IBlockStore store, String txID, byte[] blockHash) throws LedgerException {
+		assertNull(store.retrieveTxByID(txID));
+		assertNull(store.retrieveBlockByTxID(txID));
+		assertNull(store.retrieveTxValidationCodeByTxID(txID));
+		assertNull(store.retrieveBlockByHash(blockHash));
+	}
+
+	private static IndexConfig fullIndexConfig() {
+		return new IndexConfig(new String[]{
+				BlockStorage.INDEXABLE_ATTR_BLOCK_HASH,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM,
+				BlockStorage.INDEXABLE_ATTR_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE
+		});
+	}
+
+	private static Common.Block block(long number, Common.Block previous, String txID) {
+		Common.GroupHeader groupHeader = Common.GroupHeader.newBuilder().setTxId(txID).build();
+		Common.Payload payload = Common.Payload.newBuilder()
+				.setHeader(Common.Header.newBuilder().setGroupHeader(groupHeader.toByteString()))
+				.build();
+		Common.Envelope envelope = Common.Envelope.newBuilder().setPayload(payload.toByteString()).build();
+		Common.Block block = block(number, previous);
+		//区块头部包含数据hash, 内容不同的区块hash不同
+		return block.toBuilder()
+				.setHeader(block.getHeader().toBuilder().setDataHash(ByteString.copyFromUtf8(txID)))
+				.setData(Common.BlockData.newBuilder().addData(envelope.toByteString()))
+				.build();
+	}
+
+	private static IndexConfig indexConfig() {
+		return new IndexConfig(new String[]{
+				BlockStorage.INDEXABLE_ATTR_BLOCK_HASH,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM
+		});
+	}
+
+	private static Common.Block block(long number, Common.Block previous) {
+		Common.BlockHeader.Builder header = Common.BlockHeader.newBuilder().setNumber(number);
+		if (previous != null) {
+			header.setPreviousHash(previous.getHeader().toByteString());
+		}
+		return Common.Block.newBuilder()
+				.setHeader(header)
+				.setData(Common.BlockData.getDefaultInstance())
+				.setMetadata(Common.BlockMetadata.newBuilder().addMetadata(ByteString.EMPTY))
+				.build();
+	}
+}
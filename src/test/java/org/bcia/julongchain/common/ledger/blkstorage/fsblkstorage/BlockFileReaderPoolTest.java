@@ -0,0 +1,133 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockFileReaderPool测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockFileReaderPoolTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String rootDir;
+	private BlockFileReaderPool pool;
+
+	@Before
+	public void setUp() throws Exception {
+		rootDir = folder.getRoot().getAbsolutePath();
+		pool = new BlockFileReaderPool(rootDir, 1, true);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.close();
+	}
+
+	@Test
+	public void readBlockBytes() throws Exception {
+		byte[] first = "first block".getBytes();
+		byte[] second = "second block".getBytes();
+		BlockFileWriter writer = new BlockFileWriter(BlockFileManager.deriveBlockfilePath(rootDir, 0), 2, 0);
+		writer.append(Util.longToBytes(first.length, BlockFileManager.PEEK_BYTES_LEN), first, true);
+		writer.append(Util.longToBytes(second.length, BlockFileManager.PEEK_BYTES_LEN), second, true);
+		writer.close();
+
+		assertArrayEquals(first, pool.readBlockBytes(0, false, 0));
+		long secondOffset = BlockFileManager.PEEK_BYTES_LEN + first.length;
+		assertArrayEquals(second, pool.readBlockBytes(0, false, secondOffset));
+		//写满后以内存映射方式读取
+		assertArrayEquals(second, pool.readBlockBytes(0, true, secondOffset));
+		assertArrayEquals(second, pool.read(0, true, secondOffset + BlockFileManager.PEEK_BYTES_LEN, second.length));
+		long end = secondOffset + BlockFileManager.PEEK_BYTES_LEN + second.length;
+		assertEquals(end, pool.fileSize(0, true));
+		assertNull(pool.readBlockBytes(0, true, end));
+	}
+
+	@Test
+	public void corruptLengthOrOffsetRejected() throws Exception {
+		byte[] block = "corrupt block".getBytes();
+		BlockFileWriter writer = new BlockFileWriter(BlockFileManager.deriveBlockfilePath(rootDir, 0));
+		writer.append(Util.longToBytes(-5, BlockFileManager.PEEK_BYTES_LEN), block, true);
+		writer.close();
+
+		for (boolean sealed : new boolean[]{false, true}) {
+			assertRejected(() -> pool.readBlockBytes(0, sealed, 0));
+			assertRejected(() -> pool.readBlockPrefix(0, sealed, 0, 4));
+			assertRejected(() -> pool.read(0, sealed, BlockFileManager.PEEK_BYTES_LEN, 1024));
+			assertRejected(() -> pool.read(0, sealed, -1, 1));
+		}
+	}
+
+	@Test
+	public void evictLeastRecentlyUsedFile() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			byte[] block = ("block in file " + i).getBytes();
+			BlockFileWriter writer = new BlockFileWriter(BlockFileManager.deriveBlockfilePath(rootDir, i));
+			writer.append(Util.longToBytes(block.length, BlockFileManager.PEEK_BYTES_LEN), block, true);
+			writer.close();
+		}
+		//池容量为1, 交替读取两个文件时旧文件被关闭后重新打开
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 2; i++) {
+				assertArrayEquals(("block in file " + i).getBytes(), pool.readBlockBytes(i, true, 0));
+			}
+		}
+	}
+
+	@Test
+	public void unmapMappedBuffer() throws Exception {
+		File file = folder.newFile("mapped");
+		Files.write(file.toPath(), "mapped block".getBytes());
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			//映射立即释放, 不依赖GC
+			assertTrue(BlockFileReaderPool.unmap(mapped));
+		}
+	}
+
+	private interface Read {
+		byte[] read() throws Exception;
+	}
+
+	private static void assertRejected(Read read) throws Exception {
+		try {
+			read.read();
+			fail("Corrupt read should be rejected");
+		} catch (LedgerException e) {
+			//与文件读取路径一致
+		}
+	}
+}
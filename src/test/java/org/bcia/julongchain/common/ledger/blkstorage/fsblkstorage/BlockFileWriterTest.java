@@ -0,0 +1,104 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockFileWriter测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockFileWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void syncEveryNBlocks() throws Exception {
+		BlockFileWriter writer = new BlockFileWriter(newFilePath(), 3, 0);
+		try {
+			writer.append(new byte[8], new byte[10], true);
+			writer.append(new byte[8], new byte[10], true);
+			assertEquals(2, writer.getUnsyncedBlocks());
+			writer.append(new byte[8], new byte[10], true);
+			assertEquals(0, writer.getUnsyncedBlocks());
+			//不要求落盘的写入不计数
+			writer.append(new byte[10], false);
+			assertEquals(0, writer.getUnsyncedBlocks());
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void syncEveryBlockByDefault() throws Exception {
+		BlockFileWriter writer = new BlockFileWriter(newFilePath(), 1, 0);
+		try {
+			writer.append(new byte[8], new byte[10], true);
+			assertEquals(0, writer.getUnsyncedBlocks());
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void syncIntervalWithoutFurtherAppend() throws Exception {
+		BlockFileWriter writer = new BlockFileWriter(newFilePath(), 0, 100);
+		try {
+			writer.append(new byte[8], new byte[10], true);
+			assertEquals(1, writer.getUnsyncedBlocks());
+			//写入停止后由定时任务落盘
+			while (writer.getUnsyncedBlocks() != 0) {
+				Thread.sleep(20);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void truncateFile() throws Exception {
+		String filePath = newFilePath();
+		BlockFileWriter writer = new BlockFileWriter(filePath, 1, 0);
+		try {
+			writer.append(new byte[8], new byte[92], true);
+			assertEquals(100, new File(filePath).length());
+			writer.truncateFile(40);
+			assertEquals(40, new File(filePath).length());
+			//目标大小不小于文件大小时不修改文件
+			writer.truncateFile(60);
+			assertEquals(40, new File(filePath).length());
+			//截断后从新的末尾继续写入
+			writer.append(new byte[10], true);
+			assertEquals(50, new File(filePath).length());
+		} finally {
+			writer.close();
+		}
+	}
+
+	private String newFilePath() throws Exception {
+		return new File(folder.newFolder(), "blockfile_000000").getPath();
+	}
+}
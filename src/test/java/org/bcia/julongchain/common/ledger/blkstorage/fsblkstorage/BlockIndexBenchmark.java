@@ -0,0 +1,199 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.ArrayUtils;
+import org.bcia.julongchain.common.exception.LevelDBException;
+import org.bcia.julongchain.common.ledger.blkstorage.BlockStorage;
+import org.bcia.julongchain.common.ledger.blkstorage.IndexConfig;
+import org.bcia.julongchain.common.ledger.util.IDBHandler;
+import org.bcia.julongchain.common.ledger.util.IDBProvider;
+import org.bcia.julongchain.common.ledger.util.leveldbhelper.UpdateBatch;
+import org.bcia.julongchain.core.ledger.util.TxValidationFlags;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.bcia.julongchain.protos.common.Common;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区块索引性能测试
+ * 对比原ArrayUtils拼接键的indexBlock与使用BlockIndexCodec的indexBlock
+ * 运行: 执行main方法
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockIndexBenchmark {
+	@Param({"2000"})
+	private int txCount;
+
+	private BlockIndexInfo blockIndexInfo;
+	private BlockIndex blockIndex;
+	private Blackhole blackhole;
+
+	@Setup
+	public void setUp(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		List<TxIndexInfo> txOffsets = new ArrayList<>(txCount);
+		long offset = 100;
+		for (int i = 0; i < txCount; i++) {
+			String txID = (UUID.randomUUID().toString() + UUID.randomUUID().toString()).replace("-", "");
+			txOffsets.add(new TxIndexInfo(txID, new LocPointer(offset, 3000)));
+			offset += 3003;
+		}
+		Common.BlockMetadata metadata = Common.BlockMetadata.newBuilder()
+				.addMetadata(ByteString.EMPTY)
+				.addMetadata(ByteString.EMPTY)
+				.addMetadata(ByteString.copyFrom(new byte[txCount]))
+				.addMetadata(ByteString.EMPTY)
+				.build();
+		blockIndexInfo = new BlockIndexInfo(1000, new byte[32], new FileLocPointer(3, 4096, 0), txOffsets, metadata);
+		String[] attrsToIndex = {
+				BlockStorage.INDEXABLE_ATTR_BLOCK_HASH,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM,
+				BlockStorage.INDEXABLE_ATTR_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_NUM_TRAN_NUM,
+				BlockStorage.INDEXABLE_ATTR_BLOCK_TX_ID,
+				BlockStorage.INDEXABLE_ATTR_TX_VALIDATION_CODE
+		};
+		blockIndex = new BlockIndex(new IndexConfig(attrsToIndex), new BlackholeDBProvider(), "myGroup");
+	}
+
+	@Benchmark
+	public void indexBlock() throws Exception {
+		blockIndex.indexBlock(blockIndexInfo);
+	}
+
+	@Benchmark
+	public UpdateBatch legacyIndexBlock() {
+		FileLocPointer flp = blockIndexInfo.getFlp();
+		List<TxIndexInfo> txOffsets = blockIndexInfo.getTxOffsets();
+		TxValidationFlags txsfltr = new TxValidationFlags(blockIndexInfo.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE).size());
+		UpdateBatch batch = new UpdateBatch();
+		byte[] flpBytes = legacyMarshal(flp);
+		batch.put(legacyKey("h", blockIndexInfo.getBlockHash()), flpBytes);
+		batch.put(legacyKey("n", Util.longToBytes(blockIndexInfo.getBlockNum(), 8)), flpBytes);
+		for (TxIndexInfo txOffset : txOffsets) {
+			FileLocPointer txFlp = new FileLocPointer(flp.getFileSuffixNum(), txOffset.getLoc());
+			batch.put(legacyKey("t", txOffset.getTxID().getBytes(StandardCharsets.UTF_8)), legacyMarshal(txFlp));
+		}
+		for (int i = 0; i < txOffsets.size(); i++) {
+			FileLocPointer txFlp = new FileLocPointer(flp.getFileSuffixNum(), txOffsets.get(i).getLoc());
+			byte[] key = ArrayUtils.addAll(Util.longToBytes(blockIndexInfo.getBlockNum(), 8), Util.longToBytes(i, 8));
+			batch.put(legacyKey("a", key), legacyMarshal(txFlp));
+		}
+		for (TxIndexInfo txOffset : txOffsets) {
+			batch.put(legacyKey("b", txOffset.getTxID().getBytes(StandardCharsets.UTF_8)), flpBytes);
+		}
+		for (int i = 0; i < txOffsets.size(); i++) {
+			batch.put(legacyKey("v", txOffsets.get(i).getTxID().getBytes(StandardCharsets.UTF_8)),
+					String.valueOf(txsfltr.flag(i).getNumber()).getBytes(StandardCharsets.UTF_8));
+		}
+		batch.put(legacyKey("indexCheckpointKey", new byte[0]), Util.longToBytes(blockIndexInfo.getBlockNum(), 8));
+		return batch;
+	}
+
+	private static byte[] legacyKey(String prefix, byte[] content) {
+		byte[] result = new byte[0];
+		result = ArrayUtils.addAll(result, prefix.getBytes(StandardCharsets.UTF_8));
+		return ArrayUtils.addAll(result, content);
+	}
+
+	private static byte[] legacyMarshal(FileLocPointer flp) {
+		byte[] result = ArrayUtils.addAll(Util.longToBytes(flp.getFileSuffixNum(), 8),
+				Util.longToBytes(flp.getLocPointer().getOffset(), 8));
+		return ArrayUtils.addAll(result, Util.longToBytes(flp.getLocPointer().getBytesLength(), 8));
+	}
+
+	/**
+	 * 只消费写入批次的数据库, 排除leveldb本身的开销
+	 */
+	private class BlackholeDBProvider implements IDBProvider {
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public byte[] get(byte[] key) {
+			return null;
+		}
+
+		@Override
+		public void put(byte[] key, byte[] value, boolean sync) {
+			blackhole.consume(value);
+		}
+
+		@Override
+		public void delete(byte[] key, boolean sync) {
+		}
+
+		@Override
+		public void writeBatch(UpdateBatch batch, boolean sync) {
+			blackhole.consume(batch);
+		}
+
+		@Override
+		public Iterator<Map.Entry<byte[], byte[]>> getIterator(byte[] startKey) throws LevelDBException {
+			return null;
+		}
+
+		@Override
+		public String getDBPath() {
+			return null;
+		}
+
+		@Override
+		public IDBHandler getDb() {
+			return null;
+		}
+
+		@Override
+		public String getLedgerID() {
+			return null;
+		}
+
+		@Override
+		public void setLedgerID(String ledgerID) {
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.include(BlockIndexBenchmark.class.getSimpleName())
+				.addProfiler("gc")
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.bcia.julongchain.core.ledger.util.Util;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockIndexCodec测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockIndexCodecTest {
+
+	@Test
+	public void keysCompatibleWithPreviousFormat() {
+		byte[] blockNumKey = ArrayUtils.addAll("n".getBytes(StandardCharsets.UTF_8), Util.longToBytes(12345L, 8));
+		assertArrayEquals(blockNumKey, BlockIndexCodec.blockNumKey(12345L));
+
+		byte[] tranNumKey = ArrayUtils.addAll("a".getBytes(StandardCharsets.UTF_8), Util.longToBytes(7L, 8));
+		tranNumKey = ArrayUtils.addAll(tranNumKey, Util.longToBytes(3L, 8));
+		assertArrayEquals(tranNumKey, BlockIndexCodec.blockNumTranNumKey(7L, 3L));
+
+		String txID = "5f2c0a1e9b7d4c3a8e6f";
+		assertArrayEquals(("t" + txID).getBytes(StandardCharsets.UTF_8), BlockIndexCodec.txIDKey(txID));
+		assertArrayEquals(("b" + txID).getBytes(StandardCharsets.UTF_8), BlockIndexCodec.blockTxIDKey(txID));
+		assertArrayEquals(("v" + txID).getBytes(StandardCharsets.UTF_8), BlockIndexCodec.txValidationCodeKey(txID));
+		String utf8TxID = "交易" + txID;
+		assertArrayEquals(("t" + utf8TxID).getBytes(StandardCharsets.UTF_8), BlockIndexCodec.txIDKey(utf8TxID));
+
+		byte[] flp = ArrayUtils.addAll(Util.longToBytes(2, 8), Util.longToBytes(4096, 8));
+		flp = ArrayUtils.addAll(flp, Util.longToBytes(300, 8));
+		assertArrayEquals(flp, BlockIndexCodec.encodeFlp(2, 4096, 300));
+		FileLocPointer pointer = new FileLocPointer();
+		pointer.unmarshal(BlockIndexCodec.encodeFlp(2, 4096, 300));
+		assertEquals(2, pointer.getFileSuffixNum());
+		assertEquals(4096, pointer.getLocPointer().getOffset());
+		assertEquals(300, pointer.getLocPointer().getBytesLength());
+	}
+
+	@Test
+	public void blockNumKeysSortInNumericOrder() {
+		long[] nums = {0L, 1L, 255L, 256L, 65535L, 1L << 40};
+		for (int i = 1; i < nums.length; i++) {
+			assertTrue(compareUnsigned(BlockIndexCodec.blockNumKey(nums[i - 1]), BlockIndexCodec.blockNumKey(nums[i])) < 0);
+		}
+	}
+
+	/**
+	 * leveldb默认按无符号字节序比较键
+	 */
+	private static int compareUnsigned(byte[] a, byte[] b) {
+		for (int i = 0; i < Math.min(a.length, b.length); i++) {
+			int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	@Test
+	public void validationCode() {
+		for (TransactionPackage.TxValidationCode code : TransactionPackage.TxValidationCode.values()) {
+			if (code == TransactionPackage.TxValidationCode.UNRECOGNIZED) {
+				continue;
+			}
+			byte[] raw = BlockIndexCodec.encodeValidationCode(code.getNumber());
+			assertEquals(1, raw.length);
+			assertEquals(code, BlockIndexCodec.decodeValidationCode(raw));
+		}
+		//旧版本以十进制字符串保存
+		assertEquals(TransactionPackage.TxValidationCode.VALID,
+				BlockIndexCodec.decodeValidationCode("0".getBytes(StandardCharsets.UTF_8)));
+		assertEquals(TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT,
+				BlockIndexCodec.decodeValidationCode("11".getBytes(StandardCharsets.UTF_8)));
+		assertNull(BlockIndexCodec.decodeValidationCode(new byte[0]));
+	}
+}
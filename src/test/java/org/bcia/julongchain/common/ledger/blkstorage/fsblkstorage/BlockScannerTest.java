@@ -0,0 +1,117 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.ledger.blkstorage.fsblkstorage;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * BlockScanner测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockScannerTest {
+
+	private static ByteString newEnvelope(String txID, int dataSize) {
+		Common.GroupHeader gh = Common.GroupHeader.newBuilder().setGroupId("myGroup").setTxId(txID).build();
+		Common.Payload payload = Common.Payload.newBuilder()
+				.setHeader(Common.Header.newBuilder().setGroupHeader(gh.toByteString()))
+				.setData(ByteString.copyFrom(new byte[dataSize]))
+				.build();
+		return Common.Envelope.newBuilder().setPayload(payload.toByteString()).build().toByteString();
+	}
+
+	private static Common.Block newBlock(long number) {
+		return Common.Block.newBuilder()
+				.setHeader(Common.BlockHeader.newBuilder()
+						.setNumber(number)
+						.setDataHash(ByteString.copyFrom(new byte[32])))
+				.setData(Common.BlockData.newBuilder()
+						.addData(newEnvelope("tx1", 10))
+						.addData(newEnvelope("tx2", 200))
+						.addData(newEnvelope("tx3", 20000)))
+				.setMetadata(Common.BlockMetadata.newBuilder()
+						.addMetadata(ByteString.EMPTY)
+						.addMetadata(ByteString.EMPTY)
+						.addMetadata(ByteString.copyFrom(new byte[]{0, 1, 0})))
+				.build();
+	}
+
+	@Test
+	public void scanMatchesSerialization() throws Exception {
+		Common.Block block = newBlock(5);
+		byte[] blockBytes = block.toByteArray();
+		long position = 1024;
+		SerializedBlockInfo scanned = BlockScanner.scan(blockBytes, position);
+		SerializedBlockInfo expected = BlockSerialization.serializeBlock(block, position);
+
+		assertEquals(block.getHeader(), scanned.getBlockHeader());
+		assertEquals(block.getMetadata(), scanned.getMetadata());
+		List<TxIndexInfo> txOffsets = scanned.getTxOffsets();
+		assertEquals(expected.getTxOffsets().size(), txOffsets.size());
+		for (int i = 0; i < txOffsets.size(); i++) {
+			TxIndexInfo tx = txOffsets.get(i);
+			assertEquals(expected.getTxOffsets().get(i).getTxID(), tx.getTxID());
+			assertEquals(expected.getTxOffsets().get(i).getLoc().getOffset(), tx.getLoc().getOffset());
+			assertEquals(expected.getTxOffsets().get(i).getLoc().getBytesLength(), tx.getLoc().getBytesLength());
+			//根据位置取出的字节应为原始Envelope
+			int offset = (int) (tx.getLoc().getOffset() - position);
+			int length = (int) tx.getLoc().getBytesLength();
+			assertEquals(block.getData().getData(i), ByteString.copyFrom(blockBytes, offset, length));
+		}
+	}
+
+	@Test
+	public void scanEmptyBlock() throws Exception {
+		Common.Block block = Common.Block.newBuilder()
+				.setHeader(Common.BlockHeader.newBuilder().setNumber(0))
+				.build();
+		SerializedBlockInfo scanned = BlockScanner.scan(block.toByteArray(), 0);
+		assertEquals(0, scanned.getBlockHeader().getNumber());
+		assertTrue(scanned.getTxOffsets().isEmpty());
+	}
+
+	@Test
+	public void scanHeaderFromPrefix() throws Exception {
+		Common.Block block = newBlock(7);
+		byte[] blockBytes = block.toByteArray();
+		int headerLength = BlockScanner.headerPrefixLength(Arrays.copyOf(blockBytes, 16));
+		assertEquals(2 + block.getHeader().getSerializedSize(), headerLength);
+		byte[] prefix = Arrays.copyOf(blockBytes, headerLength);
+		assertEquals(block.getHeader(), BlockScanner.scanHeader(prefix));
+	}
+
+	@Test
+	public void scanTxOffsetsOnly() throws Exception {
+		Common.Block block = newBlock(9);
+		byte[] blockBytes = block.toByteArray();
+		List<TxIndexInfo> txOffsets = BlockScanner.scanTxOffsets(blockBytes, 8);
+		List<TxIndexInfo> expected = BlockScanner.scan(blockBytes, 8).getTxOffsets();
+		assertEquals(expected.size(), txOffsets.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getTxID(), txOffsets.get(i).getTxID());
+			assertEquals(expected.get(i).getLoc().getOffset(), txOffsets.get(i).getLoc().getOffset());
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.bcia.julongchain.common.ledger.util.leveldbhelper;
 
+import org.bcia.julongchain.common.exception.LevelDBException;
 import org.bcia.julongchain.common.ledger.util.IDBHandler;
 import org.bcia.julongchain.common.ledger.util.IDBProvider;
 import org.bcia.julongchain.core.ledger.ledgerconfig.LedgerConfig;
@@ -233,4 +234,43 @@ public class LevelDBProviderTest {
 		}
 		assertSame(1, i);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void dbPerGroup() throws Exception {
+		String perGroupDir = workSpace + File.separator + UUID.randomUUID();
+		LevelDBProvider perGroup = new LevelDBProvider(perGroupDir, true);
+		LevelDBProvider g1 = (LevelDBProvider) perGroup.getDBHandle("g1");
+		LevelDBProvider g2 = (LevelDBProvider) perGroup.getDBHandle("g2");
+		assertSame(g1, perGroup.getDBHandle("g1"));
+		assertEquals(perGroupDir + File.separator + "g1", g1.getDBPath());
+		assertEquals(perGroupDir + File.separator + "g2", g2.getDBPath());
+
+		g1.put("k".getBytes(), "v1".getBytes(), true);
+		g2.put("k".getBytes(), "v2".getBytes(), true);
+		assertArrayEquals("v1".getBytes(), g1.get("k".getBytes()));
+		assertArrayEquals("v2".getBytes(), g2.get("k".getBytes()));
+
+		//独立leveldb中的key不加前缀
+		Map.Entry<byte[], byte[]> first = g1.getIterator(null).next();
+		assertArrayEquals("k".getBytes(), first.getKey());
+		assertArrayEquals("k".getBytes(), g1.retrieveAppKey(first.getKey()));
+		assertEquals(1, g1.getStats().getWrites());
+
+		//根目录只是各账本leveldb的父目录, 本身不是leveldb
+		assertFalse(new File(perGroupDir, "CURRENT").exists());
+		try {
+			perGroup.get("k".getBytes());
+			fail("Per group root provider should not be readable");
+		} catch (LevelDBException e) {
+			//根provider没有打开leveldb
+		}
+		perGroup.close();
+	}
+
+	@Test
+	public void retrieveAppKey() throws Exception {
+		LevelDBProvider handle = (LevelDBProvider) provider.getDBHandle(groupID);
+		byte[] levelKey = LevelDBProvider.constructLevelKey(groupID, "b".getBytes());
+		assertArrayEquals("b".getBytes(), handle.retrieveAppKey(levelKey));
+	}
+}
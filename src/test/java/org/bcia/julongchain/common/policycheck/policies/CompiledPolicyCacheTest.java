@@ -0,0 +1,43 @@
+package org.bcia.julongchain.common.policycheck.policies;
+
+import org.bcia.julongchain.common.exception.PolicyException;
+import org.bcia.julongchain.common.policies.policy.IPolicy;
+import org.bcia.julongchain.common.policycheck.cauthdsl.CAuthDslBuilder;
+import org.bcia.julongchain.msp.IIdentityDeserializer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 已编译策略缓存测试
+ * @author agent
+ * @date 2026/10/17
+ * @company Aisino
+ */
+public class CompiledPolicyCacheTest {
+
+    @Test
+    public void getOrCompile() throws PolicyException {
+        IIdentityDeserializer deserializer = mock(IIdentityDeserializer.class);
+        byte[] policyA = CAuthDslBuilder.signedByAnyMember(new String[]{"Org1MSP"}).toByteArray();
+        byte[] policyB = CAuthDslBuilder.signedByAnyMember(new String[]{"Org2MSP"}).toByteArray();
+
+        IPolicy first = CompiledPolicyCache.getOrCompile("cacheGroup", deserializer, policyA);
+        assertNotNull(first);
+        //相同群组及策略复用已编译的策略
+        assertSame(first, CompiledPolicyCache.getOrCompile("cacheGroup", deserializer, policyA.clone()));
+        //不同策略或群组分别编译
+        assertNotSame(first, CompiledPolicyCache.getOrCompile("cacheGroup", deserializer, policyB));
+        assertNotSame(first, CompiledPolicyCache.getOrCompile("otherGroup", deserializer, policyA));
+
+        //MSP更新后重新编译
+        IIdentityDeserializer updated = mock(IIdentityDeserializer.class);
+        IPolicy recompiled = CompiledPolicyCache.getOrCompile("cacheGroup", updated, policyA);
+        assertNotSame(first, recompiled);
+        assertSame(recompiled, CompiledPolicyCache.getOrCompile("cacheGroup", updated, policyA));
+
+        CompiledPolicyCache.invalidateGroup("cacheGroup");
+        assertNotSame(recompiled, CompiledPolicyCache.getOrCompile("cacheGroup", updated, policyA));
+    }
+}
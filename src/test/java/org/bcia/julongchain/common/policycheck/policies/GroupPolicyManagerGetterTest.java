@@ -0,0 +1,77 @@
+/**
+ * Copyright Aisino. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.common.policycheck.policies;
+
+import org.bcia.julongchain.common.configtx.IConfigtxValidator;
+import org.bcia.julongchain.common.groupconfig.IGroupConfigBundle;
+import org.bcia.julongchain.common.policies.IPolicyManager;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 群组策略管理者缓存测试
+ * @author agent
+ * @date 2026/10/17
+ * @company Aisino
+ */
+public class GroupPolicyManagerGetterTest {
+
+    @Test
+    public void registeredManagerReplacedBySequence() throws Exception {
+        GroupPolicyManagerGetter getter = new GroupPolicyManagerGetter();
+        String groupId = "registeredGroup";
+        IPolicyManager first = mock(IPolicyManager.class);
+        IPolicyManager second = mock(IPolicyManager.class);
+        IPolicyManager stale = mock(IPolicyManager.class);
+
+        GroupPolicyManagerGetter.register(groupId, bundle(1, first));
+        assertSame(first, getter.getPolicyManager(groupId));
+
+        //配置序号更新时替换, 序号较旧时忽略
+        GroupPolicyManagerGetter.register(groupId, bundle(2, second));
+        assertSame(second, getter.getPolicyManager(groupId));
+        GroupPolicyManagerGetter.register(groupId, bundle(1, stale));
+        assertSame(second, getter.getPolicyManager(groupId));
+    }
+
+    @Test
+    public void unregisteredManagerNotCached() throws Exception {
+        GroupPolicyManagerGetter getter = new GroupPolicyManagerGetter();
+        String groupId = "unregisteredGroup";
+
+        //未注册的群组每次返回新构造的默认策略管理者
+        IPolicyManager fallback = getter.getPolicyManager(groupId);
+        assertNotNull(fallback);
+        assertNotSame(fallback, getter.getPolicyManager(groupId));
+
+        //注册后即使用注册的策略管理者, 不受之前查询的影响
+        IPolicyManager registered = mock(IPolicyManager.class);
+        GroupPolicyManagerGetter.register(groupId, bundle(0, registered));
+        assertSame(registered, getter.getPolicyManager(groupId));
+    }
+
+    private static IGroupConfigBundle bundle(long sequence, IPolicyManager policyManager) {
+        IConfigtxValidator validator = mock(IConfigtxValidator.class);
+        when(validator.getSequence()).thenReturn(sequence);
+        IGroupConfigBundle bundle = mock(IGroupConfigBundle.class);
+        when(bundle.getConfigtxValidator()).thenReturn(validator);
+        when(bundle.getPolicyManager()).thenReturn(policyManager);
+        return bundle;
+    }
+}
@@ -0,0 +1,49 @@
+package org.bcia.julongchain.common.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 耗时直方图测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class LatencyHistogramTest {
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getPercentileMicros(99));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(10000, histogram.getMaxMicros());
+        assertEquals((90 * 100 + 10 * 10000) / 100, histogram.getMeanMicros());
+        //100us落在[64, 128)桶内
+        assertEquals(128, histogram.getPercentileMicros(50));
+        assertEquals(128, histogram.getPercentileMicros(90));
+        //不超过最大值
+        assertEquals(10000, histogram.getPercentileMicros(99));
+        assertTrue(histogram.toString().startsWith("test: count=100"));
+    }
+
+    @Test
+    public void negativeAndZero() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-1);
+        histogram.record(0);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(100));
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.blockcutter;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.groupconfig.capability.IConsenterCapabilities;
+import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
+import org.bcia.julongchain.common.groupconfig.config.IOrganizationConfig;
+import org.bcia.julongchain.consenter.entity.BatchesMes;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Configuration;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区块剪切性能测试
+ * 不同大小的交易信封连续进入剪切器, 统计每秒处理的信封数
+ * 运行: 执行main方法
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockCutterBenchmark {
+    private static final int ENVELOPE_COUNT = 1024;
+
+    @Param({"1024", "10240", "102400"})
+    private int envelopeSize;
+
+    private BlockCutter blockCutter;
+    private Common.Envelope[] envelopes;
+
+    @Setup
+    public void setUp() {
+        Configuration.BatchSize batchSize = Configuration.BatchSize.newBuilder()
+                .setMaxMessageCount(500)
+                .setAbsoluteMaxBytes(10 * 1024 * 1024)
+                .setPreferredMaxBytes(2 * 1024 * 1024)
+                .build();
+        blockCutter = new BlockCutter(new BenchmarkConsenterConfig(batchSize));
+
+        Random random = new Random(0);
+        envelopes = new Common.Envelope[ENVELOPE_COUNT];
+        for (int i = 0; i < ENVELOPE_COUNT; i++) {
+            byte[] payload = new byte[envelopeSize];
+            random.nextBytes(payload);
+            byte[] signature = new byte[72];
+            random.nextBytes(signature);
+            envelopes[i] = Common.Envelope.newBuilder()
+                    .setPayload(ByteString.copyFrom(payload))
+                    .setSignature(ByteString.copyFrom(signature))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENVELOPE_COUNT)
+    public void ordered(Blackhole blackhole) {
+        for (Common.Envelope envelope : envelopes) {
+            BatchesMes batchesMes = blockCutter.ordered(envelope);
+            blackhole.consume(batchesMes.getMessageBatches());
+        }
+        blackhole.consume(blockCutter.cut());
+    }
+
+    private static class BenchmarkConsenterConfig implements IConsenterConfig {
+        private final Configuration.BatchSize batchSize;
+
+        private BenchmarkConsenterConfig(Configuration.BatchSize batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        @Override
+        public String getConsensusType() {
+            return "Singleton";
+        }
+
+        @Override
+        public Configuration.BatchSize getBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public long getBatchTimeout() {
+            return 2000;
+        }
+
+        @Override
+        public List<String> getKafkaBrokers() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long getMaxChannelsCount() {
+            return 0;
+        }
+
+        @Override
+        public IConsenterCapabilities getCapabilities() {
+            return null;
+        }
+
+        @Override
+        public Map<String, IOrganizationConfig> getOrganizationConfigMap() {
+            return Collections.emptyMap();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(BlockCutterBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
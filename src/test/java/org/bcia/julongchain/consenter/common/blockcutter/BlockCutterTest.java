@@ -0,0 +1,96 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.blockcutter;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
+import org.bcia.julongchain.consenter.entity.BatchesMes;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 区块剪切测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockCutterTest {
+    private BlockCutter blockCutter;
+
+    @Before
+    public void setUp() {
+        IConsenterConfig consenterConfig = mock(IConsenterConfig.class);
+        when(consenterConfig.getBatchSize()).thenReturn(Configuration.BatchSize.newBuilder()
+                .setMaxMessageCount(3)
+                .setAbsoluteMaxBytes(1000)
+                .setPreferredMaxBytes(100)
+                .build());
+        blockCutter = new BlockCutter(consenterConfig);
+    }
+
+    @Test
+    public void cutByMessageCount() {
+        for (int i = 0; i < 2; i++) {
+            BatchesMes batchesMes = blockCutter.ordered(envelope(10));
+            assertNull(batchesMes.getMessageBatches());
+            assertTrue(batchesMes.isPending());
+        }
+        BatchesMes batchesMes = blockCutter.ordered(envelope(10));
+        assertEquals(1, batchesMes.getMessageBatches().length);
+        assertEquals(3, batchesMes.getMessageBatches()[0].length);
+        assertFalse(batchesMes.isPending());
+        assertEquals(0, blockCutter.getPendingBatchSizeBytes());
+    }
+
+    @Test
+    public void cutByPreferredMaxBytes() {
+        blockCutter.ordered(envelope(60));
+        BatchesMes batchesMes = blockCutter.ordered(envelope(60));
+        assertEquals(1, batchesMes.getMessageBatches().length);
+        assertEquals(1, batchesMes.getMessageBatches()[0].length);
+        assertTrue(batchesMes.isPending());
+        assertEquals(60, blockCutter.getPendingBatchSizeBytes());
+    }
+
+    @Test
+    public void isolateOversizedMessage() {
+        Common.Envelope small = envelope(10);
+        Common.Envelope large = envelope(200);
+        blockCutter.ordered(small);
+        BatchesMes batchesMes = blockCutter.ordered(large);
+        assertEquals(2, batchesMes.getMessageBatches().length);
+        assertSame(small, batchesMes.getMessageBatches()[0][0]);
+        assertSame(large, batchesMes.getMessageBatches()[1][0]);
+        //超大消息单独成块, 不再进入待处理批次
+        assertFalse(batchesMes.isPending());
+        assertEquals(0, blockCutter.cut().length);
+    }
+
+    private static Common.Envelope envelope(int size) {
+        return Common.Envelope.newBuilder().setPayload(ByteString.copyFrom(new byte[size])).build();
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.broadcast;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
+import org.bcia.julongchain.consenter.common.blockcutter.BlockCutter;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.consenter.common.server.ConsenterServer;
+import org.bcia.julongchain.consenter.consensus.singleton.Singleton;
+import org.bcia.julongchain.consenter.util.ConsenterConstants;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.bcia.julongchain.protos.consenter.AtomicBroadcastGrpc;
+import org.bcia.julongchain.protos.consenter.Configuration;
+
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * broadcast持续吞吐量测试
+ * 100个客户端流并发向consenter发送交易, 排序使用真实的Singleton入口队列及区块剪切, 消息校验和写账本为空实现;
+ * 每个客户端保持固定数量的未确认消息, 每秒输出SUCCESS及SERVICE_UNAVAILABLE响应数
+ * 运行: 执行main方法
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BroadcastBenchmark {
+    private static final int CLIENT_COUNT = 100;
+    private static final int IN_FLIGHT_PER_CLIENT = 64;
+    private static final int ENVELOPE_SIZE = 1024;
+    private static final int DURATION_SECONDS = 30;
+    private static final String GROUP_ID = "benchmarkgroup";
+
+    private static final AtomicLong success = new AtomicLong();
+    private static final AtomicLong unavailable = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        ChainSupport chainSupport = mockChainSupport();
+        Singleton singleton = new Singleton(chainSupport);
+        when(chainSupport.getChain()).thenReturn(singleton);
+        singleton.start();
+
+        Map<String, Object> classified = new HashMap<>();
+        classified.put(ConsenterConstants.GROUPHEADER, Common.GroupHeader.newBuilder()
+                .setGroupId(GROUP_ID)
+                .setType(Common.HeaderType.ENDORSER_TRANSACTION_VALUE)
+                .build());
+        classified.put(ConsenterConstants.ISCONFIG, false);
+        classified.put(ConsenterConstants.CHAINSUPPORT, chainSupport);
+
+        int port = freePort();
+        ConsenterServer consenterServer = new ConsenterServer(port);
+        consenterServer.bindBroadcastServer(new BroadcastHandler(msg -> classified));
+        consenterServer.start();
+
+        byte[] payload = new byte[ENVELOPE_SIZE];
+        new Random(0).nextBytes(payload);
+        Common.Envelope envelope = Common.Envelope.newBuilder().setPayload(ByteString.copyFrom(payload)).build();
+
+        ManagedChannel channel = NettyChannelBuilder.forAddress("localhost", port).usePlaintext().build();
+        AtomicBroadcastGrpc.AtomicBroadcastStub stub = AtomicBroadcastGrpc.newStub(channel);
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            new BenchmarkClient(stub, envelope).start();
+        }
+
+        long lastSuccess = 0;
+        long lastUnavailable = 0;
+        for (int second = 1; second <= DURATION_SECONDS; second++) {
+            Thread.sleep(1000);
+            long currentSuccess = success.get();
+            long currentUnavailable = unavailable.get();
+            System.out.println(String.format("second %d: success %d tps, service unavailable %d/s, failed %d",
+                    second, currentSuccess - lastSuccess, currentUnavailable - lastUnavailable, failed.get()));
+            lastSuccess = currentSuccess;
+            lastUnavailable = currentUnavailable;
+        }
+        System.out.println(String.format("%d clients, sustained %d tps", CLIENT_COUNT, success.get() / DURATION_SECONDS));
+        channel.shutdownNow();
+        System.exit(0);
+    }
+
+    /**
+     * 校验、生成区块及写账本均为空实现, 只保留入口队列和区块剪切
+     */
+    private static ChainSupport mockChainSupport() throws Exception {
+        Configuration.BatchSize batchSize = Configuration.BatchSize.newBuilder()
+                .setMaxMessageCount(500)
+                .setAbsoluteMaxBytes(10 * 1024 * 1024)
+                .setPreferredMaxBytes(2 * 1024 * 1024)
+                .build();
+        IConsenterConfig consenterConfig = mock(IConsenterConfig.class);
+        when(consenterConfig.getBatchSize()).thenReturn(batchSize);
+        when(consenterConfig.getBatchTimeout()).thenReturn(2000L);
+
+        ChainSupport chainSupport = mock(ChainSupport.class, RETURNS_DEEP_STUBS);
+        when(chainSupport.getGroupId()).thenReturn(GROUP_ID);
+        when(chainSupport.getSequence()).thenReturn(0L);
+        when(chainSupport.getCutter()).thenReturn(new BlockCutter(consenterConfig));
+        when(chainSupport.getProcessor().processNormalMsg(any())).thenReturn(0L);
+        when(chainSupport.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig())
+                .thenReturn(consenterConfig);
+        when(chainSupport.createNextBlock(any())).thenReturn(Common.Block.getDefaultInstance());
+        return chainSupport;
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * 保持IN_FLIGHT_PER_CLIENT条未确认消息的客户端, 每收到一个响应再发送一条
+     */
+    private static class BenchmarkClient implements StreamObserver<Ab.BroadcastResponse> {
+        private final AtomicBroadcastGrpc.AtomicBroadcastStub stub;
+        private final Common.Envelope envelope;
+        private StreamObserver<Common.Envelope> requestObserver;
+
+        private BenchmarkClient(AtomicBroadcastGrpc.AtomicBroadcastStub stub, Common.Envelope envelope) {
+            this.stub = stub;
+            this.envelope = envelope;
+        }
+
+        private synchronized void start() {
+            requestObserver = stub.broadcast(this);
+            for (int i = 0; i < IN_FLIGHT_PER_CLIENT; i++) {
+                requestObserver.onNext(envelope);
+            }
+        }
+
+        @Override
+        public synchronized void onNext(Ab.BroadcastResponse response) {
+            if (response.getStatus() == Common.Status.SUCCESS) {
+                success.incrementAndGet();
+            } else if (response.getStatus() == Common.Status.SERVICE_UNAVAILABLE) {
+                unavailable.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+            requestObserver.onNext(envelope);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.out.println(throwable.getMessage());
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.common.multigroup;
+
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.common.ledger.blockledger.ReadWriteBase;
+import org.bcia.julongchain.common.localmsp.ILocalSigner;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.consenter.util.BlockHelper;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 区块写入流水线测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class BlockWriterTest {
+    private static final int BLOCK_COUNT = 50;
+
+    private ChainSupport support;
+    private ILocalSigner signer;
+    private ReadWriteBase ledger;
+    private IChain chain;
+    private List<Long> appended;
+    private BlockWriter blockWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        support = mock(ChainSupport.class);
+        signer = mock(ILocalSigner.class);
+        ledger = mock(ReadWriteBase.class);
+        chain = mock(IChain.class);
+        LedgerResources ledgerResources = mock(LedgerResources.class);
+        appended = new CopyOnWriteArrayList<>();
+
+        when(signer.newSignatureHeader()).thenReturn(Common.SignatureHeader.getDefaultInstance());
+        when(signer.sign(any())).thenReturn(new byte[]{1});
+        when(support.getLocalSigner()).thenReturn(signer);
+        when(support.getGroupId()).thenReturn("myGroup");
+        when(support.getChain()).thenReturn(chain);
+        when(support.getLedgerResources()).thenReturn(ledgerResources);
+        when(ledgerResources.getReadWriteBase()).thenReturn(ledger);
+        doAnswer(invocation -> {
+            Common.Block block = invocation.getArgument(0);
+            appended.add(block.getHeader().getNumber());
+            return null;
+        }).when(ledger).append(any());
+
+        blockWriter = new BlockWriter(support, null, block(0));
+    }
+
+    @Test(timeout = 10000)
+    public void appendInOrder() throws Exception {
+        for (long i = 1; i <= BLOCK_COUNT; i++) {
+            blockWriter.writeBlock(block(i), null);
+        }
+        blockWriter.awaitAppended();
+
+        assertEquals(BLOCK_COUNT, appended.size());
+        for (int i = 0; i < BLOCK_COUNT; i++) {
+            assertEquals(i + 1, (long) appended.get(i));
+        }
+        assertFalse(blockWriter.isFailed());
+        verify(chain, never()).halt();
+    }
+
+    @Test(timeout = 10000)
+    public void signFailureHaltsChain() throws Exception {
+        AtomicInteger signCount = new AtomicInteger();
+        when(signer.sign(any())).thenAnswer(invocation -> {
+            if (signCount.incrementAndGet() == 3) {
+                throw new IllegalStateException("sign failed");
+            }
+            return new byte[]{1};
+        });
+
+        int written = writeUntilRejected();
+        assertAwaitFails();
+
+        //第3个区块签名失败, 其后的区块即使已签名也不再追加
+        assertEquals(2, appended.size());
+        assertTrue(written >= 3);
+        assertTrue(blockWriter.isFailed());
+        verify(chain).halt();
+        assertWriteRejected();
+    }
+
+    @Test(timeout = 10000)
+    public void appendFailureHaltsChain() throws Exception {
+        doAnswer(invocation -> {
+            Common.Block block = invocation.getArgument(0);
+            if (block.getHeader().getNumber() == 2) {
+                throw new LedgerException("disk full");
+            }
+            appended.add(block.getHeader().getNumber());
+            return null;
+        }).when(ledger).append(any());
+
+        //超过在途区块上限写入, 失败后许可仍须释放, 写入不会永久阻塞
+        writeUntilRejected();
+        assertAwaitFails();
+
+        assertEquals(1, appended.size());
+        assertEquals(1L, (long) appended.get(0));
+        verify(chain).halt();
+        assertWriteRejected();
+    }
+
+    /**
+     * 连续写入直到被拒绝, 返回写入成功的区块数
+     */
+    private int writeUntilRejected() {
+        for (long i = 1; i <= BLOCK_COUNT; i++) {
+            try {
+                blockWriter.writeBlock(block(i), null);
+            } catch (ConsenterException e) {
+                return (int) i - 1;
+            }
+        }
+        return BLOCK_COUNT;
+    }
+
+    private void assertAwaitFails() {
+        try {
+            blockWriter.awaitAppended();
+            fail("Expected awaitAppended to fail");
+        } catch (ConsenterException e) {
+            assertTrue(blockWriter.isFailed());
+        }
+    }
+
+    private void assertWriteRejected() {
+        try {
+            blockWriter.writeBlock(block(BLOCK_COUNT + 1), null);
+            fail("Expected writeBlock to be rejected");
+        } catch (ConsenterException e) {
+            assertTrue(e.getMessage().contains("failed"));
+        }
+    }
+
+    private static Common.Block block(long number) {
+        return BlockHelper.createBlock(number, new byte[0]);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.kafka;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.bcia.julongchain.common.log.JulongChainLog;
+import org.bcia.julongchain.common.log.JulongChainLogFactory;
+import org.bcia.julongchain.common.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * 测试用内嵌kafka集群
+ * 在当前JVM中启动一个ZooKeeper和一个broker, 数据目录为临时目录, 关闭时删除
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Shudun
+ */
+public class EmbeddedKafkaCluster {
+    private static JulongChainLog log = JulongChainLogFactory.getLog(EmbeddedKafkaCluster.class);
+
+    private static final String HOST = "127.0.0.1";
+
+    private File zkDir;
+    private File kafkaDir;
+    private ServerCnxnFactory zkFactory;
+    private KafkaServerStartable broker;
+    private String brokerList;
+
+    public void start() throws IOException, InterruptedException {
+        zkDir = Files.createTempDirectory("embedded-zk").toFile();
+        kafkaDir = Files.createTempDirectory("embedded-kafka").toFile();
+
+        int zkPort = freePort();
+        ZooKeeperServer zkServer = new ZooKeeperServer(zkDir, zkDir, 500);
+        zkFactory = ServerCnxnFactory.createFactory(new InetSocketAddress(HOST, zkPort), 60);
+        zkFactory.startup(zkServer);
+
+        int brokerPort = freePort();
+        brokerList = HOST + ":" + brokerPort;
+        Properties props = new Properties();
+        props.put("broker.id", "0");
+        props.put("zookeeper.connect", HOST + ":" + zkPort);
+        props.put("listeners", "PLAINTEXT://" + brokerList);
+        props.put("log.dirs", kafkaDir.getAbsolutePath());
+        props.put("num.partitions", "1");
+        props.put("auto.create.topics.enable", "true");
+        props.put("offsets.topic.replication.factor", "1");
+        props.put("transaction.state.log.replication.factor", "1");
+        props.put("transaction.state.log.min.isr", "1");
+        props.put("group.initial.rebalance.delay.ms", "0");
+        broker = new KafkaServerStartable(KafkaConfig.fromProps(props));
+        broker.startup();
+        log.info(String.format("Embedded Kafka cluster started, broker: %s, zookeeper port: %d", brokerList, zkPort));
+    }
+
+    public void shutdown() {
+        try {
+            if (broker != null) {
+                broker.shutdown();
+                broker.awaitShutdown();
+            }
+        } catch (RuntimeException e) {
+            log.error(String.format("Shutdown embedded Kafka broker %s failed: %s", brokerList, e.getMessage()), e);
+        }
+        if (zkFactory != null) {
+            zkFactory.shutdown();
+        }
+        FileUtils.deleteDir(kafkaDir);
+        FileUtils.deleteDir(zkDir);
+    }
+
+    /**
+     * broker地址, host:port
+     */
+    public String getBrokerList() {
+        return brokerList;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.consensus.kafka;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
+import org.bcia.julongchain.consenter.common.blockcutter.BlockCutter;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Configuration;
+import org.bcia.julongchain.protos.consenter.Kafka;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.net.ServerSocket;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * kafka排序链测试, 使用内嵌kafka集群
+ * 每个群组的分区中, 偏移量0为链启动时发送的连接消息
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Shudun
+ */
+public class KafkaChainTest {
+    private static final long WAIT_MILLIS = 30000;
+
+    private static EmbeddedKafkaCluster cluster;
+
+    @BeforeClass
+    public static void startCluster() throws Exception {
+        cluster = new EmbeddedKafkaCluster();
+        cluster.start();
+    }
+
+    @AfterClass
+    public static void stopCluster() {
+        cluster.shutdown();
+    }
+
+    @Test
+    public void order() throws Exception {
+        ChainSupport support = mockSupport("ordergroup", 10000);
+        IChain chain = startChain(support, null);
+        try {
+            Common.Envelope a1 = envelope("a1");
+            Common.Envelope a2 = envelope("a2");
+            chain.order(a1, 0);
+            chain.order(a2, 0);
+
+            ArgumentCaptor<byte[]> metadata = ArgumentCaptor.forClass(byte[].class);
+            verify(support, timeout(WAIT_MILLIS)).writeBlock(any(), metadata.capture());
+            ArgumentCaptor<Common.Envelope[]> batch = ArgumentCaptor.forClass(Common.Envelope[].class);
+            verify(support).createNextBlock(batch.capture());
+            assertArrayEquals(new Common.Envelope[]{a1, a2}, batch.getValue());
+            assertEquals(2, kafkaMetadata(metadata.getValue()).getLastOffsetPersisted());
+        } finally {
+            chain.halt();
+        }
+    }
+
+    @Test
+    public void timeToCut() throws Exception {
+        ChainSupport support = mockSupport("timetocutgroup", 200);
+        IChain chain = startChain(support, null);
+        try {
+            Common.Envelope a1 = envelope("a1");
+            chain.order(a1, 0);
+
+            //批次超时后发送切块消息(偏移量2), 在该位置切块
+            ArgumentCaptor<byte[]> metadata = ArgumentCaptor.forClass(byte[].class);
+            verify(support, timeout(WAIT_MILLIS)).writeBlock(any(), metadata.capture());
+            ArgumentCaptor<Common.Envelope[]> batch = ArgumentCaptor.forClass(Common.Envelope[].class);
+            verify(support).createNextBlock(batch.capture());
+            assertArrayEquals(new Common.Envelope[]{a1}, batch.getValue());
+            assertEquals(2, kafkaMetadata(metadata.getValue()).getLastOffsetPersisted());
+        } finally {
+            chain.halt();
+        }
+    }
+
+    @Test
+    public void configure() throws Exception {
+        ChainSupport support = mockSupport("configuregroup", 10000);
+        IChain chain = startChain(support, null);
+        try {
+            Common.Envelope normal = envelope("normal");
+            Common.Envelope config = envelope("config");
+            chain.order(normal, 0);
+            chain.configure(config, 0);
+
+            //待处理消息先写为普通区块, 持久化到配置消息之前
+            verify(support, timeout(WAIT_MILLIS)).writeConfigBlock(any(), any());
+            ArgumentCaptor<Common.Envelope[]> batches = ArgumentCaptor.forClass(Common.Envelope[].class);
+            ArgumentCaptor<byte[]> normalMetadata = ArgumentCaptor.forClass(byte[].class);
+            ArgumentCaptor<byte[]> configMetadata = ArgumentCaptor.forClass(byte[].class);
+            InOrder inOrder = inOrder(support);
+            inOrder.verify(support).createNextBlock(batches.capture());
+            inOrder.verify(support).writeBlock(any(), normalMetadata.capture());
+            inOrder.verify(support).createNextBlock(batches.capture());
+            inOrder.verify(support).writeConfigBlock(any(), configMetadata.capture());
+            assertArrayEquals(new Common.Envelope[]{normal}, batches.getAllValues().get(0));
+            assertArrayEquals(new Common.Envelope[]{config}, batches.getAllValues().get(1));
+            assertEquals(1, kafkaMetadata(normalMetadata.getValue()).getLastOffsetPersisted());
+            assertEquals(2, kafkaMetadata(configMetadata.getValue()).getLastOffsetPersisted());
+        } finally {
+            chain.halt();
+        }
+    }
+
+    @Test
+    public void resumeFromPersistedOffset() throws Exception {
+        ChainSupport support = mockSupport("resumegroup", 10000);
+        IChain chain = startChain(support, null);
+        ArgumentCaptor<byte[]> metadata = ArgumentCaptor.forClass(byte[].class);
+        try {
+            chain.order(envelope("a1"), 0);
+            chain.order(envelope("a2"), 0);
+            verify(support, timeout(WAIT_MILLIS)).writeBlock(any(), metadata.capture());
+        } finally {
+            chain.halt();
+        }
+
+        //重启后从最后一个区块元数据记录的偏移量之后消费, 已写入区块的消息不会重复切块
+        ChainSupport restartedSupport = mockSupport("resumegroup", 10000);
+        IChain restarted = startChain(restartedSupport, Common.Metadata.parseFrom(metadata.getValue()));
+        try {
+            Common.Envelope b1 = envelope("b1");
+            Common.Envelope b2 = envelope("b2");
+            restarted.order(b1, 0);
+            restarted.order(b2, 0);
+
+            ArgumentCaptor<byte[]> restartedMetadata = ArgumentCaptor.forClass(byte[].class);
+            verify(restartedSupport, timeout(WAIT_MILLIS)).writeBlock(any(), restartedMetadata.capture());
+            ArgumentCaptor<Common.Envelope[]> batch = ArgumentCaptor.forClass(Common.Envelope[].class);
+            verify(restartedSupport).createNextBlock(batch.capture());
+            assertArrayEquals(new Common.Envelope[]{b1, b2}, batch.getValue());
+            //偏移量3为重启后的连接消息
+            assertEquals(5, kafkaMetadata(restartedMetadata.getValue()).getLastOffsetPersisted());
+        } finally {
+            restarted.halt();
+        }
+    }
+
+    @Test
+    public void sendWaitsForAck() throws Exception {
+        KafkaProduce producer = new KafkaProduce(cluster.getBrokerList());
+        try {
+            TopicPartition topicPartition = new TopicPartition("ackgroup", 0);
+            RecordMetadata first = producer.send(topicPartition, new DataMessageHandle().newConnectMessage(), WAIT_MILLIS);
+            RecordMetadata second = producer.send(topicPartition, new DataMessageHandle().newConnectMessage(), WAIT_MILLIS);
+            assertEquals(0, first.offset());
+            assertEquals(1, second.offset());
+        } finally {
+            producer.close();
+        }
+    }
+
+    @Test
+    public void sendFailsWithoutBroker() throws Exception {
+        KafkaProduce producer;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            producer = new KafkaProduce("127.0.0.1:" + socket.getLocalPort());
+        }
+        try {
+            producer.send(new TopicPartition("nobrokergroup", 0), new DataMessageHandle().newConnectMessage(), 3000);
+            fail("Expected send to fail without a reachable broker");
+        } catch (ConsenterException e) {
+            //未确认的消息向调用方报错, broadcast据此返回SERVICE_UNAVAILABLE
+        } finally {
+            producer.close();
+        }
+    }
+
+    private static IChain startChain(ChainSupport support, Common.Metadata metadata) throws Exception {
+        IChain chain = new KafkaConsenter(Collections.singletonList(cluster.getBrokerList())).handleChain(support, metadata);
+        chain.start();
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (true) {
+            try {
+                chain.waitReady();
+                return chain;
+            } catch (ConsenterException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static ChainSupport mockSupport(String groupId, long batchTimeout) throws Exception {
+        Configuration.BatchSize batchSize = Configuration.BatchSize.newBuilder()
+                .setMaxMessageCount(2)
+                .setAbsoluteMaxBytes(1024 * 1024)
+                .setPreferredMaxBytes(512 * 1024)
+                .build();
+        IConsenterConfig consenterConfig = mock(IConsenterConfig.class);
+        when(consenterConfig.getBatchSize()).thenReturn(batchSize);
+        when(consenterConfig.getBatchTimeout()).thenReturn(batchTimeout);
+        when(consenterConfig.getKafkaBrokers()).thenReturn(Collections.emptyList());
+
+        ChainSupport support = mock(ChainSupport.class, RETURNS_DEEP_STUBS);
+        when(support.getGroupId()).thenReturn(groupId);
+        when(support.getSequence()).thenReturn(0L);
+        when(support.getCutter()).thenReturn(new BlockCutter(consenterConfig));
+        when(support.getLedgerResources().getReadWriteBase().height()).thenReturn(1L);
+        when(support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig())
+                .thenReturn(consenterConfig);
+        when(support.createNextBlock(any())).thenReturn(Common.Block.getDefaultInstance());
+        return support;
+    }
+
+    private static Kafka.KafkaMetadata kafkaMetadata(byte[] encodedMetadataValue) throws Exception {
+        return Kafka.KafkaMetadata.parseFrom(Common.Metadata.parseFrom(encodedMetadataValue).getValue());
+    }
+
+    private static Common.Envelope envelope(String payload) {
+        return Common.Envelope.newBuilder().setPayload(ByteString.copyFromUtf8(payload)).build();
+    }
+}
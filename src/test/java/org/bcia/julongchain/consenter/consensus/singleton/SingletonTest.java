@@ -1,6 +1,34 @@
 package org.bcia.julongchain.consenter.consensus.singleton;
 
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.exception.ConsenterException;
+import org.bcia.julongchain.common.groupconfig.config.IConsenterConfig;
+import org.bcia.julongchain.consenter.common.blockcutter.BlockCutter;
+import org.bcia.julongchain.consenter.common.multigroup.ChainSupport;
+import org.bcia.julongchain.consenter.consensus.IChain;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Configuration;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 /**
  * 简单排序测试
@@ -9,24 +37,128 @@ import org.junit.Test;
  * @company Dingxuan
  */
 public class SingletonTest {
+    private static final long WAIT_MILLIS = 2000;
+
+    private ChainSupport supportA;
+    private ChainSupport supportB;
+    private Singleton chainA;
+    private Singleton chainB;
+
+    @Before
+    public void setUp() throws Exception {
+        supportA = mockSupport("groupA");
+        supportB = mockSupport("groupB");
+        chainA = (Singleton) new Singleton().handleChain(supportA, null);
+        chainB = (Singleton) new Singleton().handleChain(supportB, null);
+        chainA.start();
+        chainB.start();
+    }
+
+    @After
+    public void tearDown() {
+        chainA.halt();
+        chainB.halt();
+    }
 
     @Test
-    public void order() {
+    public void order() throws ConsenterException {
+        Common.Envelope a1 = envelope("a1");
+        Common.Envelope a2 = envelope("a2");
+        Common.Envelope b1 = envelope("b1");
+        chainA.order(a1, 0);
+        chainB.order(b1, 0);
+        chainA.order(a2, 0);
+
+        //每条链由自己的排序线程剪切并写入自己的账本
+        ArgumentCaptor<Common.Envelope[]> batch = ArgumentCaptor.forClass(Common.Envelope[].class);
+        verify(supportA, timeout(WAIT_MILLIS)).writeBlock(any(), any());
+        verify(supportA).createNextBlock(batch.capture());
+        assertArrayEquals(new Common.Envelope[]{a1, a2}, batch.getValue());
+        //groupB只有一条消息, 由批次超时切割
+        ArgumentCaptor<Common.Envelope[]> batchB = ArgumentCaptor.forClass(Common.Envelope[].class);
+        verify(supportB, timeout(WAIT_MILLIS)).writeBlock(any(), any());
+        verify(supportB).createNextBlock(batchB.capture());
+        assertArrayEquals(new Common.Envelope[]{b1}, batchB.getValue());
     }
 
     @Test
-    public void configure() {
+    public void configure() throws ConsenterException {
+        Common.Envelope normal = envelope("normal");
+        Common.Envelope config = envelope("config");
+        chainA.order(normal, 0);
+        chainA.configure(config, 0);
+
+        //待处理消息先写为普通区块, 再写配置区块
+        verify(supportA, timeout(WAIT_MILLIS)).writeConfigBlock(any(), any());
+        ArgumentCaptor<Common.Envelope[]> batches = ArgumentCaptor.forClass(Common.Envelope[].class);
+        InOrder inOrder = inOrder(supportA);
+        inOrder.verify(supportA).createNextBlock(batches.capture());
+        inOrder.verify(supportA).writeBlock(any(), any());
+        inOrder.verify(supportA).createNextBlock(batches.capture());
+        inOrder.verify(supportA).writeConfigBlock(any(), any());
+        List<Common.Envelope[]> values = batches.getAllValues();
+        assertArrayEquals(new Common.Envelope[]{normal}, values.get(0));
+        assertArrayEquals(new Common.Envelope[]{config}, values.get(1));
     }
 
     @Test
-    public void start() {
+    public void batchTimeout() throws ConsenterException {
+        Common.Envelope normal = envelope("normal");
+        chainA.order(normal, 0);
+
+        ArgumentCaptor<Common.Envelope[]> batch = ArgumentCaptor.forClass(Common.Envelope[].class);
+        verify(supportA, timeout(WAIT_MILLIS)).writeBlock(any(), any());
+        verify(supportA).createNextBlock(batch.capture());
+        assertArrayEquals(new Common.Envelope[]{normal}, batch.getValue());
     }
 
     @Test
-    public void halt() {
+    public void halt() throws ConsenterException {
+        assertTrue(chainA.isAcceptable());
+        chainA.halt();
+        assertFalse(chainA.isAcceptable());
+        try {
+            chainA.order(envelope("rejected"), 0);
+            fail("halted chain should reject messages");
+        } catch (ConsenterException e) {
+            assertTrue(e.getMessage().contains("groupA"));
+        }
+        //其他链不受影响
+        chainB.order(envelope("b1"), 0);
+        chainB.order(envelope("b2"), 0);
+        verify(supportB, timeout(WAIT_MILLIS)).writeBlock(any(), any());
     }
 
     @Test
-    public void handleChain() {
+    public void handleChain() throws ConsenterException {
+        Singleton plugin = new Singleton();
+        IChain first = plugin.handleChain(supportA, null);
+        IChain second = plugin.handleChain(supportB, null);
+        assertNotSame(first, second);
+        assertEquals(Singleton.class, first.getClass());
+    }
+
+    private static ChainSupport mockSupport(String groupId) throws Exception {
+        Configuration.BatchSize batchSize = Configuration.BatchSize.newBuilder()
+                .setMaxMessageCount(2)
+                .setAbsoluteMaxBytes(1024 * 1024)
+                .setPreferredMaxBytes(512 * 1024)
+                .build();
+        IConsenterConfig consenterConfig = mock(IConsenterConfig.class);
+        when(consenterConfig.getBatchSize()).thenReturn(batchSize);
+        when(consenterConfig.getBatchTimeout()).thenReturn(200L);
+
+        ChainSupport support = mock(ChainSupport.class, RETURNS_DEEP_STUBS);
+        when(support.getGroupId()).thenReturn(groupId);
+        when(support.getSequence()).thenReturn(0L);
+        when(support.getCutter()).thenReturn(new BlockCutter(consenterConfig));
+        when(support.getLedgerResources().getMutableResources().getGroupConfig().getConsenterConfig())
+                .thenReturn(consenterConfig);
+        when(support.createNextBlock(any())).thenReturn(Common.Block.getDefaultInstance());
+        return support;
+    }
+
+    private static Common.Envelope envelope(String payload) {
+        return Common.Envelope.newBuilder().setPayload(ByteString.copyFromUtf8(payload)).build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.consenter.util;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.consenter.Ab;
+import org.bcia.julongchain.protos.consenter.AtomicBroadcastGrpc;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 客户端地址拦截器测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class RequestHeadersInterceptorTest {
+
+    @Test
+    public void eachStreamSeesItsOwnRemoteAddress() throws Exception {
+        Map<String, String> remoteAddresses = new ConcurrentHashMap<>();
+        CountDownLatch received = new CountDownLatch(2);
+        AtomicBroadcastGrpc.AtomicBroadcastImplBase service = new AtomicBroadcastGrpc.AtomicBroadcastImplBase() {
+            @Override
+            public StreamObserver<Common.Envelope> broadcast(StreamObserver<Ab.BroadcastResponse> responseObserver) {
+                //流建立时读取, 不同流的地址互不覆盖
+                String remoteAddr = RequestHeadersInterceptor.REMOTE_ADDRESS.get();
+                return new StreamObserver<Common.Envelope>() {
+                    @Override
+                    public void onNext(Common.Envelope envelope) {
+                        remoteAddresses.put(envelope.getPayload().toStringUtf8(), remoteAddr);
+                        received.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        responseObserver.onCompleted();
+                    }
+                };
+            }
+        };
+        Server server = NettyServerBuilder.forAddress(new InetSocketAddress("127.0.0.1", 0))
+                .addService(ServerInterceptors.intercept(service, RequestHeadersInterceptor.remoteAddressInterceptor()))
+                .build().start();
+        ManagedChannel channel1 = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+        ManagedChannel channel2 = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+        try {
+            StreamObserver<Common.Envelope> stream1 = AtomicBroadcastGrpc.newStub(channel1).broadcast(noopObserver());
+            StreamObserver<Common.Envelope> stream2 = AtomicBroadcastGrpc.newStub(channel2).broadcast(noopObserver());
+            stream2.onNext(envelope("2"));
+            stream1.onNext(envelope("1"));
+            assertTrue(received.await(10, TimeUnit.SECONDS));
+
+            assertTrue(remoteAddresses.get("1").startsWith("/127.0.0.1:"));
+            assertTrue(remoteAddresses.get("2").startsWith("/127.0.0.1:"));
+            assertEquals(2, remoteAddresses.values().stream().distinct().count());
+        } finally {
+            channel1.shutdownNow();
+            channel2.shutdownNow();
+            server.shutdownNow();
+        }
+    }
+
+    private static Common.Envelope envelope(String payload) {
+        return Common.Envelope.newBuilder().setPayload(ByteString.copyFromUtf8(payload)).build();
+    }
+
+    private static StreamObserver<Ab.BroadcastResponse> noopObserver() {
+        return new StreamObserver<Ab.BroadcastResponse>() {
+            @Override
+            public void onNext(Ab.BroadcastResponse response) {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        };
+    }
+}
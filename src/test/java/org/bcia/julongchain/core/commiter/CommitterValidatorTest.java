@@ -0,0 +1,165 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.commiter;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.bcia.julongchain.common.groupconfig.capability.IApplicationCapabilities;
+import org.bcia.julongchain.common.localmsp.impl.LocalSigner;
+import org.bcia.julongchain.common.util.proto.EnvelopeHelper;
+import org.bcia.julongchain.common.util.proto.ProposalResponseUtils;
+import org.bcia.julongchain.common.util.proto.ProposalUtils;
+import org.bcia.julongchain.core.ledger.INodeLedger;
+import org.bcia.julongchain.csp.factory.CspManager;
+import org.bcia.julongchain.msp.IMsp;
+import org.bcia.julongchain.msp.ISigningIdentity;
+import org.bcia.julongchain.msp.mgmt.GlobalMspManagement;
+import org.bcia.julongchain.msp.mgmt.MspMgmtMgr;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.common.Configtx;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.bcia.julongchain.protos.node.ProposalResponsePackage;
+import org.bcia.julongchain.protos.node.SmartContractPackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Committer节点校验器测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class CommitterValidatorTest {
+    private static final String GROUP_ID = "validatorGroup";
+    private static final int TXS_BEFORE_CONFIG = 12;
+    private static final int TXS_AFTER_CONFIG = 12;
+
+    private static Common.Block block;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        IMsp localMsp = GlobalMspManagement.getLocalMsp();
+        MspMgmtMgr.getManagerForChain(GROUP_ID).setup(new IMsp[]{localMsp});
+
+        Common.BlockData.Builder dataBuilder = Common.BlockData.newBuilder();
+        for (int i = 0; i < TXS_BEFORE_CONFIG; i++) {
+            dataBuilder.addData(createEndorserTx(localMsp.getDefaultSigningIdentity()).toByteString());
+        }
+        dataBuilder.addData(EnvelopeHelper.buildSignedEnvelope(Common.HeaderType.CONFIG_VALUE, 0, GROUP_ID,
+                new LocalSigner(), Configtx.ConfigEnvelope.newBuilder().setConfig(Configtx.Config
+                        .getDefaultInstance()).build(), 0).toByteString());
+        for (int i = 0; i < TXS_AFTER_CONFIG; i++) {
+            dataBuilder.addData(createEndorserTx(localMsp.getDefaultSigningIdentity()).toByteString());
+        }
+        block = Common.Block.newBuilder()
+                .setHeader(Common.BlockHeader.newBuilder().setNumber(1))
+                .setData(dataBuilder)
+                .build();
+    }
+
+    @Test
+    public void parallelValidationMatchesSequential() throws Exception {
+        List<Thread> applyThreads = new ArrayList<>();
+        byte[] sequential = validate(1, applyThreads);
+        byte[] parallel = validate(4, applyThreads);
+        assertArrayEquals(sequential, parallel);
+
+        //配置交易之前的交易基于旧配置验证, 之后的交易基于新配置验证
+        for (int i = 0; i < TXS_BEFORE_CONFIG; i++) {
+            assertEquals(TransactionPackage.TxValidationCode.INVALID_OTHER_REASON, flag(parallel, i));
+        }
+        assertEquals(TransactionPackage.TxValidationCode.VALID, flag(parallel, TXS_BEFORE_CONFIG));
+        for (int i = TXS_BEFORE_CONFIG + 1; i < block.getData().getDataCount(); i++) {
+            assertEquals(TransactionPackage.TxValidationCode.VALID, flag(parallel, i));
+        }
+
+        //配置在调用线程上应用
+        assertEquals(2, applyThreads.size());
+        assertSame(Thread.currentThread(), applyThreads.get(0));
+        assertSame(Thread.currentThread(), applyThreads.get(1));
+    }
+
+    /**
+     * 验证区块, 模拟的VSSC仅在配置交易应用后才认为交易有效
+     */
+    private byte[] validate(int poolSize, List<Thread> applyThreads) throws Exception {
+        AtomicBoolean configApplied = new AtomicBoolean(false);
+
+        ICommitterSupport committerSupport = mock(ICommitterSupport.class);
+        when(committerSupport.getLedger()).thenReturn(mock(INodeLedger.class));
+        when(committerSupport.getCapabilities()).thenReturn(mock(IApplicationCapabilities.class));
+        doAnswer(invocation -> {
+            applyThreads.add(Thread.currentThread());
+            configApplied.set(true);
+            return null;
+        }).when(committerSupport).apply(any());
+
+        IVsscValidator vsscValidator = mock(IVsscValidator.class);
+        when(vsscValidator.vsscValidateTx(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            //放大交易之间的交错
+            Thread.sleep(5);
+            return configApplied.get() ? TransactionPackage.TxValidationCode.VALID : TransactionPackage
+                    .TxValidationCode.ENDORSEMENT_POLICY_FAILURE;
+        });
+
+        CommitterValidator validator = new CommitterValidator(committerSupport, vsscValidator, poolSize);
+        Common.Block validated = validator.validate(block);
+        return validated.getMetadata().getMetadata(Common.BlockMetadataIndex.TRANSACTIONS_FILTER_VALUE)
+                .toByteArray();
+    }
+
+    private static TransactionPackage.TxValidationCode flag(byte[] txsFilter, int txIndex) {
+        return TransactionPackage.TxValidationCode.forNumber(txsFilter[txIndex] & 0xFF);
+    }
+
+    private static Common.Envelope createEndorserTx(ISigningIdentity signer) throws Exception {
+        SmartContractPackage.SmartContractID smartContractID = SmartContractPackage.SmartContractID.newBuilder()
+                .setName("mycc").setVersion("1.0").build();
+        SmartContractPackage.SmartContractInvocationSpec invocationSpec = SmartContractPackage
+                .SmartContractInvocationSpec.newBuilder().setSmartContractSpec(SmartContractPackage.SmartContractSpec
+                        .newBuilder().setSmartContractId(smartContractID)).build();
+
+        ProposalPackage.Proposal proposal = ProposalUtils.createProposalFromInvocationSpec(Common.HeaderType
+                .ENDORSER_TRANSACTION, GROUP_ID, invocationSpec, signer.getIdentity().serialize());
+        ProposalResponsePackage.Response response = ProposalResponsePackage.Response.newBuilder().setStatus(200)
+                .build();
+
+        //与交易验证相同的方式计算提案Hash
+        Common.Header header = Common.Header.parseFrom(proposal.getHeader());
+        byte[] proposalHash = CspManager.getDefaultCsp().hash(ArrayUtils.addAll(ArrayUtils.addAll(header
+                .getGroupHeader().toByteArray(), header.getSignatureHeader().toByteArray()), proposal.getPayload()
+                .toByteArray()), null);
+        ProposalResponsePackage.ProposalResponsePayload responsePayload = ProposalResponseUtils
+                .buildProposalResponsePayload(Rwset.TxReadWriteSet.getDefaultInstance()
+                .toByteArray(), null, response, smartContractID, proposalHash);
+        ProposalResponsePackage.ProposalResponse proposalResponse = ProposalResponseUtils.buildNormalProposalResponse(
+                responsePayload, signer);
+        //createSignedTxEnvelope从Response.payload中读取提案响应负载
+        proposalResponse = proposalResponse.toBuilder().setResponse(proposalResponse.getResponse().toBuilder()
+                .setPayload(responsePayload.toByteString())).build();
+        return EnvelopeHelper.createSignedTxEnvelope(proposal, signer, proposalResponse);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.lockbasedtxmgr;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.core.ledger.IQueryExecutor;
+import org.bcia.julongchain.core.ledger.ITxSimulator;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.UpdateBatch;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.VersionedValue;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.protos.common.Common;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 交易管理者提交屏障测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class LockBasedTxManagerTest {
+	private static final String NS = "mycc";
+
+	private IDB db;
+	private LockBasedTxManager txMgr;
+	private CountDownLatch applyStarted;
+	private CountDownLatch applyRelease;
+
+	@Before
+	public void setUp() throws Exception {
+		db = mock(IDB.class);
+		when(db.getState(anyString(), anyString())).thenReturn(new VersionedValue(new LedgerHeight(1, 0),
+				"value".getBytes(StandardCharsets.UTF_8)));
+		//提交时阻塞在写入状态数据库, 直到测试放行
+		applyStarted = new CountDownLatch(1);
+		applyRelease = new CountDownLatch(1);
+		doAnswer(invocation -> {
+			applyStarted.countDown();
+			applyRelease.await();
+			return null;
+		}).when(db).applyPrivacyAwareUpdates(any(), any());
+		txMgr = new LockBasedTxManager("barrierGroup", db, null);
+	}
+
+	@Test
+	public void readWaitsForCommit() throws Exception {
+		txMgr.setOptimisticSimulation(false);
+		CompletableFuture<Void> commit = startCommit();
+		assertTrue(applyStarted.await(5, TimeUnit.SECONDS));
+
+		//提交期间创建查询器需等待提交完成
+		CompletableFuture<byte[]> read = CompletableFuture.supplyAsync(() -> {
+			IQueryExecutor queryExecutor = newQueryExecutor("query");
+			try {
+				return getState(queryExecutor);
+			} finally {
+				queryExecutor.done();
+			}
+		});
+		try {
+			read.get(300, TimeUnit.MILLISECONDS);
+			fail("Read should wait for the commit");
+		} catch (TimeoutException e) {
+			//提交期间读取被阻塞
+		}
+
+		applyRelease.countDown();
+		commit.get(5, TimeUnit.SECONDS);
+		assertArrayEquals("value".getBytes(StandardCharsets.UTF_8), read.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void commitWaitsForLiveSimulator() throws Exception {
+		txMgr.setOptimisticSimulation(false);
+		ITxSimulator simulator = txMgr.newTxSimulator("live");
+		getState(simulator);
+
+		//模拟器持有读锁直到done(), 两次读取之间不会有区块提交
+		CompletableFuture<Void> commit = startCommit();
+		assertFalse(applyStarted.await(300, TimeUnit.MILLISECONDS));
+		getState(simulator);
+		assertFalse(simulator.isCommitRaced());
+
+		simulator.done();
+		assertTrue(applyStarted.await(5, TimeUnit.SECONDS));
+		applyRelease.countDown();
+		commit.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void optimisticSimulationDetectsRacedCommit() throws Exception {
+		txMgr.setOptimisticSimulation(true);
+		ITxSimulator raced = txMgr.newTxSimulator("raced");
+		getState(raced);
+
+		//乐观模式下模拟器不阻塞提交, 提交期间的读取也不等待
+		CompletableFuture<Void> commit = startCommit();
+		assertTrue(applyStarted.await(5, TimeUnit.SECONDS));
+		assertNotNull(CompletableFuture.supplyAsync(() -> getState(raced)).get(5, TimeUnit.SECONDS));
+
+		applyRelease.countDown();
+		commit.get(5, TimeUnit.SECONDS);
+		//done()时检查模拟期间是否有提交
+		raced.done();
+		assertTrue(raced.isCommitRaced());
+
+		//提交完成后开始的模拟不受影响
+		ITxSimulator fresh = txMgr.newTxSimulator("fresh");
+		getState(fresh);
+		fresh.done();
+		assertFalse(fresh.isCommitRaced());
+	}
+
+	/**
+	 * 在后台线程提交区块
+	 */
+	private CompletableFuture<Void> startCommit() throws Exception {
+		txMgr.setCurrentBlock(Common.Block.newBuilder()
+				.setHeader(Common.BlockHeader.newBuilder().setNumber(1))
+				.setData(Common.BlockData.newBuilder().addData(ByteString.EMPTY))
+				.build());
+		txMgr.setBatch(mock(UpdateBatch.class));
+		return CompletableFuture.runAsync(() -> {
+			try {
+				txMgr.commit();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+	}
+
+	private IQueryExecutor newQueryExecutor(String txID) {
+		try {
+			return txMgr.newQueryExecutor(txID);
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] getState(IQueryExecutor queryExecutor) {
+		try {
+			return queryExecutor.getState(NS, "key");
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.txmgr.lockbasedtxmgr;
+
+import org.bcia.julongchain.common.exception.LedgerException;
+import org.bcia.julongchain.core.ledger.ITxSimulator;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 交易模拟器注册表测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class TxSimulatorRegistryTest {
+	private LockBasedTxManager txMgr;
+
+	@Before
+	public void setUp() throws Exception {
+		txMgr = new LockBasedTxManager("registryGroup", mock(IDB.class), null);
+	}
+
+	@Test
+	public void sameSimulatorUntilDone() throws Exception {
+		ITxSimulator simulator = txMgr.newTxSimulator("tx1");
+		assertSame(simulator, txMgr.newTxSimulator("tx1"));
+		assertNotSame(simulator, txMgr.newTxSimulator("tx2"));
+		assertEquals(2, txMgr.getLiveSimulatorCount());
+
+		simulator.done();
+		assertEquals(1, txMgr.getLiveSimulatorCount());
+		ITxSimulator recreated = txMgr.newTxSimulator("tx1");
+		assertNotSame(simulator, recreated);
+
+		recreated.done();
+		txMgr.newTxSimulator("tx2").done();
+		assertEquals(0, txMgr.getLiveSimulatorCount());
+	}
+
+	@Test
+	public void abandonedSimulatorExpires() throws Exception {
+		TxSimulatorRegistry registry = new TxSimulatorRegistry("registryGroup", 100);
+		int totalBefore = TxSimulatorRegistry.getTotalLiveCount();
+		LockBasedTxSimulator abandoned = registry.getOrCreate("abandoned", id -> new LockBasedTxSimulator(txMgr, id));
+		registry.getOrCreate("active", id -> new LockBasedTxSimulator(txMgr, id));
+		assertEquals(2, registry.getLiveCount());
+		assertEquals(totalBefore + 2, TxSimulatorRegistry.getTotalLiveCount());
+
+		Thread.sleep(150);
+		//仍在使用的模拟器刷新访问时间
+		registry.getOrCreate("active", id -> new LockBasedTxSimulator(txMgr, id));
+		assertEquals(1, registry.sweep());
+		assertEquals(1, registry.getLiveCount());
+		assertEquals(totalBefore + 1, TxSimulatorRegistry.getTotalLiveCount());
+		try {
+			abandoned.getState("mycc", "key");
+			fail("Expired simulator should have been released");
+		} catch (LedgerException e) {
+			//已释放的模拟器不能继续使用
+		}
+
+		//后台线程按存活时间清理
+		long deadline = System.currentTimeMillis() + 5000;
+		while (registry.getLiveCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(100);
+		}
+		assertEquals(0, registry.getLiveCount());
+		assertEquals(totalBefore, TxSimulatorRegistry.getTotalLiveCount());
+		registry.close();
+	}
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright Dingxuan. All Rights Reserved.
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+		 http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.statebasedval;
+
+import com.google.protobuf.ByteString;
+import org.bcia.julongchain.common.ledger.IResultsIterator;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.privacyenabledstate.IDB;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.NsRwSet;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.RangeQueryResultsHelper;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.TxRwSet;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.QueryResult;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.VersionedKV;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.CompositeKey;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.statedb.stateleveldb.VersionedValue;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Block;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.PubAndHashUpdates;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.validator.valinternal.Transaction;
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.version.LedgerHeight;
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * statedb验证器测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class ValidatorTest {
+	private static final String NS = "mycc";
+	private static final int KEY_COUNT = 40;
+	private static final int TX_COUNT = 300;
+
+	@Test
+	public void parallelValidationMatchesSerial() throws Exception {
+		IDB db = mockDB();
+		Block serialBlock = randomBlock(new Random(20261017L));
+		Block parallelBlock = randomBlock(new Random(20261017L));
+
+		PubAndHashUpdates serialUpdates = new Validator(db, Integer.MAX_VALUE).validateAndPrepareBatch(serialBlock, true);
+		PubAndHashUpdates parallelUpdates = new Validator(db, 1).validateAndPrepareBatch(parallelBlock, true);
+
+		int valid = 0;
+		for (int i = 0; i < TX_COUNT; i++) {
+			TransactionPackage.TxValidationCode code = serialBlock.getTxs().get(i).getValidationCode();
+			assertEquals("tx " + i, code, parallelBlock.getTxs().get(i).getValidationCode());
+			if (TransactionPackage.TxValidationCode.VALID.equals(code)) {
+				valid++;
+			}
+		}
+		//随机区块中应同时存在有效与无效交易
+		assertTrue(valid > 0 && valid < TX_COUNT);
+
+		Map<String, VersionedValue> serialWrites = serialUpdates.getPubUpdates().getBatch().getUpdates(NS);
+		Map<String, VersionedValue> parallelWrites = parallelUpdates.getPubUpdates().getBatch().getUpdates(NS);
+		assertEquals(serialWrites.keySet(), parallelWrites.keySet());
+		for (String key : serialWrites.keySet()) {
+			assertEquals(serialWrites.get(key), parallelWrites.get(key));
+		}
+	}
+
+	@Test
+	public void readOfKeyWrittenEarlierInBlockConflicts() throws Exception {
+		IDB db = mockDB();
+		Block block = new Block(2);
+		//交易0写key1, 交易1以已提交版本读取key1, 交易2读取key2
+		block.getTxs().add(tx(0, KvRwset.KVRWSet.newBuilder().addWrites(write("key1"))));
+		block.getTxs().add(tx(1, KvRwset.KVRWSet.newBuilder().addReads(read("key1", committedVersion(1)))));
+		block.getTxs().add(tx(2, KvRwset.KVRWSet.newBuilder().addReads(read("key2", committedVersion(2)))));
+
+		new Validator(db, 1).validateAndPrepareBatch(block, true);
+		assertEquals(TransactionPackage.TxValidationCode.VALID, block.getTxs().get(0).getValidationCode());
+		assertEquals(TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT, block.getTxs().get(1).getValidationCode());
+		assertEquals(TransactionPackage.TxValidationCode.VALID, block.getTxs().get(2).getValidationCode());
+	}
+
+	@Test
+	public void rangeQueryRestoredByEarlierDeleteMatchesSerial() throws Exception {
+		//模拟时范围[r0, r9)中有r1-r5, 之后提交了r6; 区块中交易0删除r6, 交易1的范围查询结果重新一致
+		assertRangeQueryResult(true, TransactionPackage.TxValidationCode.VALID);
+		//交易0不删除r6时范围查询冲突
+		assertRangeQueryResult(false, TransactionPackage.TxValidationCode.MVCC_READ_CONFLICT);
+	}
+
+	private static void assertRangeQueryResult(boolean deleteNewKey, TransactionPackage.TxValidationCode expected)
+			throws Exception {
+		IDB db = rangeDB();
+		Block serialBlock = rangeBlock(deleteNewKey);
+		Block parallelBlock = rangeBlock(deleteNewKey);
+		new Validator(db, Integer.MAX_VALUE).validateAndPrepareBatch(serialBlock, true);
+		new Validator(db, 1).validateAndPrepareBatch(parallelBlock, true);
+		assertEquals(expected, serialBlock.getTxs().get(1).getValidationCode());
+		assertEquals(expected, parallelBlock.getTxs().get(1).getValidationCode());
+	}
+
+	/**
+	 * 已提交r1-r5, 版本为(1, 键序号), 以及模拟之后提交的r6
+	 */
+	private static IDB rangeDB() throws Exception {
+		List<QueryResult> committed = new ArrayList<>();
+		for (int i = 1; i <= 6; i++) {
+			LedgerHeight height = i <= 5 ? new LedgerHeight(1, i) : new LedgerHeight(5, 0);
+			committed.add(new QueryResult(new VersionedKV(new CompositeKey(NS, "r" + i),
+					new VersionedValue(height, ("value-r" + i).getBytes(StandardCharsets.UTF_8)))));
+		}
+		IDB db = mock(IDB.class);
+		when(db.isBulkOptimizable()).thenReturn(false);
+		when(db.getStateRangeScanIterator(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+			Iterator<QueryResult> itr = committed.iterator();
+			return new IResultsIterator() {
+				@Override
+				public QueryResult next() {
+					return itr.hasNext() ? itr.next() : null;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		});
+		return db;
+	}
+
+	private static Block rangeBlock(boolean deleteNewKey) throws Exception {
+		RangeQueryResultsHelper helper = new RangeQueryResultsHelper(true, 2);
+		for (int i = 1; i <= 5; i++) {
+			helper.addResult(read("r" + i, new LedgerHeight(1, i)));
+		}
+		KvRwset.RangeQueryInfo rangeQueryInfo = KvRwset.RangeQueryInfo.newBuilder()
+				.setStartKey("r0")
+				.setEndKey("r9")
+				.setItrExhausted(true)
+				.setReadsMerkleHashes(helper.done().getValue())
+				.build();
+		KvRwset.KVWrite write = deleteNewKey ? KvRwset.KVWrite.newBuilder().setKey("r6").setIsDelete(true).build()
+				: write("other");
+
+		Block block = new Block(2);
+		block.getTxs().add(tx(0, KvRwset.KVRWSet.newBuilder().addWrites(write)));
+		block.getTxs().add(tx(1, KvRwset.KVRWSet.newBuilder().addRangeQueriesInfo(rangeQueryInfo)));
+		return block;
+	}
+
+	/**
+	 * 偶数键已提交, 版本为(1, 键序号), 奇数键不存在
+	 */
+	private static IDB mockDB() throws Exception {
+		IDB db = mock(IDB.class);
+		when(db.isBulkOptimizable()).thenReturn(false);
+		when(db.getHeight(anyString(), anyString())).thenAnswer(invocation -> {
+			int index = Integer.parseInt(((String) invocation.getArgument(1)).substring(3));
+			return committedVersion(index);
+		});
+		return db;
+	}
+
+	private static LedgerHeight committedVersion(int index) {
+		return index % 2 == 0 ? new LedgerHeight(1, index) : null;
+	}
+
+	/**
+	 * 每笔交易读取两个键, 版本可能过期, 并写入一至两个键
+	 */
+	private static Block randomBlock(Random random) {
+		Block block = new Block(2);
+		for (int i = 0; i < TX_COUNT; i++) {
+			KvRwset.KVRWSet.Builder kvRwSet = KvRwset.KVRWSet.newBuilder();
+			for (int r = 0; r < 2; r++) {
+				int index = random.nextInt(KEY_COUNT);
+				LedgerHeight version = random.nextInt(10) == 0 ? new LedgerHeight(0, 1) : committedVersion(index);
+				kvRwSet.addReads(read("key" + index, version));
+			}
+			int writes = 1 + random.nextInt(2);
+			for (int w = 0; w < writes; w++) {
+				kvRwSet.addWrites(write("key" + random.nextInt(KEY_COUNT)));
+			}
+			block.getTxs().add(tx(i, kvRwSet));
+		}
+		return block;
+	}
+
+	private static Transaction tx(int index, KvRwset.KVRWSet.Builder kvRwSet) {
+		TxRwSet txRwSet = new TxRwSet();
+		txRwSet.setNsRwSets(Collections.singletonList(new NsRwSet(NS, kvRwSet.build())));
+		return new Transaction(index, "tx" + index, txRwSet, null);
+	}
+
+	private static KvRwset.KVRead read(String key, LedgerHeight version) {
+		KvRwset.KVRead.Builder builder = KvRwset.KVRead.newBuilder().setKey(key);
+		if (version != null) {
+			builder.setVersion(KvRwset.Version.newBuilder().setBlockNum(version.getBlockNum())
+					.setTxNum(version.getTxNum()));
+		}
+		return builder.build();
+	}
+
+	private static KvRwset.KVWrite write(String key) {
+		return KvRwset.KVWrite.newBuilder().setKey(key).setValue(ByteString.copyFromUtf8("value-" + key)).build();
+	}
+}
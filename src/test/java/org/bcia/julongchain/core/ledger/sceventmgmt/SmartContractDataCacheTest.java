@@ -0,0 +1,83 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.sceventmgmt;
+
+import org.bcia.julongchain.protos.ledger.rwset.kvrwset.KvRwset;
+import org.bcia.julongchain.protos.node.SmartContractDataPackage;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * 智能合约定义缓存测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class SmartContractDataCacheTest {
+
+    @Test
+    public void putRejectedAfterGenerationChange() {
+        String groupId = "generationGroup";
+        SmartContractDataPackage.SmartContractData data = data("1.0");
+
+        //读取状态期间定义发生变化, 读取到的旧定义不写入缓存
+        long generation = SmartContractDataCache.generation(groupId);
+        SmartContractDataCache.invalidate(groupId, "mycc");
+        SmartContractDataCache.put(groupId, "mycc", data, generation);
+        assertNull(SmartContractDataCache.get(groupId, "mycc"));
+
+        SmartContractDataCache.put(groupId, "mycc", data, SmartContractDataCache.generation(groupId));
+        assertEquals(data, SmartContractDataCache.get(groupId, "mycc"));
+
+        SmartContractDataCache.invalidateGroup(groupId);
+        assertNull(SmartContractDataCache.get(groupId, "mycc"));
+    }
+
+    @Test
+    public void invalidateAfterCommit() throws Exception {
+        String groupId = "commitGroup";
+        KVLedgerLSSCStateListener listener = new KVLedgerLSSCStateListener();
+        SmartContractDataPackage.SmartContractData oldData = data("1.0");
+        SmartContractDataCache.put(groupId, "mycc", oldData, SmartContractDataCache.generation(groupId));
+
+        //区块验证后、提交前: 状态数据库中仍是旧定义, 此时读取并缓存的旧定义在提交后须失效
+        listener.handleStateUpdates(groupId, Collections.singletonList(KvRwset.KVWrite.newBuilder()
+                .setKey("mycc").setIsDelete(true).build()));
+        long generation = SmartContractDataCache.generation(groupId);
+        SmartContractDataCache.put(groupId, "mycc", oldData, generation);
+        assertEquals(oldData, SmartContractDataCache.get(groupId, "mycc"));
+
+        listener.stateCommitDone(groupId);
+        assertNull(SmartContractDataCache.get(groupId, "mycc"));
+        //提交前开始的读取不能把旧定义写回缓存
+        SmartContractDataCache.put(groupId, "mycc", oldData, generation);
+        assertNull(SmartContractDataCache.get(groupId, "mycc"));
+
+        //没有待失效记录时提交不影响缓存
+        SmartContractDataPackage.SmartContractData newData = data("2.0");
+        SmartContractDataCache.put(groupId, "mycc", newData, SmartContractDataCache.generation(groupId));
+        listener.stateCommitDone(groupId);
+        assertEquals(newData, SmartContractDataCache.get(groupId, "mycc"));
+    }
+
+    private static SmartContractDataPackage.SmartContractData data(String version) {
+        return SmartContractDataPackage.SmartContractData.newBuilder().setName("mycc").setVersion(version).build();
+    }
+}
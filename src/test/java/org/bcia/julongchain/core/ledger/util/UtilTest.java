@@ -0,0 +1,51 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ledger.util;
+
+import org.bcia.julongchain.core.ledger.kvledger.txmgmt.rwsetutil.MerkleTree;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 账本hash工具测试类
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class UtilTest {
+
+    @Test
+    public void hashOfPartsMatchesHashOfConcatenation() throws Exception {
+        assertArrayEquals(Util.getHashBytes("abcdef".getBytes()),
+                Util.getHashBytes(Arrays.asList("ab".getBytes(), null, new byte[0], "cdef".getBytes())));
+        //全部为空时与空数组的hash一致
+        assertArrayEquals(Util.getHashBytes(new byte[0]), Util.getHashBytes(Arrays.asList(new byte[0], null)));
+        assertArrayEquals(Util.getHashBytes(new byte[0]), Util.getHashBytes(Collections.<byte[]>emptyList()));
+    }
+
+    @Test
+    public void emptyMerkleHashIsEmpty() throws Exception {
+        assertEquals(0, MerkleTree.computeCombinedHash(Arrays.asList(new byte[0], null)).length);
+        assertArrayEquals(Util.getHashBytes("ab".getBytes()),
+                MerkleTree.computeCombinedHash(Arrays.asList("a".getBytes(), "b".getBytes())));
+    }
+}
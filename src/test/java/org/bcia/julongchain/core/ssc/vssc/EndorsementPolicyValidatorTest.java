@@ -0,0 +1,179 @@
+/**
+ * Copyright Dingxuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.core.ssc.vssc;
+
+import com.google.protobuf.ByteString;
+import org.apache.commons.lang3.ArrayUtils;
+import org.bcia.julongchain.BaseJunit4Test;
+import org.bcia.julongchain.common.policycheck.cauthdsl.CAuthDslBuilder;
+import org.bcia.julongchain.common.util.CommConstant;
+import org.bcia.julongchain.common.util.proto.EnvelopeHelper;
+import org.bcia.julongchain.common.util.proto.ProposalResponseUtils;
+import org.bcia.julongchain.common.util.proto.ProposalUtils;
+import org.bcia.julongchain.core.smartcontract.shim.ISmartContract;
+import org.bcia.julongchain.core.smartcontract.shim.impl.MockStub;
+import org.bcia.julongchain.csp.factory.CspManager;
+import org.bcia.julongchain.msp.IMsp;
+import org.bcia.julongchain.msp.ISigningIdentity;
+import org.bcia.julongchain.msp.mgmt.GlobalMspManagement;
+import org.bcia.julongchain.msp.mgmt.MspMgmtMgr;
+import org.bcia.julongchain.protos.common.Common;
+import org.bcia.julongchain.protos.common.Policies;
+import org.bcia.julongchain.protos.ledger.rwset.Rwset;
+import org.bcia.julongchain.protos.node.ProposalPackage;
+import org.bcia.julongchain.protos.node.ProposalResponsePackage;
+import org.bcia.julongchain.protos.node.SmartContractPackage;
+import org.bcia.julongchain.protos.node.TransactionPackage;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * 进程内背书策略校验与VSSC智能合约调用的一致性测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class EndorsementPolicyValidatorTest extends BaseJunit4Test {
+    private static final String GROUP_ID = "endorsementGroup";
+
+    @Autowired
+    private VSSC vssc;
+    private MockStub mockStub;
+    private IMsp localMsp;
+
+    @Before
+    public void beforeTest() throws Exception {
+        localMsp = GlobalMspManagement.getLocalMsp();
+        MspMgmtMgr.getManagerForChain(GROUP_ID).setup(new IMsp[]{localMsp});
+        mockStub = new MockStub(CommConstant.VSSC, vssc);
+        mockStub.mockInit("1", new LinkedList<ByteString>());
+    }
+
+    @Test
+    public void satisfiedPolicy() throws Exception {
+        Common.Envelope tx = createTx(1);
+        byte[] policy = CAuthDslBuilder.signedByMspMember(localMsp.getIdentifier()).toByteArray();
+        assertEquals(TransactionPackage.TxValidationCode.VALID, validateInProcess(tx, policy));
+        assertSamePath(tx, policy);
+    }
+
+    @Test
+    public void policyOutcomesAgree() throws Exception {
+        //签名策略评估的结果两条路径必须一致, 包括同一身份的重复背书
+        Common.Envelope tx = createTx(2);
+        Policies.SignaturePolicyEnvelope memberPolicy = CAuthDslBuilder.signedByMspMember(localMsp.getIdentifier());
+        assertSamePath(tx, memberPolicy.toByteArray());
+        assertSamePath(tx, memberPolicy.toBuilder().setRule(CAuthDslBuilder.nOutOf(2, new Policies
+                .SignaturePolicy[]{CAuthDslBuilder.signedBy(0), CAuthDslBuilder.signedBy(0)})).build().toByteArray());
+        assertSamePath(tx, CAuthDslBuilder.signedByMspMember("OtherMSP").toByteArray());
+    }
+
+    @Test
+    public void malformedPolicyRejected() throws Exception {
+        Common.Envelope tx = createTx(1);
+        byte[] malformed = new byte[]{1, 2, 3};
+        assertEquals(TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE, validateInProcess(tx,
+                malformed));
+        assertSamePath(tx, malformed);
+    }
+
+    @Test
+    public void unknownEndorserRejected() throws Exception {
+        //背书者身份无法反序列化
+        Common.Envelope tx = createTx(1);
+        Common.Payload payload = Common.Payload.parseFrom(tx.getPayload());
+        TransactionPackage.Transaction transaction = TransactionPackage.Transaction.parseFrom(payload.getData());
+        TransactionPackage.SmartContractActionPayload scap = TransactionPackage.SmartContractActionPayload
+                .parseFrom(transaction.getActions(0).getPayload());
+        TransactionPackage.SmartContractActionPayload badScap = scap.toBuilder().setAction(scap.getAction()
+                .toBuilder().setEndorsements(0, scap.getAction().getEndorsements(0).toBuilder()
+                        .setEndorser(ByteString.copyFromUtf8("unknown")))).build();
+        TransactionPackage.Transaction badTransaction = transaction.toBuilder().setActions(0, transaction
+                .getActions(0).toBuilder().setPayload(badScap.toByteString())).build();
+        Common.Envelope badTx = tx.toBuilder().setPayload(payload.toBuilder().setData(badTransaction
+                .toByteString()).build().toByteString()).build();
+
+        byte[] policy = CAuthDslBuilder.signedByMspMember(localMsp.getIdentifier()).toByteArray();
+        assertEquals(TransactionPackage.TxValidationCode.ENDORSEMENT_POLICY_FAILURE, validateInProcess(badTx,
+                policy));
+        assertSamePath(badTx, policy);
+    }
+
+    /**
+     * 进程内校验结果为VALID当且仅当VSSC调用成功
+     */
+    private void assertSamePath(Common.Envelope tx, byte[] policy) throws Exception {
+        List<ByteString> args = new LinkedList<ByteString>();
+        args.add(ByteString.copyFromUtf8("dv"));
+        args.add(tx.toByteString());
+        args.add(ByteString.copyFrom(policy));
+        ISmartContract.SmartContractResponse response = mockStub.mockInvoke("1", args);
+
+        boolean inProcessValid = TransactionPackage.TxValidationCode.VALID.equals(validateInProcess(tx, policy));
+        assertEquals(response.getMessage(), inProcessValid, ISmartContract.SmartContractResponse.Status.SUCCESS
+                .equals(response.getStatus()));
+    }
+
+    private TransactionPackage.TxValidationCode validateInProcess(Common.Envelope tx, byte[] policy) throws
+            Exception {
+        Common.Payload payload = Common.Payload.parseFrom(tx.getPayload());
+        Common.GroupHeader groupHeader = Common.GroupHeader.parseFrom(payload.getHeader().getGroupHeader());
+        TransactionPackage.Transaction transaction = TransactionPackage.Transaction.parseFrom(payload.getData());
+        TransactionPackage.SmartContractActionPayload scap = TransactionPackage.SmartContractActionPayload
+                .parseFrom(transaction.getActions(0).getPayload());
+        return EndorsementPolicyValidator.validate(GROUP_ID, groupHeader.getTxId(), scap, policy);
+    }
+
+    /**
+     * 构造由本地身份背书endorsements次的交易
+     */
+    private Common.Envelope createTx(int endorsements) throws Exception {
+        ISigningIdentity signer = localMsp.getDefaultSigningIdentity();
+        SmartContractPackage.SmartContractID smartContractID = SmartContractPackage.SmartContractID.newBuilder()
+                .setName("mycc").setVersion("1.0").build();
+        SmartContractPackage.SmartContractInvocationSpec invocationSpec = SmartContractPackage
+                .SmartContractInvocationSpec.newBuilder().setSmartContractSpec(SmartContractPackage.SmartContractSpec
+                        .newBuilder().setSmartContractId(smartContractID)).build();
+
+        ProposalPackage.Proposal proposal = ProposalUtils.createProposalFromInvocationSpec(Common.HeaderType
+                .ENDORSER_TRANSACTION, GROUP_ID, invocationSpec, signer.getIdentity().serialize());
+        ProposalResponsePackage.Response response = ProposalResponsePackage.Response.newBuilder().setStatus(200)
+                .build();
+
+        Common.Header header = Common.Header.parseFrom(proposal.getHeader());
+        byte[] proposalHash = CspManager.getDefaultCsp().hash(ArrayUtils.addAll(ArrayUtils.addAll(header
+                .getGroupHeader().toByteArray(), header.getSignatureHeader().toByteArray()), proposal.getPayload()
+                .toByteArray()), null);
+        ProposalResponsePackage.ProposalResponsePayload responsePayload = ProposalResponseUtils
+                .buildProposalResponsePayload(Rwset.TxReadWriteSet.getDefaultInstance().toByteArray(), null,
+                        response, smartContractID, proposalHash);
+        ProposalResponsePackage.ProposalResponse[] proposalResponses = new ProposalResponsePackage
+                .ProposalResponse[endorsements];
+        for (int i = 0; i < endorsements; i++) {
+            ProposalResponsePackage.ProposalResponse proposalResponse = ProposalResponseUtils
+                    .buildNormalProposalResponse(responsePayload, signer);
+            //createSignedTxEnvelope从Response.payload中读取提案响应负载
+            proposalResponses[i] = proposalResponse.toBuilder().setResponse(proposalResponse.getResponse()
+                    .toBuilder().setPayload(responsePayload.toByteString())).build();
+        }
+        return EnvelopeHelper.createSignedTxEnvelope(proposal, signer, proposalResponses);
+    }
+}
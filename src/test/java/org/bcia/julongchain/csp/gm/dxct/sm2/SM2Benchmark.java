@@ -0,0 +1,155 @@
+/**
+ * Copyright DingXuan. All Rights Reserved.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.bcia.julongchain.csp.gm.dxct.sm2;
+
+import org.bcia.julongchain.csp.gm.dxct.util.CryptoUtil;
+import org.bouncycastle.crypto.params.ECDomainParameters;
+import org.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.bouncycastle.crypto.signers.SM2Signer;
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sm2签名验签性能测试
+ * 对比原实现(每次新建曲线参数、解析公钥、新建SM2Signer)与缓存公钥点及预计算表的实现
+ * 批量验签模拟一个区块内少量背书节点对大量交易的背书
+ * 运行: 执行main方法
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SM2Benchmark {
+    private static final BigInteger SM2_ECC_N = new BigInteger("FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFF7203DF6B21C6052B53BBF40939D54123", 16);
+    private static final BigInteger SM2_ECC_P = new BigInteger("FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF00000000FFFFFFFFFFFFFFFF", 16);
+    private static final BigInteger SM2_ECC_A = new BigInteger("FFFFFFFEFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF00000000FFFFFFFFFFFFFFFC", 16);
+    private static final BigInteger SM2_ECC_B = new BigInteger("28E9FA9E9D9F5E344D5A9E4BCF6509A7F39789F515AB8F92DDBCBD414D940E93", 16);
+    private static final BigInteger SM2_ECC_GX = new BigInteger("32C4AE2C1F1981195F9904466A39C9948FE30BBFF2660BE1715A4589334C74C7", 16);
+    private static final BigInteger SM2_ECC_GY = new BigInteger("BC3736A2F4F6779C59BDCEE36B692153D0A9877CC62A474002DF32E52139F0A0", 16);
+
+    @Param({"4"})
+    private int endorserCount;
+
+    @Param({"256"})
+    private int batchSize;
+
+    private SM2 sm2;
+    private SM2KeyPair keyPair;
+    private byte[] msg;
+    private byte[] signValue;
+    private List<SM2SignedData> batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        sm2 = new SM2();
+        keyPair = sm2.generateKeyPair();
+        msg = CryptoUtil.genByteArray(256);
+        signValue = sm2.sign(keyPair.getPrivatekey(), msg);
+
+        List<SM2KeyPair> endorsers = new ArrayList<>(endorserCount);
+        for (int i = 0; i < endorserCount; i++) {
+            endorsers.add(sm2.generateKeyPair());
+        }
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            SM2KeyPair endorser = endorsers.get(i % endorserCount);
+            byte[] data = CryptoUtil.genByteArray(256);
+            batch.add(new SM2SignedData(endorser.getPublickey(), sm2.sign(endorser.getPrivatekey(), data), data));
+        }
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        return sm2.sign(keyPair.getPrivatekey(), msg);
+    }
+
+    @Benchmark
+    public byte[] legacySign() throws Exception {
+        ECDomainParameters domain = legacyDomain();
+        SM2Signer signer = new SM2Signer();
+        signer.init(true, new ECPrivateKeyParameters(SM2.byte2BigInteger(keyPair.getPrivatekey()), domain));
+        signer.update(msg, 0, msg.length);
+        return signer.generateSignature();
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        return sm2.verify(keyPair.getPublickey(), signValue, msg);
+    }
+
+    @Benchmark
+    public boolean legacyVerify() {
+        return legacyVerify(keyPair.getPublickey(), signValue, msg);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public boolean[] verifyBatch() {
+        return sm2.verifyBatch(batch);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(256)
+    public boolean[] legacyVerifyBatch() {
+        boolean[] results = new boolean[batch.size()];
+        for (int i = 0; i < results.length; i++) {
+            SM2SignedData signedData = batch.get(i);
+            results[i] = legacyVerify(signedData.getPublicKey(), signedData.getSignValue(), signedData.getMsg());
+        }
+        return results;
+    }
+
+    /**
+     * 原实现: new SM2()时重建曲线参数, 每次验签解析公钥并新建SM2Signer
+     */
+    private static boolean legacyVerify(byte[] publicKey, byte[] signValue, byte[] msg) {
+        ECDomainParameters domain = legacyDomain();
+        ECPoint q = domain.getCurve().decodePoint(publicKey);
+        SM2Signer signer = new SM2Signer();
+        signer.init(false, new ECPublicKeyParameters(q, domain));
+        signer.update(msg, 0, msg.length);
+        return signer.verifySignature(signValue);
+    }
+
+    private static ECDomainParameters legacyDomain() {
+        ECCurve.Fp curve = new ECCurve.Fp(SM2_ECC_P, SM2_ECC_A, SM2_ECC_B);
+        return new ECDomainParameters(curve, curve.createPoint(SM2_ECC_GX, SM2_ECC_GY), SM2_ECC_N);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(SM2Benchmark.class.getSimpleName())
+                .threads(4)
+                .build();
+        new Runner(options).run();
+    }
+}
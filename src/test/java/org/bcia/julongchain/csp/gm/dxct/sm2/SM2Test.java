@@ -10,8 +10,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * sm2 测试类
@@ -53,6 +58,50 @@ public class SM2Test {
         System.out.println("Validation results：" + result);
     }
 
+    @Test
+    public void verifyTamperedData() throws CspException {
+        byte[] content = CryptoUtil.genByteArray(32);
+        byte[] publicKey = sm2KeyPair.getPublickey();
+        byte[] signature = sm2.sign(sm2KeyPair.getPrivatekey(), content);
+        assertTrue(sm2.verify(publicKey, signature, content));
+        //第二次验签使用缓存的公钥
+        assertTrue(sm2.verify(publicKey, signature, content));
+
+        byte[] tamperedContent = content.clone();
+        tamperedContent[0] ^= 1;
+        assertFalse(sm2.verify(publicKey, signature, tamperedContent));
+        byte[] tamperedSignature = signature.clone();
+        tamperedSignature[tamperedSignature.length - 1] ^= 1;
+        assertFalse(sm2.verify(publicKey, tamperedSignature, content));
+        assertFalse(sm2.verify(sm2.generateKeyPair().getPublickey(), signature, content));
+    }
+
+    @Test
+    public void verifyBatch() throws CspException {
+        SM2KeyPair otherKeyPair = sm2.generateKeyPair();
+        List<SM2SignedData> batch = new ArrayList<>();
+        boolean[] expected = new boolean[10];
+        for (int i = 0; i < expected.length; i++) {
+            SM2KeyPair keyPair = i % 2 == 0 ? sm2KeyPair : otherKeyPair;
+            byte[] content = CryptoUtil.genByteArray(64);
+            byte[] signature = sm2.sign(keyPair.getPrivatekey(), content);
+            expected[i] = i % 3 != 0;
+            if (!expected[i]) {
+                content[0] ^= 1;
+            }
+            batch.add(new SM2SignedData(keyPair.getPublickey(), signature, content));
+        }
+        assertArrayEquals(expected, sm2.verifyBatch(batch));
+
+        //非法项不影响其他项
+        batch.add(new SM2SignedData(new byte[]{1, 2, 3}, new byte[]{1}, new byte[]{1}));
+        batch.add(new SM2SignedData(sm2KeyPair.getPublickey(), null, new byte[]{1}));
+        boolean[] results = sm2.verifyBatch(batch);
+        assertEquals(expected.length + 2, results.length);
+        assertFalse(results[expected.length]);
+        assertFalse(results[expected.length + 1]);
+        assertTrue(results[1]);
+    }
 
     @Test
     public void invalidParamSignTest() {
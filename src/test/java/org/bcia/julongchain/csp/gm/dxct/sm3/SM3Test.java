@@ -1,8 +1,10 @@
 package org.bcia.julongchain.csp.gm.dxct.sm3;
 
+import com.google.protobuf.ByteString;
 import org.bcia.julongchain.common.exception.CspException;
 import org.bcia.julongchain.csp.gm.dxct.util.CryptoUtil;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bcia.julongchain.protos.common.Common;
 import org.bouncycastle.util.encoders.Hex;
 import org.junit.Before;
 import org.junit.Test;
@@ -104,5 +106,35 @@ public class SM3Test {
         System.out.println(String.format("%s byte data expend time %s ms",testData4.length,(t8-t7)));
     }
 
+    @Test
+    public void incrementalHashTest() throws CspException {
+        SM3Hash sm3Hash = new SM3Hash();
+        sm3Hash.write("ab".getBytes());
+        //sum将摘要追加在参数之后, 且不改变摘要状态
+        byte[] partial = sm3Hash.sum(new byte[]{1, 2});
+        assertEquals(2 + sm3Hash.size(), partial.length);
+        assertEquals(1, partial[0]);
+        assertEquals(2, partial[1]);
+        assertArrayEquals(sm3.hash("ab".getBytes()), sm3Hash.sum(null));
+        sm3Hash.write(ByteString.copyFromUtf8("c"));
+        assertArrayEquals(sm3.hash("abc".getBytes()), sm3Hash.sum(null));
+        assertEquals("66c7f0f462eeedd9d1f2d46bdc10e4e24167c4875cf2f7a2297da02b8f4ba8e0",
+                Hex.toHexString(sm3Hash.digest()));
+        //digest后重置为初始状态
+        assertArrayEquals(SM3.digest(new byte[0]), sm3Hash.digest());
+    }
 
-}
\ No newline at end of file
+    @Test
+    public void messageHashTest() throws CspException {
+        Common.BlockData.Builder builder = Common.BlockData.newBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.addData(ByteString.copyFrom(CryptoUtil.genByteArray(1024)));
+        }
+        Common.BlockData blockData = builder.build();
+        SM3Hash sm3Hash = new SM3Hash();
+        assertEquals(blockData.getSerializedSize(), sm3Hash.write(blockData));
+        assertArrayEquals(sm3.hash(blockData.toByteArray()), sm3Hash.digest());
+        sm3Hash.write(blockData.toByteString());
+        assertArrayEquals(sm3.hash(blockData.toByteArray()), sm3Hash.digest());
+    }
+}
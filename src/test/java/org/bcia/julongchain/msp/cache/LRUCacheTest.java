@@ -0,0 +1,34 @@
+package org.bcia.julongchain.msp.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * LRU缓存测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class LRUCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LRUCache<String, Integer> cache = new LRUCache<>(3);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        //容量已满时不提前淘汰
+        assertEquals(3, cache.size());
+
+        //访问a后, 最久未使用的是b
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertEquals(3, cache.size());
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("a"));
+        assertTrue(cache.containsKey("c"));
+        assertTrue(cache.containsKey("d"));
+    }
+}
@@ -0,0 +1,40 @@
+package org.bcia.julongchain.msp.cache;
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 已验证签名缓存测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class VerifiedSignatureCacheTest {
+    private static final byte[] CERT1 = new byte[]{0x30, 1, 1};
+    private static final byte[] CERT2 = new byte[]{0x30, 1, 2};
+
+    @Test
+    public void markAndCheck() {
+        byte[] msg = "proposal".getBytes();
+        byte[] sig = new byte[]{1, 2, 3};
+        ByteString key = VerifiedSignatureCache.key(CERT1, msg, sig);
+        assertFalse(VerifiedSignatureCache.isVerified(key));
+
+        VerifiedSignatureCache.markVerified(key);
+        assertTrue(VerifiedSignatureCache.isVerified(VerifiedSignatureCache.key(CERT1, msg, sig.clone())));
+
+        //证书、消息或签名不同时不命中
+        assertFalse(VerifiedSignatureCache.isVerified(VerifiedSignatureCache.key(CERT2, msg, sig)));
+        assertFalse(VerifiedSignatureCache.isVerified(VerifiedSignatureCache.key(CERT1, "other".getBytes(), sig)));
+        assertFalse(VerifiedSignatureCache.isVerified(VerifiedSignatureCache.key(CERT1, msg, new byte[]{1, 2})));
+        //长度前缀保证拼接边界不同的输入得到不同的键
+        assertNotEquals(VerifiedSignatureCache.key("a".getBytes(), "bc".getBytes(), sig),
+                VerifiedSignatureCache.key("ab".getBytes(), "c".getBytes(), sig));
+
+        VerifiedSignatureCache.clear();
+        assertFalse(VerifiedSignatureCache.isVerified(key));
+    }
+}
@@ -0,0 +1,73 @@
+package org.bcia.julongchain.msp.mgmt;
+
+import com.google.protobuf.CodedOutputStream;
+import org.apache.commons.lang3.ArrayUtils;
+import org.bcia.julongchain.msp.IIdentity;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Msp身份缓存测试
+ *
+ * @author agent
+ * @date 2026/10/17
+ * @company Dingxuan
+ */
+public class MspIdentityCacheTest {
+    /**
+     * 与Msp中的身份缓存大小一致
+     */
+    private static final int IDENTITY_CACHE_SIZE = 1024;
+
+    private Msp msp;
+    private byte[] serializedIdentity;
+
+    @Before
+    public void setUp() throws Exception {
+        msp = (Msp) GlobalMspManagement.getLocalMsp();
+        msp.clearIdentityCache();
+        serializedIdentity = msp.getDefaultSigningIdentity().getIdentity().serialize();
+    }
+
+    @Test
+    public void deserializeIdentityHit() throws Exception {
+        IIdentity identity = msp.deserializeIdentity(serializedIdentity);
+        //相同字节命中缓存, 不再重新解析证书
+        assertSame(identity, msp.deserializeIdentity(serializedIdentity.clone()));
+        //缓存的身份验证结果与首次一致
+        msp.validate(identity);
+        msp.validate(identity);
+
+        msp.clearIdentityCache();
+        IIdentity reparsed = msp.deserializeIdentity(serializedIdentity);
+        assertNotSame(identity, reparsed);
+        assertEquals(identity.getIdentifier().getId(), reparsed.getIdentifier().getId());
+    }
+
+    @Test
+    public void deserializeIdentityEviction() throws Exception {
+        IIdentity first = msp.deserializeIdentity(variant(0));
+        //再写入缓存容量个不同的键, 最早的身份被淘汰
+        for (int i = 1; i <= IDENTITY_CACHE_SIZE; i++) {
+            msp.deserializeIdentity(variant(i));
+        }
+        IIdentity newest = msp.deserializeIdentity(variant(IDENTITY_CACHE_SIZE));
+        assertSame(newest, msp.deserializeIdentity(variant(IDENTITY_CACHE_SIZE)));
+        assertNotSame(first, msp.deserializeIdentity(variant(0)));
+    }
+
+    /**
+     * 在序列化身份后附加未知字段, 得到解析结果相同但字节不同的缓存键
+     */
+    private byte[] variant(int i) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CodedOutputStream coded = CodedOutputStream.newInstance(out);
+        coded.writeUInt32(1000, i);
+        coded.flush();
+        return ArrayUtils.addAll(serializedIdentity, out.toByteArray());
+    }
+}